@@ -0,0 +1,65 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry;
+
+import java.io.IOException;
+
+import com.subcherry.log.LogCache;
+import com.subcherry.repository.command.Client;
+import com.subcherry.repository.command.log.LogEntryHandler;
+import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.core.RepositoryURL;
+
+/**
+ * {@link LogReader} answering requests from a {@link LogCache}.
+ * 
+ * <p>
+ * Requests the cache cannot answer (e.g. because of an explicit peg revision) are passed to the
+ * repository.
+ * </p>
+ */
+public class CachedLogReader extends LogReader {
+
+	private final LogCache _cache;
+
+	public CachedLogReader(Client logClient, RepositoryURL url, LogCache cache) {
+		super(logClient, url);
+		_cache = cache;
+	}
+
+	@Override
+	public void close() {
+		_cache.close();
+		super.close();
+	}
+
+	@Override
+	public void readLog(String[] paths, LogEntryHandler logTarget) throws RepositoryException {
+		if (!_cache.supports(getPegRevision(), getStartRevision(), getEndRevision())) {
+			super.readLog(paths, logTarget);
+			return;
+		}
+		try {
+			_cache.log(paths, getStartRevision(), getEndRevision(), isStopOnCopy(), isDiscoverChangedPaths(),
+				getLimit(), logTarget);
+		} catch (IOException ex) {
+			throw new RepositoryException(ex);
+		}
+	}
+
+}
@@ -0,0 +1,265 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import com.subcherry.commit.Commit;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+
+/**
+ * Dependency graph over {@link CommitSet}s.
+ *
+ * <p>
+ * Each {@link CommitSet} is identified by its index in the list the graph was created from. A
+ * {@link CommitSet} depends on another one, if it touches a path last touched by the other one, if
+ * it touches a path below a directory added, deleted or replaced by the other one (or vice versa),
+ * or if it contains a follow-up for a commit in the other one. Edges always point from an earlier
+ * to a later {@link CommitSet} in the original order.
+ * </p>
+ *
+ * @see #schedule()
+ */
+public class CommitGraph {
+
+	private static final Logger LOG = Logger.getLogger(CommitGraph.class.getName());
+
+	private final List<CommitSet> _commitSets;
+
+	/**
+	 * For each {@link CommitSet} the IDs of the {@link CommitSet}s that must be applied before.
+	 */
+	private final BitSet[] _requires;
+
+	/**
+	 * For each {@link CommitSet} the IDs of the {@link CommitSet}s that require it.
+	 */
+	private final BitSet[] _requiredBy;
+
+	private final String[] _tickets;
+
+	/**
+	 * Creates a {@link CommitGraph}.
+	 *
+	 * @param commitSets
+	 *        The {@link CommitSet}s in the order they would be applied without dependency
+	 *        information (usually ascending lead revision).
+	 */
+	public CommitGraph(List<CommitSet> commitSets) {
+		_commitSets = new ArrayList<>(commitSets);
+		int size = _commitSets.size();
+		_requires = new BitSet[size];
+		_requiredBy = new BitSet[size];
+		_tickets = new String[size];
+		for (int id = 0; id < size; id++) {
+			_requires[id] = new BitSet();
+			_requiredBy[id] = new BitSet();
+			_tickets[id] = _commitSets.get(id).getLeadCommit().getTicketMessage().getParsedMessage().getTicketId();
+		}
+		addPathDependencies();
+		addFollowUpDependencies();
+	}
+
+	private void addPathDependencies() {
+		Map<String, Integer> lastTouch = new HashMap<>();
+		Map<String, Integer> structuralChanges = new HashMap<>();
+		List<List<String>> pathsById = new ArrayList<>(size());
+		for (int id = 0, size = size(); id < size; id++) {
+			List<String> paths = new ArrayList<>();
+			pathsById.add(paths);
+			for (Commit commit : _commitSets.get(id).getCommits()) {
+				for (LogEntryPath change : commit.getLogEntry().getChangedPaths().values()) {
+					String path = change.getPath();
+					paths.add(path);
+
+					Integer before = lastTouch.put(path, id);
+					if (before != null) {
+						addDependency(before, id);
+					}
+
+					// Changes below a directory that was added, deleted or replaced before.
+					for (int sep = path.lastIndexOf('/'); sep > 0; sep = path.lastIndexOf('/', sep - 1)) {
+						Integer structural = structuralChanges.get(path.substring(0, sep));
+						if (structural != null) {
+							addDependency(structural, id);
+						}
+					}
+
+					if (change.getKind() == NodeKind.DIR && change.getType() != ChangeType.MODIFIED) {
+						structuralChanges.put(path, id);
+
+						// Changes below the directory before it is added, deleted or replaced.
+						String prefix = path + '/';
+						for (int other = 0; other < id; other++) {
+							for (String otherPath : pathsById.get(other)) {
+								if (otherPath.startsWith(prefix)) {
+									addDependency(other, id);
+									break;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void addFollowUpDependencies() {
+		Map<Long, Integer> idByRevision = new HashMap<>();
+		for (int id = 0, size = size(); id < size; id++) {
+			for (Commit commit : _commitSets.get(id).getCommits()) {
+				idByRevision.put(commit.getRevision(), id);
+			}
+		}
+		for (int id = 0, size = size(); id < size; id++) {
+			for (Commit commit : _commitSets.get(id).getCommits()) {
+				long leadRevision = commit.getFollowUpForRevison();
+				if (leadRevision > 0) {
+					Integer lead = idByRevision.get(leadRevision);
+					if (lead != null) {
+						addDependency(lead, id);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records that the {@link CommitSet} with the given ID must be applied after the one with the
+	 * given required ID.
+	 */
+	public void addDependency(int required, int id) {
+		if (required == id) {
+			return;
+		}
+		_requires[id].set(required);
+		_requiredBy[required].set(id);
+	}
+
+	/**
+	 * The number of {@link CommitSet}s in this graph.
+	 */
+	public int size() {
+		return _commitSets.size();
+	}
+
+	/**
+	 * The {@link CommitSet} with the given ID.
+	 */
+	public CommitSet getCommitSet(int id) {
+		return _commitSets.get(id);
+	}
+
+	/**
+	 * The IDs of the {@link CommitSet}s that must be applied before the one with the given ID.
+	 */
+	public BitSet getRequired(int id) {
+		return (BitSet) _requires[id].clone();
+	}
+
+	/**
+	 * Orders the {@link CommitSet}s so that each one is applied after all {@link CommitSet}s it
+	 * depends on.
+	 *
+	 * <p>
+	 * Among the {@link CommitSet}s that are ready to apply, one from the same ticket as the last
+	 * scheduled one is preferred, so that independent tickets are merged as contiguous groups.
+	 * Otherwise the original order is kept. If the dependencies form a cycle (only possible with
+	 * follow-ups for later commits or {@link #addDependency(int, int) explicit dependencies}), the
+	 * earliest remaining {@link CommitSet} is applied next.
+	 * </p>
+	 *
+	 * @return The {@link CommitSet}s in merge order.
+	 */
+	public List<CommitSet> schedule() {
+		int size = size();
+		int[] missing = new int[size];
+		TreeSet<Integer> ready = new TreeSet<>();
+		Map<String, TreeSet<Integer>> readyByTicket = new HashMap<>();
+		TreeSet<Integer> waiting = new TreeSet<>();
+		for (int id = 0; id < size; id++) {
+			missing[id] = _requires[id].cardinality();
+			if (missing[id] == 0) {
+				makeReady(ready, readyByTicket, id);
+			} else {
+				waiting.add(id);
+			}
+		}
+
+		List<CommitSet> result = new ArrayList<>(size);
+		String ticket = null;
+		while (result.size() < size) {
+			Integer next = null;
+			if (ticket != null) {
+				TreeSet<Integer> sameTicket = readyByTicket.get(ticket);
+				if (sameTicket != null && !sameTicket.isEmpty()) {
+					next = sameTicket.first();
+				}
+			}
+			if (next == null) {
+				if (ready.isEmpty()) {
+					next = waiting.first();
+					LOG.warning("Cyclic dependency, applying " + _commitSets.get(next).getLeadCommit().getDescription()
+						+ " before " + missing[next] + " required commit set(s).");
+					waiting.remove(next);
+					makeReady(ready, readyByTicket, next);
+				} else {
+					next = ready.first();
+				}
+			}
+			int id = next.intValue();
+			ready.remove(next);
+			ticket = _tickets[id];
+			if (ticket != null) {
+				readyByTicket.get(ticket).remove(next);
+			}
+			result.add(_commitSets.get(id));
+
+			BitSet dependents = _requiredBy[id];
+			for (int dependent = dependents.nextSetBit(0); dependent >= 0; dependent =
+				dependents.nextSetBit(dependent + 1)) {
+				if (--missing[dependent] == 0 && waiting.remove(dependent)) {
+					makeReady(ready, readyByTicket, dependent);
+				}
+			}
+		}
+		return result;
+	}
+
+	private void makeReady(TreeSet<Integer> ready, Map<String, TreeSet<Integer>> readyByTicket, int id) {
+		ready.add(id);
+		String ticket = _tickets[id];
+		if (ticket != null) {
+			TreeSet<Integer> sameTicket = readyByTicket.get(ticket);
+			if (sameTicket == null) {
+				sameTicket = new TreeSet<>();
+				readyByTicket.put(ticket, sameTicket);
+			}
+			sameTicket.add(id);
+		}
+	}
+
+}
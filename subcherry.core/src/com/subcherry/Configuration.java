@@ -77,6 +77,16 @@ public interface Configuration extends MergeConfig, CommitConfig, BranchConfig {
 
 	void setReorderCommits(boolean value);
 
+	/**
+	 * Whether commits are merged in an order computed from their dependencies (touched paths and
+	 * follow-ups) instead of their revision order, keeping commits of the same ticket together.
+	 * 
+	 * @see CommitGraph#schedule()
+	 */
+	boolean getScheduleCommits();
+
+	void setScheduleCommits(boolean value);
+
 	String getTracURL();
 
 	void setTracURL(String value);
@@ -85,6 +95,99 @@ public interface Configuration extends MergeConfig, CommitConfig, BranchConfig {
 
 	void setPatchDir(File value);
 
+	/**
+	 * Directory to keep a persistent copy of the repository log in.
+	 * 
+	 * <p>
+	 * If set, log requests are answered from the local copy, which is updated with new revisions
+	 * only. If not set, the log is always read from the repository.
+	 * </p>
+	 * 
+	 * <p>
+	 * If set, a snapshot of the history built for dependency analysis is also stored there. The next
+	 * session only reads revisions committed after the snapshot.
+	 * </p>
+	 */
+	File getLogCacheDir();
+
+	void setLogCacheDir(File value);
+
+	/**
+	 * Number of slices the revision range of a log request is split into for concurrent fetching.
+	 * 
+	 * <p>
+	 * Each slice uses its own repository connection. A value of <code>1</code> or less fetches the
+	 * log with a single request.
+	 * </p>
+	 */
+	int getLogSlices();
+
+	void setLogSlices(int value);
+
+	/**
+	 * Number of threads computing the merge operations of pending revisions while earlier revisions
+	 * are merged.
+	 * 
+	 * <p>
+	 * Each thread uses its own repository connection. A value of <code>0</code> computes the merge
+	 * operations of each revision right before it is merged.
+	 * </p>
+	 */
+	int getPlanThreads();
+
+	void setPlanThreads(int value);
+
+	/**
+	 * Number of threads analyzing the source history for conflicts with the merged changes.
+	 * 
+	 * <p>
+	 * A value of <code>0</code> uses one thread per available processor.
+	 * </p>
+	 */
+	int getAnalysisThreads();
+
+	void setAnalysisThreads(int value);
+
+	/**
+	 * Whether the merge of the next revision is simulated while the user reviews the current
+	 * merge, to report its conflicts in advance.
+	 * 
+	 * <p>
+	 * Requires {@link #getPlanThreads()} to be greater than <code>0</code>.
+	 * </p>
+	 */
+	boolean getDryRunLookahead();
+
+	void setDryRunLookahead(boolean value);
+
+	/**
+	 * Number of threads resolving tickets referenced from log messages concurrently to reading the
+	 * log, or <code>0</code> for a default.
+	 */
+	int getTicketThreads();
+
+	void setTicketThreads(int value);
+
+	/**
+	 * Maximum number of tickets fetched from Trac with a single request, or <code>0</code> for a
+	 * default.
+	 */
+	int getTracBatchSize();
+
+	void setTracBatchSize(int value);
+
+	/**
+	 * Directory to keep a persistent copy of resolved Trac tickets in.
+	 * 
+	 * <p>
+	 * If set, stored tickets that have not been changed since the last run are not fetched again.
+	 * If not set, all tickets are fetched from Trac.
+	 * </p>
+	 */
+	File getTicketCacheDir();
+
+	void setTicketCacheDir(File value);
+
 	Long[] getIgnoreRevisions();
 
 	void setIgnoreRevisions(Long[] value);
@@ -232,6 +335,20 @@ public interface Configuration extends MergeConfig, CommitConfig, BranchConfig {
 
 	void setSkipDependencies(boolean value);
 
+	/**
+	 * Whether the history for the dependency analysis is only built for the paths touched by the
+	 * merged changes (and the paths they were copied from).
+	 * 
+	 * <p>
+	 * Saves memory and time for large branches, but the log of the source and target branch must
+	 * be kept in memory during the analysis. A pruned history is not stored in the
+	 * {@link #getLogCacheDir()}.
+	 * </p>
+	 */
+	boolean getPruneHistory();
+
+	void setPruneHistory(boolean value);
+
 	/**
 	 * Whether a merged change that has itself has been merged from somewhere else, is committed as
 	 * if it was directly merged from its original source.
@@ -259,6 +376,13 @@ public interface Configuration extends MergeConfig, CommitConfig, BranchConfig {
 	 */
 	void setSkipWaitForTimestamp(boolean value);
 
+	/**
+	 * A regular expression matching the names of text files, for which merge conflicts are
+	 * resolved with a line based three-way merge, if the changes do not overlap.
+	 */
+	@ValueParser(PatternParser.class)
+	Pattern getTextMergeFiles();
+
 	/**
 	 * Name of the repository binding provider.
 	 */
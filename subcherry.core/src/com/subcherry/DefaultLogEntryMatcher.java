@@ -22,21 +22,51 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.RepositoryException;
 import com.subcherry.trac.TracConnection;
 import com.subcherry.trac.TracTicket;
+import com.subcherry.utils.DaemonThreadFactory;
 import com.subcherry.utils.Log;
+import com.subcherry.utils.CommitMessage;
 
 /**
+ * {@link SVNLogEntryMatcher} selecting entries by their revision, their message and the state of
+ * the referenced ticket.
+ * 
+ * <p>
+ * Matching is done in a pipeline: {@link #handleLogEntry(LogEntry)} only enqueues the entry and
+ * requests its ticket. Tickets are resolved concurrently by a bounded pool of threads. The matching
+ * rules are applied by a single thread in the order entries were reported. This way, reading the
+ * log and resolving tickets overlap. {@link #getEntries()} waits until all reported entries are
+ * matched.
+ * </p>
+ * 
+ * <p>
+ * The matcher must be {@link #close() closed} after use to release its threads.
+ * </p>
+ * 
  * @version   $Revision$  $Author$  $Date$
  */
-public class DefaultLogEntryMatcher extends SVNLogEntryMatcher {
+public class DefaultLogEntryMatcher extends SVNLogEntryMatcher implements AutoCloseable {
 
 	private static final Logger LOG = Logger.getLogger(DefaultLogEntryMatcher.class.getName());
+
+	private static final int DEFAULT_TICKET_THREADS = 4;
 	
 	private TracConnection _trac;
 	
@@ -50,8 +80,34 @@ public class DefaultLogEntryMatcher extends SVNLogEntryMatcher {
 
 	private Pattern _excludeMessagePattern;
 
+	/**
+	 * Pool resolving tickets.
+	 */
+	private final ExecutorService _resolver;
+
+	/**
+	 * Single thread applying the matching rules in the order entries are reported.
+	 */
+	private final ExecutorService _matcher;
+
+	/**
+	 * Ticket requests by ticket ID.
+	 */
+	private final Map<String, Future<TracTicket>> _requests = new ConcurrentHashMap<>();
+
+	/**
+	 * The first problem that occurred during matching, or <code>null</code>.
+	 */
+	private volatile RuntimeException _failure;
+
 	public DefaultLogEntryMatcher(TracConnection trac, Configuration config, PortingTickets portingTickets) throws MalformedURLException {
 		_trac = trac;
+		int ticketThreads = config.getTicketThreads();
+		if (ticketThreads <= 0) {
+			ticketThreads = DEFAULT_TICKET_THREADS;
+		}
+		_resolver = Executors.newFixedThreadPool(ticketThreads, new DaemonThreadFactory("ticket-resolver"));
+		_matcher = Executors.newSingleThreadExecutor(new DaemonThreadFactory("log-matcher"));
 		
 		_ignoreRevisions = getIgnoreRevisions(config);
 		_additionalRevisions = getAdditionalRevisions(config);
@@ -98,7 +154,109 @@ public class DefaultLogEntryMatcher extends SVNLogEntryMatcher {
 
 
 	@Override
-	public boolean matches(LogEntry logEntry) {
+	public void handleLogEntry(final LogEntry logEntry) throws RepositoryException {
+		final Future<TracTicket> ticket = requestTicket(logEntry);
+		_matcher.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (_failure != null) {
+					return;
+				}
+				try {
+					if (matches(logEntry, new Supplier<TracTicket>() {
+						@Override
+						public TracTicket get() {
+							return join(ticket);
+						}
+					})) {
+						addEntry(logEntry);
+					}
+				} catch (RuntimeException ex) {
+					_failure = ex;
+				}
+			}
+		});
+	}
+
+	@Override
+	public List<LogEntry> getEntries() {
+		join(_matcher.submit(new Runnable() {
+			@Override
+			public void run() {
+				// Wait for all entries reported before.
+			}
+		}));
+		if (_failure != null) {
+			throw _failure;
+		}
+		return super.getEntries();
+	}
+
+	/**
+	 * Requests resolution of the ticket referenced by the given entry.
+	 * 
+	 * @return The pending ticket, or <code>null</code>, if the ticket is not required for matching.
+	 */
+	private Future<TracTicket> requestTicket(LogEntry logEntry) {
+		long revision = logEntry.getRevision();
+		if (_ignoreRevisions.contains(revision) || _additionalRevisions.contains(revision)) {
+			return null;
+		}
+		String message = logEntry.getMessage();
+		if (_excludeMessagePattern != null && _excludeMessagePattern.matcher(message).matches()) {
+			return null;
+		}
+		String ticketId = CommitMessage.of(logEntry).getTicketId();
+		if (ticketId == null) {
+			return null;
+		}
+		Future<TracTicket> request = _requests.get(ticketId);
+		if (request == null) {
+			final Integer number = Integer.valueOf(ticketId);
+			FutureTask<TracTicket> newRequest = new FutureTask<>(new Callable<TracTicket>() {
+				@Override
+				public TracTicket call() {
+					return _trac.getTicket(number);
+				}
+			});
+			request = _requests.putIfAbsent(ticketId, newRequest);
+			if (request == null) {
+				_resolver.execute(newRequest);
+				request = newRequest;
+			}
+		}
+		return request;
+	}
+
+	private static <T> T join(Future<T> future) {
+		if (future == null) {
+			return null;
+		}
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			throw new RuntimeException("Interrupted while matching log entries.", ex);
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new RuntimeException(cause);
+		}
+	}
+
+	@Override
+	public boolean matches(final LogEntry logEntry) {
+		return matches(logEntry, new Supplier<TracTicket>() {
+			@Override
+			public TracTicket get() {
+				String ticketId = CommitMessage.of(logEntry).getTicketId();
+				return ticketId == null ? null : _trac.getTicket(Integer.valueOf(ticketId));
+			}
+		});
+	}
+
+	private boolean matches(LogEntry logEntry, Supplier<TracTicket> ticketSupplier) {
 		long revision = logEntry.getRevision();
 		if (_ignoreRevisions.contains(revision)) {
 			Log.info("Ignore revision " + revision + " as it is configured to be ignored");
@@ -116,7 +274,7 @@ public class DefaultLogEntryMatcher extends SVNLogEntryMatcher {
 			return false;
 		}
 
-		TracTicket ticket = _trac.getTicket(message);
+		TracTicket ticket = ticketSupplier.get();
 
 		boolean accept = portByTicket(ticket);
 		if (accept) {
@@ -149,5 +307,14 @@ public class DefaultLogEntryMatcher extends SVNLogEntryMatcher {
 		return false;
 	}
 
+	/**
+	 * Stops the threads resolving tickets and matching entries.
+	 */
+	@Override
+	public void close() {
+		_resolver.shutdownNow();
+		_matcher.shutdownNow();
+	}
+
 }
 
@@ -46,6 +46,14 @@ public class LogReader {
 		_url = url;
 	}
 
+	public Client getClient() {
+		return _logClient;
+	}
+
+	public RepositoryURL getUrl() {
+		return _url;
+	}
+
 	public Revision getStartRevision() {
 		return _startRevision;
 	}
@@ -99,4 +107,11 @@ public class LogReader {
 			_limit, logTarget);
 	}
 
+	/**
+	 * Releases resources allocated by this reader.
+	 */
+	public void close() {
+		// No resources.
+	}
+
 }
@@ -34,12 +34,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
+import com.subcherry.Configuration.DependencyReport;
 import com.subcherry.commit.Commit;
 import com.subcherry.commit.CommitHandler;
 import com.subcherry.commit.MessageRewriter;
@@ -47,30 +46,35 @@ import com.subcherry.commit.RevisionRewriter;
 import com.subcherry.history.Change;
 import com.subcherry.history.DependencyBuilder;
 import com.subcherry.history.DependencyBuilder.Dependency;
+import com.subcherry.history.History;
+import com.subcherry.history.HistorySnapshot;
 import com.subcherry.history.HistroyBuilder;
-import com.subcherry.history.Node;
+import com.subcherry.history.RelevantPaths;
 import com.subcherry.log.DirCollector;
+import com.subcherry.log.LogCache;
 import com.subcherry.merge.MergeHandler;
 import com.subcherry.repository.ClientManagerFactory;
 import com.subcherry.repository.LoginCredential;
 import com.subcherry.repository.command.Client;
 import com.subcherry.repository.command.ClientManager;
+import com.subcherry.repository.command.log.LogEntryDictionary;
 import com.subcherry.repository.command.log.LogEntryHandler;
 import com.subcherry.repository.core.LogEntry;
 import com.subcherry.repository.core.MergeInfo;
 import com.subcherry.repository.core.RepositoryException;
 import com.subcherry.repository.core.RepositoryURL;
 import com.subcherry.repository.core.Revision;
-import com.subcherry.repository.core.RevisionRange;
-import com.subcherry.repository.core.RevisionRanges;
+import com.subcherry.repository.core.RevisionSet;
+import com.subcherry.trac.TicketStore;
 import com.subcherry.trac.TracConnection;
-import com.subcherry.trac.TracTicket;
 import com.subcherry.utils.Log;
+import com.subcherry.utils.ParsingLogEntryDictionary;
 import com.subcherry.utils.Path;
 import com.subcherry.utils.PathParser;
 import com.subcherry.utils.Utils;
 
 import de.haumacher.common.config.PropertiesUtil;
+import de.haumacher.common.config.Property;
 
 /**
  * @version $Revision$ $Author$ $Date$
@@ -91,17 +95,27 @@ public class Main {
 
 	private static final Logger LOG = Globals.logger(Main.class);
 
-	private static final String NO_TICKET_ID = "";
+	private static final String[] ROOT = { "/" };
 
-	private static final Comparator<Node> PATH_ORDER = new Comparator<Node>() {
-		@Override
-		public int compare(Node n1, Node n2) {
-			return n1.getPath().compareTo(n2.getPath());
-		}
+	/**
+	 * Options that influence the revisions selected for a session and their grouping into
+	 * {@link CommitSet}s.
+	 * 
+	 * @see #sessionKey()
+	 */
+	private static final String[] SESSION_OPTIONS = {
+		// The merged branches and revisions.
+		"svnURL", "sourceBranch", "targetBranch", "workspaceRoot", "branchPattern", "trunkPattern",
+		"startRevision", "endRevision", "pegRevision", "revert", "modules", "detectCommonModules",
+		"includePaths", "excludePaths",
+		// Matching log entries and tickets.
+		"tracURL", "ignoreRevisions", "additionalRevisions", "excludeMessagePattern", "ignoreTickets",
+		"milestones", "targetMilestone", "additionalTickets", "ticketQuery", "allChanges", "rebase", "preview",
+		"reintegrate",
+		// Building commit sets.
+		"ignoreMergeInfo", "reorderCommits", "scheduleCommits",
 	};
 
-	private static final String[] ROOT = { "/" };
-
 	static Set<String> _modules;
 
 	public static void main(String[] args) throws IOException, RepositoryException {
@@ -112,14 +126,9 @@ public class Main {
 	}
 
 	public static void doMerge(LoginCredential tracCredentials) throws RepositoryException, IOException {
-		Revision startRevision = getStartRevision();
-		Revision endRevision = getEndRevision();
-		Revision pegRevision = getPegRevision();
 		ClientManager clientManager = newSVNClientManager();
 		Client logClient = clientManager.getClient();
 		
-		String sourceBranch = config().getSourceBranch();
-		RepositoryURL sourceBranchUrl = RepositoryURL.parse(config().getSvnURL()).appendPath(sourceBranch);
 		String targetBranch = config().getTargetBranch();
 		RepositoryURL targetBranchUrl = RepositoryURL.parse(config().getSvnURL()).appendPath(targetBranch);
 		if (config().getDetectCommonModules() || config().getModules().length == 0) {
@@ -139,16 +148,112 @@ public class Main {
 		RevisionRewriter revisionRewriter = mergeCommitHandler.getRevisionRewriter();
 		MessageRewriter messageRewriter =
 			MessageRewriter.createMessageRewriter(config(), portingTickets, revisionRewriter);
-		SVNLogEntryMatcher logEntryMatcher = newLogEntryMatcher(trac, portingTickets);
 		CommitHandler commitHandler = newCommitHandler(paths, messageRewriter);
-		RepositoryURL url = RepositoryURL.parse(config().getSvnURL());
 
 		if (config().getSkipWaitForTimestamp()) {
 			clientManager.getOperationsFactory().settings().setSleepForTimestamp(false);
 		}
+		clientManager.getOperationsFactory().settings().setTextMergeFiles(config().getTextMergeFiles());
+
+		SessionJournal journal = new SessionJournal(new File(SessionJournal.FILE_NAME), sessionKey());
+		List<CommitSet> commitSets = resumeSession(journal, commitHandler);
+		if (commitSets == null) {
+			List<LogEntry> sourceLog = new ArrayList<>();
+			try (DefaultLogEntryMatcher logEntryMatcher = newLogEntryMatcher(trac, portingTickets)) {
+				commitSets =
+					selectCommitSets(clientManager, trac, paths, logEntryMatcher, commitHandler, sourceLog);
+			}
+			journal.start(commitSets);
+			mergeCommitHandler.setSourceLog(config().getSourceBranch(), sourceLog);
+		}
+		for (CommitSet commitSet : commitSets) {
+			commitSet.print(System.out);
+		}
+		Log.info("Start merging " + commitSets.size() + " commit sets.");
+
+		MergePlanner planner = newMergePlanner(mergeHandler);
+		mergeCommitHandler.setPlanner(planner);
+		mergeCommitHandler.setJournal(journal);
+		try {
+			mergeCommitHandler.run(commitSets);
+		} finally {
+			if (planner != null) {
+				planner.close();
+			}
+			journal.close();
+		}
+
+		journal.delete();
+	}
+
+	/**
+	 * Loads the {@link CommitSet}s of an interrupted session from the given journal.
+	 * 
+	 * @return The {@link CommitSet}s of the interrupted session, or <code>null</code>, if there is
+	 *         no session to resume.
+	 */
+	private static List<CommitSet> resumeSession(SessionJournal journal, CommitHandler commitHandler)
+			throws IOException {
+		boolean resumable;
+		try {
+			resumable = journal.load();
+		} catch (IOException | RuntimeException ex) {
+			LOG.log(Level.WARNING, "Ignoring unreadable session journal.", ex);
+			resumable = false;
+		}
+		if (!resumable) {
+			return null;
+		}
+		List<CommitSet> result = journal.getCommitSets(commitHandler);
+		journal.resume();
+		LOG.log(Level.INFO, "Resuming interrupted session with " + result.size() + " commit sets.");
+		return result;
+	}
+
+	/**
+	 * Description of the session configuration a {@link SessionJournal} is valid for.
+	 * 
+	 * <p>
+	 * The key contains the values of all {@link #SESSION_OPTIONS}. A journal written with other
+	 * values of these options is not resumed.
+	 * </p>
+	 */
+	private static String sessionKey() {
+		Map<String, Property> properties = config().descriptor().getProperties();
+		StringBuilder result = new StringBuilder();
+		for (String option : SESSION_OPTIONS) {
+			Property property = properties.get(option);
+			if (result.length() > 0) {
+				result.append('|');
+			}
+			result.append(option);
+			result.append('=');
+			result.append(property.getParser().unparse(config().value(property)));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Reads the log of the source branch and selects the revisions to merge.
+	 * 
+	 * @param sourceLog
+	 *        Filled with the complete log of the source branch.
+	 * @return The {@link CommitSet}s to merge in the order they should be merged.
+	 */
+	private static List<CommitSet> selectCommitSets(ClientManager clientManager, TracConnection trac,
+			PathParser paths, final SVNLogEntryMatcher logEntryMatcher, CommitHandler commitHandler,
+			final List<LogEntry> sourceLog) throws RepositoryException, IOException {
+		Revision startRevision = getStartRevision();
+		Revision endRevision = getEndRevision();
+		Revision pegRevision = getPegRevision();
+		Client logClient = clientManager.getClient();
+		RepositoryURL url = RepositoryURL.parse(config().getSvnURL());
+		String sourceBranch = config().getSourceBranch();
+		RepositoryURL sourceBranchUrl = url.appendPath(sourceBranch);
+		String targetBranch = config().getTargetBranch();
 
 		LOG.log(Level.INFO, "Reading source history.");
-		LogReader logReader = new LogReader(logClient, url);
+		LogReader logReader = newLogReader(logClient, url);
 
 		logReader.setStartRevision(startRevision);
 		logReader.setEndRevision(endRevision);
@@ -157,7 +262,16 @@ public class Main {
 		logReader.setDiscoverChangedPaths(true);
 		logReader.setLimit(NO_LIMIT);
 		String[] sourcePaths = getLogPaths(sourceBranch);
-		logReader.readLog(sourcePaths, logEntryMatcher);
+		// Matched entries are kept for the whole session, share their paths and authors.
+		LogEntryDictionary dictionary = new ParsingLogEntryDictionary();
+		LogEntryHandler compactMatcher = dictionary.compacting(logEntryMatcher);
+		logReader.readLog(sourcePaths, dictionary.compacting(new LogEntryHandler() {
+			@Override
+			public void handleLogEntry(LogEntry logEntry) throws RepositoryException {
+				sourceLog.add(logEntry);
+				logEntryMatcher.handleLogEntry(logEntry);
+			}
+		}));
 
 		HashSet<Long> additionalRevisions = new HashSet<>(config().getAdditionalRevisions().keySet());
 		boolean additionalRevisionsFromOtherBranches;
@@ -176,7 +290,7 @@ public class Main {
 					Revision svnAdditionalRev = Revision.create(additionalRev);
 					logReader.setStartRevision(svnAdditionalRev);
 					logReader.setEndRevision(svnAdditionalRev);
-					logReader.readLog(ROOT, logEntryMatcher);
+					logReader.readLog(ROOT, compactMatcher);
 				}
 			}
 		} else {
@@ -205,10 +319,20 @@ public class Main {
 		}
 
 		if (!config().getSkipDependencies()) {
-			HistroyBuilder historyBuilder = new HistroyBuilder(getStartRevision().getNumber());
-			readTargetLog(logReader, targetBranch, sourcePaths, historyBuilder);
-			analyzeDependencies(historyBuilder, sourceBranch, targetBranch, trac, mergedLogEntries);
+			DependencyBuilder dependencyBuilder = new DependencyBuilder(sourceBranch, targetBranch, _modules);
+			if (config().getAnalysisThreads() > 0) {
+				dependencyBuilder.setParallelism(config().getAnalysisThreads());
+			}
+			History history;
+			if (config().getPruneHistory()) {
+				history = buildPrunedHistory(logReader, targetBranch, sourcePaths, dictionary, dependencyBuilder,
+					mergedLogEntries);
+			} else {
+				history = buildHistory(logReader, targetBranch, sourcePaths, dictionary).getHistory();
+			}
+			analyzeDependencies(dependencyBuilder, history, trac, mergedLogEntries);
 		}
+		logReader.close();
 
 		if (!config().getRevert() && !config().getIgnoreMergeInfo()) {
 			Log.info("Analyzing merge info.");
@@ -220,43 +344,46 @@ public class Main {
 
 				long mergedRevision = entry.getRevision();
 				Set<String> touchedModules = new HashSet<>();
-
-				boolean alreadyMerged = false;
 				for (String changedPath : entry.getChangedPaths().keySet()) {
-					Path parsedPath = paths.parsePath(changedPath);
-
-					String changedModuleName = parsedPath.getModule();
-					touchedModules.add(changedModuleName);
+					touchedModules.add(paths.parsePath(changedPath).getModule());
+				}
 
-					if (!isModulePath(parsedPath)) {
-						// Merge info is only recorded at module level. Therefore, checks on all
-						// other paths can be skipped.
+				// Direct merges are found in the merge info of the touched modules, which is only
+				// looked up once per module. Only other revisions are inspected for transitive merges.
+				boolean alreadyMerged = false;
+				for (String touchedModule : touchedModules) {
+					if (!_modules.contains(touchedModule)) {
 						continue;
 					}
-					if (!_modules.contains(changedModuleName)) {
+
+					MergeInfo moduleMergeInfo = tester.lookupMergeInfo(touchedModule);
+					RepositoryURL mergeSrcUrl = sourceBranchUrl.appendPath(touchedModule);
+					RevisionSet mergedRevisions = moduleMergeInfo.getRevisions(mergeSrcUrl);
+					if (mergedRevisions == null) {
 						continue;
 					}
-
-					alreadyMerged = tester.isAlreadyMerged(mergedRevision, changedPath, changedModuleName);
-					if (alreadyMerged) {
+					if (mergedRevisions.contains(mergedRevision)) {
+						alreadyMerged = true;
 						break;
 					}
 				}
 
 				if (!alreadyMerged) {
-					for (String touchedModule : touchedModules) {
-						if (!_modules.contains(touchedModule)) {
+					for (String changedPath : entry.getChangedPaths().keySet()) {
+						Path parsedPath = paths.parsePath(changedPath);
+
+						if (!isModulePath(parsedPath)) {
+							// Merge info is only recorded at module level. Therefore, checks on all
+							// other paths can be skipped.
 							continue;
 						}
-
-						MergeInfo moduleMergeInfo = tester.lookupMergeInfo(touchedModule);
-						RepositoryURL mergeSrcUrl = sourceBranchUrl.appendPath(touchedModule);
-						List<RevisionRange> mergedRevisions = moduleMergeInfo.getRevisions(mergeSrcUrl);
-						if (mergedRevisions == null) {
+						String changedModuleName = parsedPath.getModule();
+						if (!_modules.contains(changedModuleName)) {
 							continue;
 						}
-						if (RevisionRanges.contains(mergedRevisions, mergedRevision)) {
-							alreadyMerged = true;
+
+						alreadyMerged = tester.isAlreadyMerged(mergedRevision, changedPath, changedModuleName);
+						if (alreadyMerged) {
 							break;
 						}
 					}
@@ -273,112 +400,170 @@ public class Main {
 		if (config().getReorderCommits() && !config().getRevert()) {
 			reorderCommits(commitSets);
 		}
-		for (CommitSet commitSet : commitSets) {
-			commitSet.print(System.out);
+		if (config().getScheduleCommits() && !config().getRevert()) {
+			commitSets = new CommitGraph(commitSets).schedule();
 		}
-		Log.info("Start merging " + mergedLogEntries.size() + " revisions.");
-
-		mergeCommitHandler.run(commitSets);
-
-		Restart.clear();
+		return commitSets;
 	}
 
 	private static boolean isModulePath(Path parsedPath) {
 		return parsedPath.getResource().equals(parsedPath.getModule());
 	}
 
-	private static void readTargetLog(LogReader logReader, String targetBranch, String[] sourcePaths,
+	/**
+	 * Builds the history of the source and target branch.
+	 * 
+	 * <p>
+	 * If a log cache directory is configured, the history of the last session is loaded from a
+	 * {@link HistorySnapshot} and only revisions committed since then are read.
+	 * </p>
+	 */
+	private static HistroyBuilder buildHistory(LogReader logReader, String targetBranch, String[] sourcePaths,
+			LogEntryDictionary dictionary) throws RepositoryException {
+		long startTime = System.nanoTime();
+		Revision startRevision = getStartRevision();
+		Revision endRevision = getEndRevision();
+		String[] allPaths = concat(sourcePaths, getLogPaths(targetBranch));
+
+		File snapshotFile = null;
+		String snapshotKey = null;
+		History history = null;
+		File cacheDir = config().getLogCacheDir();
+		if (cacheDir != null && startRevision.kind() == Revision.Kind.COMMIT) {
+			snapshotKey = historySnapshotKey(logReader, startRevision, allPaths);
+			snapshotFile = new File(cacheDir, "history-" + Integer.toHexString(snapshotKey.hashCode()) + ".bin");
+			history = loadHistory(snapshotFile, snapshotKey);
+			if (history != null && endRevision.kind() == Revision.Kind.COMMIT
+				&& history.getLastRevision() > endRevision.getNumber()) {
+				// The snapshot contains revisions after the requested range.
+				history = null;
+			}
+		}
+		boolean warm = history != null;
+		if (!warm) {
+			history = new History(startRevision.getNumber());
+		}
+		int changesBefore = history.getChangesByRevision().size();
+
+		// Read from the last recorded revision (not the next one), since there may be no newer
+		// revision in the repository.
+		final long lastRevision = history.getLastRevision();
+		Revision readStart = lastRevision >= startRevision.getNumber() ? Revision.create(lastRevision) : startRevision;
+		HistroyBuilder historyBuilder = new HistroyBuilder(history);
+		final LogEntryHandler handler = dictionary.compacting(historyBuilder);
+		readTargetLog(logReader, readStart, allPaths, new LogEntryHandler() {
+			@Override
+			public void handleLogEntry(LogEntry logEntry) throws RepositoryException {
+				if (logEntry.getRevision() > lastRevision) {
+					handler.handleLogEntry(logEntry);
+				}
+			}
+		});
+
+		int newChanges = history.getChangesByRevision().size() - changesBefore;
+		long elapsed = (System.nanoTime() - startTime) / 1000000;
+		if (warm) {
+			LOG.log(Level.INFO, "History continued from snapshot with " + newChanges + " new revisions in "
+				+ elapsed + "ms.");
+		} else {
+			LOG.log(Level.INFO, "History built with " + newChanges + " revisions in " + elapsed + "ms.");
+		}
+
+		if (snapshotFile != null && (!warm || newChanges > 0)) {
+			try {
+				HistorySnapshot.save(snapshotFile, snapshotKey, history);
+			} catch (IOException ex) {
+				LOG.log(Level.WARNING, "Cannot write history snapshot: " + snapshotFile.getAbsolutePath(), ex);
+			}
+		}
+		return historyBuilder;
+	}
+
+	/**
+	 * Builds the history of the source and target branch only for the paths relevant for
+	 * analyzing the given merge.
+	 * 
+	 * <p>
+	 * In a first pass, the log is read into memory and the paths touched by the merged changes
+	 * are extended with the paths they were copied from. In a second pass, the history is built
+	 * only for those paths.
+	 * </p>
+	 * 
+	 * @see DependencyBuilder#getRelevantPaths(List)
+	 */
+	private static History buildPrunedHistory(LogReader logReader, String targetBranch, String[] sourcePaths,
+			LogEntryDictionary dictionary, DependencyBuilder dependencyBuilder, List<LogEntry> mergedLogEntries)
+			throws RepositoryException {
+		long startTime = System.nanoTime();
+		Revision startRevision = getStartRevision();
+		String[] allPaths = concat(sourcePaths, getLogPaths(targetBranch));
+
+		final List<LogEntry> log = new ArrayList<>();
+		readTargetLog(logReader, startRevision, allPaths, dictionary.compacting(new LogEntryHandler() {
+			@Override
+			public void handleLogEntry(LogEntry logEntry) {
+				log.add(logEntry);
+			}
+		}));
+
+		RelevantPaths relevantPaths = dependencyBuilder.getRelevantPaths(mergedLogEntries);
+		relevantPaths.addCopyAncestry(log);
+		dependencyBuilder.collectTargetTicketIds(log);
+
+		History history = new History(startRevision.getNumber());
+		HistroyBuilder historyBuilder = new HistroyBuilder(history, relevantPaths::isRelevant);
+		for (LogEntry logEntry : log) {
+			historyBuilder.handleLogEntry(logEntry);
+		}
+
+		long elapsed = (System.nanoTime() - startTime) / 1000000;
+		LOG.log(Level.INFO, "History built with " + log.size() + " revisions for " + relevantPaths.size()
+			+ " relevant paths in " + elapsed + "ms.");
+		return history;
+	}
+
+	private static History loadHistory(File snapshotFile, String snapshotKey) {
+		try {
+			return HistorySnapshot.load(snapshotFile, snapshotKey);
+		} catch (IOException | RuntimeException ex) {
+			LOG.log(Level.WARNING, "Ignoring unreadable history snapshot: " + snapshotFile.getAbsolutePath(), ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Description of the log a history is built from.
+	 */
+	private static String historySnapshotKey(LogReader logReader, Revision startRevision, String[] paths) {
+		String[] sortedPaths = paths.clone();
+		Arrays.sort(sortedPaths);
+		return logReader.getUrl() + "@" + logReader.getPegRevision() + " from " + startRevision.getNumber() + ": "
+			+ Arrays.toString(sortedPaths);
+	}
+
+	private static void readTargetLog(LogReader logReader, Revision startRevision, String[] allPaths,
 			LogEntryHandler handler) throws RepositoryException {
 		LOG.log(Level.INFO, "Reading target history.");
 
-		String[] targetPaths = getLogPaths(targetBranch);
-		String[] allPaths = concat(sourcePaths, targetPaths);
 		// For history reconstruction, the history must always be read in ascending revision
 		// order.
-		logReader.setStartRevision(getStartRevision());
+		logReader.setStartRevision(startRevision);
 		logReader.setEndRevision(getEndRevision());
 		logReader.readLog(allPaths, handler);
 	}
 
-	private static void analyzeDependencies(HistroyBuilder historyBuilder, String sourceBranch, String targetBranch,
+	private static void analyzeDependencies(DependencyBuilder dependencyBuilder, History history,
 			TracConnection trac, List<LogEntry> mergedLogEntries) throws IOException {
 		LOG.log(Level.INFO, "Analyzing dependencies.");
-		DependencyBuilder dependencyBuilder = new DependencyBuilder(sourceBranch, targetBranch, _modules);
-		dependencyBuilder.analyzeConflicts(historyBuilder.getHistory(), mergedLogEntries);
+		dependencyBuilder.analyzeConflicts(history, mergedLogEntries);
 
 		Map<Change, Dependency> dependencies = dependencyBuilder.getDependencies();
 		if (!dependencies.isEmpty()) {
 			LOG.log(Level.INFO, "Conflicts detected.");
 
-			/**
-			 * Mapping of missing changes to nodes where conflicts are expected to merged changes
-			 * that are potentially in conflict with the missing change.
-			 */
-			Map<Change, Map<Node, List<Change>>> missingChanges = new HashMap<>();
-			for (Dependency dependency : dependencies.values()) {
-				Change conflictingChange = dependency.getChange();
-
-				for (Entry<Change, Set<Node>> requirement : dependency.getRequiredChanges().entrySet()) {
-					Change missingChange = requirement.getKey();
-
-					for (Node conflictNode : requirement.getValue()) {
-						mkList(mkMap(missingChanges, missingChange), conflictNode).add(conflictingChange);
-					}
-				}
-			}
-
-			/**
-			 * Ticket IDs of missing tickets mapped to changes of those tickets that are causing
-			 * conflicts.
-			 */
-			Map<String, List<Change>> requiredTickets = new HashMap<>();
-			for (Change change : missingChanges.keySet()) {
-				String ticketId = Utils.getTicketId(change.getMessage());
-				if (ticketId == null) {
-					ticketId = NO_TICKET_ID;
-				}
-				mkList(requiredTickets, ticketId).add(change);
-			}
-
 			ReportPrinter printer = new ReportPrinter();
-			printer.startReport();
-			for (String ticketId : keysSorted(requiredTickets)) {
-				TracTicket ticket;
-				if (ticketId.equals(NO_TICKET_ID)) {
-					ticket = null;
-				} else {
-					ticket = trac.getTicket(Integer.parseInt(ticketId));
-
-					if (matches(config().getDependencyReport().getExcludeTicketMilestone(), ticket.getMilestone())) {
-						continue;
-					}
-				}
-
-				printer.setTicket(ticketId, ticket);
-
-				List<Change> requiredChangesFromTicket = requiredTickets.get(ticketId);
-				Collections.sort(requiredChangesFromTicket, ChangeOrder.INSTANCE);
-				for (Change missingChange : requiredChangesFromTicket) {
-					printer.setMissingChange(missingChange);
-
-					Map<Node, List<Change>> fileConflicts = missingChanges.get(missingChange);
-					for (Node conflictNode : keysSorted(fileConflicts, PATH_ORDER)) {
-						if (matches(config().getDependencyReport().getExcludePath(), conflictNode.getPath())) {
-							continue;
-						}
-
-						printer.setConflictNode(conflictNode);
-
-						List<Change> conflicts = fileConflicts.get(conflictNode);
-						Collections.sort(conflicts, ChangeOrder.INSTANCE);
-						for (Change conflict : conflicts) {
-							printer.printConflictingChange(conflict);
-						}
-					}
-				}
-				printer.endTicket();
-			}
-			printer.endReport();
+			DependencyReport report = config().getDependencyReport();
+			printer.printReport(dependencies, trac, report.getExcludeTicketMilestone(), report.getExcludePath());
 
 			if (printer.hasConflictsReported()) {
 				System.out.print("Continue (yes/no)? ");
@@ -398,14 +583,6 @@ public class Main {
 		return result;
 	}
 
-	private static boolean matches(Pattern pattern, String text) {
-		if (pattern == null) {
-			return false;
-		}
-
-		return pattern.matcher(text).find();
-	}
-
 	private static String[] getSourcePaths() {
 		return getLogPaths(config().getSourceBranch());
 	}
@@ -503,12 +680,7 @@ public class Main {
 	}
 
 	public static Revision getStartRevision() {
-		long storedRevision = Restart.getRevision();
-		if (storedRevision != Restart.NO_REVISION_FOUND) {
-			return Revision.create(storedRevision);
-		} else {
-			return getRevisionOrHead(config().getStartRevision());
-		}
+		return getRevisionOrHead(config().getStartRevision());
 	}
 
 	static Revision getEndRevision() {
@@ -523,13 +695,48 @@ public class Main {
 		}
 	}
 
-	private static SVNLogEntryMatcher newLogEntryMatcher(TracConnection trac, PortingTickets portingTickets) throws MalformedURLException {
+	private static MergePlanner newMergePlanner(MergeHandler mergeHandler) throws IOException {
+		int threads = config().getPlanThreads();
+		if (threads <= 0) {
+			return null;
+		}
+		ClientManagerFactory factory = ClientManagerFactory.getInstance(config().getRepositoryProvider());
+		return new MergePlanner(mergeHandler, factory, loadSVNCredentials(), threads,
+			config().getDryRunLookahead());
+	}
+
+	private static LogReader newLogReader(Client logClient, RepositoryURL url) throws RepositoryException,
+			IOException {
+		LogReader reader;
+		int slices = config().getLogSlices();
+		if (slices > 1) {
+			ClientManagerFactory factory = ClientManagerFactory.getInstance(config().getRepositoryProvider());
+			reader = new ParallelLogReader(logClient, url, factory, loadSVNCredentials(), slices);
+		} else {
+			reader = new LogReader(logClient, url);
+		}
+
+		File cacheDir = config().getLogCacheDir();
+		if (cacheDir == null) {
+			return reader;
+		}
+		return new CachedLogReader(logClient, url, LogCache.open(cacheDir, reader));
+	}
+
+	private static DefaultLogEntryMatcher newLogEntryMatcher(TracConnection trac, PortingTickets portingTickets) throws MalformedURLException {
 		return new DefaultLogEntryMatcher(trac, config(), portingTickets);
 	}
 
-	private static TracConnection createTracConnection(LoginCredential tracCredentials) throws MalformedURLException {
-		return new TracConnection(config().getTracURL(), tracCredentials.getUser(),
+	private static TracConnection createTracConnection(LoginCredential tracCredentials) throws IOException {
+		TracConnection result = new TracConnection(config().getTracURL(), tracCredentials.getUser(),
 			tracCredentials.getPasswd());
+		result.setBatchSize(config().getTracBatchSize());
+		File ticketCacheDir = config().getTicketCacheDir();
+		if (ticketCacheDir != null) {
+			ticketCacheDir.mkdirs();
+			result.setStore(new TicketStore(ticketCacheDir, config().getTracURL()));
+		}
+		return result;
 	}
 
 	private static CommitHandler newCommitHandler(PathParser paths, MessageRewriter messageRewriter) {
@@ -550,10 +757,13 @@ public class Main {
 	}
 
 	public static ClientManager newSVNClientManager() throws IOException {
-		LoginCredential svnCredentials = PropertiesUtil.load("conf/loginCredentials.properties", "svn.",
-			LoginCredentialsValue.class);
+		LoginCredential svnCredentials = loadSVNCredentials();
 
 		return ClientManagerFactory.getInstance(config().getRepositoryProvider()).createClientManager(svnCredentials);
 	}
 
+	private static LoginCredential loadSVNCredentials() throws IOException {
+		return PropertiesUtil.load("conf/loginCredentials.properties", "svn.", LoginCredentialsValue.class);
+	}
+
 }
@@ -24,17 +24,23 @@ import java.awt.TrayIcon;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.imageio.ImageIO;
 
+import com.subcherry.SessionJournal.Outcome;
 import com.subcherry.commit.Commit;
 import com.subcherry.commit.CommitContext;
 import com.subcherry.commit.RevisionRewriter;
@@ -44,11 +50,16 @@ import com.subcherry.repository.command.ClientManager;
 import com.subcherry.repository.command.Command;
 import com.subcherry.repository.command.merge.CommandExecutor;
 import com.subcherry.repository.command.merge.ConflictDescription;
+import com.subcherry.repository.command.merge.MergeCoalescer;
+import com.subcherry.repository.command.merge.MergeCoalescer.SourceIdentity;
 import com.subcherry.repository.command.merge.MergeOperation;
 import com.subcherry.repository.command.merge.TreeConflictDescription;
+import com.subcherry.repository.core.ChangeType;
 import com.subcherry.repository.core.CommitInfo;
 import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
 import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.core.RepositoryURL;
 import com.subcherry.utils.Log;
 import com.subcherry.utils.Utils;
 
@@ -135,6 +146,11 @@ public class MergeCommitHandler {
 		SKIP,
 		REAPPLY,
 		CONTINUE,
+
+		/**
+		 * A following revision is joined with the current commit.
+		 */
+		JOIN,
 		;
 
 		public static AssertionError noSuchInputResult(InputResult result) {
@@ -184,6 +200,20 @@ public class MergeCommitHandler {
 
 	private final SystemTrayIcon _mergeConflictIcon;
 
+	private MergePlanner _planner;
+
+	private SessionJournal _journal;
+
+	/**
+	 * The {@link Commit} the user requested to join with the current commit.
+	 */
+	private Commit _joinedCommit;
+
+	/**
+	 * Decides whether merges of joined revisions can be fused, see {@link #setSourceLog(String, List)}.
+	 */
+	private SourceIdentity _sourceIdentity = MergeCoalescer.SAME_PEG;
+
 	public MergeCommitHandler(MergeHandler mergeHandler, ClientManager clientManager, Configuration config) {
 		this._mergeHandler = mergeHandler;
 		_clientManager = clientManager;
@@ -200,30 +230,144 @@ public class MergeCommitHandler {
 		_mergeConflictIcon = mergeConflictIcon;
 	}
 
+	/**
+	 * Sets the {@link MergePlanner} that computes the merges of pending revisions in advance.
+	 * 
+	 * @param planner
+	 *        The {@link MergePlanner} to use, <code>null</code> to compute each merge right before it
+	 *        is executed.
+	 */
+	public void setPlanner(MergePlanner planner) {
+		_planner = planner;
+	}
+
+	/**
+	 * Sets the {@link SessionJournal} to record the outcome of each revision in.
+	 * 
+	 * <p>
+	 * Revisions already finished according to the journal are not merged again.
+	 * </p>
+	 * 
+	 * @param journal
+	 *        The {@link SessionJournal} to use, <code>null</code> for none.
+	 */
+	public void setJournal(SessionJournal journal) {
+		_journal = journal;
+	}
+
+	/**
+	 * Sets the log of the source branch.
+	 * 
+	 * <p>
+	 * When a joined commit is applied again, merges of the same source in different revisions are
+	 * fused into a single merge, if the log shows that the source was neither deleted nor replaced
+	 * in between. Without a log, only merges of sources pegged at the same revision are fused.
+	 * </p>
+	 * 
+	 * @param sourceBranch
+	 *        The source branch path relative to the repository root.
+	 * @param log
+	 *        The complete log of the source branch within the merged revision window.
+	 */
+	public void setSourceLog(String sourceBranch, List<LogEntry> log) {
+		RepositoryURL repository = RepositoryURL.parse(_config.getSvnURL());
+		_sourceIdentity = new LogSourceIdentity(repository, sourceBranch, log);
+	}
+
 	public void run(List<CommitSet> commitSets) throws RepositoryException {
 		_commitSets = commitSets;
 		_totalRevs = getTotalRevs(commitSets);
 
+		List<LogEntry> pending = new ArrayList<>(_totalRevs);
+		for (CommitSet commitSet : _commitSets) {
+			for (Commit commit : commitSet.getCommits()) {
+				if (isFinished(commit.getRevision())) {
+					_doneRevs++;
+					continue;
+				}
+				pending.add(commit.getLogEntry());
+			}
+		}
+		if (_doneRevs > 0) {
+			Log.info("Resuming session, " + _doneRevs + " of " + _totalRevs + " revisions already finished.");
+		}
+
+		if (_planner != null) {
+			_planner.plan(pending);
+		}
+
 		for (int n = 0, cnt = _commitSets.size(); n < cnt; n++) {
 			CommitSet commitSet = _commitSets.get(n);
 			
 			for (Commit commit : commitSet.getCommits()) {
 				long revision = commit.getRevision();
-				if (joinedRevisions.contains(revision)) {
+				if (joinedRevisions.contains(revision) || isFinished(revision)) {
 					continue;
 				}
 
-				try {
-					Restart.setRevision(revision);
-				} catch (IOException ex) {
-					Log.info("Unable to store restart revision");
-				}
-
 				merge(commit, commit.getLogEntry());
 			}
 		}
 	}
 
+	/**
+	 * Whether the given revision was finished in an earlier run of this session.
+	 * 
+	 * <p>
+	 * The results of finished revisions are restored.
+	 * </p>
+	 */
+	private boolean isFinished(long revision) {
+		if (_journal == null) {
+			return false;
+		}
+		Outcome outcome = _journal.getOutcome(revision);
+		if (outcome == null) {
+			return false;
+		}
+		switch (outcome) {
+			case COMMITTED:
+				_revisionRewrite.add(revision, _journal.getValue(revision));
+				break;
+			case JOINED:
+				joinedRevisions.add(revision);
+				long lead = _journal.getValue(revision);
+				if (_journal.getOutcome(lead) == Outcome.COMMITTED) {
+					_revisionRewrite.add(revision, _journal.getValue(lead));
+				}
+				break;
+			default:
+				break;
+		}
+		return true;
+	}
+
+	private void record(Commit commit, Outcome outcome) {
+		record(commit.getRevision(), outcome, -1);
+	}
+
+	/**
+	 * Records the outcome of the given commit and then marks the given revisions as joined with it.
+	 */
+	private void record(Commit commit, Outcome outcome, long value, List<Long> joined) {
+		record(commit.getRevision(), outcome, value);
+		for (Long joinedRevision : joined) {
+			record(joinedRevision.longValue(), Outcome.JOINED, commit.getRevision());
+		}
+	}
+
+	private void record(long revision, Outcome outcome, long value) {
+		if (_journal == null) {
+			return;
+		}
+		try {
+			_journal.record(revision, outcome, value);
+		} catch (IOException ex) {
+			Log.info("Unable to record outcome of revision " + revision + " in session journal: "
+				+ ex.getMessage());
+		}
+	}
+
 	private int getTotalRevs(List<CommitSet> commitSets) {
 		int result = 0;
 		for (CommitSet commitSet : commitSets) {
@@ -235,30 +379,37 @@ public class MergeCommitHandler {
 	public void merge(Commit commit, LogEntry logEntry) throws RepositoryException {
 		_doneRevs++;
 
-		MergeOperation merge = _mergeHandler.parseMerge(logEntry);
+		MergeOperation merge = getMerge(logEntry);
 		if (merge.isEmpty()) {
 			Log.info("Skipping '" + merge.getRevision() + "' (no relevant modules touched).");
+			record(commit, Outcome.EXCLUDED);
 			return;
 		}
 		
 		boolean commitAproval = _config.getAutoCommit() && !stopOn(merge.getRevision());
 		
-		System.out.println("Revision " + logEntry.getRevision() + " (" + _doneRevs + " of " + _totalRevs + "): "
-			+ encode(logEntry.getMessage()));
-		for (Command command : merge.getCommands()) {
-			System.out.println("   " + command.toString());
-		}
+		print(logEntry, merge);
 
+		// The merges of the commit, including the ones of joined revisions.
+		List<MergeOperation> merges = new ArrayList<>();
+		merges.add(merge);
+		// Recorded in the journal only after the outcome of the commit is known.
+		List<Long> joined = new ArrayList<>();
+
+		Collection<Command> commands = merge.getCommands();
 		merge:
 		while (true) {
 			CommandExecutor executor = _clientManager.getOperationsFactory().getExecutor();
-			Map<File, List<ConflictDescription>> conflicts = executor.execute(merge.getCommands());
-			commit.addTouchedResources(merge.getTouchedResources());
+			Map<File, List<ConflictDescription>> conflicts = executor.execute(commands);
+			for (MergeOperation applied : merges) {
+				commit.addTouchedResources(applied.getTouchedResources());
+			}
 
 			if (!conflicts.isEmpty()) {
 				log(conflicts);
 				if (_config.getNoCommit() && _config.getAutoSkipConflicts()) {
 					System.out.println("Automatically skipping conflicts in [" + logEntry.getRevision() + "].");
+					record(commit, Outcome.SKIPPED, -1, joined);
 					return;
 				}
 				boolean mustDisplay = !_mergeConflictIcon.isShown();
@@ -275,10 +426,16 @@ public class MergeCommitHandler {
 				}
 				switch (result) {
 					case SKIP:
+						record(commit, Outcome.SKIPPED, -1, joined);
 						return;
 					case CONTINUE:
 						break;
 					case REAPPLY:
+						commands = reapply(merges);
+						continue merge;
+					case JOIN:
+						commands = mergeJoined(merges, joined);
+						commitAproval = false;
 						continue merge;
 					default:
 						throw InputResult.noSuchInputResult(result);
@@ -288,15 +445,22 @@ public class MergeCommitHandler {
 
 			if (_config.getNoCommit()) {
 				Log.info("Revision '" + logEntry.getRevision() + "' applied but not committed.");
+				record(commit, Outcome.APPLIED, -1, joined);
 			} else {
 				if (!commitAproval) {
 					InputResult result = queryCommit(commit, "commit");
 					switch (result) {
 						case SKIP:
+							record(commit, Outcome.SKIPPED, -1, joined);
 							return;
 						case CONTINUE:
 							break;
 						case REAPPLY:
+							commands = reapply(merges);
+							continue merge;
+						case JOIN:
+							commands = mergeJoined(merges, joined);
+							commitAproval = false;
 							continue merge;
 						default:
 							throw InputResult.noSuchInputResult(result);
@@ -310,6 +474,7 @@ public class MergeCommitHandler {
 							+ commitInfo.getNewRevision() + "'.");
 
 						_revisionRewrite.add(logEntry.getRevision(), commitInfo.getNewRevision());
+						record(commit, Outcome.COMMITTED, commitInfo.getNewRevision(), joined);
 						break;
 					} catch (RepositoryException ex) {
 						System.out.println("Commit failed: " + ex.getLocalizedMessage());
@@ -317,10 +482,16 @@ public class MergeCommitHandler {
 						InputResult result = queryCommit(commit, "retry");
 						switch (result) {
 							case SKIP:
+								record(commit, Outcome.SKIPPED, -1, joined);
 								return;
 							case CONTINUE:
 								break;
 							case REAPPLY:
+								commands = reapply(merges);
+								continue merge;
+							case JOIN:
+								commands = mergeJoined(merges, joined);
+								commitAproval = false;
 								continue merge;
 							default:
 								throw InputResult.noSuchInputResult(result);
@@ -334,11 +505,89 @@ public class MergeCommitHandler {
 		
 	}
 
+	private MergeOperation getMerge(LogEntry logEntry) throws RepositoryException {
+		if (_planner != null) {
+			return _planner.getMerge(logEntry);
+		} else {
+			return _mergeHandler.parseMerge(logEntry);
+		}
+	}
+
+	private void print(LogEntry logEntry, MergeOperation merge) {
+		System.out.println("Revision " + logEntry.getRevision() + " (" + _doneRevs + " of " + _totalRevs + "): "
+			+ encode(logEntry.getMessage()));
+		for (Command command : merge.getCommands()) {
+			System.out.println("   " + command.toString());
+		}
+	}
+
+	/**
+	 * Computes the merge of the revision the user requested to join with the current commit.
+	 * 
+	 * @param merges
+	 *        The merges of the current commit, the joined merge is added.
+	 * @param joined
+	 *        The joined revisions, the joined revision is added.
+	 * @return The commands to apply the joined revision on top of the current commit.
+	 */
+	private Collection<Command> mergeJoined(List<MergeOperation> merges, List<Long> joined)
+			throws RepositoryException {
+		LogEntry joinedEntry = _joinedCommit.getLogEntry();
+		_joinedCommit = null;
+		_doneRevs++;
+		joined.add(joinedEntry.getRevision());
+
+		MergeOperation joinedMerge = getMerge(joinedEntry);
+		if (joinedMerge.isEmpty()) {
+			Log.info("Nothing to join from '" + joinedMerge.getRevision() + "' (no relevant modules touched).");
+			return Collections.emptyList();
+		}
+		print(joinedEntry, joinedMerge);
+		merges.add(joinedMerge);
+		return joinedMerge.getCommands();
+	}
+
+	/**
+	 * The commands to apply all given merges again.
+	 * 
+	 * <p>
+	 * The merges of joined revisions are fused with the merges of the same sources in the
+	 * preceding revisions, see {@link #setSourceLog(String, List)}.
+	 * </p>
+	 */
+	private Collection<Command> reapply(List<MergeOperation> merges) {
+		if (merges.size() == 1) {
+			return merges.get(0).getCommands();
+		}
+		List<Command> commands = new ArrayList<>();
+		for (MergeOperation merge : merges) {
+			commands.addAll(merge.getCommands());
+		}
+		return MergeCoalescer.coalesce(commands, _sourceIdentity);
+	}
+
 	private boolean stopOn(long revision) {
 		return _config.getStopOnRevisions().contains(revision);
 	}
 
 	private InputResult queryCommit(Commit commit, String continueCommand) throws RepositoryException {
+		if (_planner == null) {
+			return askUser(commit, continueCommand);
+		}
+
+		// Prepare the next merge while the user decides about this one.
+		Commit next = getNext(commit);
+		if (next != null) {
+			_planner.prefetch(next.getLogEntry());
+		}
+		try {
+			return askUser(commit, continueCommand);
+		} finally {
+			_planner.endPrefetch();
+		}
+	}
+
+	private InputResult askUser(Commit commit, String continueCommand) throws RepositoryException {
 		String skipCommand = "skip";
 		String stopCommand = "stop";
 		String apiCommand = "api";
@@ -415,6 +664,7 @@ public class MergeCommitHandler {
 				}
 				if (reloadCommand.equals(input)) {
 					Globals.reloadConfig();
+					invalidatePlans();
 					continue;
 				}
 				if (input.startsWith(setCommand)) {
@@ -442,6 +692,7 @@ public class MergeCommitHandler {
 							System.err.println("Invalid value: " + ex.getMessage());
 							continue;
 						}
+						invalidatePlans();
 						continue;
 					}
 				}
@@ -462,12 +713,13 @@ public class MergeCommitHandler {
 					joinedRevisions.add(joinedRevision);
 					
 					commit.join(joinedCommit);
-					
-					// Do not directly commit, but ask again.
-					_config.getStopOnRevisions().add(joinedCommit.getRevision());
+					_joinedCommit = joinedCommit;
 
-					merge(commit, joinedCommit.getLogEntry());
-					return InputResult.SKIP;
+					if (_planner != null) {
+						// The workspace is modified by the joined merge.
+						_planner.endPrefetch();
+					}
+					return InputResult.JOIN;
 				}
 				if (stopCommand.equals(input)) {
 					System.out.println("Stopping tool");
@@ -480,6 +732,31 @@ public class MergeCommitHandler {
 		}
 	}
 
+	private void invalidatePlans() {
+		if (_planner != null) {
+			_planner.invalidate();
+		}
+	}
+
+	/**
+	 * The {@link Commit} merged after the given one, <code>null</code> if it is the last one.
+	 */
+	private Commit getNext(Commit commit) {
+		boolean found = false;
+		for (CommitSet commitSet : _commitSets) {
+			for (Commit candidate : commitSet.getCommits()) {
+				if (found) {
+					if (!joinedRevisions.contains(candidate.getRevision())) {
+						return candidate;
+					}
+				} else if (candidate == commit) {
+					found = true;
+				}
+			}
+		}
+		return null;
+	}
+
 	private Commit getEntry(long joinedRevision) {
 		for (CommitSet commitSet : _commitSets) {
 			Commit commit = commitSet.getCommit(joinedRevision);
@@ -541,4 +818,64 @@ public class MergeCommitHandler {
 		return _revisionRewrite;
 	}
 
+	/**
+	 * {@link SourceIdentity} that looks for deletions and replacements of a source in the log of
+	 * the source branch.
+	 */
+	private static class LogSourceIdentity implements SourceIdentity {
+
+		private final String _rootPath;
+
+		private final String _branchPath;
+
+		private final NavigableMap<Long, LogEntry> _entries = new TreeMap<>();
+
+		public LogSourceIdentity(RepositoryURL repository, String sourceBranch, List<LogEntry> log) {
+			_rootPath = trimSlash('/' + repository.getPath());
+			_branchPath = trimSlash(sourceBranch.startsWith("/") ? sourceBranch : '/' + sourceBranch);
+			for (LogEntry entry : log) {
+				_entries.put(entry.getRevision(), entry);
+			}
+		}
+
+		@Override
+		public boolean isSame(RepositoryURL url, long earlierRevision, long laterRevision) {
+			String urlPath = '/' + url.getPath();
+			if (!urlPath.startsWith(_rootPath + '/')) {
+				return false;
+			}
+			String path = urlPath.substring(_rootPath.length());
+			if (!isSelfOrDescendant(path, _branchPath)) {
+				// Not covered by the log.
+				return false;
+			}
+			if (!_entries.containsKey(earlierRevision) || !_entries.containsKey(laterRevision)) {
+				// The log does not necessarily cover the revisions in between.
+				return false;
+			}
+			for (LogEntry entry : _entries.subMap(earlierRevision, false, laterRevision, true).values()) {
+				for (LogEntryPath change : entry.getChangedPaths().values()) {
+					if (change.getType() == ChangeType.MODIFIED) {
+						continue;
+					}
+					if (isSelfOrDescendant(path, change.getPath())) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		private static boolean isSelfOrDescendant(String path, String ancestor) {
+			return path.equals(ancestor) || path.startsWith(ancestor + '/');
+		}
+
+		private static String trimSlash(String path) {
+			while (path.endsWith("/")) {
+				path = path.substring(0, path.length() - 1);
+			}
+			return path;
+		}
+	}
+
 }
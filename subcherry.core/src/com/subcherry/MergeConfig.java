@@ -75,4 +75,19 @@ public interface MergeConfig extends WorkspaceConfig, RepositoryConfig {
 	 *        see {@link #getIgnoreMergeInfo()}
 	 */
 	void setIgnoreMergeInfo(boolean value);
+
+	/**
+	 * Number of changed paths of a revision from which workspace directories are listed once when
+	 * computing its merge, instead of checking the existence of each resource separately.
+	 * 
+	 * <p>
+	 * A value of <code>0</code> never lists directories.
+	 * </p>
+	 */
+	int getWorkspaceScanThreshold();
+
+	/**
+	 * @see #getWorkspaceScanThreshold()
+	 */
+	void setWorkspaceScanThreshold(int value);
 }
@@ -29,7 +29,7 @@ import com.subcherry.repository.core.RepositoryException;
 import com.subcherry.repository.core.RepositoryURL;
 import com.subcherry.repository.core.Revision;
 import com.subcherry.repository.core.RevisionRange;
-import com.subcherry.repository.core.RevisionRanges;
+import com.subcherry.repository.core.RevisionSet;
 import com.subcherry.repository.core.Target;
 
 public class MergeInfoTester {
@@ -61,11 +61,11 @@ public class MergeInfoTester {
 			String mergedModulePath = mergeEntry.getKey();
 			RepositoryURL mergedModuleUrl = _url.appendPath(mergedModulePath);
 
-			List<RevisionRange> transitivelyMergedRevisions = moduleMergeInfo.getRevisions(mergedModuleUrl);
+			RevisionSet transitivelyMergedRevisions = moduleMergeInfo.getRevisions(mergedModuleUrl);
 			if (transitivelyMergedRevisions == null) {
 				continue;
 			}
-			if (RevisionRanges.containsAll(transitivelyMergedRevisions, mergeEntry.getValue())) {
+			if (containsAll(transitivelyMergedRevisions, mergeEntry.getValue())) {
 				// This module has already been merged.
 				return true;
 			}
@@ -73,6 +73,26 @@ public class MergeInfoTester {
 		return false;
 	}
 
+	/**
+	 * Whether the effect of merging all given ranges is already contained in the given merged
+	 * revisions.
+	 */
+	private static boolean containsAll(RevisionSet merged, List<RevisionRange> ranges) {
+		for (RevisionRange range : ranges) {
+			if (range.isReverse()) {
+				// A reverted revision must not be merged.
+				if (merged.containsAny(range)) {
+					return false;
+				}
+			} else {
+				if (!merged.containsAll(range)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	public MergeInfo lookupMergeInfo(String moduleName) throws RepositoryException {
 		MergeInfo moduleMergeInfo;
 		{
@@ -0,0 +1,354 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.subcherry.merge.MergeHandler;
+import com.subcherry.merge.MergePlan;
+import com.subcherry.repository.ClientManagerFactory;
+import com.subcherry.repository.ClientManagerPool;
+import com.subcherry.repository.LoginCredential;
+import com.subcherry.repository.command.Client;
+import com.subcherry.repository.command.ClientManager;
+import com.subcherry.repository.command.Command;
+import com.subcherry.repository.command.merge.Merge;
+import com.subcherry.repository.command.merge.MergeOperation;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.core.Target;
+import com.subcherry.repository.core.Target.FileTarget;
+import com.subcherry.repository.core.Target.UrlTarget;
+import com.subcherry.utils.DaemonThreadFactory;
+
+/**
+ * Computes the {@link MergeOperation}s of pending revisions in advance, while earlier revisions
+ * are merged.
+ *
+ * <p>
+ * Plans are computed by a fixed number of threads, each requesting the log with a
+ * {@link ClientManager} leased from a {@link ClientManagerPool}. A plan that is no longer valid,
+ * because merges executed in between changed the workspace resources it depends on, is computed
+ * again when it is requested.
+ * </p>
+ *
+ * <p>
+ * While the user decides about the current merge, the next revision is prepared by a separate
+ * lookahead thread, see {@link #prefetch(LogEntry)}.
+ * </p>
+ *
+ * @see MergeHandler#planMerge(LogEntry, com.subcherry.repository.command.Client)
+ */
+public class MergePlanner {
+
+	private static final Logger LOG = Logger.getLogger(MergePlanner.class.getName());
+
+	private final MergeHandler _mergeHandler;
+
+	private final ClientManagerPool _pool;
+
+	private final ExecutorService _executor;
+
+	private final ExecutorService _lookahead;
+
+	private final boolean _dryRun;
+
+	/**
+	 * Lock held by the lookahead thread while it accesses the workspace.
+	 */
+	private final Object _workspaceLock = new Object();
+
+	/**
+	 * Whether the lookahead thread may access the workspace, guarded by {@link #_workspaceLock}.
+	 */
+	private boolean _workspaceIdle;
+
+	/**
+	 * Plans not yet requested, indexed by revision.
+	 */
+	private final Map<Long, Plan> _plans = new LinkedHashMap<>();
+
+	/**
+	 * Creates a {@link MergePlanner}.
+	 *
+	 * @param mergeHandler
+	 *        The {@link MergeHandler} to compute plans with.
+	 * @param factory
+	 *        The factory to create {@link ClientManager}s for planning threads with.
+	 * @param credentials
+	 *        The credentials to use for planning threads.
+	 * @param threads
+	 *        The number of plans computed concurrently.
+	 * @param dryRun
+	 *        Whether {@link #prefetch(LogEntry)} simulates the merge of the next revision to
+	 *        report its conflicts in advance.
+	 */
+	public MergePlanner(MergeHandler mergeHandler, ClientManagerFactory factory, LoginCredential credentials,
+			int threads, boolean dryRun) {
+		_mergeHandler = mergeHandler;
+		_dryRun = dryRun;
+		_pool = new ClientManagerPool(factory, credentials, threads + 1);
+		_executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("merge-planner"));
+		_lookahead = Executors.newSingleThreadExecutor(new DaemonThreadFactory("merge-lookahead"));
+	}
+
+	/**
+	 * Starts computing plans for the given revisions in the given order.
+	 */
+	public synchronized void plan(List<LogEntry> logEntries) {
+		for (LogEntry logEntry : logEntries) {
+			Plan plan = new Plan(logEntry);
+			plan.submit();
+			Plan before = _plans.put(logEntry.getRevision(), plan);
+			if (before != null) {
+				before.cancel();
+			}
+		}
+	}
+
+	/**
+	 * Computes all plans not yet requested again, e.g. after the configuration has changed.
+	 */
+	public synchronized void invalidate() {
+		List<LogEntry> pending = new ArrayList<>(_plans.size());
+		for (Plan plan : _plans.values()) {
+			plan.cancel();
+			pending.add(plan.getLogEntry());
+		}
+		_plans.clear();
+		plan(pending);
+	}
+
+	/**
+	 * Prepares the merge of the given revision with priority, while the workspace is not
+	 * modified, e.g. while the user reviews the current merge.
+	 * 
+	 * <p>
+	 * A plan not yet started or outdated by merges executed since it was computed is computed
+	 * again. If configured, the merge is simulated to report its conflicts. The workspace is only
+	 * accessed until {@link #endPrefetch()} is called.
+	 * </p>
+	 */
+	public void prefetch(LogEntry logEntry) {
+		synchronized (_workspaceLock) {
+			_workspaceIdle = true;
+		}
+		synchronized (this) {
+			Plan before = _plans.get(logEntry.getRevision());
+			Plan plan = new Plan(logEntry, before, _dryRun);
+			plan.submitLookahead();
+			_plans.put(logEntry.getRevision(), plan);
+		}
+	}
+
+	/**
+	 * Revokes the workspace access granted by {@link #prefetch(LogEntry)}.
+	 * 
+	 * <p>
+	 * Waits until a running simulation of a merge has completed.
+	 * </p>
+	 */
+	public void endPrefetch() {
+		synchronized (_workspaceLock) {
+			_workspaceIdle = false;
+		}
+	}
+
+	/**
+	 * The {@link MergeOperation} for the given revision.
+	 *
+	 * <p>
+	 * Waits for a plan computed in advance, if there is one. If there is none, or if it is
+	 * outdated, the plan is computed in the calling thread.
+	 * </p>
+	 */
+	public MergeOperation getMerge(LogEntry logEntry) throws RepositoryException {
+		Plan plan;
+		synchronized (this) {
+			plan = _plans.remove(logEntry.getRevision());
+		}
+		if (plan != null) {
+			try {
+				MergePlan result = plan.get();
+				if (result.isUpToDate()) {
+					Set<File> conflicts = plan.getConflicts();
+					if (!conflicts.isEmpty()) {
+						LOG.log(Level.INFO, "Revision " + logEntry.getRevision() + " is expected to conflict in: "
+							+ conflicts);
+					}
+					return result.getOperation();
+				}
+				LOG.log(Level.FINE, "Workspace changed since revision " + logEntry.getRevision()
+					+ " was planned, planning again.");
+			} catch (ExecutionException ex) {
+				LOG.log(Level.INFO, "Planning revision " + logEntry.getRevision() + " failed, planning again.",
+					ex.getCause());
+			} catch (CancellationException ex) {
+				LOG.log(Level.FINE, "Planning revision " + logEntry.getRevision() + " was cancelled.");
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RepositoryException(ex);
+			}
+		}
+		return _mergeHandler.parseMerge(logEntry);
+	}
+
+	/**
+	 * Stops all planning threads and closes their connections.
+	 */
+	public synchronized void close() {
+		_plans.clear();
+		_executor.shutdownNow();
+		_lookahead.shutdownNow();
+		_pool.close();
+	}
+
+	/**
+	 * Plan of a single revision computed in a planning thread.
+	 */
+	private class Plan implements Callable<MergePlan> {
+
+		private final LogEntry _logEntry;
+
+		/**
+		 * A plan of the same revision computed before, that is reused if it is still valid.
+		 */
+		private Plan _before;
+
+		private final boolean _dryRun;
+
+		private Future<MergePlan> _future;
+
+		private volatile Set<File> _conflicts = Collections.emptySet();
+
+		public Plan(LogEntry logEntry) {
+			this(logEntry, null, false);
+		}
+
+		public Plan(LogEntry logEntry, Plan before, boolean dryRun) {
+			_logEntry = logEntry;
+			_before = before;
+			_dryRun = dryRun;
+		}
+
+		public LogEntry getLogEntry() {
+			return _logEntry;
+		}
+
+		void submit() {
+			_future = _executor.submit(this);
+		}
+
+		void submitLookahead() {
+			_future = _lookahead.submit(this);
+		}
+
+		void cancel() {
+			_future.cancel(false);
+		}
+
+		MergePlan get() throws InterruptedException, ExecutionException {
+			return _future.get();
+		}
+
+		/**
+		 * The files, the simulated merge reported conflicts for.
+		 */
+		Set<File> getConflicts() {
+			return _conflicts;
+		}
+
+		@Override
+		public MergePlan call() throws Exception {
+			MergePlan result = reuseBefore();
+			try (ClientManagerPool.Lease lease = _pool.lease()) {
+				if (result == null) {
+					result = _mergeHandler.planMerge(_logEntry, lease.getClient());
+				}
+				if (_dryRun) {
+					synchronized (_workspaceLock) {
+						if (_workspaceIdle && result.isUpToDate()) {
+							_conflicts = dryRun(lease.getClient(), result.getOperation());
+						}
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * The plan computed before, if it is already available and still valid.
+		 */
+		private MergePlan reuseBefore() {
+			Plan before = _before;
+			_before = null;
+			if (before == null) {
+				return null;
+			}
+			if (!before._future.isDone()) {
+				// Do not wait for a plan queued behind other plans.
+				before.cancel();
+				return null;
+			}
+			try {
+				MergePlan result = before.get();
+				return result.isUpToDate() ? result : null;
+			} catch (ExecutionException | CancellationException | InterruptedException ex) {
+				return null;
+			}
+		}
+
+		private Set<File> dryRun(Client client, MergeOperation operation) {
+			Set<File> result = new HashSet<>();
+			for (Command command : operation.getCommands()) {
+				if (!(command instanceof Merge)) {
+					continue;
+				}
+				Merge merge = (Merge) command;
+				if (merge.getReintegrate() || merge.getRecordOnly()
+					|| merge.getSource().kind() != Target.Kind.URL || merge.getTarget().kind() != Target.Kind.FILE) {
+					continue;
+				}
+				try {
+					result.addAll(client.dryRunMerge(((UrlTarget) merge.getSource()).getUrl(),
+						merge.getSource().getPegRevision(), merge.getRevisionRanges(),
+						((FileTarget) merge.getTarget()).getFile(), merge.getDepth(), !merge.getIgnoreAnchestry()));
+				} catch (RepositoryException ex) {
+					LOG.log(Level.FINE, "Simulating merge of revision " + _logEntry.getRevision() + " failed.", ex);
+				}
+			}
+			return result;
+		}
+	}
+
+}
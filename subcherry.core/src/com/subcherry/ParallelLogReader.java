@@ -0,0 +1,275 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.subcherry.repository.ClientManagerFactory;
+import com.subcherry.repository.ClientManagerPool;
+import com.subcherry.repository.LoginCredential;
+import com.subcherry.repository.command.Client;
+import com.subcherry.repository.command.ClientManager;
+import com.subcherry.repository.command.log.LogEntryHandler;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.core.RepositoryURL;
+import com.subcherry.repository.core.Revision;
+import com.subcherry.utils.DaemonThreadFactory;
+
+/**
+ * {@link LogReader} that splits the requested revision range into slices and fetches them
+ * concurrently.
+ *
+ * <p>
+ * Each slice is fetched with a {@link ClientManager} leased from a {@link ClientManagerPool}.
+ * Entries are reported in the requested revision order: A slice is reported as soon as all slices
+ * before it are reported.
+ * </p>
+ *
+ * <p>
+ * Requests with {@link #isStopOnCopy()} or a {@link #getLimit()} cannot be split and are fetched
+ * with a single call. If a slice cannot be fetched (e.g. because the requested path does not
+ * exist within the slice), the remaining range is fetched with a single call.
+ * </p>
+ */
+public class ParallelLogReader extends LogReader {
+
+	private static final Logger LOG = Logger.getLogger(ParallelLogReader.class.getName());
+
+	private static final String[] ROOT = { "/" };
+
+	private final ClientManagerFactory _factory;
+
+	private final LoginCredential _credentials;
+
+	private final int _slices;
+
+	private ClientManagerPool _pool;
+
+	private ExecutorService _executor;
+
+	/**
+	 * Creates a {@link ParallelLogReader}.
+	 *
+	 * @param logClient
+	 *        The client for requests that are not split.
+	 * @param url
+	 *        The repository URL.
+	 * @param factory
+	 *        The factory to create {@link ClientManager}s for slices with.
+	 * @param credentials
+	 *        The credentials to use for slices.
+	 * @param slices
+	 *        The maximum number of slices to fetch concurrently.
+	 */
+	public ParallelLogReader(Client logClient, RepositoryURL url, ClientManagerFactory factory,
+			LoginCredential credentials, int slices) {
+		super(logClient, url);
+		_factory = factory;
+		_credentials = credentials;
+		_slices = slices;
+	}
+
+	@Override
+	public void readLog(String[] paths, LogEntryHandler logTarget) throws RepositoryException {
+		if (_slices <= 1 || isStopOnCopy() || getLimit() > 0 || !isNumberOrHead(getStartRevision())
+			|| !isNumberOrHead(getEndRevision())) {
+			super.readLog(paths, logTarget);
+			return;
+		}
+
+		long start = number(getStartRevision());
+		long end = number(getEndRevision());
+		boolean ascending = start <= end;
+		long lower = Math.min(start, end);
+		long upper = Math.max(start, end);
+
+		// Do not request slices before the history of the requested paths starts.
+		long first = firstRevision(paths, lower, upper);
+		if (first < 0) {
+			return;
+		}
+		lower = first;
+
+		long size = upper - lower + 1;
+		int cnt = (int) Math.min(_slices, size);
+		List<Slice> slices = new ArrayList<>(cnt);
+		for (int n = 0; n < cnt; n++) {
+			long sliceLower = lower + size * n / cnt;
+			long sliceUpper = lower + size * (n + 1) / cnt - 1;
+			slices.add(ascending ? new Slice(paths, sliceLower, sliceUpper) : new Slice(paths, sliceUpper, sliceLower));
+		}
+		if (!ascending) {
+			Collections.reverse(slices);
+		}
+
+		ExecutorService executor = executor();
+		List<Future<List<LogEntry>>> results = new ArrayList<>(cnt);
+		for (Slice slice : slices) {
+			results.add(executor.submit(slice));
+		}
+
+		try {
+			for (int n = 0; n < cnt; n++) {
+				List<LogEntry> entries;
+				try {
+					entries = results.get(n).get();
+				} catch (ExecutionException ex) {
+					Slice failed = slices.get(n);
+					LOG.log(Level.INFO, "Reading log slice " + failed + " failed, reading remaining range at once.",
+						ex.getCause());
+					Revision to = ascending ? Revision.create(upper) : Revision.create(lower);
+					getClient().log(getUrl(), paths, getPegRevision(), Revision.create(failed._start), to, false,
+						isDiscoverChangedPaths(), 0, logTarget);
+					return;
+				} catch (InterruptedException ex) {
+					throw new RepositoryException(ex);
+				}
+
+				// Release memory as early as possible.
+				results.set(n, null);
+				for (LogEntry entry : entries) {
+					logTarget.handleLogEntry(entry);
+				}
+			}
+		} finally {
+			for (Future<List<LogEntry>> result : results) {
+				if (result != null) {
+					result.cancel(false);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The first revision in the given range, in which the history of the given paths was changed,
+	 * or <code>-1</code> if there is no such revision.
+	 */
+	private long firstRevision(String[] paths, long lower, long upper) throws RepositoryException {
+		final long[] result = { -1 };
+		getClient().log(getUrl(), paths, getPegRevision(), Revision.create(lower), Revision.create(upper), false,
+			false, 1, new LogEntryHandler() {
+				@Override
+				public void handleLogEntry(LogEntry logEntry) {
+					result[0] = logEntry.getRevision();
+				}
+			});
+		return result[0];
+	}
+
+	private long number(Revision revision) throws RepositoryException {
+		if (revision.kind() == Revision.Kind.HEAD) {
+			return headRevision();
+		}
+		return revision.getNumber();
+	}
+
+	private long headRevision() throws RepositoryException {
+		final long[] result = { 0 };
+		getClient().log(getUrl(), ROOT, Revision.HEAD, Revision.HEAD, Revision.HEAD, false, false, 1,
+			new LogEntryHandler() {
+				@Override
+				public void handleLogEntry(LogEntry logEntry) {
+					result[0] = logEntry.getRevision();
+				}
+			});
+		return result[0];
+	}
+
+	private static boolean isNumberOrHead(Revision revision) {
+		return revision.kind() == Revision.Kind.COMMIT || revision.kind() == Revision.Kind.HEAD;
+	}
+
+	private synchronized ExecutorService executor() {
+		if (_executor == null) {
+			_pool = new ClientManagerPool(_factory, _credentials, _slices);
+			_executor = Executors.newFixedThreadPool(_slices, new DaemonThreadFactory("log-reader"));
+		}
+		return _executor;
+	}
+
+	private synchronized ClientManagerPool pool() {
+		if (_pool == null) {
+			// A slice still in flight after close().
+			throw new IllegalStateException("Log reader has been closed.");
+		}
+		return _pool;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (_executor != null) {
+			_executor.shutdownNow();
+			_executor = null;
+		}
+		if (_pool != null) {
+			_pool.close();
+			_pool = null;
+		}
+		super.close();
+	}
+
+	/**
+	 * Task fetching a single slice of the requested revision range.
+	 */
+	private class Slice implements Callable<List<LogEntry>> {
+
+		private final String[] _paths;
+
+		final long _start;
+
+		final long _end;
+
+		public Slice(String[] paths, long start, long end) {
+			_paths = paths;
+			_start = start;
+			_end = end;
+		}
+
+		@Override
+		public List<LogEntry> call() throws Exception {
+			final List<LogEntry> result = new ArrayList<>();
+			// A slice of a previous request that failed may still be running.
+			try (ClientManagerPool.Lease lease = pool().lease()) {
+				lease.getClient().log(getUrl(), _paths, getPegRevision(), Revision.create(_start),
+					Revision.create(_end), false, isDiscoverChangedPaths(), 0, new LogEntryHandler() {
+						@Override
+						public void handleLogEntry(LogEntry logEntry) {
+							result.add(logEntry);
+						}
+					});
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + _start + ":" + _end + "]";
+		}
+	}
+
+}
@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
 import java.util.logging.Logger;
@@ -46,6 +47,17 @@ public class PortingTickets {
 		for (String queryTicket : queryTickets) {
 			_additionalTickets.put(queryTicket, defaultPortType);
 		}
+
+		// All commits of these tickets are considered, fetch them in advance.
+		trac.getTickets(toIntegerIds(_additionalTickets.keySet()));
+	}
+
+	private static List<Integer> toIntegerIds(Collection<String> ticketIds) {
+		List<Integer> result = new ArrayList<Integer>(ticketIds.size());
+		for (String id : ticketIds) {
+			result.add(Integer.valueOf(id));
+		}
+		return result;
 	}
 
 	private Map<String, PortType> getAdditionalTickets() {
@@ -17,11 +17,37 @@
  */
 package com.subcherry;
 
+import static com.subcherry.utils.CollectionUtil.*;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Pattern;
+
 import com.subcherry.history.Change;
+import com.subcherry.history.DependencyBuilder.Dependency;
 import com.subcherry.history.Node;
+import com.subcherry.trac.TracConnection;
 import com.subcherry.trac.TracTicket;
 
 public class ReportPrinter {
+
+	private static final String NO_TICKET_ID = "";
+
+	private static final Comparator<Node> PATH_ORDER = new Comparator<Node>() {
+		@Override
+		public int compare(Node n1, Node n2) {
+			return n1.getPath().compareTo(n2.getPath());
+		}
+	};
+
+	private final PrintStream _out;
+
 	private String _ticketId;
 
 	private TracTicket _ticket;
@@ -40,8 +66,108 @@ public class ReportPrinter {
 
 	private int _conflictsPerTicket;
 
+	/**
+	 * Creates a {@link ReportPrinter} printing to {@link System#out}.
+	 */
+	public ReportPrinter() {
+		this(System.out);
+	}
+
+	/**
+	 * Creates a {@link ReportPrinter} printing to the given stream.
+	 */
+	public ReportPrinter(PrintStream out) {
+		_out = out;
+	}
+
+	/**
+	 * Prints the conflicts of the given dependencies grouped by the tickets of the missing
+	 * changes.
+	 * 
+	 * @param dependencies
+	 *        See {@link com.subcherry.history.DependencyBuilder#getDependencies()}.
+	 * @param trac
+	 *        The connection to resolve tickets with, <code>null</code> to print tickets without
+	 *        details.
+	 * @param excludeMilestone
+	 *        Pattern for milestones of tickets not to report, or <code>null</code>.
+	 * @param excludePath
+	 *        Pattern for paths of conflict nodes not to report, or <code>null</code>.
+	 */
+	public void printReport(Map<Change, Dependency> dependencies, TracConnection trac, Pattern excludeMilestone,
+			Pattern excludePath) {
+		/**
+		 * Mapping of missing changes to nodes where conflicts are expected to merged changes
+		 * that are potentially in conflict with the missing change.
+		 */
+		Map<Change, Map<Node, List<Change>>> missingChanges = new HashMap<>();
+		for (Dependency dependency : dependencies.values()) {
+			Change conflictingChange = dependency.getChange();
+
+			for (Entry<Change, Set<Node>> requirement : dependency.getRequiredChanges().entrySet()) {
+				Change missingChange = requirement.getKey();
+
+				for (Node conflictNode : requirement.getValue()) {
+					mkList(mkMap(missingChanges, missingChange), conflictNode).add(conflictingChange);
+				}
+			}
+		}
+
+		/**
+		 * Ticket IDs of missing tickets mapped to changes of those tickets that are causing
+		 * conflicts.
+		 */
+		Map<String, List<Change>> requiredTickets = new HashMap<>();
+		for (Change change : missingChanges.keySet()) {
+			String ticketId = change.getTicketId();
+			if (ticketId == null) {
+				ticketId = NO_TICKET_ID;
+			}
+			mkList(requiredTickets, ticketId).add(change);
+		}
+
+		startReport();
+		for (String ticketId : keysSorted(requiredTickets)) {
+			TracTicket ticket;
+			if (ticketId.equals(NO_TICKET_ID) || trac == null) {
+				ticket = null;
+			} else {
+				ticket = trac.getTicket(Integer.parseInt(ticketId));
+
+				if (matches(excludeMilestone, ticket.getMilestone())) {
+					continue;
+				}
+			}
+
+			setTicket(ticketId, ticket);
+
+			List<Change> requiredChangesFromTicket = requiredTickets.get(ticketId);
+			Collections.sort(requiredChangesFromTicket, ChangeOrder.INSTANCE);
+			for (Change missingChange : requiredChangesFromTicket) {
+				setMissingChange(missingChange);
+
+				Map<Node, List<Change>> fileConflicts = missingChanges.get(missingChange);
+				for (Node conflictNode : keysSorted(fileConflicts, PATH_ORDER)) {
+					if (matches(excludePath, conflictNode.getPath())) {
+						continue;
+					}
+
+					setConflictNode(conflictNode);
+
+					List<Change> conflicts = fileConflicts.get(conflictNode);
+					Collections.sort(conflicts, ChangeOrder.INSTANCE);
+					for (Change conflict : conflicts) {
+						printConflictingChange(conflict);
+					}
+				}
+			}
+			endTicket();
+		}
+		endReport();
+	}
+
 	public void startReport() {
-		System.out.println("= Conflict Report =");
+		_out.println("= Conflict Report =");
 	
 		_conflicts = 0;
 	}
@@ -71,7 +197,7 @@ public class ReportPrinter {
 		printMissingChange();
 		printConflictNode();
 	
-		System.out.println("    * [" + conflict.getRevision() + "]: "
+		_out.println("    * [" + conflict.getRevision() + "]: "
 			+ quote(conflict.getMessage())
 			+ " (" + conflict.getAuthor() + ")");
 	
@@ -81,13 +207,13 @@ public class ReportPrinter {
 
 	public void endTicket() {
 		if (_conflictsPerTicket > 0) {
-			System.out.println();
+			_out.println();
 		}
 	}
 
 	public void endReport() {
 		if (!hasConflictsReported()) {
-			System.out.println("No conflicts detected.");
+			_out.println("No conflicts detected.");
 		}
 	}
 
@@ -103,11 +229,11 @@ public class ReportPrinter {
 		}
 
 		if (_ticket == null) {
-			System.out.println("== Without ticket ==");
+			_out.println("== Without ticket ==");
 		} else {
 			boolean hasComponent = _ticket.getComponent() != null && !_ticket.getComponent().isEmpty();
 			boolean hasMilestone = _ticket.getMilestone() != null && !_ticket.getMilestone().isEmpty();
-			System.out.println("== Ticket #"
+			_out.println("== Ticket #"
 				+ _ticketId + " "
 				+ (hasComponent ? _ticket.getComponent() : "-")
 				+ (hasMilestone ? "/" + _ticket.getMilestone() : "")
@@ -127,7 +253,7 @@ public class ReportPrinter {
 			_missingChangePrinted = true;
 		}
 
-		System.out.println("[" + _missingChange.getRevision() + "]: " + quote(_missingChange.getMessage())
+		_out.println("[" + _missingChange.getRevision() + "]: " + quote(_missingChange.getMessage())
 			+ " (" + _missingChange.getAuthor() + ")");
 	}
 
@@ -138,10 +264,18 @@ public class ReportPrinter {
 			_conflictNodePrinted = true;
 		}
 
-		System.out.println(" * " + _conflictNode.getPath()
+		_out.println(" * " + _conflictNode.getPath()
 			+ (_conflictNode.isAlive() ? "" : " (deleted in [" + (_conflictNode.getRevMax() + 1) + "])"));
 	}
 
+	private static boolean matches(Pattern pattern, String text) {
+		if (pattern == null) {
+			return false;
+		}
+
+		return pattern.matcher(text).find();
+	}
+
 	private static String quote(String message) {
 		return message.trim().replaceAll("[\\r\\n]\\s*|\\s\\s+", " ");
 	}
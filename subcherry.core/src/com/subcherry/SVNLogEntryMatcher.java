@@ -47,10 +47,17 @@ public abstract class SVNLogEntryMatcher implements LogEntryHandler {
 	@Override
 	public void handleLogEntry(LogEntry logEntry) throws RepositoryException {
 		if (matches(logEntry)) {
-			_entries.add(logEntry);
+			addEntry(logEntry);
 		}
 	}
 
+	/**
+	 * Adds the given entry to the matched {@link #getEntries()}.
+	 */
+	protected void addEntry(LogEntry logEntry) {
+		_entries.add(logEntry);
+	}
+
 	public void forward(LogEntryHandler mergeCommitHandler) throws RepositoryException {
 		for (LogEntry entry : getEntries()) {
 			mergeCommitHandler.handleLogEntry(entry);
@@ -0,0 +1,341 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.subcherry.commit.Commit;
+import com.subcherry.commit.CommitHandler;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.utils.BinaryIO;
+
+/**
+ * Journal of a merge session that allows to resume an interrupted session.
+ *
+ * <p>
+ * The journal starts with the {@link CommitSet}s selected for the session in the order they are
+ * merged, followed by the outcome of each merged revision in the order the revisions are
+ * finished. Outcomes are appended (and flushed) as soon as they are known, so that a journal is
+ * valid up to the last finished revision, even if the session was killed.
+ * </p>
+ *
+ * <p>
+ * A journal is tagged with a key describing the session configuration. A journal written with
+ * another key is ignored.
+ * </p>
+ */
+public class SessionJournal {
+
+	/**
+	 * The default location of the journal.
+	 */
+	public static final String FILE_NAME = "conf/session.journal";
+
+	private static final int MAGIC = 0x53434a4e;
+
+	private static final int VERSION = 2;
+
+	private static final String TMP_SUFFIX = ".tmp";
+
+	private static final long NO_VALUE = -1;
+
+	private static final Outcome[] OUTCOMES = Outcome.values();
+
+	/**
+	 * What has happened to a revision of the session.
+	 */
+	public enum Outcome {
+
+		/**
+		 * The revision was merged and committed, the value is the new revision.
+		 */
+		COMMITTED,
+
+		/**
+		 * The revision was merged into the workspace but not committed.
+		 */
+		APPLIED,
+
+		/**
+		 * The revision was skipped.
+		 */
+		SKIPPED,
+
+		/**
+		 * The revision touches none of the merged modules.
+		 */
+		EXCLUDED,
+
+		/**
+		 * The revision was joined into the commit of another revision, the value is the revision
+		 * it was joined to.
+		 */
+		JOINED;
+
+	}
+
+	private final File _file;
+
+	private final String _key;
+
+	private final List<List<LogEntry>> _commitSets = new ArrayList<>();
+
+	/**
+	 * Recorded outcomes by revision in the order they were recorded.
+	 */
+	private final Map<Long, Outcome> _outcomes = new LinkedHashMap<>();
+
+	private final Map<Long, Long> _values = new HashMap<>();
+
+	private DataOutputStream _out;
+
+	/**
+	 * Creates a {@link SessionJournal}.
+	 *
+	 * @param file
+	 *        The journal file.
+	 * @param key
+	 *        The description of the session configuration.
+	 */
+	public SessionJournal(File file, String key) {
+		_file = file;
+		_key = key;
+	}
+
+	/**
+	 * Loads the journal of an interrupted session.
+	 *
+	 * @return Whether there is a journal for a session with the same key. If so, the session can
+	 *         be continued with {@link #getCommitSets(CommitHandler)} and {@link #resume()}.
+	 * @throws IOException
+	 *         If the journal cannot be read or is corrupt.
+	 */
+	public boolean load() throws IOException {
+		_commitSets.clear();
+		_outcomes.clear();
+		_values.clear();
+		if (!_file.exists()) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file)))) {
+			if (!BinaryIO.readHeader(in, MAGIC, VERSION, _key)) {
+				return false;
+			}
+			int setCnt = in.readInt();
+			for (int n = 0; n < setCnt; n++) {
+				int commitCnt = in.readInt();
+				List<LogEntry> commitSet = new ArrayList<>(commitCnt);
+				for (int m = 0; m < commitCnt; m++) {
+					commitSet.add(BinaryIO.readLogEntry(in));
+				}
+				_commitSets.add(commitSet);
+			}
+
+			while (true) {
+				long revision;
+				Outcome outcome;
+				long value;
+				try {
+					revision = in.readLong();
+					outcome = OUTCOMES[in.readByte()];
+					value = in.readLong();
+				} catch (EOFException ex) {
+					// End of journal, or a record interrupted while writing.
+					break;
+				}
+				_outcomes.put(revision, outcome);
+				_values.put(revision, value);
+			}
+		} catch (EOFException | IndexOutOfBoundsException ex) {
+			throw new IOException("Truncated session journal: " + _file.getAbsolutePath(), ex);
+		}
+		return true;
+	}
+
+	/**
+	 * Recreates the {@link CommitSet}s of a {@link #load() loaded} journal.
+	 *
+	 * @param commitHandler
+	 *        The {@link CommitHandler} to create {@link Commit}s with.
+	 */
+	public List<CommitSet> getCommitSets(CommitHandler commitHandler) {
+		List<CommitSet> result = new ArrayList<>(_commitSets.size());
+		for (List<LogEntry> entries : _commitSets) {
+			LogEntry lead = entries.get(0);
+			CommitSet commitSet = new CommitSet(lead, commitHandler.parseCommit(lead));
+			for (int n = 1, cnt = entries.size(); n < cnt; n++) {
+				commitSet.add(commitHandler.parseCommit(entries.get(n)));
+			}
+			result.add(commitSet);
+		}
+		return result;
+	}
+
+	/**
+	 * Starts a new journal for the given {@link CommitSet}s, replacing an existing one.
+	 */
+	public void start(List<CommitSet> commitSets) throws IOException {
+		_commitSets.clear();
+		_outcomes.clear();
+		_values.clear();
+		for (CommitSet commitSet : commitSets) {
+			List<LogEntry> entries = new ArrayList<>(commitSet.getCommits().size());
+			for (Commit commit : commitSet.getCommits()) {
+				entries.add(commit.getLogEntry());
+			}
+			_commitSets.add(entries);
+		}
+		write();
+	}
+
+	/**
+	 * Continues a {@link #load() loaded} journal.
+	 *
+	 * <p>
+	 * The journal is rewritten to drop a record interrupted while writing, further outcomes are
+	 * appended.
+	 * </p>
+	 */
+	public void resume() throws IOException {
+		write();
+	}
+
+	/**
+	 * Replaces the journal file atomically with the current contents and opens it for appending.
+	 */
+	private void write() throws IOException {
+		close();
+		File tmp = new File(_file.getPath() + TMP_SUFFIX);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			BinaryIO.writeHeader(out, MAGIC, VERSION, _key);
+			out.writeInt(_commitSets.size());
+			for (List<LogEntry> entries : _commitSets) {
+				out.writeInt(entries.size());
+				for (LogEntry entry : entries) {
+					BinaryIO.writeLogEntry(out, entry);
+				}
+			}
+			for (Map.Entry<Long, Outcome> entry : _outcomes.entrySet()) {
+				writeRecord(out, entry.getKey(), entry.getValue(), _values.get(entry.getKey()));
+			}
+		} catch (IOException | RuntimeException ex) {
+			tmp.delete();
+			throw ex;
+		}
+		Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		_out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_file, true)));
+	}
+
+	/**
+	 * Records the outcome of the given revision.
+	 *
+	 * <p>
+	 * Only the first outcome of a revision is recorded.
+	 * </p>
+	 *
+	 * @param value
+	 *        The value of the outcome, see {@link Outcome}.
+	 */
+	public void record(long revision, Outcome outcome, long value) throws IOException {
+		if (_outcomes.containsKey(revision)) {
+			return;
+		}
+		_outcomes.put(revision, outcome);
+		_values.put(revision, value);
+		if (_out != null) {
+			writeRecord(_out, revision, outcome, value);
+			_out.flush();
+		}
+	}
+
+	/**
+	 * Records an {@link Outcome} without value.
+	 *
+	 * @see #record(long, Outcome, long)
+	 */
+	public void record(long revision, Outcome outcome) throws IOException {
+		record(revision, outcome, NO_VALUE);
+	}
+
+	/**
+	 * The recorded {@link Outcome} of the given revision.
+	 *
+	 * <p>
+	 * A revision {@link Outcome#JOINED joined} to a revision without outcome has no outcome,
+	 * since the joined commit has not been completed.
+	 * </p>
+	 *
+	 * @return The {@link Outcome}, <code>null</code> if the revision is not yet finished.
+	 */
+	public Outcome getOutcome(long revision) {
+		Outcome result = _outcomes.get(revision);
+		if (result == Outcome.JOINED && getOutcome(getValue(revision)) == null) {
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * The value recorded with the {@link #getOutcome(long) outcome} of the given revision.
+	 */
+	public long getValue(long revision) {
+		Long result = _values.get(revision);
+		return result == null ? NO_VALUE : result.longValue();
+	}
+
+	/**
+	 * Closes the journal file.
+	 */
+	public void close() throws IOException {
+		if (_out != null) {
+			_out.close();
+			_out = null;
+		}
+	}
+
+	/**
+	 * Deletes the journal after the session has been completed.
+	 */
+	public void delete() throws IOException {
+		close();
+		_file.delete();
+	}
+
+	private static void writeRecord(DataOutputStream out, long revision, Outcome outcome, long value)
+			throws IOException {
+		out.writeLong(revision);
+		out.writeByte(outcome.ordinal());
+		out.writeLong(value);
+	}
+
+}
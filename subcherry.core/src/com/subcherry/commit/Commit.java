@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import com.subcherry.CommitConfig;
 import com.subcherry.MergeCommitHandler;
@@ -93,10 +94,43 @@ public class Commit {
 
 	public CommitInfo run(CommitContext context) throws RepositoryException {
 		CommitInfo commitInfo = doCommit(context.commitClient);
-		updateToHEAD(context.client);
+		update(context, commitInfo.getNewRevision());
 		return commitInfo;
 	}
 
+	/**
+	 * Updates the workspace after a commit.
+	 * 
+	 * <p>
+	 * If the touched modules are known to be at the revision directly before the commit, no other
+	 * commit happened in between. In that case, only the committed resources and their parent
+	 * directories are updated to the new revision. Otherwise, the touched modules are updated
+	 * completely.
+	 * </p>
+	 */
+	void update(CommitContext context, long newRevision) throws RepositoryException {
+		if (newRevision < 0) {
+			updateToHEAD(context.client);
+			return;
+		}
+		List<File> modules = getTouchedModules();
+		if (context.isUpToDate(modules, newRevision - 1)) {
+			updateCommitted(context.client, newRevision);
+		} else {
+			updateToHEAD(context.client);
+		}
+		context.setUpToDate(modules, newRevision);
+	}
+
+	void updateCommitted(Client client, long newRevision) throws RepositoryException {
+		Revision revision = Revision.create(newRevision);
+		Depth depth = Depth.EMPTY;
+		boolean depthIsSticky = false;
+		boolean allowUnversionedObstructions = false;
+		File[] paths = getCommittedPaths().toArray(ArrayUtil.EMPTY_FILE_ARRAY);
+		client.update(paths, revision, depth, allowUnversionedObstructions, depthIsSticky);
+	}
+
 	CommitInfo doCommit(Client commitClient) throws RepositoryException {
 		HashSet<File> commitPathes = new HashSet<File>();
 		commitPathes.addAll(getAffectedPaths());
@@ -122,6 +156,30 @@ public class Commit {
 		client.update(paths, revision, depth, allowUnversionedObstructions, depthIsSticky);
 	}
 
+	/**
+	 * The touched resources and all their parent directories up to their modules, parents before
+	 * their contents.
+	 */
+	private Set<File> getCommittedPaths() {
+		TreeSet<File> result = new TreeSet<>();
+		for (String resource : _touchedResources) {
+			String module = PathParser.getModule(resource);
+			String path = resource;
+			while (true) {
+				result.add(new File(getWorkspaceRoot(), path));
+				if (path.length() <= module.length()) {
+					break;
+				}
+				int separator = path.lastIndexOf('/');
+				if (separator < 0) {
+					break;
+				}
+				path = path.substring(0, separator);
+			}
+		}
+		return result;
+	}
+
 	private List<File> getTouchedModules() {
 		List<File> files = new ArrayList<File>();
 		for (String resource : _touchedResources) {
@@ -17,6 +17,11 @@
  */
 package com.subcherry.commit;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 import com.subcherry.repository.command.Client;
 
 /**
@@ -27,8 +32,35 @@ public class CommitContext {
 	public final Client client;
 	public final Client commitClient;
 
+	/**
+	 * The revision, each module of the workspace is known to be completely updated to.
+	 */
+	private final Map<File, Long> _moduleRevisions = new HashMap<>();
+
 	public CommitContext(Client client, Client commitClient) {
 		this.client = client;
 		this.commitClient = commitClient;
 	}
+
+	/**
+	 * Whether all given modules are known to reflect the given revision of the repository.
+	 */
+	public boolean isUpToDate(Collection<File> modules, long revision) {
+		for (File module : modules) {
+			Long moduleRevision = _moduleRevisions.get(module);
+			if (moduleRevision == null || moduleRevision.longValue() != revision) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records that the given modules reflect the given revision of the repository.
+	 */
+	public void setUpToDate(Collection<File> modules, long revision) {
+		for (File module : modules) {
+			_moduleRevisions.put(module, revision);
+		}
+	}
 }
@@ -41,7 +41,7 @@ public class CommitHandler extends Handler<CommitConfig> {
 	}
 
 	public Commit parseCommit(LogEntry logEntry) {
-		TicketMessage ticketMessage = new TicketMessage(logEntry.getRevision(), logEntry.getMessage(), _messageRewriter);
+		TicketMessage ticketMessage = new TicketMessage(logEntry, _messageRewriter);
 		return new Commit(_config, logEntry, ticketMessage);
 	}
 
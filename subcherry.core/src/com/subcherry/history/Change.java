@@ -18,11 +18,16 @@
 package com.subcherry.history;
 
 import java.util.Date;
+import java.util.regex.Pattern;
 
-import com.subcherry.utils.Utils;
+import com.subcherry.utils.CommitMessage;
 
 public class Change {
 
+	private static final Pattern LEADING_REVISION = Pattern.compile("^\\[\\d+\\]:");
+
+	private static final Pattern NON_WORD_CHARS = Pattern.compile("[^A-Za-z0-9]+");
+
 	private final Long _revision;
 
 	private final String _author;
@@ -31,11 +36,41 @@ public class Change {
 
 	private final String _message;
 
-	Change(Long revision, String author, Date date, String message) {
+	/**
+	 * @see #getKey()
+	 */
+	private final String _key;
+
+	/**
+	 * @see #getTicketId()
+	 */
+	private final String _ticketId;
+
+	Change(Long revision, String author, Date date, String message, CommitMessage parsedMessage) {
 		_revision = revision;
 		_author = author;
 		_date = date;
 		_message = message;
+
+		// Compute the key only once, it is requested many times during conflict analysis.
+		_ticketId = parsedMessage.getTicketId();
+		String detailMessage = parsedMessage.getDetailMessage();
+		if (detailMessage == null) {
+			detailMessage = message == null ? "" : message;
+		}
+		_key = normalize(detailMessage);
+	}
+
+	/**
+	 * Creates a {@link Change} with already computed {@link #getTicketId()} and {@link #getKey()}.
+	 */
+	Change(Long revision, String author, Date date, String message, String ticketId, String key) {
+		_revision = revision;
+		_author = author;
+		_date = date;
+		_message = message;
+		_ticketId = ticketId;
+		_key = key;
 	}
 
 	public Long getRevision() {
@@ -54,20 +89,30 @@ public class Change {
 		return _message;
 	}
 
+	/**
+	 * The normalized detail message of this {@link Change}.
+	 * 
+	 * <p>
+	 * Changes with the same key are considered to be ports of each other.
+	 * </p>
+	 */
 	public String getKey() {
-		String message = getMessage();
-		String detailMessage = Utils.getDetailMessage(message);
-		if (detailMessage == null) {
-			return normalize(message);
-		} else {
-			return normalize(detailMessage);
-		}
+		return _key;
+	}
+
+	/**
+	 * The ticket ID from {@link #getMessage()}, or <code>null</code>, if the message does not
+	 * reference a ticket.
+	 * 
+	 * @see CommitMessage#getTicketId()
+	 */
+	public String getTicketId() {
+		return _ticketId;
 	}
 
 	private static String normalize(String detailMessage) {
-		return detailMessage
-			.replaceAll("^\\[\\d+\\]:", "")
-			.replaceAll("[^A-Za-z0-9]+", " ")
+		String message = LEADING_REVISION.matcher(detailMessage).replaceAll("");
+		return NON_WORD_CHARS.matcher(message).replaceAll(" ")
 			.trim()
 			.toLowerCase()
 			.replace(' ', '_');
@@ -0,0 +1,143 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.history;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable view of the {@link Change}s of a {@link Node} including the changes inherited from
+ * its copy ancestry.
+ *
+ * <p>
+ * A {@link ChangeList} consists of the (shared) {@link ChangeList} of the copied node and a
+ * prefix of the node's own changes. Since a {@link Node} only appends changes, the view does not
+ * change, if further changes are added to the node later on.
+ * </p>
+ */
+final class ChangeList extends AbstractList<Change> {
+
+	/**
+	 * The inherited changes, <code>null</code> if there are none.
+	 */
+	private final ChangeList _inherited;
+
+	private final List<Change> _own;
+
+	private final int _ownCount;
+
+	private final int _size;
+
+	/**
+	 * Creates a {@link ChangeList}.
+	 *
+	 * @param inherited
+	 *        The inherited changes, <code>null</code> if there are none.
+	 * @param own
+	 *        The node's own changes, only appended to later on.
+	 * @param ownCount
+	 *        The number of own changes in this view.
+	 */
+	public ChangeList(ChangeList inherited, List<Change> own, int ownCount) {
+		_inherited = inherited;
+		_own = own;
+		_ownCount = ownCount;
+		_size = (inherited == null ? 0 : inherited.size()) + ownCount;
+	}
+
+	/**
+	 * The number of the node's own changes in this view.
+	 */
+	int getOwnCount() {
+		return _ownCount;
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	@Override
+	public Change get(int index) {
+		if (index < 0 || index >= _size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + _size);
+		}
+		ChangeList list = this;
+		while (true) {
+			int inheritedSize = list._size - list._ownCount;
+			if (index >= inheritedSize) {
+				return list._own.get(index - inheritedSize);
+			}
+			list = list._inherited;
+		}
+	}
+
+	@Override
+	public Iterator<Change> iterator() {
+		return new Iterator<Change>() {
+			/**
+			 * The lists of the copy ancestry, the oldest first.
+			 */
+			private final ChangeList[] _segments = segments();
+
+			private int _segment;
+
+			private int _index;
+
+			@Override
+			public boolean hasNext() {
+				while (_segment < _segments.length) {
+					if (_index < _segments[_segment]._ownCount) {
+						return true;
+					}
+					_segment++;
+					_index = 0;
+				}
+				return false;
+			}
+
+			@Override
+			public Change next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return _segments[_segment]._own.get(_index++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	ChangeList[] segments() {
+		int depth = 0;
+		for (ChangeList list = this; list != null; list = list._inherited) {
+			depth++;
+		}
+		ChangeList[] result = new ChangeList[depth];
+		for (ChangeList list = this; list != null; list = list._inherited) {
+			result[--depth] = list;
+		}
+		return result;
+	}
+
+}
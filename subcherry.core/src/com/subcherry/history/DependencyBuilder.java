@@ -25,10 +25,17 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
+import com.subcherry.repository.core.ChangeType;
 import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
 import com.subcherry.history.Node.Kind;
-import com.subcherry.utils.Utils;
+import com.subcherry.utils.CommitMessage;
 
 public class DependencyBuilder {
 
@@ -83,6 +90,11 @@ public class DependencyBuilder {
 
 	}
 
+	/**
+	 * Number of source nodes below which the analysis is not split further.
+	 */
+	static final int SEQUENTIAL_THRESHOLD = 64;
+
 	private final String _sourceBranch;
 
 	private final String _targetBranch;
@@ -91,6 +103,13 @@ public class DependencyBuilder {
 
 	private Set<String> _modules;
 
+	private int _parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @see #collectTargetTicketIds(List)
+	 */
+	private Set<String> _targetTicketIds;
+
 	public DependencyBuilder(String sourceBranch, String targetBranch, Set<String> modules) {
 		_sourceBranch = sourceBranch;
 		_targetBranch = targetBranch;
@@ -101,16 +120,21 @@ public class DependencyBuilder {
 		history.expandContents(_sourceBranch);
 		history.expandContents(_targetBranch);
 
-		Set<Change> targetChanges = new HashSet<>();
-		for (Node targetNode : fileNodes(history.getNodes(_targetBranch))) {
-			targetChanges.addAll(targetNode.getChanges());
-		}
+		Set<String> alreadyPortedTicketIds;
+		if (_targetTicketIds != null) {
+			alreadyPortedTicketIds = new HashSet<>(_targetTicketIds);
+		} else {
+			Set<Change> targetChanges = new HashSet<>();
+			for (Node targetNode : fileNodes(history.getNodes(_targetBranch))) {
+				targetChanges.addAll(targetNode.getChanges());
+			}
 
-		Set<String> alreadyPortedTicketIds = new HashSet<>();
-		for (Change change : targetChanges) {
-			String id = Utils.getTicketId(change.getMessage());
-			if (id != null) {
-				alreadyPortedTicketIds.add(id);
+			alreadyPortedTicketIds = new HashSet<>();
+			for (Change change : targetChanges) {
+				String id = change.getTicketId();
+				if (id != null) {
+					alreadyPortedTicketIds.add(id);
+				}
 			}
 		}
 
@@ -119,78 +143,177 @@ public class DependencyBuilder {
 			Change change = history.getChange(logEntry.getRevision());
 			mergedChanges.put(change.getRevision(), change);
 
-			alreadyPortedTicketIds.remove(Utils.getTicketId(change.getMessage()));
+			alreadyPortedTicketIds.remove(change.getTicketId());
 		}
 
-		int sourcePrefixLength = _sourceBranch.length() + 1;
-		for (Node sourceNode : fileNodes(history.getNodes(_sourceBranch))) {
+		List<Node> sourceNodes = fileNodes(sourceNodes(history));
+		int cnt = sourceNodes.size();
+		Node[] targetNodes = new Node[cnt];
+		for (int n = 0; n < cnt; n++) {
+			Node sourceNode = sourceNodes.get(n);
 			String path = sourceNode.getPath();
 
-			if (_modules != null) {
-				int moduleEndIndex = path.indexOf('/', sourcePrefixLength);
-				if (moduleEndIndex < 0) {
-					moduleEndIndex = path.length();
-				}
-				String module = path.substring(sourcePrefixLength, moduleEndIndex);
-				if (!_modules.contains(module)) {
-					continue;
-				}
-			}
-
-			String targetPath = _targetBranch + path.substring(_sourceBranch.length());
+			// Note: Looking up a node may modify the history. All lookups must be done before
+			// nodes are analyzed concurrently.
+			String targetPath = targetPath(path);
 			Node targetNode = history.getCurrentNode(sourceNode.getKind(), targetPath);
+			targetNodes[n] = targetNode;
 
-			Map<String, Change> targetNodeChanges;
-			if (targetNode == null) {
-				// Does not exist in target branch, all change sets that are not ported are in
-				// conflict.
-				targetNodeChanges = Collections.emptyMap();
-			} else {
-				targetNodeChanges = new HashMap<>();
-				for (Change change : targetNode.getChanges()) {
-					String key = change.getKey();
-					if (key != null) {
-						targetNodeChanges.put(key, change);
-					}
-				}
+			// Initialize lazily computed change views before sharing nodes between threads.
+			sourceNode.getChanges();
+			if (targetNode != null) {
+				targetNode.getChanges();
 			}
+		}
 
-			List<Change> merges = new ArrayList<>();
-			List<Change> dependencies = new ArrayList<>();
-			for (Change sourceChange : sourceNode.getChanges()) {
-				if (mergedChanges.keySet().contains(sourceChange.getRevision())) {
-					merges.add(sourceChange);
-					if (!dependencies.isEmpty()) {
-						Dependency dependency = mkDependency(sourceChange);
-						dependency.add(copy(dependencies), sourceNode);
-					}
-				} else {
-					// The change is not being merged.
-					if (!targetNodeChanges.containsKey(sourceChange.getKey())) {
-						// There is no equivalent change on the target node.
+		Analysis analysis = new Analysis(sourceNodes, targetNodes, mergedChanges, alreadyPortedTicketIds);
+		List<Requirement> requirements;
+		if (_parallelism <= 1 || cnt <= SEQUENTIAL_THRESHOLD) {
+			requirements = analysis.analyze(0, cnt);
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(_parallelism);
+			try {
+				requirements = pool.invoke(new AnalysisTask(analysis, 0, cnt));
+			} finally {
+				pool.shutdown();
+			}
+		}
 
-						// Add the change to the dependency list. If there are following changes
-						// being merged, those are marked as depending on this change.
-						dependencies.add(sourceChange);
+		// Requirements are reported in source node order, independent of the number of threads.
+		for (Requirement requirement : requirements) {
+			mkDependency(requirement._change).add(requirement._requiredChanges, requirement._node);
+		}
+	}
 
-						if (alreadyPortedTicketIds.contains(Utils.getTicketId(sourceChange.getMessage()))) {
-							// The change is expected to occur on the target node, but does not.
-							// This might be the case, because it only affects functionality that
-							// is first introduced with the changes being currently merged.
+	/**
+	 * The path in the target branch corresponding to the given path in the source branch.
+	 */
+	private String targetPath(String sourcePath) {
+		return _targetBranch + sourcePath.substring(_sourceBranch.length());
+	}
 
-							// All changes before the missing change are potentially require
-							// re-applying the missing change.
-							for (Change merged : merges) {
-								mkDependency(merged).add(Collections.singleton(sourceChange), sourceNode);
+	/**
+	 * The paths a pruned {@link History} must contain for analyzing the given merge.
+	 * 
+	 * <p>
+	 * These are the paths changed by the merged log entries and their counterparts in the target
+	 * branch. The result must be completed with {@link RelevantPaths#addCopyAncestry(List)}.
+	 * </p>
+	 * 
+	 * @see #collectTargetTicketIds(List)
+	 */
+	public RelevantPaths getRelevantPaths(List<LogEntry> mergeLog) {
+		RelevantPaths result = new RelevantPaths();
+		for (LogEntry logEntry : mergeLog) {
+			for (String path : logEntry.getChangedPaths().keySet()) {
+				result.add(path);
+				if (isBelow(_sourceBranch, path)) {
+					result.add(targetPath(path));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Determines the tickets with changes in the target branch from the complete log.
+	 * 
+	 * <p>
+	 * By default, these tickets are taken from the target nodes of the analyzed {@link History}.
+	 * If the {@link History} only contains {@link #getRelevantPaths(List) relevant paths}, they
+	 * must be computed from the log before. A file change belongs to the target branch, if its path
+	 * is in the target branch, or in a path copied to the target branch and the change was made
+	 * before the copy.
+	 * </p>
+	 * 
+	 * @param log
+	 *        The log the {@link History} is built from in ascending revision order.
+	 */
+	public void collectTargetTicketIds(List<LogEntry> log) {
+		Set<String> result = new HashSet<>();
+
+		// Paths with changes inherited by the target branch mapped to the last revision inherited.
+		Map<String, Long> sources = new HashMap<>();
+		sources.put(_targetBranch, Long.MAX_VALUE);
+		Map<String, Long> copies = new HashMap<>();
+		for (int n = log.size() - 1; n >= 0; n--) {
+			LogEntry logEntry = log.get(n);
+			long revision = logEntry.getRevision();
+			for (LogEntryPath change : logEntry.getChangedPaths().values()) {
+				String path = change.getPath();
+				String copyPath = change.getCopyPath();
+				for (Map.Entry<String, Long> source : sources.entrySet()) {
+					if (revision > source.getValue().longValue()) {
+						continue;
+					}
+					String sourcePath = source.getKey();
+					if (isBelow(sourcePath, path)) {
+						if (isFileChange(change)) {
+							String ticketId = CommitMessage.of(logEntry).getTicketId();
+							if (ticketId != null) {
+								result.add(ticketId);
 							}
 						}
+						if (copyPath != null) {
+							addSource(copies, copyPath, change.getCopyRevision());
+						}
+					} else if (copyPath != null && isBelow(path, sourcePath)) {
+						addSource(copies, copyPath + sourcePath.substring(path.length()), change.getCopyRevision());
 					}
 				}
 			}
+			for (Map.Entry<String, Long> copy : copies.entrySet()) {
+				addSource(sources, copy.getKey(), copy.getValue().longValue());
+			}
+			copies.clear();
+		}
+		_targetTicketIds = result;
+	}
+
+	private static void addSource(Map<String, Long> sources, String path, long revision) {
+		Long before = sources.get(path);
+		if (before == null || before.longValue() < revision) {
+			sources.put(path, revision);
 		}
 	}
 
-	private Iterable<Node> fileNodes(Collection<Node> nodes) {
+	/**
+	 * Whether the given change is recorded on file nodes, see {@link #fileNodes(Collection)}.
+	 */
+	private static boolean isFileChange(LogEntryPath change) {
+		if (change.getKind() == NodeKind.FILE) {
+			return true;
+		}
+		// Deleting a directory deletes all files in it.
+		return change.getKind() == NodeKind.DIR && change.getType() != ChangeType.ADDED
+			&& change.getType() != ChangeType.MODIFIED;
+	}
+
+	/**
+	 * Whether the given path is the given parent path or a path below.
+	 */
+	private static boolean isBelow(String parent, String path) {
+		return path.startsWith(parent)
+			&& (path.length() == parent.length() || path.charAt(parent.length()) == '/');
+	}
+
+	/**
+	 * All nodes in the source branch, restricted to the selected modules.
+	 */
+	private Collection<Node> sourceNodes(History history) {
+		if (_modules == null) {
+			return history.getNodes(_sourceBranch);
+		}
+
+		// Only enumerate the sub-trees of the selected modules.
+		List<Node> result = new ArrayList<>();
+		for (String module : _modules) {
+			result.addAll(history.getNodes(_sourceBranch + '/' + module));
+		}
+		return result;
+	}
+
+	private List<Node> fileNodes(Collection<Node> nodes) {
 		ArrayList<Node> result = new ArrayList<>();
 		for (Node node : nodes) {
 			if (node.getKind() != Kind.FILE) {
@@ -205,6 +328,20 @@ public class DependencyBuilder {
 		return result;
 	}
 
+	/**
+	 * The maximum number of threads analyzing source nodes concurrently.
+	 */
+	public int getParallelism() {
+		return _parallelism;
+	}
+
+	/**
+	 * @see #getParallelism()
+	 */
+	public void setParallelism(int parallelism) {
+		_parallelism = parallelism;
+	}
+
 	public Map<Change, Dependency> getDependencies() {
 		return _dependencies;
 	}
@@ -222,4 +359,168 @@ public class DependencyBuilder {
 		return result;
 	}
 
+	/**
+	 * Requirement of a merged {@link Change} on a source {@link Node}, see
+	 * {@link Dependency#add(Collection, Node)}.
+	 */
+	private static final class Requirement {
+
+		final Change _change;
+
+		final Collection<Change> _requiredChanges;
+
+		final Node _node;
+
+		public Requirement(Change change, Collection<Change> requiredChanges, Node node) {
+			_change = change;
+			_requiredChanges = requiredChanges;
+			_node = node;
+		}
+
+	}
+
+	/**
+	 * Conflict analysis of single source nodes.
+	 * 
+	 * <p>
+	 * Only reads the prepared {@link History} state and can be used by multiple threads
+	 * concurrently.
+	 * </p>
+	 */
+	private static final class Analysis {
+
+		private final List<Node> _sourceNodes;
+
+		private final Node[] _targetNodes;
+
+		private final Map<Long, Change> _mergedChanges;
+
+		private final Set<String> _alreadyPortedTicketIds;
+
+		/**
+		 * Cache of the {@link Change#getKey() keys} of the changes of target nodes.
+		 */
+		private final ConcurrentMap<Node, Set<String>> _targetNodeChanges = new ConcurrentHashMap<>();
+
+		public Analysis(List<Node> sourceNodes, Node[] targetNodes, Map<Long, Change> mergedChanges,
+				Set<String> alreadyPortedTicketIds) {
+			_sourceNodes = sourceNodes;
+			_targetNodes = targetNodes;
+			_mergedChanges = mergedChanges;
+			_alreadyPortedTicketIds = alreadyPortedTicketIds;
+		}
+
+		/**
+		 * Analyzes the source nodes with indices in the given range.
+		 * 
+		 * @return The requirements in source node order.
+		 */
+		public List<Requirement> analyze(int start, int stop) {
+			List<Requirement> result = new ArrayList<>();
+			for (int n = start; n < stop; n++) {
+				analyze(result, _sourceNodes.get(n), _targetNodes[n]);
+			}
+			return result;
+		}
+
+		private void analyze(List<Requirement> result, Node sourceNode, Node targetNode) {
+			List<Change> merges = new ArrayList<>();
+			List<Change> dependencies = new ArrayList<>();
+			for (Change sourceChange : sourceNode.getChanges()) {
+				if (_mergedChanges.containsKey(sourceChange.getRevision())) {
+					merges.add(sourceChange);
+					if (!dependencies.isEmpty()) {
+						result.add(new Requirement(sourceChange, copy(dependencies), sourceNode));
+					}
+				} else {
+					// The change is not being merged.
+					if (!isPorted(sourceChange, targetNode)) {
+						// There is no equivalent change on the target node.
+
+						// Add the change to the dependency list. If there are following changes
+						// being merged, those are marked as depending on this change.
+						dependencies.add(sourceChange);
+
+						if (_alreadyPortedTicketIds.contains(sourceChange.getTicketId())) {
+							// The change is expected to occur on the target node, but does not.
+							// This might be the case, because it only affects functionality that
+							// is first introduced with the changes being currently merged.
+
+							// All changes before the missing change are potentially require
+							// re-applying the missing change.
+							for (Change merged : merges) {
+								result.add(new Requirement(merged, Collections.singleton(sourceChange), sourceNode));
+							}
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Whether there is a {@link Change} with the same {@link Change#getKey() key} as the given
+		 * change on the given target node.
+		 * 
+		 * @param change
+		 *        The source change.
+		 * @param targetNode
+		 *        The node in the target branch, <code>null</code> if it does not exist. In that
+		 *        case, no change is ported.
+		 */
+		private boolean isPorted(Change change, Node targetNode) {
+			if (targetNode == null) {
+				return false;
+			}
+			Set<String> nodeKeys = _targetNodeChanges.get(targetNode);
+			if (nodeKeys == null) {
+				nodeKeys = new HashSet<>();
+				for (Change targetChange : targetNode.getChanges()) {
+					nodeKeys.add(targetChange.getKey());
+				}
+				Set<String> clash = _targetNodeChanges.putIfAbsent(targetNode, nodeKeys);
+				if (clash != null) {
+					nodeKeys = clash;
+				}
+			}
+			return nodeKeys.contains(change.getKey());
+		}
+
+	}
+
+	/**
+	 * {@link RecursiveTask} splitting the {@link Analysis} of a range of source nodes.
+	 */
+	private static final class AnalysisTask extends RecursiveTask<List<Requirement>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Analysis _analysis;
+
+		private final int _start;
+
+		private final int _stop;
+
+		public AnalysisTask(Analysis analysis, int start, int stop) {
+			_analysis = analysis;
+			_start = start;
+			_stop = stop;
+		}
+
+		@Override
+		protected List<Requirement> compute() {
+			if (_stop - _start <= SEQUENTIAL_THRESHOLD) {
+				return _analysis.analyze(_start, _stop);
+			}
+
+			int middle = (_start + _stop) >>> 1;
+			AnalysisTask first = new AnalysisTask(_analysis, _start, middle);
+			first.fork();
+			List<Requirement> second = new AnalysisTask(_analysis, middle, _stop).compute();
+			List<Requirement> result = first.join();
+			result.addAll(second);
+			return result;
+		}
+
+	}
+
 }
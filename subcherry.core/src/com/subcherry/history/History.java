@@ -25,22 +25,28 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeMap;
 
 import com.subcherry.history.Node.Kind;
+import com.subcherry.history.PathTrie.Entry;
+import com.subcherry.utils.CommitMessage;
 
 public class History {
 
 	private Map<Long, Change> _changesByRevision = new HashMap<>();
 
-	private TreeMap<String, Node> _nodesByPath = new TreeMap<>();
+	private PathTrie<Node> _nodesByPath = new PathTrie<>();
 
 	private final long _startRevision;
 
+	/**
+	 * @see #getLastRevision()
+	 */
+	private long _lastRevision;
+
 	public History(long startRevision) {
 		_startRevision = startRevision;
+		_lastRevision = startRevision - 1;
 	}
 
 	/**
@@ -50,11 +56,41 @@ public class History {
 		return _startRevision;
 	}
 
+	/**
+	 * The latest revision of all recorded {@link Change}s, or the revision before
+	 * {@link #getStartRevision()}, if no change was recorded yet.
+	 */
+	public long getLastRevision() {
+		return _lastRevision;
+	}
+
+	/**
+	 * Index of the latest {@link Node}s by path.
+	 */
+	PathTrie<Node> getNodesByPath() {
+		return _nodesByPath;
+	}
+
 	public Change createChange(long revision, String author, Date date, String message) {
-		Change result = new Change(revision, author, date, message);
-		Change clash = _changesByRevision.put(result.getRevision(), result);
-		assert clash == null : "Duplicate revision '" + result.getRevision() + "'.";
-		return result;
+		return createChange(revision, author, date, message, CommitMessage.parse(message));
+	}
+
+	/**
+	 * Creates a {@link Change} with an already parsed message.
+	 */
+	public Change createChange(long revision, String author, Date date, String message,
+			CommitMessage parsedMessage) {
+		return addChange(new Change(revision, author, date, message, parsedMessage));
+	}
+
+	Change addChange(Change change) {
+		long revision = change.getRevision();
+		Change clash = _changesByRevision.put(revision, change);
+		assert clash == null : "Duplicate revision '" + revision + "'.";
+		if (revision > _lastRevision) {
+			_lastRevision = revision;
+		}
+		return change;
 	}
 
 	public void addedNode(Kind kind, String path, Change change, String copyPath, long copyRevision) {
@@ -67,7 +103,7 @@ public class History {
 			markDeleted(existingNode, change);
 		}
 
-		Node node = createCurrentNode(kind, path, change.getRevision());
+		Node node = createCurrentNode(kind, _nodesByPath.mkEntry(path), change.getRevision());
 		node.modify(change);
 
 		if (copyPath != null) {
@@ -91,16 +127,9 @@ public class History {
 
 		if (node.getKind() != Kind.FILE) {
 			// Delete children.
-			String dirPrefix = dirPrefix(node.getPath());
-			for (Entry<String, Node> entry : _nodesByPath.tailMap(dirPrefix, false).entrySet()) {
-				if (!entry.getKey().startsWith(dirPrefix)) {
-					// All children of a directory have a path that is alphabetically larger than
-					// the directory prefix of its parent directory.
-					break;
-				}
-
-				// Delete child.
-				Node child = entry.getValue();
+			List<Node> children = new ArrayList<>();
+			addContentNodes(children, node.getPath(), false);
+			for (Node child : children) {
 				if (child.isAlive()) {
 					child.delete(change);
 				}
@@ -109,18 +138,19 @@ public class History {
 	}
 
 	Node mkNode(Kind kind, String path, long revision) {
-		Node node = lookupNode(kind, path, revision);
+		Entry<Node> entry = _nodesByPath.mkEntry(path);
+		Node node = lookupNode(kind, entry, revision);
 		if (node != null) {
 			return node;
 		}
-		return createPhantomNode(kind, path, revision);
+		return createPhantomNode(kind, entry, revision);
 	}
 
-	private Node createPhantomNode(Kind kind, String path, long revision) throws AssertionError {
+	private Node createPhantomNode(Kind kind, Entry<Node> entry, long revision) throws AssertionError {
 		Node phantomNode;
 		if (_startRevision > Node.FIRST) {
 			// History was not recorded for that revision, create a phantom node.
-			phantomNode = mkHistoricNode(kind, path, revision, revision);
+			phantomNode = mkHistoricNode(kind, entry, revision, revision);
 
 			// Extends the live-time of the phantom node to the maximum possible.
 			if (phantomNode.getLater() == null) {
@@ -134,7 +164,7 @@ public class History {
 				phantomNode.setRevMin(phantomNode.getBefore().getRevMax() + 1);
 			}
 		} else {
-			throw new AssertionError("Copy node not found: " + path + " in " + revision);
+			throw new AssertionError("Copy node not found: " + entry.getPath() + " in " + revision);
 		}
 		return phantomNode;
 	}
@@ -143,8 +173,31 @@ public class History {
 		return lookupNode(kind, path, Node.HEAD);
 	}
 
+	/**
+	 * Looks up the node of the given path without creating trie entries for paths that never
+	 * existed.
+	 */
 	private Node lookupNode(Kind kind, String path, long revision) {
-		Node node = getLatestNode(path);
+		Entry<Node> entry = _nodesByPath.getEntry(path);
+		if (entry == null) {
+			// No node was recorded for the path. It can only exist as implicit child of its parent.
+			int separator = path.lastIndexOf('/');
+			if (separator < 0) {
+				return null;
+			}
+			if (lookupNode(kind, path.substring(0, separator), revision) == null) {
+				return null;
+			}
+			if (revision == Node.SINCE_EVER) {
+				return null;
+			}
+			entry = _nodesByPath.mkEntry(path);
+		}
+		return lookupNode(kind, entry, revision);
+	}
+
+	private Node lookupNode(Kind kind, Entry<Node> entry, long revision) {
+		Node node = entry.getValue();
 		if (node != null) {
 			Node inRevision = backToRevision(node, revision);
 			if (inRevision != null) {
@@ -152,14 +205,13 @@ public class History {
 			}
 		}
 	
-		int dirSeparatorIndex = path.lastIndexOf('/');
-		if (dirSeparatorIndex < 0) {
+		Entry<Node> parentEntry = entry.getParent();
+		if (parentEntry == null) {
 			// No parent path, the original path is not found at all.
 			return null;
 		}
 	
-		String parentPath = path.substring(0, dirSeparatorIndex);
-		Node parentNode = lookupNode(kind, parentPath, revision);
+		Node parentNode = lookupNode(kind, parentEntry, revision);
 		if (parentNode == null) {
 			// No parent path, the original path is not found at all.
 			return null;
@@ -175,13 +227,11 @@ public class History {
 			return null;
 		}
 
-		Node childNode = mkHistoricNode(kind, path, parentNode.getRevMin(), parentNode.getRevMax());
+		Node childNode = mkHistoricNode(kind, entry, parentNode.getRevMin(), parentNode.getRevMax());
 		Node parentCopyNode = parentNode.getCopyNode();
 		if (parentCopyNode != null) {
-			String namePart = path.substring(dirSeparatorIndex);
 			long parentCopyRevision = parentNode.getCopyRevision();
-			String copyPath = parentCopyNode.getPath() + namePart;
-			Node copyNode = lookupNode(kind, copyPath, parentCopyRevision);
+			Node copyNode = lookupNode(kind, parentCopyNode.getPath() + '/' + entry.getName(), parentCopyRevision);
 
 			// Note: With an incomplete history, the copied node may not be found.
 			if (copyNode != null) {
@@ -212,32 +262,32 @@ public class History {
 		return node;
 	}
 
-	private Node createCurrentNode(Kind kind, String path, long revision) {
-		return createNode(kind, path, revision, Node.HEAD);
+	private Node createCurrentNode(Kind kind, Entry<Node> entry, long revision) {
+		return createNode(kind, entry, revision, Node.HEAD);
 	}
 
-	private Node mkHistoricNode(Kind kind, String path, long revMin, long revMax) {
+	private Node mkHistoricNode(Kind kind, Entry<Node> entry, long revMin, long revMax) {
 		if (revMin == Node.SINCE_EVER) {
-			Node phantomNode = lookupNode(kind, path, Node.SINCE_EVER);
+			Node phantomNode = lookupNode(kind, entry, Node.SINCE_EVER);
 			if (phantomNode != null) {
 				phantomNode.setRevMax(revMax);
 				assert phantomNode.getLater() == null || assertBefore(phantomNode, phantomNode.getLater());
 				return phantomNode;
 			}
 		}
-		return createNode(kind, path, revMin, revMax);
+		return createNode(kind, entry, revMin, revMax);
 	}
 
-	private Node createNode(Kind kind, String path, long revMin, long revMax) {
-		Node node = new Node(kind, path, revMin, revMax);
-		enterNode(node);
+	private Node createNode(Kind kind, Entry<Node> entry, long revMin, long revMax) {
+		Node node = new Node(kind, entry.getPath(), revMin, revMax);
+		enterNode(entry, node);
 		return node;
 	}
 
-	private void enterNode(Node node) throws AssertionError {
-		Node latest = _nodesByPath.get(node.getPath());
+	private void enterNode(Entry<Node> entry, Node node) throws AssertionError {
+		Node latest = entry.getValue();
 		if (latest == null) {
-			_nodesByPath.put(node.getPath(), node);
+			entry.setValue(node);
 			return;
 		}
 
@@ -264,7 +314,7 @@ public class History {
 		// Insert after latest.
 		node.setBefore(latest);
 		if (later == null) {
-			_nodesByPath.put(node.getPath(), node);
+			entry.setValue(node);
 		} else {
 			later.setBefore(node);
 		}
@@ -334,40 +384,43 @@ public class History {
 			result.add(node);
 		}
 
-		addContentNodes(result, path);
+		addContentNodes(result, path, true);
 
 		return result;
 	}
 
-	private void addContentNodes(Collection<Node> result, String path) {
-		String dirPrefix = dirPrefix(path);
-		for (Entry<String, Node> entry : _nodesByPath.tailMap(dirPrefix, false).entrySet()) {
-			if (!entry.getKey().startsWith(dirPrefix)) {
-				break;
-			}
-
-			result.add(entry.getValue());
-		}
-	}
-
 	/**
-	 * The path prefix, all content nodes of a given path start with.
+	 * Adds the latest nodes of all paths below the given path to the given collection.
 	 * 
 	 * <p>
-	 * Note: This is a workaround for not defining directory nodes having a path ending with the '/'
-	 * character.
+	 * Note: A path ending with the '/' character is a workaround for not defining directory nodes
+	 * having such path. Its contents are the contents of the path without the trailing '/'.
 	 * </p>
 	 * 
+	 * @param result
+	 *        The collection to add the content nodes to.
 	 * @param path
 	 *        The parent path.
-	 * @return The path prefix of all content nodes.
+	 * @param sorted
+	 *        Whether nodes must be added in path order, see
+	 *        {@link Entry#collectDescendantsSorted(Collection)}.
 	 */
-	private static String dirPrefix(String path) {
+	private void addContentNodes(Collection<Node> result, String path, boolean sorted) {
 		int pathLength = path.length();
-		if (pathLength > 0 && path.charAt(pathLength - 1) == '/') {
-			return path;
+		boolean dirPath = pathLength > 0 && path.charAt(pathLength - 1) == '/';
+		Entry<Node> entry = _nodesByPath.getEntry(dirPath ? path.substring(0, pathLength - 1) : path);
+		if (entry == null) {
+			return;
+		}
+		Node dirNode = dirPath ? _nodesByPath.get(path) : null;
+		if (sorted) {
+			entry.collectDescendantsSorted(result);
+		} else {
+			entry.collectDescendants(result);
+		}
+		if (dirNode != null) {
+			result.remove(dirNode);
 		}
-		return path + '/';
 	}
 
 	public Change getChange(long revision) {
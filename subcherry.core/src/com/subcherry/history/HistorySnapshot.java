@@ -0,0 +1,273 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.subcherry.history.Node.Kind;
+import com.subcherry.history.PathTrie.Entry;
+import com.subcherry.utils.BinaryIO;
+
+/**
+ * Binary serialization of a {@link History}.
+ *
+ * <p>
+ * A snapshot contains all {@link Change}s, all {@link Node}s with their predecessor chains and copy
+ * links, and the {@link History#getLastRevision() last recorded revision}. A {@link History} loaded
+ * from a snapshot can be continued with a {@link HistroyBuilder} by feeding only log entries newer
+ * than {@link History#getLastRevision()}.
+ * </p>
+ *
+ * <p>
+ * A snapshot is tagged with a key describing the log it was built from (repository, paths, start
+ * revision). A snapshot with a different key is ignored when loading.
+ * </p>
+ */
+public class HistorySnapshot {
+
+	private static final int MAGIC = 0x53434853;
+
+	private static final int VERSION = 1;
+
+	private static final String TMP_SUFFIX = ".tmp";
+
+	private static final Kind[] KINDS = Kind.values();
+
+	/**
+	 * Loads a {@link History} from the given snapshot file.
+	 *
+	 * @param file
+	 *        The snapshot file.
+	 * @param key
+	 *        The key the snapshot must have been stored with.
+	 * @return The loaded {@link History}, or <code>null</code>, if there is no snapshot file, or it
+	 *         is not a snapshot written with the given key and the current format version.
+	 * @throws IOException
+	 *         If the file cannot be read or is corrupt.
+	 */
+	public static History load(File file, String key) throws IOException {
+		if (!file.exists()) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			return read(in, key);
+		} catch (EOFException | IndexOutOfBoundsException ex) {
+			throw new IOException("Truncated history snapshot: " + file.getAbsolutePath(), ex);
+		}
+	}
+
+	/**
+	 * Stores the given {@link History} in the given file.
+	 *
+	 * <p>
+	 * The file is replaced atomically, a concurrent or interrupted write never leaves a partial
+	 * snapshot.
+	 * </p>
+	 */
+	public static void save(File file, String key, History history) throws IOException {
+		File tmp = new File(file.getPath() + TMP_SUFFIX);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			write(out, key, history);
+		} catch (IOException | RuntimeException ex) {
+			tmp.delete();
+			throw ex;
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Writes the given {@link History} to the given stream.
+	 */
+	public static void write(DataOutputStream out, String key, History history) throws IOException {
+		BinaryIO.writeHeader(out, MAGIC, VERSION, key);
+		out.writeLong(history.getStartRevision());
+		out.writeLong(history.getLastRevision());
+
+		// Changes in ascending revision order, nodes reference them by revision.
+		Map<Long, Change> changes = new TreeMap<>(history.getChangesByRevision());
+		out.writeInt(changes.size());
+		long lastRevision = 0;
+		Map<String, Integer> authors = new HashMap<>();
+		for (Change change : changes.values()) {
+			long revision = change.getRevision();
+			BinaryIO.writeVarLong(out, revision - lastRevision);
+			lastRevision = revision;
+			writeShared(out, authors, change.getAuthor());
+			BinaryIO.writeDate(out, change.getDate());
+			BinaryIO.writeString(out, change.getMessage());
+			// Stored to avoid re-parsing all messages when loading.
+			BinaryIO.writeString(out, change.getTicketId());
+			BinaryIO.writeString(out, change.getKey());
+		}
+
+		// Predecessor chains of all paths, oldest node first. Nodes are numbered in this order.
+		List<Node> latestNodes = new ArrayList<>();
+		history.getNodesByPath().collectValues(latestNodes);
+		Map<Node, Integer> ids = new IdentityHashMap<>();
+		List<Node> copies = new ArrayList<>();
+		out.writeInt(latestNodes.size());
+		for (Node latest : latestNodes) {
+			List<Node> chain = new ArrayList<>();
+			for (Node node = latest; node != null; node = node.getBefore()) {
+				chain.add(node);
+			}
+			BinaryIO.writeString(out, latest.getPath());
+			BinaryIO.writeVarLong(out, chain.size());
+			for (int n = chain.size() - 1; n >= 0; n--) {
+				Node node = chain.get(n);
+				ids.put(node, ids.size());
+				if (node.getCopyNode() != null) {
+					copies.add(node);
+				}
+				out.writeByte(node.getKind().ordinal());
+				out.writeLong(node.getRevMin());
+				out.writeLong(node.getRevMax());
+				List<Change> ownChanges = node.getOwnChanges();
+				BinaryIO.writeVarLong(out, ownChanges.size());
+				long lastChange = 0;
+				for (Change change : ownChanges) {
+					long revision = change.getRevision();
+					BinaryIO.writeVarLong(out, revision - lastChange);
+					lastChange = revision;
+				}
+			}
+		}
+
+		// Copy links may point to any node, therefore written after all nodes are numbered.
+		out.writeInt(copies.size());
+		for (Node node : copies) {
+			BinaryIO.writeVarLong(out, ids.get(node));
+			BinaryIO.writeVarLong(out, ids.get(node.getCopyNode()));
+			out.writeLong(node.getCopyRevision());
+		}
+	}
+
+	/**
+	 * Reads a {@link History} written by {@link #write(DataOutputStream, String, History)}.
+	 *
+	 * @return The {@link History} read, or <code>null</code>, if the input does not contain a
+	 *         snapshot with the given key and the current format version.
+	 * @throws EOFException
+	 *         If the snapshot is truncated.
+	 */
+	public static History read(DataInput in, String key) throws IOException {
+		if (!BinaryIO.readHeader(in, MAGIC, VERSION, key)) {
+			return null;
+		}
+		long startRevision = in.readLong();
+		long lastRevision = in.readLong();
+		History history = new History(startRevision);
+
+		int changeCount = in.readInt();
+		long revision = 0;
+		List<String> authors = new ArrayList<>();
+		for (int n = 0; n < changeCount; n++) {
+			revision += BinaryIO.readVarLong(in);
+			String author = readShared(in, authors);
+			Date date = BinaryIO.readDate(in);
+			String message = BinaryIO.readString(in);
+			String ticketId = BinaryIO.readString(in);
+			String changeKey = BinaryIO.readString(in);
+			history.addChange(new Change(revision, author, date, message, ticketId, changeKey));
+		}
+		if (history.getLastRevision() != lastRevision) {
+			throw new IOException("Corrupt history snapshot, last revision " + history.getLastRevision()
+				+ " does not match " + lastRevision + ".");
+		}
+
+		PathTrie<Node> nodesByPath = history.getNodesByPath();
+		List<Node> nodes = new ArrayList<>();
+		int pathCount = in.readInt();
+		for (int n = 0; n < pathCount; n++) {
+			String path = BinaryIO.readString(in);
+			Entry<Node> entry = nodesByPath.mkEntry(path);
+			int chainLength = (int) BinaryIO.readVarLong(in);
+			Node before = null;
+			for (int k = 0; k < chainLength; k++) {
+				Kind kind = KINDS[in.readByte()];
+				long revMin = in.readLong();
+				long revMax = in.readLong();
+				Node node = new Node(kind, path, revMin, revMax);
+				int ownChangeCount = (int) BinaryIO.readVarLong(in);
+				long changeRevision = 0;
+				for (int c = 0; c < ownChangeCount; c++) {
+					changeRevision += BinaryIO.readVarLong(in);
+					node.addChange(history.getChange(changeRevision));
+				}
+				if (before != null) {
+					node.setBefore(before);
+				}
+				nodes.add(node);
+				before = node;
+			}
+			entry.setValue(before);
+		}
+
+		int copyCount = in.readInt();
+		for (int n = 0; n < copyCount; n++) {
+			Node node = nodes.get((int) BinaryIO.readVarLong(in));
+			Node copyNode = nodes.get((int) BinaryIO.readVarLong(in));
+			node.setCopyFrom(copyNode, in.readLong());
+		}
+		return history;
+	}
+
+	/**
+	 * Writes a string that is expected to occur many times, each value is only written once.
+	 */
+	private static void writeShared(DataOutputStream out, Map<String, Integer> table, String value)
+			throws IOException {
+		Integer id = table.get(value);
+		if (id != null) {
+			BinaryIO.writeVarLong(out, id.intValue() + 1);
+		} else {
+			table.put(value, table.size());
+			BinaryIO.writeVarLong(out, 0);
+			BinaryIO.writeString(out, value);
+		}
+	}
+
+	private static String readShared(DataInput in, List<String> table) throws IOException {
+		int id = (int) BinaryIO.readVarLong(in);
+		if (id > 0) {
+			return table.get(id - 1);
+		}
+		String value = BinaryIO.readString(in);
+		table.add(value);
+		return value;
+	}
+
+}
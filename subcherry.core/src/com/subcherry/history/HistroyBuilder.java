@@ -20,6 +20,8 @@ package com.subcherry.history;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Map;
+import java.util.function.Predicate;
 
 import com.subcherry.history.Node.Kind;
 import com.subcherry.repository.command.log.LogEntryHandler;
@@ -27,6 +29,7 @@ import com.subcherry.repository.core.ChangeType;
 import com.subcherry.repository.core.LogEntry;
 import com.subcherry.repository.core.LogEntryPath;
 import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.utils.CommitMessage;
 
 /**
  * {@link LogEntryHandler} that creates a consolidated history of all nodes that are present in
@@ -51,10 +54,43 @@ public class HistroyBuilder implements LogEntryHandler {
 		}
 	};
 
+	private static final Predicate<String> ALL_PATHS = path -> true;
+
 	private final History _history;
 
+	private final Predicate<String> _pathFilter;
+
 	public HistroyBuilder(long startRevision) {
-		_history = new History(startRevision);
+		this(new History(startRevision));
+	}
+
+	/**
+	 * Creates a {@link HistroyBuilder} continuing the given {@link History}.
+	 * 
+	 * @param history
+	 *        The {@link History} to extend, e.g. loaded from a {@link HistorySnapshot}. Only log
+	 *        entries newer than {@link History#getLastRevision()} must be fed.
+	 */
+	public HistroyBuilder(History history) {
+		this(history, ALL_PATHS);
+	}
+
+	/**
+	 * Creates a {@link HistroyBuilder} that only records changes to some paths.
+	 * 
+	 * <p>
+	 * Nodes are only created for paths accepted by the given filter. Log entries that do not change
+	 * any of those paths are skipped completely.
+	 * </p>
+	 * 
+	 * @param history
+	 *        See {@link #HistroyBuilder(History)}.
+	 * @param pathFilter
+	 *        Decides, whether a changed path is recorded, see {@link RelevantPaths#isRelevant(String)}.
+	 */
+	public HistroyBuilder(History history, Predicate<String> pathFilter) {
+		_history = history;
+		_pathFilter = pathFilter;
 	}
 
 	public History getHistory() {
@@ -63,9 +99,19 @@ public class HistroyBuilder implements LogEntryHandler {
 
 	@Override
 	public void handleLogEntry(LogEntry logEntry) throws RepositoryException {
-		Change change = createChange(logEntry);
+		Map<String, LogEntryPath> changedPaths = logEntry.getChangedPaths();
+		ArrayList<LogEntryPath> paths = new ArrayList<>(changedPaths.size());
+		for (LogEntryPath pathEntry : changedPaths.values()) {
+			if (_pathFilter.test(pathEntry.getPath())) {
+				paths.add(pathEntry);
+			}
+		}
+		if (paths.isEmpty() && !changedPaths.isEmpty()) {
+			// No node would reference the change.
+			return;
+		}
 
-		ArrayList<LogEntryPath> paths = new ArrayList<>(logEntry.getChangedPaths().values());
+		Change change = createChange(logEntry);
 		Collections.sort(paths, PATH_ORDER);
 		for (LogEntryPath pathEntry : paths) {
 			String path = pathEntry.getPath();
@@ -98,7 +144,7 @@ public class HistroyBuilder implements LogEntryHandler {
 	private Change createChange(LogEntry logEntry) {
 		Change change =
 			_history.createChange(logEntry.getRevision(), logEntry.getAuthor(), logEntry.getDate(),
-				logEntry.getMessage());
+				logEntry.getMessage(), CommitMessage.of(logEntry));
 		return change;
 	}
 
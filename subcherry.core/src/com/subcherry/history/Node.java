@@ -18,7 +18,6 @@
 package com.subcherry.history;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 import com.subcherry.repository.core.NodeKind;
@@ -110,6 +109,16 @@ public class Node {
 
 	private long _copyRevision;
 
+	/**
+	 * The changes inherited from {@link #_copyNode}, lazily computed.
+	 */
+	private ChangeList _inheritedChanges;
+
+	/**
+	 * Cache for {@link #getChanges()}, invalidated by adding a change.
+	 */
+	private ChangeList _allChanges;
+
 	public Node(Kind kind, String path, long revMin, long revMax) {
 		_kind = kind;
 		_path = path;
@@ -125,26 +134,63 @@ public class Node {
 		return _path;
 	}
 
+	/**
+	 * All changes of this node including the changes inherited from its copy ancestry.
+	 * 
+	 * @return An unmodifiable view that is not affected by later changes to this node.
+	 */
 	public List<Change> getChanges() {
 		return getChangesUpTo(HEAD);
 	}
 
+	/**
+	 * The changes inherited from the copy ancestry and the own changes of this node up to the
+	 * given revision.
+	 * 
+	 * @return An unmodifiable view that is not affected by later changes to this node.
+	 */
 	public List<Change> getChangesUpTo(long revision) {
-		ArrayList<Change> result = new ArrayList<>();
-		addChangesUpTo(result, revision);
-		return result;
+		int count = ownChangesUpTo(revision);
+		if (count == _changes.size()) {
+			if (_allChanges == null) {
+				_allChanges = new ChangeList(inheritedChanges(), _changes, count);
+			}
+			return _allChanges;
+		}
+		return new ChangeList(inheritedChanges(), _changes, count);
 	}
 
-	private void addChangesUpTo(Collection<Change> result, long revision) {
-		if (_copyNode != null) {
-			_copyNode.addChangesUpTo(result, _copyRevision);
+	private ChangeList inheritedChanges() {
+		if (_copyNode == null) {
+			return null;
 		}
-	
-		for (Change change : _changes) {
-			if (change.getRevision() <= revision) {
-				result.add(change);
+		if (_inheritedChanges == null) {
+			_inheritedChanges = (ChangeList) _copyNode.getChangesUpTo(_copyRevision);
+		}
+		return _inheritedChanges;
+	}
+
+	/**
+	 * The number of own changes with a revision not greater than the given one.
+	 */
+	private int ownChangesUpTo(long revision) {
+		int size = _changes.size();
+		if (size == 0 || _changes.get(size - 1).getRevision() <= revision) {
+			return size;
+		}
+
+		// Changes are added in ascending revision order.
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (_changes.get(middle).getRevision() <= revision) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
 			}
 		}
+		return low;
 	}
 
 	public long getRevMin() {
@@ -196,6 +242,8 @@ public class Node {
 		assert copyNode != null : "Empty copy from.";
 		_copyNode = copyNode;
 		_copyRevision = copyRevision;
+		_inheritedChanges = null;
+		_allChanges = null;
 	}
 
 	public void modify(Change change) {
@@ -209,8 +257,18 @@ public class Node {
 		addChange(change);
 	}
 
-	private void addChange(Change change) {
+	/**
+	 * The changes of this node without the inherited ones, in ascending revision order.
+	 */
+	List<Change> getOwnChanges() {
+		return _changes;
+	}
+
+	void addChange(Change change) {
+		assert _changes.isEmpty() || _changes.get(_changes.size() - 1).getRevision() <= change.getRevision() : "Change "
+			+ change.getRevision() + " added out of order to " + this + ".";
 		_changes.add(change);
+		_allChanges = null;
 	}
 
 	@Override
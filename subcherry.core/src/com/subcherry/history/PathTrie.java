@@ -0,0 +1,354 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.history;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Index of values by path, organized as tree of path segments.
+ *
+ * <p>
+ * A path is split at each <code>/</code> character, empty segments are kept. The path
+ * <code>/trunk/module</code> is represented by the segments <code>""</code>, <code>"trunk"</code>
+ * and <code>"module"</code>. Looking up an {@link Entry} takes a hash lookup per segment without
+ * creating intermediate strings. All values below an {@link Entry} can be enumerated without
+ * comparing paths.
+ * </p>
+ *
+ * @param <V>
+ *        The type of values stored.
+ */
+public class PathTrie<V> {
+
+	static final Comparator<Entry<?>> NAME_ORDER = new Comparator<Entry<?>>() {
+		@Override
+		public int compare(Entry<?> e1, Entry<?> e2) {
+			String p1 = e1._path;
+			String p2 = e2._path;
+			int l1 = p1.length() - e1._nameStart;
+			int l2 = p2.length() - e2._nameStart;
+			for (int n = 0, stop = Math.min(l1, l2); n < stop; n++) {
+				int diff = p1.charAt(e1._nameStart + n) - p2.charAt(e2._nameStart + n);
+				if (diff != 0) {
+					return diff;
+				}
+			}
+			return l1 - l2;
+		}
+	};
+
+	private final Entry<V> _root = new Entry<>(null, null, 0, 0);
+
+	/**
+	 * The value stored for the given path, or <code>null</code>.
+	 */
+	public V get(String path) {
+		Entry<V> entry = getEntry(path);
+		return entry == null ? null : entry.getValue();
+	}
+
+	/**
+	 * Stores the given value for the given path.
+	 *
+	 * @return The value stored before, or <code>null</code>.
+	 */
+	public V put(String path, V value) {
+		Entry<V> entry = mkEntry(path);
+		V before = entry.getValue();
+		entry.setValue(value);
+		return before;
+	}
+
+	/**
+	 * Adds all values stored in this {@link PathTrie} to the given collection.
+	 *
+	 * <p>
+	 * The order of the values is unspecified.
+	 * </p>
+	 */
+	public void collectValues(Collection<? super V> result) {
+		_root.collectDescendants(result);
+	}
+
+	/**
+	 * The {@link Entry} for the given path, or <code>null</code>, if it was never created.
+	 */
+	public Entry<V> getEntry(String path) {
+		return lookup(path, false);
+	}
+
+	/**
+	 * The {@link Entry} for the given path, created with all its parents, if it does not exist.
+	 */
+	public Entry<V> mkEntry(String path) {
+		return lookup(path, true);
+	}
+
+	private Entry<V> lookup(String path, boolean create) {
+		Entry<V> entry = _root;
+		int length = path.length();
+		int start = 0;
+		while (true) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = length;
+			}
+			Entry<V> child = entry.lookupChild(path, start, end, true, create);
+			if (child == null) {
+				return null;
+			}
+			if (end == length) {
+				return child;
+			}
+			entry = child;
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * A single path in a {@link PathTrie}.
+	 *
+	 * @param <V>
+	 *        The type of values stored.
+	 */
+	public static final class Entry<V> {
+
+		private static final int INITIAL_CAPACITY = 4;
+
+		final Entry<V> _parent;
+
+		/**
+		 * The complete path of this entry, <code>null</code> for the root.
+		 */
+		final String _path;
+
+		/**
+		 * The start index of the last segment in {@link #_path}.
+		 */
+		final int _nameStart;
+
+		/**
+		 * Hash code of the last segment.
+		 */
+		final int _hash;
+
+		private V _value;
+
+		/**
+		 * Open addressing hash table of child entries, <code>null</code> if there are none.
+		 */
+		private Entry<V>[] _children;
+
+		private int _childCount;
+
+		Entry(Entry<V> parent, String path, int nameStart, int hash) {
+			_parent = parent;
+			_path = path;
+			_nameStart = nameStart;
+			_hash = hash;
+		}
+
+		/**
+		 * The path of this {@link Entry}.
+		 */
+		public String getPath() {
+			return _path;
+		}
+
+		/**
+		 * The last segment of {@link #getPath()}.
+		 */
+		public String getName() {
+			return _path.substring(_nameStart);
+		}
+
+		/**
+		 * The {@link Entry} of the parent path, or <code>null</code>, if {@link #getPath()}
+		 * contains no <code>/</code> character.
+		 */
+		public Entry<V> getParent() {
+			return _parent._path == null ? null : _parent;
+		}
+
+		/**
+		 * The value stored for {@link #getPath()}, or <code>null</code>.
+		 */
+		public V getValue() {
+			return _value;
+		}
+
+		/**
+		 * @see #getValue()
+		 */
+		public void setValue(V value) {
+			_value = value;
+		}
+
+		/**
+		 * The child {@link Entry} with the given name, or <code>null</code>.
+		 */
+		public Entry<V> getChild(String name) {
+			return lookupChild(name, 0, name.length(), false, false);
+		}
+
+		/**
+		 * The child {@link Entry} with the given name, created, if it does not exist.
+		 */
+		public Entry<V> mkChild(String name) {
+			return lookupChild(name, 0, name.length(), false, true);
+		}
+
+		/**
+		 * Adds the values of all entries below this one to the given collection.
+		 *
+		 * <p>
+		 * The order of the values is unspecified.
+		 * </p>
+		 */
+		public void collectDescendants(Collection<? super V> result) {
+			if (_children == null) {
+				return;
+			}
+			for (Entry<V> child : _children) {
+				if (child == null) {
+					continue;
+				}
+				if (child._value != null) {
+					result.add(child._value);
+				}
+				child.collectDescendants(result);
+			}
+		}
+
+		/**
+		 * Adds the values of all entries below this one to the given collection in depth first
+		 * order, each value before the values below it, siblings ordered by name.
+		 */
+		public void collectDescendantsSorted(Collection<? super V> result) {
+			for (Entry<V> child : sortedChildren()) {
+				if (child._value != null) {
+					result.add(child._value);
+				}
+				child.collectDescendantsSorted(result);
+			}
+		}
+
+		private List<Entry<V>> sortedChildren() {
+			if (_children == null) {
+				return Collections.emptyList();
+			}
+			List<Entry<V>> result = new ArrayList<>(_childCount);
+			for (Entry<V> child : _children) {
+				if (child != null) {
+					result.add(child);
+				}
+			}
+			Collections.sort(result, NAME_ORDER);
+			return result;
+		}
+
+		/**
+		 * Looks up the child with the name <code>path[start, end)</code>.
+		 *
+		 * @param isPrefix
+		 *        Whether <code>path[0, end)</code> is the path of the child.
+		 */
+		Entry<V> lookupChild(String path, int start, int end, boolean isPrefix, boolean create) {
+			int hash = hash(path, start, end);
+			if (_children != null) {
+				int mask = _children.length - 1;
+				for (int index = spread(hash) & mask;; index = (index + 1) & mask) {
+					Entry<V> child = _children[index];
+					if (child == null) {
+						break;
+					}
+					if (child._hash == hash && child.hasName(path, start, end)) {
+						return child;
+					}
+				}
+			}
+			if (!create) {
+				return null;
+			}
+
+			String childPath;
+			if (isPrefix) {
+				childPath = path.substring(0, end);
+			} else {
+				childPath = _path + '/' + path.substring(start, end);
+			}
+			Entry<V> child = new Entry<>(this, childPath, childPath.length() - (end - start), hash);
+			addChild(child);
+			return child;
+		}
+
+		private boolean hasName(String path, int start, int end) {
+			int length = end - start;
+			return _path.length() - _nameStart == length && _path.regionMatches(_nameStart, path, start, length);
+		}
+
+		@SuppressWarnings("unchecked")
+		private void addChild(Entry<V> child) {
+			if (_children == null) {
+				_children = (Entry<V>[]) new Entry<?>[INITIAL_CAPACITY];
+			} else if (3 * (_childCount + 1) > 2 * _children.length) {
+				Entry<V>[] before = _children;
+				_children = (Entry<V>[]) new Entry<?>[2 * before.length];
+				for (Entry<V> entry : before) {
+					if (entry != null) {
+						insert(entry);
+					}
+				}
+			}
+			insert(child);
+			_childCount++;
+		}
+
+		private void insert(Entry<V> child) {
+			int mask = _children.length - 1;
+			int index = spread(child._hash) & mask;
+			while (_children[index] != null) {
+				index = (index + 1) & mask;
+			}
+			_children[index] = child;
+		}
+
+		private static int hash(String path, int start, int end) {
+			int result = 0;
+			for (int n = start; n < end; n++) {
+				result = 31 * result + path.charAt(n);
+			}
+			return result;
+		}
+
+		private static int spread(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+
+		@Override
+		public String toString() {
+			return _path;
+		}
+
+	}
+
+}
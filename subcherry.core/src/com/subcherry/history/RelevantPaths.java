@@ -0,0 +1,108 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.history;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.subcherry.history.PathTrie.Entry;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+
+/**
+ * Set of paths a pruned {@link History} is built for.
+ *
+ * <p>
+ * A path is relevant, if it was {@link #add(String) added} explicitly, or if it is a parent
+ * directory of such path (to keep copies and deletes of whole directories). With
+ * {@link #addCopyAncestry(List)}, the paths the relevant paths were copied from are added, so that
+ * changes inherited through copies are kept in the pruned {@link History}.
+ * </p>
+ *
+ * @see HistroyBuilder#HistroyBuilder(History, java.util.function.Predicate)
+ */
+public class RelevantPaths {
+
+	/**
+	 * Explicitly added paths, each stored under its own path.
+	 */
+	private final PathTrie<String> _paths = new PathTrie<>();
+
+	private int _size;
+
+	/**
+	 * Marks the given path relevant.
+	 */
+	public void add(String path) {
+		if (_paths.put(path, path) == null) {
+			_size++;
+		}
+	}
+
+	/**
+	 * The number of {@link #add(String) added} paths.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Whether changes to the given path must be recorded.
+	 */
+	public boolean isRelevant(String path) {
+		return _paths.getEntry(path) != null;
+	}
+
+	/**
+	 * Adds the sources of all copies of relevant paths in the given log.
+	 *
+	 * <p>
+	 * The log is scanned from the latest to the oldest entry, so that copies of copies are
+	 * followed.
+	 * </p>
+	 *
+	 * @param log
+	 *        The log the pruned {@link History} is built from in ascending revision order.
+	 */
+	public void addCopyAncestry(List<LogEntry> log) {
+		List<String> copied = new ArrayList<>();
+		for (int n = log.size() - 1; n >= 0; n--) {
+			for (LogEntryPath change : log.get(n).getChangedPaths().values()) {
+				String copyPath = change.getCopyPath();
+				if (copyPath == null) {
+					continue;
+				}
+				String path = change.getPath();
+				Entry<String> entry = _paths.getEntry(path);
+				if (entry == null) {
+					continue;
+				}
+
+				copied.clear();
+				if (entry.getValue() != null) {
+					copied.add(entry.getValue());
+				}
+				entry.collectDescendants(copied);
+				for (String copiedPath : copied) {
+					add(copyPath + copiedPath.substring(path.length()));
+				}
+			}
+		}
+	}
+
+}
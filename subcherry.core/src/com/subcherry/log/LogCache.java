@@ -0,0 +1,603 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.subcherry.LogReader;
+import com.subcherry.repository.command.Client;
+import com.subcherry.repository.command.log.LogEntryHandler;
+import com.subcherry.repository.command.log.LogFilter;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.core.RepositoryURL;
+import com.subcherry.repository.core.Revision;
+import com.subcherry.utils.BinaryIO;
+
+/**
+ * Persistent cache of the complete log of a repository.
+ *
+ * <p>
+ * The cache stores the log of the repository root in a binary data file with a separate revision
+ * index. There is one pair of files per repository UUID. Within one session, only revisions newer
+ * than the latest cached revision (and revisions older than the oldest cached revision, if
+ * requested) are fetched from the repository.
+ * </p>
+ *
+ * <p>
+ * Log requests for arbitrary paths are answered from the cached entries by following the history
+ * of the requested path (including its copy sources) backwards, exactly as the repository does.
+ * The changed paths of the reported entries are filtered with the same {@link LogFilter} a direct
+ * log request uses.
+ * </p>
+ */
+public class LogCache {
+
+	private static final int MAGIC = 0x53434c43;
+
+	private static final int VERSION = 2;
+
+	private static final String DATA_SUFFIX = ".log";
+
+	private static final String INDEX_SUFFIX = ".idx";
+
+	private static final String TMP_SUFFIX = ".tmp";
+
+	/**
+	 * Size of an index entry: revision and offset of the record in the data file.
+	 */
+	private static final int INDEX_ENTRY_SIZE = 16;
+
+	private static final String[] ROOT = { "/" };
+
+	private static final char SLASH = '/';
+
+	private static final LogEntryPath[] NO_CHANGES = {};
+
+	private final LogReader _source;
+
+	private final RepositoryURL _url;
+
+	private final File _dataFile;
+
+	private final File _indexFile;
+
+	/**
+	 * Cached revisions in ascending order.
+	 */
+	private long[] _revisions = new long[1024];
+
+	/**
+	 * Offsets of the records in the data file, parallel to {@link #_revisions}.
+	 */
+	private long[] _offsets = new long[1024];
+
+	private int _size;
+
+	/**
+	 * Offset of the first record in the data file.
+	 */
+	private long _headerEnd;
+
+	/**
+	 * Offset directly after the last complete record in the data file.
+	 */
+	private long _dataEnd;
+
+	/**
+	 * Whether the cache has been updated to the repository HEAD in this session.
+	 */
+	private boolean _upToDate;
+
+	private LogCache(LogReader source, File dataFile, File indexFile) {
+		_source = source;
+		_url = source.getUrl();
+		_dataFile = dataFile;
+		_indexFile = indexFile;
+	}
+
+	/**
+	 * Opens the cache for the repository the given reader reads from.
+	 *
+	 * @param dir
+	 *        The directory to keep cache files in.
+	 * @param source
+	 *        The reader to fetch missing revisions with. Log requests are relative to its URL.
+	 */
+	public static LogCache open(File dir, LogReader source) throws RepositoryException, IOException {
+		String uuid = source.getClient().getRepositoryUUID(source.getUrl());
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Cannot create log cache directory: " + dir.getAbsolutePath());
+		}
+		LogCache result =
+			new LogCache(source, new File(dir, uuid + DATA_SUFFIX), new File(dir, uuid + INDEX_SUFFIX));
+		result.load();
+		return result;
+	}
+
+	/**
+	 * Releases the reader this cache fetches from.
+	 */
+	public void close() {
+		_source.close();
+	}
+
+	/**
+	 * Whether a log request with the given parameters can be answered from the cache.
+	 */
+	public boolean supports(Revision pegRevision, Revision startRevision, Revision endRevision) {
+		if (!isNumberOrHead(startRevision) || !isNumberOrHead(endRevision)) {
+			return false;
+		}
+		switch (pegRevision.kind()) {
+			case HEAD:
+			case UNDEFINED:
+				return true;
+			case COMMIT:
+				// The history is followed from the end of the requested range. This only leads to
+				// the same result, if the node at the peg revision is the same.
+				return number(startRevision) <= pegRevision.getNumber()
+					&& number(endRevision) <= pegRevision.getNumber();
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isNumberOrHead(Revision revision) {
+		return revision.kind() == Revision.Kind.COMMIT || revision.kind() == Revision.Kind.HEAD;
+	}
+
+	private static long number(Revision revision) {
+		if (revision.kind() == Revision.Kind.HEAD) {
+			return Long.MAX_VALUE;
+		}
+		return revision.getNumber();
+	}
+
+	/**
+	 * Reports the log of the given paths from the cache.
+	 *
+	 * @see Client#log(RepositoryURL, String[], Revision, Revision, Revision, boolean, boolean, long,
+	 *      LogEntryHandler)
+	 */
+	public void log(String[] paths, Revision startRevision, Revision endRevision, boolean stopOnCopy,
+			boolean discoverChangedPaths, long limit, LogEntryHandler handler) throws RepositoryException,
+			IOException {
+		long start = number(startRevision);
+		long end = number(endRevision);
+		long lower = Math.min(start, end);
+		long upper = Math.max(start, end);
+		update(lower, upper);
+		if (_size == 0) {
+			return;
+		}
+
+		long last = _revisions[_size - 1];
+		if (upper == Long.MAX_VALUE) {
+			upper = last;
+		}
+		if (lower == Long.MAX_VALUE) {
+			lower = last;
+		}
+
+		LogFilter filter = new LogFilter(_url.toString(), paths);
+		List<LogEntry> entries = trace(node(filter.getPrefix()), lower, upper, stopOnCopy, discoverChangedPaths, filter);
+
+		if (start <= end) {
+			Collections.reverse(entries);
+		}
+		long cnt = 0;
+		for (LogEntry entry : entries) {
+			if (limit > 0 && cnt++ >= limit) {
+				break;
+			}
+			handler.handleLogEntry(entry);
+		}
+	}
+
+	/**
+	 * Follows the history of the given node from the upper revision down to the lower revision.
+	 *
+	 * @return The log entries touching the history of the given node in descending revision order.
+	 */
+	private List<LogEntry> trace(String node, long lower, long upper, boolean stopOnCopy,
+			boolean discoverChangedPaths, LogFilter filter) throws IOException {
+		List<LogEntry> result = new ArrayList<>();
+		try (RandomAccessFile data = new RandomAccessFile(_dataFile, "r")) {
+			int n = floorIndex(upper);
+			while (n >= 0 && _revisions[n] >= lower) {
+				DataInputStream record = readRecord(data, n);
+				long revision = record.readLong();
+				LogEntryPath[] changes = readPaths(record);
+
+				boolean touched = false;
+				LogEntryPath creation = null;
+				for (LogEntryPath change : changes) {
+					String path = change.getPath();
+					if (isSelfOrDescendant(path, node)) {
+						touched = true;
+					}
+					if (isCreation(change) && isSelfOrDescendant(node, path)) {
+						touched = true;
+						if (creation == null || creation.getPath().length() < path.length()) {
+							creation = change;
+						}
+					}
+				}
+
+				if (touched) {
+					result.add(readEntry(record, revision, changes, discoverChangedPaths, filter));
+				}
+
+				if (creation != null) {
+					if (stopOnCopy || creation.getCopyPath() == null) {
+						break;
+					}
+					node = creation.getCopyPath() + node.substring(creation.getPath().length());
+					n = floorIndex(creation.getCopyRevision());
+				} else {
+					n--;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static boolean isCreation(LogEntryPath change) {
+		return change.getType() == ChangeType.ADDED || change.getType() == ChangeType.REPLACED;
+	}
+
+	private static String node(String prefix) {
+		if (prefix.length() > 1 && prefix.charAt(prefix.length() - 1) == SLASH) {
+			return prefix.substring(0, prefix.length() - 1);
+		}
+		return prefix;
+	}
+
+	private static boolean isSelfOrDescendant(String path, String ancestor) {
+		if (ancestor.length() == 1) {
+			// Root.
+			return true;
+		}
+		return path.startsWith(ancestor)
+			&& (path.length() == ancestor.length() || path.charAt(ancestor.length()) == SLASH);
+	}
+
+	/**
+	 * The index of the largest cached revision not greater than the given one, or <code>-1</code>,
+	 * if there is no such revision.
+	 */
+	private int floorIndex(long revision) {
+		int index = Arrays.binarySearch(_revisions, 0, _size, revision);
+		if (index >= 0) {
+			return index;
+		}
+		return -index - 2;
+	}
+
+	private DataInputStream readRecord(RandomAccessFile data, int n) throws IOException {
+		long offset = _offsets[n];
+		long next = n + 1 < _size ? _offsets[n + 1] : _dataEnd;
+		byte[] buffer = new byte[(int) (next - offset)];
+		data.seek(offset);
+		data.readFully(buffer);
+		return new DataInputStream(new ByteArrayInputStream(buffer));
+	}
+
+	private static LogEntryPath[] readPaths(DataInput record) throws IOException {
+		LogEntryPath[] result = BinaryIO.readChanges(record);
+		return result == null ? NO_CHANGES : result;
+	}
+
+	private static LogEntry readEntry(DataInput record, long revision, LogEntryPath[] changes,
+			boolean discoverChangedPaths, LogFilter filter) throws IOException {
+		Map<String, LogEntryPath> changedPaths;
+		if (discoverChangedPaths) {
+			changedPaths = new HashMap<>();
+			for (LogEntryPath change : changes) {
+				if (filter.accept(change.getPath())) {
+					changedPaths.put(change.getPath(), change);
+				}
+			}
+		} else {
+			changedPaths = null;
+		}
+		return BinaryIO.readLogEntry(record, revision, changedPaths);
+	}
+
+	/**
+	 * Makes sure that all revisions in the given range are cached.
+	 */
+	private void update(long lower, long upper) throws RepositoryException, IOException {
+		if (_size == 0) {
+			Revision from = lower == Long.MAX_VALUE ? Revision.HEAD : Revision.create(lower);
+			append(from);
+			return;
+		}
+		if (upper > _revisions[_size - 1] && !_upToDate) {
+			append(Revision.create(_revisions[_size - 1]));
+		}
+		if (lower < _revisions[0]) {
+			prepend(lower);
+		}
+	}
+
+	/**
+	 * Fetches all revisions from the given one up to HEAD and appends those not yet cached.
+	 */
+	private void append(Revision from) throws RepositoryException, IOException {
+		try (RandomAccessFile data = new RandomAccessFile(_dataFile, "rw");
+				RandomAccessFile index = new RandomAccessFile(_indexFile, "rw")) {
+			// Drop incomplete records of an interrupted update.
+			data.setLength(_dataEnd);
+			index.setLength(_size * (long) INDEX_ENTRY_SIZE);
+
+			Appender appender = new Appender(_dataEnd);
+			try (OutputStream dataOut = stream(data, _dataEnd); OutputStream indexOut = stream(index, index.length())) {
+				try {
+					fetch(from, Revision.HEAD, appender, dataOut);
+				} finally {
+					dataOut.flush();
+					appender.writeIndex(new DataOutputStream(indexOut));
+				}
+			}
+		}
+		_upToDate = true;
+	}
+
+	/**
+	 * Fetches all revisions from the given one up to the oldest cached revision and rewrites the
+	 * cache files with the fetched revisions in front of the cached ones.
+	 */
+	private void prepend(long from) throws RepositoryException, IOException {
+		File dataTmp = new File(_dataFile.getPath() + TMP_SUFFIX);
+		File indexTmp = new File(_indexFile.getPath() + TMP_SUFFIX);
+
+		long[] oldRevisions = Arrays.copyOf(_revisions, _size);
+		long[] oldOffsets = Arrays.copyOf(_offsets, _size);
+		long oldHeaderEnd = _headerEnd;
+		long oldDataEnd = _dataEnd;
+
+		try (OutputStream dataOut = new BufferedOutputStream(new FileOutputStream(dataTmp))) {
+			_headerEnd = writeHeader(dataOut);
+			_size = 0;
+			Appender appender = new Appender(_headerEnd);
+			fetch(Revision.create(from), Revision.create(oldRevisions[0] - 1), appender, dataOut);
+
+			long shift = appender.position() - oldHeaderEnd;
+			try (InputStream in = Files.newInputStream(_dataFile.toPath())) {
+				skipFully(in, oldHeaderEnd);
+				copy(in, dataOut, oldDataEnd - oldHeaderEnd);
+			}
+			for (int n = 0; n < oldRevisions.length; n++) {
+				add(oldRevisions[n], oldOffsets[n] + shift);
+			}
+			_dataEnd = oldDataEnd + shift;
+
+			try (DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexTmp)))) {
+				for (int n = 0; n < _size; n++) {
+					indexOut.writeLong(_revisions[n]);
+					indexOut.writeLong(_offsets[n]);
+				}
+			}
+		} catch (RepositoryException | IOException | RuntimeException ex) {
+			dataTmp.delete();
+			indexTmp.delete();
+			load();
+			throw ex;
+		}
+
+		Files.move(dataTmp.toPath(), _dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Files.move(indexTmp.toPath(), _indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void fetch(Revision from, Revision to, final Appender appender, final OutputStream out)
+			throws RepositoryException {
+		LogEntryHandler handler = new LogEntryHandler() {
+			@Override
+			public void handleLogEntry(LogEntry logEntry) throws RepositoryException {
+				if (_size > 0 && logEntry.getRevision() <= _revisions[_size - 1]) {
+					return;
+				}
+				try {
+					appender.append(logEntry, out);
+				} catch (IOException ex) {
+					throw new RepositoryException(ex);
+				}
+			}
+		};
+		_source.setPegRevision(Revision.HEAD);
+		_source.setStartRevision(from);
+		_source.setEndRevision(to);
+		_source.setStopOnCopy(false);
+		_source.setDiscoverChangedPaths(true);
+		_source.setLimit(0);
+		_source.readLog(ROOT, handler);
+	}
+
+	/**
+	 * Writes records to the data file and keeps track of the index entries not yet written.
+	 */
+	private class Appender {
+
+		private final ByteArrayOutputStream _buffer = new ByteArrayOutputStream();
+
+		private final DataOutputStream _record = new DataOutputStream(_buffer);
+
+		private final int _firstNew = _size;
+
+		private long _position;
+
+		public Appender(long position) {
+			_position = position;
+		}
+
+		public long position() {
+			return _position;
+		}
+
+		public void append(LogEntry entry, OutputStream out) throws IOException {
+			_buffer.reset();
+			BinaryIO.writeLogEntry(_record, entry);
+			_record.flush();
+			_buffer.writeTo(out);
+
+			add(entry.getRevision(), _position);
+			_position += _buffer.size();
+			_dataEnd = _position;
+		}
+
+		public void writeIndex(DataOutputStream out) throws IOException {
+			for (int n = _firstNew; n < _size; n++) {
+				out.writeLong(_revisions[n]);
+				out.writeLong(_offsets[n]);
+			}
+			out.flush();
+		}
+	}
+
+	private void add(long revision, long offset) {
+		if (_size == _revisions.length) {
+			_revisions = Arrays.copyOf(_revisions, _size * 2);
+			_offsets = Arrays.copyOf(_offsets, _size * 2);
+		}
+		_revisions[_size] = revision;
+		_offsets[_size] = offset;
+		_size++;
+	}
+
+	private void load() throws IOException {
+		_size = 0;
+		if (!_dataFile.exists() || !_indexFile.exists()) {
+			reset();
+			return;
+		}
+
+		try (RandomAccessFile data = new RandomAccessFile(_dataFile, "r");
+				RandomAccessFile index = new RandomAccessFile(_indexFile, "r")) {
+			if (!BinaryIO.readHeader(data, MAGIC, VERSION, _url.toString())) {
+				reset();
+				return;
+			}
+			_headerEnd = data.getFilePointer();
+			_dataEnd = _headerEnd;
+
+			long dataLength = data.length();
+			byte[] entries = new byte[(int) (index.length() / INDEX_ENTRY_SIZE * INDEX_ENTRY_SIZE)];
+			index.readFully(entries);
+			ByteBuffer buffer = ByteBuffer.wrap(entries);
+			while (buffer.hasRemaining()) {
+				long revision = buffer.getLong();
+				long offset = buffer.getLong();
+				if (offset >= dataLength) {
+					// Data of an interrupted update.
+					break;
+				}
+				add(revision, offset);
+			}
+
+			if (_size > 0) {
+				// Find the end of the last record.
+				_dataEnd = dataLength;
+				DataInputStream last = readRecord(data, _size - 1);
+				BinaryIO.readLogEntry(last);
+				_dataEnd = dataLength - last.available();
+			}
+		} catch (EOFException | IndexOutOfBoundsException ex) {
+			// Corrupt cache, start over.
+			reset();
+		}
+	}
+
+	private void reset() throws IOException {
+		_size = 0;
+		try (OutputStream out = new FileOutputStream(_dataFile)) {
+			_headerEnd = writeHeader(out);
+		}
+		_dataEnd = _headerEnd;
+		new FileOutputStream(_indexFile).close();
+	}
+
+	private long writeHeader(OutputStream out) throws IOException {
+		DataOutputStream header = new DataOutputStream(out);
+		BinaryIO.writeHeader(header, MAGIC, VERSION, _url.toString());
+		header.flush();
+		return header.size();
+	}
+
+	private static OutputStream stream(final RandomAccessFile file, long position) throws IOException {
+		file.seek(position);
+		return new BufferedOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				file.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				file.write(b, off, len);
+			}
+		});
+	}
+
+	private static void skipFully(InputStream in, long cnt) throws IOException {
+		while (cnt > 0) {
+			long skipped = in.skip(cnt);
+			if (skipped <= 0) {
+				throw new EOFException();
+			}
+			cnt -= skipped;
+		}
+	}
+
+	private static void copy(InputStream in, OutputStream out, long cnt) throws IOException {
+		byte[] buffer = new byte[8192];
+		while (cnt > 0) {
+			int direct = in.read(buffer, 0, (int) Math.min(buffer.length, cnt));
+			if (direct < 0) {
+				throw new EOFException();
+			}
+			out.write(buffer, 0, direct);
+			cnt -= direct;
+		}
+	}
+
+}
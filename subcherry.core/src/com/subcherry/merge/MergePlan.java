@@ -0,0 +1,70 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.merge;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.subcherry.repository.command.merge.MergeOperation;
+
+/**
+ * Result of {@link MergeHandler#planMerge(com.subcherry.repository.core.LogEntry,
+ * com.subcherry.repository.command.Client)}.
+ *
+ * <p>
+ * The {@link MergeOperation} of a plan depends on the existence of resources in the workspace at
+ * the time the plan was computed. A plan computed in advance must be checked with
+ * {@link #isUpToDate()} before it is executed, since merges executed in between may have added or
+ * removed some of these resources.
+ * </p>
+ */
+public class MergePlan {
+
+	private final File _workspaceRoot;
+
+	private final MergeOperation _operation;
+
+	private final Map<String, Boolean> _workspaceState;
+
+	MergePlan(File workspaceRoot, MergeOperation operation, Map<String, Boolean> workspaceState) {
+		_workspaceRoot = workspaceRoot;
+		_operation = operation;
+		_workspaceState = workspaceState;
+	}
+
+	/**
+	 * The operation to execute.
+	 */
+	public MergeOperation getOperation() {
+		return _operation;
+	}
+
+	/**
+	 * Whether all workspace resources the plan depends on still exist (or still do not exist).
+	 */
+	public boolean isUpToDate() {
+		for (Entry<String, Boolean> entry : _workspaceState.entrySet()) {
+			if (new File(_workspaceRoot, entry.getKey()).exists() != entry.getValue().booleanValue()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -33,6 +33,7 @@ import org.lustin.trac.xmlprc.Ticket;
 import com.subcherry.Configuration;
 import com.subcherry.LoginCredentialsValue;
 import com.subcherry.repository.LoginCredential;
+import com.subcherry.trac.TicketStore;
 import com.subcherry.trac.TracConnection;
 import com.subcherry.trac.TracTicket;
 import com.subcherry.utils.Utils;
@@ -66,6 +67,11 @@ public class TicketConsistency {
 		Configuration config = PropertiesUtil.load("conf/configuration.properties", Configuration.class);
 		tracConnection = 
 				new TracConnection(config.getTracURL(), tracCredentials.getUser(), tracCredentials.getPasswd());
+		tracConnection.setBatchSize(config.getTracBatchSize());
+		if (config.getTicketCacheDir() != null) {
+			config.getTicketCacheDir().mkdirs();
+			tracConnection.setStore(new TicketStore(config.getTicketCacheDir(), config.getTracURL()));
+		}
 		
 		options = PropertiesUtil.load("conf/ticketConsistency.properties", Options.class);
 
@@ -84,6 +90,15 @@ public class TicketConsistency {
 		Set<Integer> followup = new HashSet<Integer>();
 		
 		Set<Integer> allTickets = new HashSet<Integer>(tickets);
+
+		// Fetch all tickets and their direct dependencies in advance.
+		Set<Integer> related = new HashSet<Integer>();
+		for (TracTicket ticket : tracConnection.getTickets(tickets).values()) {
+			related.addAll(parseIds(ticket.getDependsOn()));
+			related.addAll(parseIds(ticket.getFollowUp()));
+		}
+		tracConnection.getTickets(related);
+
 		for (Integer id : tickets) {
 			TracTicket ticket = tracConnection.getTicket(id);
 			Set<Integer> localDependson = parseIds(ticket.getDependsOn());
@@ -0,0 +1,259 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.trac;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.subcherry.utils.BinaryIO;
+
+/**
+ * Persistent copy of {@link TracTicket}s fetched from a single Trac server.
+ *
+ * <p>
+ * The store file consists of a header with the server URL and the time of the last
+ * synchronization followed by ticket records. Tickets fetched within a session are appended to
+ * the file. A later record for the same ticket number supersedes an earlier one.
+ * </p>
+ *
+ * <p>
+ * The store does not decide whether its tickets are still current. This is done by the
+ * {@link TracConnection} the store is attached to, see {@link TracConnection#setStore(TicketStore)}.
+ * </p>
+ */
+public class TicketStore {
+
+	private static final int MAGIC = 0x53435453;
+
+	private static final int VERSION = 2;
+
+	private static final String SUFFIX = ".tickets";
+
+	private static final String TMP_SUFFIX = ".tmp";
+
+	private static final long NO_SYNC = Long.MIN_VALUE;
+
+	private static final byte TYPE_NULL = 0;
+
+	private static final byte TYPE_STRING = 1;
+
+	private static final byte TYPE_INTEGER = 2;
+
+	private static final byte TYPE_BOOLEAN = 3;
+
+	private static final byte TYPE_DATE = 4;
+
+	private static final byte TYPE_DOUBLE = 5;
+
+	private final File _file;
+
+	private final String _url;
+
+	private long _lastSync = NO_SYNC;
+
+	/**
+	 * Creates a {@link TicketStore}.
+	 *
+	 * @param dir
+	 *        The directory to keep the store file in.
+	 * @param url
+	 *        The URL of the Trac server the tickets are fetched from.
+	 */
+	public TicketStore(File dir, String url) {
+		_file = new File(dir, Integer.toHexString(url.hashCode()) + SUFFIX);
+		_url = url;
+	}
+
+	/**
+	 * The file the tickets are stored in.
+	 */
+	public File getFile() {
+		return _file;
+	}
+
+	/**
+	 * Time in milliseconds of the last synchronization with the server as passed to
+	 * {@link #rewrite(long, Collection)}, or {@link Long#MIN_VALUE}, if the store has never been
+	 * synchronized.
+	 *
+	 * <p>
+	 * Only valid after {@link #load()}.
+	 * </p>
+	 */
+	public long getLastSync() {
+		return _lastSync;
+	}
+
+	/**
+	 * Reads all stored tickets.
+	 *
+	 * <p>
+	 * A store of another server, of another format version, or an unreadable store is treated as
+	 * empty. An incomplete last record (from an interrupted session) is dropped.
+	 * </p>
+	 *
+	 * @return The stored tickets by their {@link TracTicket#getNumber()}.
+	 */
+	public synchronized Map<Integer, TracTicket> load() throws IOException {
+		_lastSync = NO_SYNC;
+		Map<Integer, TracTicket> result = new HashMap<>();
+		if (!_file.exists()) {
+			return result;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_file)))) {
+			if (!BinaryIO.readHeader(in, MAGIC, VERSION, _url)) {
+				return result;
+			}
+			long lastSync = in.readLong();
+			while (true) {
+				TracTicket ticket;
+				try {
+					ticket = readTicket(in);
+				} catch (EOFException ex) {
+					break;
+				}
+				result.put(ticket.getNumber(), ticket);
+			}
+			_lastSync = lastSync;
+		} catch (EOFException ex) {
+			// Truncated header, start over.
+			result.clear();
+		}
+		return result;
+	}
+
+	/**
+	 * Replaces the contents of the store.
+	 *
+	 * @param lastSync
+	 *        The time in milliseconds the given tickets are known to be current.
+	 * @param tickets
+	 *        The new store contents.
+	 */
+	public synchronized void rewrite(long lastSync, Collection<TracTicket> tickets) throws IOException {
+		File tmp = new File(_file.getPath() + TMP_SUFFIX);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			BinaryIO.writeHeader(out, MAGIC, VERSION, _url);
+			out.writeLong(lastSync);
+			for (TracTicket ticket : tickets) {
+				writeTicket(out, ticket);
+			}
+		}
+		Files.move(tmp.toPath(), _file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		_lastSync = lastSync;
+	}
+
+	/**
+	 * Appends the given tickets to the store.
+	 *
+	 * <p>
+	 * Must only be called after {@link #rewrite(long, Collection)}.
+	 * </p>
+	 */
+	public synchronized void add(Collection<TracTicket> tickets) throws IOException {
+		try (DataOutputStream out =
+			new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_file, true)))) {
+			for (TracTicket ticket : tickets) {
+				writeTicket(out, ticket);
+			}
+		}
+	}
+
+	private static TracTicket readTicket(DataInputStream in) throws IOException {
+		int number = in.readInt();
+		Date created = BinaryIO.readDate(in);
+		Date modified = BinaryIO.readDate(in);
+		int cnt = in.readInt();
+		Map<String, Object> attributes = new LinkedHashMap<>();
+		for (int n = 0; n < cnt; n++) {
+			String key = BinaryIO.readString(in);
+			attributes.put(key, readValue(in));
+		}
+		return new TracTicket(Integer.valueOf(number), created, modified, attributes);
+	}
+
+	private static void writeTicket(DataOutputStream out, TracTicket ticket) throws IOException {
+		Map<?, ?> attributes = ticket.getAttributes();
+		out.writeInt(ticket.getNumber().intValue());
+		BinaryIO.writeDate(out, ticket.getCreated());
+		BinaryIO.writeDate(out, ticket.getModified());
+		out.writeInt(attributes.size());
+		for (Entry<?, ?> entry : attributes.entrySet()) {
+			BinaryIO.writeString(out, String.valueOf(entry.getKey()));
+			writeValue(out, entry.getValue());
+		}
+	}
+
+	private static Object readValue(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		switch (type) {
+			case TYPE_NULL:
+				return null;
+			case TYPE_STRING:
+				return BinaryIO.readString(in);
+			case TYPE_INTEGER:
+				return Integer.valueOf(in.readInt());
+			case TYPE_BOOLEAN:
+				return Boolean.valueOf(in.readBoolean());
+			case TYPE_DATE:
+				return BinaryIO.readDate(in);
+			case TYPE_DOUBLE:
+				return Double.valueOf(in.readDouble());
+			default:
+				throw new IOException("Unknown value type: " + type);
+		}
+	}
+
+	private static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TYPE_NULL);
+		} else if (value instanceof Integer) {
+			out.writeByte(TYPE_INTEGER);
+			out.writeInt(((Integer) value).intValue());
+		} else if (value instanceof Boolean) {
+			out.writeByte(TYPE_BOOLEAN);
+			out.writeBoolean(((Boolean) value).booleanValue());
+		} else if (value instanceof Date) {
+			out.writeByte(TYPE_DATE);
+			BinaryIO.writeDate(out, (Date) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TYPE_DOUBLE);
+			out.writeDouble(((Double) value).doubleValue());
+		} else {
+			out.writeByte(TYPE_STRING);
+			BinaryIO.writeString(out, value.toString());
+		}
+	}
+
+}
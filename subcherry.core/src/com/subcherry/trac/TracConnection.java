@@ -17,13 +17,21 @@
  */
 package com.subcherry.trac;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.client.XmlRpcClient;
 import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
 import org.lustin.trac.xmlprc.Ticket;
@@ -35,9 +43,19 @@ import com.subcherry.utils.Utils;
  * Instances of this class provide access to the trac server.
  * 
  * <p>
- * Tickets requested using the {@link TracConnection#getTicket(Integer)} or
- * {@link TracConnection#getTicket(String)} API are cached to speed up consequent resolving attempts
- * for the same ticket.
+ * Tickets requested using the {@link TracConnection#getTicket(Integer)},
+ * {@link TracConnection#getTicket(String)} or {@link TracConnection#getTickets(Collection)} API are
+ * cached to speed up consequent resolving attempts for the same ticket. To resolve many tickets,
+ * request them in advance using {@link TracConnection#getTickets(Collection)}.
+ * </p>
+ * 
+ * <p>
+ * Tickets may be requested concurrently from multiple threads.
+ * </p>
+ * 
+ * <p>
+ * With a {@link TicketStore} attached, resolved tickets are additionally kept across sessions, see
+ * {@link #setStore(TicketStore)}.
  * </p>
  */
 public class TracConnection {
@@ -47,6 +65,20 @@ public class TracConnection {
 	 */
 	private static final int FETCH_TICKET_RETRY = 20;
 
+	/**
+	 * The default maximum number of tickets requested with a single {@code system.multicall}.
+	 * 
+	 * @see #setBatchSize(int)
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 100;
+
+	/**
+	 * Time in milliseconds the changes reported by the server are requested before the last
+	 * synchronization of a {@link TicketStore} to compensate for clock differences between client
+	 * and server.
+	 */
+	private static final long SYNC_OVERLAP = 60 * 60 * 1000L;
+
 	/**
 	 * The {@link TrackerDynamicProxy} instance to be used for providing access instances to the
 	 * trac server.
@@ -56,13 +88,23 @@ public class TracConnection {
 	/**
 	 * A {@link Map} of {@link TracTicket}s by their {@link TracTicket#getNumber()}.
 	 */
-	private final Map<Integer, TracTicket> _tickets = new HashMap<Integer, TracTicket>();
+	private final Map<Integer, TracTicket> _tickets = new ConcurrentHashMap<Integer, TracTicket>();
 
 	/**
 	 * @see #getTicketAccessor()
 	 */
 	private Ticket _ticketAccessor;
 
+	/**
+	 * @see #setBatchSize(int)
+	 */
+	private int _batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * @see #setStore(TicketStore)
+	 */
+	private volatile TicketStore _store;
+
 	/**
 	 * Creates a new {@link TracConnection}.
 	 * 
@@ -113,7 +155,175 @@ public class TracConnection {
 	 *         if none could be resolved
 	 */
 	public TracTicket getTicket(final Integer number) {
-		return _tickets.computeIfAbsent(number, this::fetchTicket);
+		TracTicket ticket = _tickets.get(number);
+		if (ticket == null) {
+			// Note: The fetch must not happen within an atomic map operation, since it may take long
+			// and would block concurrent requests for other tickets.
+			ticket = fetchTicket(number);
+			if (ticket != null) {
+				TracTicket clash = _tickets.putIfAbsent(number, ticket);
+				if (clash != null) {
+					ticket = clash;
+				} else {
+					store(Collections.singletonList(ticket));
+				}
+			}
+		}
+		return ticket;
+	}
+
+	/**
+	 * Sets the maximum number of tickets requested with a single {@code system.multicall} in
+	 * {@link #getTickets(Collection)}.
+	 * 
+	 * @param batchSize
+	 *        the maximum number of tickets per request, or a non-positive value for
+	 *        {@link #DEFAULT_BATCH_SIZE}
+	 */
+	public void setBatchSize(final int batchSize) {
+		_batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+	}
+
+	/**
+	 * Attaches a {@link TicketStore} to this connection.
+	 * 
+	 * <p>
+	 * All stored tickets that have not been changed on the server since the last synchronization of
+	 * the store are used without contacting the server again. Changed tickets are determined with a
+	 * single {@code ticket.getRecentChanges} request. If this request fails, the stored tickets are
+	 * discarded. Tickets fetched later on are added to the store.
+	 * </p>
+	 * 
+	 * @param store
+	 *        the {@link TicketStore} to keep tickets in
+	 * @throws IOException
+	 *         if accessing the store fails
+	 */
+	public void setStore(final TicketStore store) throws IOException {
+		final Map<Integer, TracTicket> stored = store.load();
+		final long lastSync = store.getLastSync();
+
+		// Note: Taken before requesting the changes, since the server may change tickets meanwhile.
+		final long now = System.currentTimeMillis();
+		if (!stored.isEmpty()) {
+			try {
+				final Object[] changed = (Object[]) _proxy.getClient().execute("ticket.getRecentChanges",
+					new Object[] { new Date(lastSync - SYNC_OVERLAP) });
+				for (final Object number : changed) {
+					stored.remove(number);
+				}
+			} catch (XmlRpcException | RuntimeException ex) {
+				System.err.println("Unable to fetch recently changed tickets, discarding " + stored.size()
+					+ " stored tickets: " + ex);
+				stored.clear();
+			}
+		}
+		store.rewrite(now, stored.values());
+
+		for (final TracTicket ticket : stored.values()) {
+			_tickets.putIfAbsent(ticket.getNumber(), ticket);
+		}
+		_store = store;
+	}
+
+	/**
+	 * Adds the given freshly fetched tickets to the attached {@link TicketStore}, if any.
+	 */
+	private void store(final List<TracTicket> tickets) {
+		final TicketStore store = _store;
+		if (store == null || tickets.isEmpty()) {
+			return;
+		}
+		try {
+			store.add(tickets);
+		} catch (IOException ex) {
+			System.err.println("Unable to store tickets, detaching store " + store.getFile() + ": " + ex);
+			_store = null;
+		}
+	}
+
+	/**
+	 * Resolves all given tickets at once.
+	 * 
+	 * <p>
+	 * Tickets not yet cached are fetched in batches using {@code system.multicall}. Tickets that
+	 * cannot be fetched within a batch are fetched one by one.
+	 * </p>
+	 * 
+	 * @param numbers
+	 *        the numbers of the {@link TracTicket}s to resolve
+	 * @return the {@link TracTicket}s by their {@link TracTicket#getNumber()}, tickets that could
+	 *         not be resolved are missing
+	 */
+	public Map<Integer, TracTicket> getTickets(final Collection<Integer> numbers) {
+		final List<Integer> missing = new ArrayList<Integer>();
+		for (final Integer number : new LinkedHashSet<Integer>(numbers)) {
+			if (!_tickets.containsKey(number)) {
+				missing.add(number);
+			}
+		}
+		for (int start = 0, cnt = missing.size(); start < cnt; start += _batchSize) {
+			fetchTickets(missing.subList(start, Math.min(cnt, start + _batchSize)));
+		}
+
+		final Map<Integer, TracTicket> result = new HashMap<Integer, TracTicket>();
+		for (final Integer number : numbers) {
+			final TracTicket ticket = _tickets.get(number);
+			if (ticket != null) {
+				result.put(number, ticket);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Fetches the given tickets with a single request and adds them to the cache.
+	 * 
+	 * @param numbers
+	 *        the numbers of the {@link TracTicket}s to fetch from the server
+	 */
+	private void fetchTickets(final List<Integer> numbers) {
+		final Object[] calls = new Object[numbers.size()];
+		for (int n = 0, cnt = numbers.size(); n < cnt; n++) {
+			final Map<String, Object> call = new HashMap<String, Object>();
+			call.put("methodName", "ticket.get");
+			call.put("params", new Object[] { numbers.get(n) });
+			calls[n] = call;
+		}
+
+		final Object[] results;
+		try {
+			results = (Object[]) _proxy.getClient().execute("system.multicall", new Object[] { calls });
+		} catch (XmlRpcException | RuntimeException ex) {
+			System.err.println("Unable to fetch " + numbers.size() + " tickets at once, fetching one by one: " + ex);
+			for (final Integer number : numbers) {
+				getTicket(number);
+			}
+			return;
+		}
+
+		final List<TracTicket> fetched = new ArrayList<TracTicket>();
+		for (int n = 0, cnt = numbers.size(); n < cnt; n++) {
+			final Integer number = numbers.get(n);
+			final Object result = n < results.length ? results[n] : null;
+			if (result instanceof Object[] && ((Object[]) result).length == 1) {
+				// A successful call results in an array with the single result value.
+				final Object[] data = (Object[]) ((Object[]) result)[0];
+				final TracTicket ticket = toTicket(data[0], data[1], data[2], data[3]);
+				if (_tickets.putIfAbsent(number, ticket) == null) {
+					fetched.add(ticket);
+				}
+			} else {
+				// A fault.
+				getTicket(number);
+			}
+		}
+		store(fetched);
+	}
+
+	private static TracTicket toTicket(final Object number, final Object created, final Object modified,
+			final Object attributes) {
+		return new TracTicket((Integer) number, (Date) created, (Date) modified, (Map<?, ?>) attributes);
 	}
 
 	/**
@@ -131,11 +341,7 @@ public class TracConnection {
 				if (data == null) {
 					return null;
 				}
-				return new TracTicket(
-					(Integer) data.get(0),
-					(Date) data.get(1),
-					(Date) data.get(2),
-					(Map<?, ?>) data.get(3));
+				return toTicket(data.get(0), data.get(1), data.get(2), data.get(3));
 			} catch (RuntimeException ex) {
 				// Under unclear circumstances, sometimes contacting XmlRPC fails. Just try again.
 				i++;
@@ -158,7 +364,7 @@ public class TracConnection {
 	/**
 	 * @return the {@link Ticket} instance to be used for accessing the trac server
 	 */
-	public Ticket getTicketAccessor() {
+	public synchronized Ticket getTicketAccessor() {
 		if (_ticketAccessor == null) {
 			_ticketAccessor = (Ticket) _proxy.newInstance(Ticket.class);
 		}
@@ -180,6 +180,13 @@ public class TracTicket {
 		return _modified;
 	}
 
+	/**
+	 * @return a {@link Map} of all field values mapped by their respective field name
+	 */
+	public Map<?, ?> getAttributes() {
+		return _attributes;
+	}
+
 	/**
 	 * @return the value of the {@value #TICKET_ATT_CC} field
 	 */
@@ -0,0 +1,138 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.util;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cache of the existence of resources in the workspace.
+ *
+ * <p>
+ * Each resource is checked in the file system at most once. With {@link #setBulkScan(boolean)}
+ * enabled, the directory of a resource is listed once on its first check, and all further checks
+ * of resources listed in that directory are answered without accessing the file system.
+ * </p>
+ *
+ * <p>
+ * A name that is not contained in the listing is still checked with {@link File#exists()}, since
+ * the listing uses the exact case of each name, while the file system may resolve names case
+ * insensitively (e.g. on Windows or macOS).
+ * </p>
+ *
+ * <p>
+ * A cache is only valid as long as the workspace is not modified, e.g. during the computation of a
+ * single merge.
+ * </p>
+ */
+public class ExistenceCache {
+
+	private final File _workspaceRoot;
+
+	private final Map<String, Boolean> _cache = new HashMap<>();
+
+	/**
+	 * Names of the entries of listed directories, <code>null</code> for directories that could
+	 * not be listed.
+	 */
+	private final Map<String, Set<String>> _listings = new HashMap<>();
+
+	private boolean _bulkScan;
+
+	/**
+	 * Creates a {@link ExistenceCache}.
+	 *
+	 * @param workspaceRoot
+	 *        The directory resources are resolved against.
+	 */
+	public ExistenceCache(File workspaceRoot) {
+		_workspaceRoot = workspaceRoot;
+	}
+
+	/**
+	 * Whether a directory is listed as a whole on the first check of one of its entries.
+	 */
+	public boolean getBulkScan() {
+		return _bulkScan;
+	}
+
+	/**
+	 * @see #getBulkScan()
+	 */
+	public void setBulkScan(boolean value) {
+		_bulkScan = value;
+	}
+
+	/**
+	 * Whether the given workspace resource exists.
+	 *
+	 * @param resource
+	 *        The path of the resource relative to the workspace root.
+	 */
+	public boolean exists(String resource) {
+		Boolean result = _cache.get(resource);
+		if (result == null) {
+			result = Boolean.valueOf(check(resource));
+			_cache.put(resource, result);
+		}
+		return result.booleanValue();
+	}
+
+	private boolean check(String resource) {
+		if (_bulkScan) {
+			int separator = resource.lastIndexOf('/');
+			if (separator > 0 && separator < resource.length() - 1) {
+				Set<String> names = list(resource.substring(0, separator));
+				if (names != null) {
+					if (names.contains(resource.substring(separator + 1))) {
+						return true;
+					}
+					if (names.isEmpty() && !exists(resource.substring(0, separator))) {
+						return false;
+					}
+				}
+			}
+		}
+		return new File(_workspaceRoot, resource).exists();
+	}
+
+	private Set<String> list(String dir) {
+		if (_listings.containsKey(dir)) {
+			return _listings.get(dir);
+		}
+
+		Set<String> result;
+		String[] names = new File(_workspaceRoot, dir).list();
+		if (names != null) {
+			result = new HashSet<>(Arrays.asList(names));
+		} else if (!exists(dir)) {
+			result = Collections.emptySet();
+		} else {
+			// Not a directory, or not readable.
+			result = null;
+		}
+		_listings.put(dir, result);
+		return result;
+	}
+
+}
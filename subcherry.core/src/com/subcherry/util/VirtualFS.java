@@ -18,8 +18,8 @@
 package com.subcherry.util;
 
 import java.io.File;
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Keeps track of adds and removes to the file system when creating a merge.
@@ -29,14 +29,56 @@ import java.util.TreeSet;
  * operations before the merges are actually performed.
  * </p>
  * 
+ * <p>
+ * Adds and deletes are recorded in a path trie. Recording a change of a directory drops all
+ * changes recorded below it in constant time.
+ * </p>
+ * 
  * @author <a href="mailto:haui@haumacher.de">Bernhard Haumacher</a>
  * @version $Revision$ $Author$ $Date$
  */
 public class VirtualFS {
 
-	private final TreeSet<String> _deletedPaths = new TreeSet<>();
+	/**
+	 * Node of the path trie recording adds and deletes.
+	 */
+	private static final class Node {
+
+		private Map<String, Node> _children;
+
+		private State _state = State.NONE;
+
+		Node child(String name) {
+			return _children == null ? null : _children.get(name);
+		}
+
+		Node makeChild(String name) {
+			if (_children == null) {
+				_children = new HashMap<>();
+			}
+			Node result = _children.get(name);
+			if (result == null) {
+				result = new Node();
+				_children.put(name, result);
+			}
+			return result;
+		}
+
+		/**
+		 * Marks this node and drops all marks below it.
+		 */
+		void mark(State state) {
+			_state = state;
+			_children = null;
+		}
+
+	}
+
+	private enum State {
+		NONE, ADDED, DELETED;
+	}
 
-	private final TreeSet<String> _addedPaths = new TreeSet<>();
+	private Node _root = new Node();
 
 	private File _workspaceRoot;
 
@@ -49,47 +91,48 @@ public class VirtualFS {
 	}
 
 	public void clear() {
-		_deletedPaths.clear();
-		_addedPaths.clear();
+		_root = new Node();
 	}
 
 	public void delete(String resource) {
-		removeDescendents(_deletedPaths, resource);
-		removeDescendentsOrSelf(_addedPaths, resource);
-
-		_deletedPaths.add(resource);
+		// Deletes and adds below the resource are superseded.
+		node(resource).mark(State.DELETED);
 	}
 
 	public void add(String resource) {
-		removeDescendents(_addedPaths, resource);
-		removeDescendentsOrSelf(_deletedPaths, resource);
-
-		_addedPaths.add(resource);
+		// Adds and deletes below the resource are superseded.
+		node(resource).mark(State.ADDED);
 	}
 
 	public boolean exists(final String resource) {
-		if (_addedPaths.contains(resource)) {
-			// Some ancestor of the resource has been added.
-			return true;
+		// The deepest add or delete on the path of the resource decides.
+		State state = State.NONE;
+		Node node = _root;
+		int start = 0;
+		while (true) {
+			int end = resource.indexOf('/', start);
+			node = node.child(end < 0 ? resource.substring(start) : resource.substring(start, end));
+			if (node == null) {
+				break;
+			}
+			if (node._state != State.NONE) {
+				state = node._state;
+			}
+			if (end < 0) {
+				break;
+			}
+			start = end + 1;
 		}
 
-		String ancestor = resource;
-		while (true) {
-			if (_deletedPaths.contains(ancestor)) {
+		switch (state) {
+			case DELETED:
 				return false;
-			}
-			if (_addedPaths.contains(ancestor)) {
+			case ADDED:
 				// There is no evidence that the added parent might not provide the resource in
 				// question.
 				return true;
-			}
-
-			int dirSeparatorIndex = ancestor.lastIndexOf('/');
-			if (dirSeparatorIndex < 0) {
+			default:
 				break;
-			}
-
-			ancestor = ancestor.substring(0, dirSeparatorIndex);
 		}
 
 		if (_workspaceRoot == null) {
@@ -99,32 +142,27 @@ public class VirtualFS {
 
 		// If there is no change in the current commit to the requested path, the current workspace
 		// is up to date and the file system can be checked directly.
-		return new File(_workspaceRoot, resource).exists();
+		return existsInWorkspace(resource);
 	}
 
-	private static void removeDescendentsOrSelf(TreeSet<String> paths, String resource) {
-		paths.remove(resource);
-		removeDescendents(paths, resource);
+	/**
+	 * Whether the given resource exists in the workspace, if it is not touched by the recorded
+	 * adds and deletes.
+	 */
+	protected boolean existsInWorkspace(String resource) {
+		return new File(_workspaceRoot, resource).exists();
 	}
 
-	private static void removeDescendents(TreeSet<String> paths, String resource) {
-		String dirPrefix = prefix(resource);
-		Iterator<String> descendents = paths.tailSet(dirPrefix, false).iterator();
-		while (descendents.hasNext()) {
-			String potentialDescendent = descendents.next();
-			if (potentialDescendent.startsWith(dirPrefix)) {
-				descendents.remove();
-			} else {
-				break;
+	private Node node(String resource) {
+		Node result = _root;
+		int start = 0;
+		while (true) {
+			int end = resource.indexOf('/', start);
+			if (end < 0) {
+				return result.makeChild(resource.substring(start));
 			}
-		}
-	}
-
-	private static String prefix(String resource) {
-		if (resource.endsWith("/")) {
-			return resource;
-		} else {
-			return resource + '/';
+			result = result.makeChild(resource.substring(start, end));
+			start = end + 1;
 		}
 	}
 
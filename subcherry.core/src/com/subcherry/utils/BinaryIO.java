@@ -0,0 +1,226 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+
+/**
+ * Binary encoding shared by the files persisted between sessions.
+ *
+ * <p>
+ * Each file starts with a header of a magic number identifying the file type, a format version
+ * and a key identifying the contents, see {@link #writeHeader(DataOutput, int, int, String)}.
+ * </p>
+ */
+public class BinaryIO {
+
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	private static final NodeKind[] NODE_KINDS = NodeKind.values();
+
+	private static final ChangeType[] CHANGE_TYPES = ChangeType.values();
+
+	/**
+	 * Writes a file header.
+	 *
+	 * @see #readHeader(DataInput, int, int, String)
+	 */
+	public static void writeHeader(DataOutput out, int magic, int version, String key) throws IOException {
+		out.writeInt(magic);
+		out.writeInt(version);
+		writeString(out, key);
+	}
+
+	/**
+	 * Reads a header written by {@link #writeHeader(DataOutput, int, int, String)}.
+	 *
+	 * @return Whether the header has the given magic number, version and key. If not, the
+	 *         position of the input is undefined.
+	 */
+	public static boolean readHeader(DataInput in, int magic, int version, String key) throws IOException {
+		return in.readInt() == magic && in.readInt() == version && key.equals(readString(in));
+	}
+
+	/**
+	 * Writes a non-negative number with 7 bits per byte, small numbers take a single byte.
+	 */
+	public static void writeVarLong(DataOutput out, long value) throws IOException {
+		assert value >= 0 : "Negative value: " + value;
+		while (value >= 0x80) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	/**
+	 * Reads a number written by {@link #writeVarLong(DataOutput, long)}.
+	 */
+	public static long readVarLong(DataInput in) throws IOException {
+		long result = 0;
+		int shift = 0;
+		while (true) {
+			int b = in.readByte() & 0xFF;
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return result;
+			}
+			shift += 7;
+		}
+	}
+
+	/**
+	 * Writes a string with its length plus one, <code>0</code> for <code>null</code>.
+	 */
+	public static void writeString(DataOutput out, String value) throws IOException {
+		if (value == null) {
+			writeVarLong(out, 0);
+		} else {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(out, bytes.length + 1);
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString(DataOutput, String)}.
+	 */
+	public static String readString(DataInput in) throws IOException {
+		int length = (int) readVarLong(in) - 1;
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a date that may be <code>null</code>.
+	 */
+	public static void writeDate(DataOutput out, Date date) throws IOException {
+		out.writeLong(date == null ? NO_DATE : date.getTime());
+	}
+
+	/**
+	 * Reads a date written by {@link #writeDate(DataOutput, Date)}.
+	 */
+	public static Date readDate(DataInput in) throws IOException {
+		long time = in.readLong();
+		return time == NO_DATE ? null : new Date(time);
+	}
+
+	/**
+	 * Writes a {@link LogEntry}.
+	 *
+	 * <p>
+	 * The revision and the changed paths are written first, so that a reader can decide from
+	 * {@link #readChanges(DataInput)} whether to read the rest of the entry.
+	 * </p>
+	 */
+	public static void writeLogEntry(DataOutput out, LogEntry entry) throws IOException {
+		out.writeLong(entry.getRevision());
+		Map<String, LogEntryPath> changedPaths = entry.getChangedPaths();
+		if (changedPaths == null) {
+			writeVarLong(out, 0);
+		} else {
+			writeVarLong(out, changedPaths.size() + 1);
+			for (LogEntryPath change : changedPaths.values()) {
+				out.writeByte(change.getKind().ordinal());
+				out.writeByte(change.getType().ordinal());
+				writeString(out, change.getPath());
+				writeString(out, change.getCopyPath());
+				out.writeLong(change.getCopyRevision());
+			}
+		}
+		writeString(out, entry.getAuthor());
+		writeDate(out, entry.getDate());
+		writeString(out, entry.getMessage());
+		out.writeBoolean(entry.hasChildren());
+	}
+
+	/**
+	 * Reads a {@link LogEntry} written by {@link #writeLogEntry(DataOutput, LogEntry)}.
+	 */
+	public static LogEntry readLogEntry(DataInput in) throws IOException {
+		long revision = in.readLong();
+		LogEntryPath[] changes = readChanges(in);
+		Map<String, LogEntryPath> changedPaths;
+		if (changes == null) {
+			changedPaths = null;
+		} else {
+			changedPaths = new HashMap<>();
+			for (LogEntryPath change : changes) {
+				changedPaths.put(change.getPath(), change);
+			}
+		}
+		return readLogEntry(in, revision, changedPaths);
+	}
+
+	/**
+	 * Reads the changed paths of a {@link LogEntry} after its revision.
+	 *
+	 * @return The changes, or <code>null</code>, if the entry was written without changed paths.
+	 * @see #writeLogEntry(DataOutput, LogEntry)
+	 */
+	public static LogEntryPath[] readChanges(DataInput in) throws IOException {
+		int cnt = (int) readVarLong(in) - 1;
+		if (cnt < 0) {
+			return null;
+		}
+		LogEntryPath[] result = new LogEntryPath[cnt];
+		for (int n = 0; n < cnt; n++) {
+			NodeKind kind = NODE_KINDS[in.readByte()];
+			ChangeType type = CHANGE_TYPES[in.readByte()];
+			String path = readString(in);
+			String copyPath = readString(in);
+			long copyRevision = in.readLong();
+			result[n] = new LogEntryPath(kind, path, type, copyPath, copyRevision);
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the rest of a {@link LogEntry} after {@link #readChanges(DataInput)}.
+	 *
+	 * @param revision
+	 *        The revision read before the changes.
+	 * @param changedPaths
+	 *        The changed paths of the resulting entry.
+	 */
+	public static LogEntry readLogEntry(DataInput in, long revision, Map<String, LogEntryPath> changedPaths)
+			throws IOException {
+		String author = readString(in);
+		Date date = readDate(in);
+		String message = readString(in);
+		boolean hasChildren = in.readBoolean();
+		return new LogEntry(changedPaths, revision, author, date, message, hasChildren);
+	}
+
+}
@@ -0,0 +1,431 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.utils;
+
+import com.subcherry.repository.core.LogEntry;
+
+/**
+ * Parsed form of a commit message in the format described by {@link Utils#TICKET_PATTERN}.
+ *
+ * <p>
+ * The message is parsed in a single scan without backtracking. The result is equivalent to
+ * matching {@link Utils#TICKET_PATTERN}, but considerably cheaper, since a commit message is
+ * inspected many times while analyzing and merging changes.
+ * </p>
+ *
+ * @see #parse(String)
+ * @see #of(LogEntry)
+ */
+public final class CommitMessage {
+
+	/**
+	 * The kind of change announced by the prefix of the message.
+	 */
+	public enum Kind {
+
+		/**
+		 * No prefix, a regular development change.
+		 */
+		NONE,
+
+		/**
+		 * <code>Hotfix for &lt;branch&gt;:</code>
+		 */
+		HOTFIX,
+
+		/**
+		 * <code>Preview on &lt;branch&gt;:</code>
+		 */
+		PREVIEW,
+
+		/**
+		 * <code>Ported to &lt;branch&gt; from &lt;branch&gt;:</code>
+		 */
+		PORT,
+
+		/**
+		 * <code>On &lt;branch&gt;:</code>
+		 */
+		BRANCH_CHANGE;
+
+	}
+
+	/**
+	 * The value of {@link Utils.TicketMessage#apiChange}, if the message announces an API change.
+	 */
+	public static final String API_CHANGE = " API change:";
+
+	private static final String TICKET = "Ticket #";
+
+	private static final String HOTFIX = "Hotfix for ";
+
+	private static final String PREVIEW = "Preview on ";
+
+	private static final String PORTED_TO = "Ported to ";
+
+	private static final String PORTED_FROM = " from ";
+
+	private static final String ON = "On ";
+
+	private static final String FOLLOW_UP = "Follow-up";
+
+	private static final String BUGFIX = "Bugfix";
+
+	private static final String FOR = "for [";
+
+	private static final CommitMessage NO_TICKET = new CommitMessage();
+
+	private final String _ticketId;
+
+	private final Kind _kind;
+
+	private final String _branch;
+
+	private final String _sourceBranch;
+
+	private final boolean _apiChange;
+
+	private final String _followUp;
+
+	private final String _mergedRevision;
+
+	private final String _followUp2;
+
+	private final String _detailMessage;
+
+	private CommitMessage() {
+		this(null, Kind.NONE, null, null, false, null, null, null, null);
+	}
+
+	private CommitMessage(String ticketId, Kind kind, String branch, String sourceBranch, boolean apiChange,
+			String followUp, String mergedRevision, String followUp2, String detailMessage) {
+		_ticketId = ticketId;
+		_kind = kind;
+		_branch = branch;
+		_sourceBranch = sourceBranch;
+		_apiChange = apiChange;
+		_followUp = followUp;
+		_mergedRevision = mergedRevision;
+		_followUp2 = followUp2;
+		_detailMessage = detailMessage;
+	}
+
+	/**
+	 * Whether the message starts with a ticket reference.
+	 *
+	 * <p>
+	 * If not, all other properties are <code>null</code> respectively <code>false</code>.
+	 * </p>
+	 */
+	public boolean hasTicket() {
+		return _ticketId != null;
+	}
+
+	/**
+	 * The referenced ticket number, or <code>null</code>, if the message does not reference a
+	 * ticket.
+	 */
+	public String getTicketId() {
+		return _ticketId;
+	}
+
+	/**
+	 * The kind of change.
+	 */
+	public Kind getKind() {
+		return _kind;
+	}
+
+	/**
+	 * The branch named in the prefix of the message, or <code>null</code>, if {@link #getKind()}
+	 * is {@link Kind#NONE}.
+	 *
+	 * <p>
+	 * For a {@link Kind#PORT}, this is the branch the change was ported to.
+	 * </p>
+	 */
+	public String getDestinationBranch() {
+		return _branch;
+	}
+
+	/**
+	 * The branch a {@link Kind#PORT} was ported from, <code>null</code> for other kinds.
+	 */
+	public String getSourceBranch() {
+		return _sourceBranch;
+	}
+
+	/**
+	 * The branch of a {@link Kind#HOTFIX}, <code>null</code> for other kinds.
+	 */
+	public String getHotfixBranch() {
+		return _kind == Kind.HOTFIX ? _branch : null;
+	}
+
+	/**
+	 * Whether the message announces an API change.
+	 */
+	public boolean isApiChange() {
+		return _apiChange;
+	}
+
+	/**
+	 * The revision given in a <code>[&lt;rev&gt;]:</code> reference, or <code>null</code>.
+	 */
+	public String getMergedRevision() {
+		return _mergedRevision;
+	}
+
+	/**
+	 * The revision of a <code>Follow-up for [&lt;rev&gt;]:</code> reference before the
+	 * {@link #getMergedRevision() merged revision}, or <code>null</code>.
+	 */
+	public String getFollowUpRevision() {
+		return _followUp;
+	}
+
+	/**
+	 * The revision of a <code>Follow-up for [&lt;rev&gt;]:</code> reference after the
+	 * {@link #getMergedRevision() merged revision}, or <code>null</code>.
+	 */
+	public String getFollowUpRevision2() {
+		return _followUp2;
+	}
+
+	/**
+	 * The revision the change is a follow-up or bugfix for, or <code>0</code>, if there is none.
+	 */
+	public long getLeadRevision() {
+		String leadRevision = _followUp != null ? _followUp : _followUp2;
+		if (leadRevision == null) {
+			return 0;
+		}
+		return Long.parseLong(leadRevision);
+	}
+
+	/**
+	 * The message text after all recognized prefixes, or <code>null</code>, if the message does
+	 * not reference a ticket.
+	 */
+	public String getDetailMessage() {
+		return _detailMessage;
+	}
+
+	@Override
+	public String toString() {
+		if (!hasTicket()) {
+			return "CommitMessage(no ticket)";
+		}
+		return "CommitMessage(ticket: " + _ticketId + ", kind: " + _kind + ", branch: " + _branch + ", source: "
+			+ _sourceBranch + ", api change: " + _apiChange + ", follow-up: " + _followUp + ", merged: "
+			+ _mergedRevision + ", follow-up 2: " + _followUp2 + ", detail: " + _detailMessage + ")";
+	}
+
+	/**
+	 * The parsed message of the given {@link LogEntry}.
+	 *
+	 * <p>
+	 * Entries created by a {@link ParsingLogEntryDictionary} keep their parsed message, other
+	 * entries are parsed on each call.
+	 * </p>
+	 */
+	public static CommitMessage of(LogEntry entry) {
+		CommitMessage result = ParsingLogEntryDictionary.getCommitMessage(entry);
+		if (result == null) {
+			result = parse(entry.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * Parses the given commit message.
+	 *
+	 * @param message
+	 *        The message to parse, <code>null</code> is treated as message without ticket
+	 *        reference.
+	 * @return The parsed message, never <code>null</code>.
+	 */
+	public static CommitMessage parse(String message) {
+		if (message == null || !message.startsWith(TICKET)) {
+			return NO_TICKET;
+		}
+		int length = message.length();
+		int ticketStart = TICKET.length();
+		int ticketEnd = skipDigits(message, ticketStart);
+		if (ticketEnd == ticketStart || ticketEnd == length || message.charAt(ticketEnd) != ':') {
+			return NO_TICKET;
+		}
+		String ticketId = message.substring(ticketStart, ticketEnd);
+		int pos = ticketEnd + 1;
+
+		Kind kind = Kind.NONE;
+		String branch = null;
+		String sourceBranch = null;
+		if (isAt(message, pos, ' ')) {
+			int start = pos + 1;
+			if (message.startsWith(HOTFIX, start)) {
+				int branchStart = start + HOTFIX.length();
+				int colon = message.indexOf(':', branchStart);
+				if (colon >= 0) {
+					kind = Kind.HOTFIX;
+					branch = message.substring(branchStart, colon);
+					pos = colon + 1;
+				}
+			} else if (message.startsWith(PREVIEW, start)) {
+				int branchStart = start + PREVIEW.length();
+				int colon = message.indexOf(':', branchStart);
+				if (colon >= 0) {
+					kind = Kind.PREVIEW;
+					branch = message.substring(branchStart, colon);
+					pos = colon + 1;
+				}
+			} else if (message.startsWith(PORTED_TO, start)) {
+				int toStart = start + PORTED_TO.length();
+				int toEnd = message.indexOf(' ', toStart);
+				if (toEnd >= 0 && message.startsWith(PORTED_FROM, toEnd)) {
+					int fromStart = toEnd + PORTED_FROM.length();
+					int colon = message.indexOf(':', fromStart);
+					if (colon >= 0) {
+						kind = Kind.PORT;
+						branch = message.substring(toStart, toEnd);
+						sourceBranch = message.substring(fromStart, colon);
+						pos = colon + 1;
+					}
+				}
+			} else if (message.startsWith(ON, start)) {
+				int branchStart = start + ON.length();
+				int colon = message.indexOf(':', branchStart);
+				if (colon >= 0) {
+					kind = Kind.BRANCH_CHANGE;
+					branch = message.substring(branchStart, colon);
+					pos = colon + 1;
+				}
+			}
+		}
+
+		boolean apiChange = message.startsWith(API_CHANGE, pos);
+		if (apiChange) {
+			pos += API_CHANGE.length();
+		}
+
+		String followUp = null;
+		int followUpEnd = parseFollowUp(message, pos);
+		if (followUpEnd >= 0) {
+			followUp = revision(message, followUpEnd);
+			pos = followUpEnd;
+		}
+
+		String mergedRevision = null;
+		int mergedEnd = parseRevisionRef(message, pos + 1);
+		if (mergedEnd >= 0 && isAt(message, pos, ' ')) {
+			mergedRevision = revision(message, mergedEnd);
+			pos = mergedEnd;
+		}
+
+		String followUp2 = null;
+		int followUp2End = parseFollowUp(message, pos);
+		if (followUp2End >= 0) {
+			followUp2 = revision(message, followUp2End);
+			pos = followUp2End;
+		}
+
+		return new CommitMessage(ticketId, kind, branch, sourceBranch, apiChange, followUp, mergedRevision,
+			followUp2, message.substring(pos));
+	}
+
+	/**
+	 * Parses <code> (Follow-up|Bugfix) [&lt;n&gt; ]for [&lt;rev&gt;]:</code> at the given
+	 * position.
+	 *
+	 * @return The position after the reference, or <code>-1</code>, if there is none.
+	 */
+	private static int parseFollowUp(String message, int pos) {
+		if (!isAt(message, pos, ' ')) {
+			return -1;
+		}
+		pos++;
+		if (message.startsWith(FOLLOW_UP, pos)) {
+			pos += FOLLOW_UP.length();
+		} else if (message.startsWith(BUGFIX, pos)) {
+			pos += BUGFIX.length();
+		} else {
+			return -1;
+		}
+		if (!isAt(message, pos, ' ')) {
+			return -1;
+		}
+		pos++;
+		int countEnd = skipDigits(message, pos);
+		if (countEnd > pos && isAt(message, countEnd, ' ')) {
+			pos = countEnd + 1;
+		}
+		if (!message.startsWith(FOR, pos)) {
+			return -1;
+		}
+		return parseRevisionRef(message, pos + FOR.length() - 1);
+	}
+
+	/**
+	 * Parses <code>[&lt;rev&gt;]:</code> at the given position.
+	 *
+	 * @return The position after the reference, or <code>-1</code>, if there is none.
+	 */
+	private static int parseRevisionRef(String message, int pos) {
+		if (!isAt(message, pos, '[')) {
+			return -1;
+		}
+		int start = pos + 1;
+		int end = skipDigits(message, start);
+		if (end == start || !isAt(message, end, ']') || !isAt(message, end + 1, ':')) {
+			return -1;
+		}
+		return end + 2;
+	}
+
+	/**
+	 * The revision number of a reference parsed by {@link #parseRevisionRef(String, int)}.
+	 *
+	 * @param refEnd
+	 *        The position after the reference.
+	 */
+	private static String revision(String message, int refEnd) {
+		int end = refEnd - 2;
+		int start = end;
+		while (message.charAt(start - 1) != '[') {
+			start--;
+		}
+		return message.substring(start, end);
+	}
+
+	private static boolean isAt(String message, int pos, char ch) {
+		return pos < message.length() && message.charAt(pos) == ch;
+	}
+
+	private static int skipDigits(String message, int pos) {
+		int length = message.length();
+		while (pos < length) {
+			char ch = message.charAt(pos);
+			if (ch < '0' || ch > '9') {
+				break;
+			}
+			pos++;
+		}
+		return pos;
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.utils;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link ThreadFactory} creating named daemon threads for background work that must not keep the
+ * application alive.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	private final String _name;
+
+	private final AtomicInteger _cnt = new AtomicInteger();
+
+	/**
+	 * Creates a {@link DaemonThreadFactory}.
+	 * 
+	 * @param name
+	 *        The name prefix of created threads.
+	 */
+	public DaemonThreadFactory(String name) {
+		_name = name;
+	}
+
+	@Override
+	public Thread newThread(Runnable r) {
+		Thread result = new Thread(r, _name + "-" + _cnt.incrementAndGet());
+		result.setDaemon(true);
+		return result;
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.utils;
+
+import java.util.Date;
+
+import com.subcherry.repository.command.log.LogEntryDictionary;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+
+/**
+ * {@link LogEntryDictionary} whose compact entries keep their {@link CommitMessage}.
+ *
+ * @see CommitMessage#of(LogEntry)
+ */
+public class ParsingLogEntryDictionary extends LogEntryDictionary {
+
+	@Override
+	protected CompactLogEntry createEntry(LogEntryPath[] changes, long revision, String author, Date date,
+			String message, boolean hasChildren) {
+		return new ParsedLogEntry(changes, revision, author, date, message, hasChildren);
+	}
+
+	/**
+	 * The {@link CommitMessage} kept with the given entry, or <code>null</code>, if the entry was
+	 * not created by a {@link ParsingLogEntryDictionary}.
+	 */
+	static CommitMessage getCommitMessage(LogEntry entry) {
+		if (entry instanceof ParsedLogEntry) {
+			return ((ParsedLogEntry) entry)._commitMessage;
+		}
+		return null;
+	}
+
+	private static final class ParsedLogEntry extends CompactLogEntry {
+
+		final CommitMessage _commitMessage;
+
+		public ParsedLogEntry(LogEntryPath[] changes, long revision, String author, Date date, String message,
+				boolean hasChildren) {
+			super(changes, revision, author, date, message, hasChildren);
+			_commitMessage = CommitMessage.parse(message);
+		}
+
+	}
+
+}
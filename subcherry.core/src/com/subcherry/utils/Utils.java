@@ -29,6 +29,7 @@ import java.util.regex.Pattern;
 
 import com.subcherry.Configuration;
 import com.subcherry.commit.MessageRewriter;
+import com.subcherry.repository.core.LogEntry;
 
 /**
  * @version   $Revision$  $Author$  $Date$
@@ -63,7 +64,6 @@ public class Utils {
 	public static class TicketMessage {
 		private static final MessageRewriter NO_REWRITE = null;
 
-		public Matcher matcher;
 		public String ticketNumber;
 		public String apiChange;
 		public String originalMessage;
@@ -74,97 +74,75 @@ public class Utils {
 
 		private final String _commitMessage;
 
-		private final long _leadRevision;
+		private final CommitMessage _parsed;
 
-		private boolean _hasMatch;
-		
 		public TicketMessage(String commitMessage) throws IllegalMessageFormat {
 			this(0, commitMessage, NO_REWRITE);
 		}
 
 		public TicketMessage(long originalRevision, String commitMessage, MessageRewriter messageRewriter) {
+			this(originalRevision, commitMessage, CommitMessage.parse(commitMessage), messageRewriter);
+		}
+
+		/**
+		 * Creates a {@link TicketMessage} for the given {@link LogEntry} reusing its
+		 * {@link CommitMessage#of(LogEntry) parsed message}.
+		 */
+		public TicketMessage(LogEntry logEntry, MessageRewriter messageRewriter) {
+			this(logEntry.getRevision(), logEntry.getMessage(), CommitMessage.of(logEntry), messageRewriter);
+		}
+
+		private TicketMessage(long originalRevision, String commitMessage, CommitMessage parsed,
+				MessageRewriter messageRewriter) {
 			_originalRevision = originalRevision;
 			_commitMessage = commitMessage;
+			_parsed = parsed;
 			_messageRewriter = messageRewriter;
 
-			matcher = TICKET_PATTERN.matcher(commitMessage);
-			_hasMatch = matcher.matches();
-			if (!_hasMatch) {
+			if (!parsed.hasTicket()) {
 				ticketNumber = "0";
 				apiChange = null;
 				originalMessage = commitMessage;
-				_leadRevision = 0L;
 			} else {
-				ticketNumber = getTicketNumber(matcher);
-				apiChange = getApiChange(matcher);
-				originalMessage = getOriginalMessage(matcher);
-				_leadRevision = extractLeadRevision(matcher);
+				ticketNumber = parsed.getTicketId();
+				apiChange = parsed.isApiChange() ? CommitMessage.API_CHANGE : null;
+				originalMessage = parsed.getDetailMessage();
 			}
 		}
 
+		/**
+		 * The parsed {@link #getLogEntryMessage()}.
+		 */
+		public CommitMessage getParsedMessage() {
+			return _parsed;
+		}
+
 		public String getSourceBranch() {
-			if (!_hasMatch) {
-				return null;
-			}
-			return matcher.group(PORTED_FROM_GROUP);
+			return _parsed.getSourceBranch();
 		}
 
 		public String getDestinationBranch() {
-			if (!_hasMatch) {
-				return null;
-			}
-			String toBranch = matcher.group(PORTED_TO_GROUP);
-			if (toBranch != null) {
-				return toBranch;
-			}
-			String onBranch = matcher.group(ON_BRANCH_GROUP);
-			if (onBranch != null) {
-				return onBranch;
-			}
-			String previewBranch = matcher.group(PREVIEW_BRANCH_GROUP);
-			if (previewBranch != null) {
-				return previewBranch;
-			}
-			String hotfixBranch = matcher.group(HOTFIX_BRANCH_GROUP);
-			if (hotfixBranch != null) {
-				return hotfixBranch;
-			}
-			return null;
+			return _parsed.getDestinationBranch();
 		}
 
 		public String getMergedRevision() {
-			if (!_hasMatch) {
-				return null;
-			}
-			return matcher.group(MERGED_REVISION_GROUP);
+			return _parsed.getMergedRevision();
 		}
 		
 		public boolean isHotfix() {
-			if (!_hasMatch) {
-				return false;
-			}
-			return matcher.group(Utils.IS_HOTFIX_GROUP) != null;
+			return _parsed.getKind() == CommitMessage.Kind.HOTFIX;
 		}
 		
 		public boolean isPreview() {
-			if (!_hasMatch) {
-				return false;
-			}
-			return matcher.group(Utils.PREVIEW_BRANCH_GROUP) != null;
+			return _parsed.getKind() == CommitMessage.Kind.PREVIEW;
 		}
 		
 		public boolean isBranchChange() {
-			if (!_hasMatch) {
-				return false;
-			}
-			return matcher.group(Utils.ON_BRANCH_GROUP) != null;
+			return _parsed.getKind() == CommitMessage.Kind.BRANCH_CHANGE;
 		}
 
 		public boolean isPort() {
-			if (!_hasMatch) {
-				return false;
-			}
-			return matcher.group(Utils.PORTED_FROM_GROUP) != null;
+			return _parsed.getKind() == CommitMessage.Kind.PORT;
 		}
 
 		public String getLogEntryMessage() {
@@ -180,7 +158,7 @@ public class Utils {
 		}
 
 		public long getLeadRevision() {
-			return _leadRevision;
+			return _parsed.getLeadRevision();
 		}
 	}
 
@@ -222,6 +200,14 @@ public class Utils {
 	private static String expr(String regexp) {
 		return "(?:" + regexp + ")";
 	}
+	/**
+	 * Format of a commit message referencing a ticket.
+	 * 
+	 * <p>
+	 * Use {@link CommitMessage} for parsing messages, this pattern defines its reference
+	 * semantics.
+	 * </p>
+	 */
 	public static Pattern TICKET_PATTERN = Pattern.compile(commitMessage(), Pattern.DOTALL);
 
 	public static char SVN_SERVER_PATH_SEPARATOR = '/';
@@ -245,7 +231,9 @@ public class Utils {
 		return messagePart(or(hotfix(), preview(), ported(), onBranch()));
 	}
 	private static String hotfix() {
-		return group(IS_HOTFIX_GROUP = group, "Hotfix for " + group(HOTFIX_BRANCH_GROUP = group, "[^:]*"));
+		// The outer group must be numbered before the nested one.
+		IS_HOTFIX_GROUP = group++;
+		return "(Hotfix for " + group(HOTFIX_BRANCH_GROUP = group, "[^:]*") + ")";
 	}
 	private static String preview() {
 		return "Preview on " + group(PREVIEW_BRANCH_GROUP = group, "[^:]*");
@@ -357,22 +345,23 @@ public class Utils {
 		return s == null || s.isEmpty();
 	}
 
+	/**
+	 * The ticket number referenced by the given commit message, or <code>null</code>.
+	 * 
+	 * @see CommitMessage#getTicketId()
+	 */
 	public static String getTicketId(String message) {
-		Matcher matcher = TICKET_PATTERN.matcher(message);
-		if (matcher.matches()) {
-			return getTicketNumber(matcher);
-		} else {
-			return null;
-		}
+		return CommitMessage.parse(message).getTicketId();
 	}
 
+	/**
+	 * The given commit message without ticket and revision prefixes, or <code>null</code>, if the
+	 * message does not reference a ticket.
+	 * 
+	 * @see CommitMessage#getDetailMessage()
+	 */
 	public static String getDetailMessage(String message) {
-		Matcher matcher = TICKET_PATTERN.matcher(message);
-		if (matcher.matches()) {
-			return getOriginalMessage(matcher);
-		} else {
-			return null;
-		}
+		return CommitMessage.parse(message).getDetailMessage();
 	}
 
 	public static String toResource(File workspaceRoot, String wcPath) {
@@ -0,0 +1,181 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.subcherry.CommitGraph;
+import com.subcherry.CommitSet;
+import com.subcherry.commit.Commit;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+import com.subcherry.utils.Utils.TicketMessage;
+
+/**
+ * Test case for {@link CommitGraph}.
+ */
+@SuppressWarnings("javadoc")
+public class TestCommitGraph extends TestCase {
+
+	public void testBatchTickets() {
+		List<CommitSet> sets = Arrays.asList(
+			set(1, "Ticket #1: A.", file("/a")),
+			set(2, "Ticket #2: B.", file("/b")),
+			set(3, "Ticket #1: C.", file("/c")),
+			set(4, "Ticket #2: D.", file("/d")));
+		assertEquals(Arrays.asList(1L, 3L, 2L, 4L), revisions(new CommitGraph(sets).schedule()));
+	}
+
+	public void testPathDependency() {
+		List<CommitSet> sets = Arrays.asList(
+			set(1, "Ticket #1: A.", file("/a")),
+			set(2, "Ticket #2: B.", file("/b")),
+			set(3, "Ticket #1: C.", file("/b")),
+			set(4, "No ticket.", file("/c")));
+		CommitGraph graph = new CommitGraph(sets);
+		assertEquals(Arrays.asList(1), ids(graph, 2));
+		assertEquals(Arrays.asList(1L, 2L, 3L, 4L), revisions(graph.schedule()));
+	}
+
+	public void testDirectoryDependency() {
+		List<CommitSet> sets = Arrays.asList(
+			set(1, "Ticket #1: A.", file("/m/x")),
+			set(2, "Ticket #2: B.", new LogEntryPath(NodeKind.DIR, "/m", ChangeType.DELETED, null, 0)),
+			set(3, "Ticket #1: C.", file("/m/y")),
+			set(4, "Ticket #1: D.", file("/n/z")));
+		CommitGraph graph = new CommitGraph(sets);
+		assertEquals(Arrays.asList(0), ids(graph, 1));
+		assertEquals(Arrays.asList(1), ids(graph, 2));
+		assertEquals(Arrays.asList(1L, 4L, 2L, 3L), revisions(graph.schedule()));
+	}
+
+	public void testFollowUp() {
+		List<CommitSet> sets = Arrays.asList(
+			set(1, "Ticket #1: A.", file("/a")),
+			set(2, "Ticket #2: Follow-up for [1]: B.", file("/b")),
+			set(3, "Ticket #1: C.", file("/c")));
+		CommitGraph graph = new CommitGraph(sets);
+		assertEquals(Arrays.asList(0), ids(graph, 1));
+		assertEquals(Arrays.asList(1L, 3L, 2L), revisions(graph.schedule()));
+	}
+
+	public void testCycle() {
+		List<CommitSet> sets = Arrays.asList(
+			set(1, "Ticket #1: A.", file("/a")),
+			set(2, "Ticket #2: B.", file("/a")),
+			set(3, "Ticket #3: C.", file("/c")));
+		CommitGraph graph = new CommitGraph(sets);
+		graph.addDependency(1, 0);
+		assertEquals(Arrays.asList(3L, 1L, 2L), revisions(graph.schedule()));
+	}
+
+	public void testRandom() {
+		Random rnd = new Random(42);
+		List<CommitSet> sets = new ArrayList<>();
+		int size = 5000;
+		for (int rev = 1; rev <= size; rev++) {
+			String message = "Ticket #" + rnd.nextInt(300) + ": Change " + rev + ".";
+			LogEntryPath change;
+			if (rnd.nextInt(50) == 0) {
+				change = new LogEntryPath(NodeKind.DIR, "/m" + rnd.nextInt(20), ChangeType.ADDED, null, 0);
+			} else {
+				change = file("/m" + rnd.nextInt(20) + "/f" + rnd.nextInt(200));
+			}
+			sets.add(set(rev, message, change));
+		}
+
+		CommitGraph graph = new CommitGraph(sets);
+		List<CommitSet> schedule = graph.schedule();
+
+		assertEquals(size, schedule.size());
+		Map<CommitSet, Integer> position = new HashMap<>();
+		for (CommitSet set : schedule) {
+			position.put(set, position.size());
+		}
+		// Batching tickets results in fewer ticket switches than the original order.
+		assertTrue(groups(schedule) < groups(sets));
+		for (int id = 0; id < size; id++) {
+			List<Integer> required = ids(graph, id);
+			for (int requiredId : required) {
+				assertTrue(position.get(sets.get(requiredId)) < position.get(sets.get(id)));
+			}
+		}
+	}
+
+	private static int groups(List<CommitSet> schedule) {
+		int result = 0;
+		String lastTicket = null;
+		for (CommitSet set : schedule) {
+			String ticket = ticket(set);
+			if (!ticket.equals(lastTicket)) {
+				result++;
+				lastTicket = ticket;
+			}
+		}
+		return result;
+	}
+
+	private static List<Integer> ids(CommitGraph graph, int id) {
+		List<Integer> result = new ArrayList<>();
+		BitSet required = graph.getRequired(id);
+		for (int n = required.nextSetBit(0); n >= 0; n = required.nextSetBit(n + 1)) {
+			result.add(n);
+		}
+		return result;
+	}
+
+	private static List<Long> revisions(List<CommitSet> sets) {
+		List<Long> result = new ArrayList<>();
+		Set<Long> seen = new HashSet<>();
+		for (CommitSet set : sets) {
+			long revision = set.getLeadCommit().getRevision();
+			assertTrue(seen.add(revision));
+			result.add(revision);
+		}
+		return result;
+	}
+
+	private static String ticket(CommitSet set) {
+		return set.getLeadCommit().getTicketMessage().getParsedMessage().getTicketId();
+	}
+
+	private static LogEntryPath file(String path) {
+		return new LogEntryPath(NodeKind.FILE, path, ChangeType.MODIFIED, null, 0);
+	}
+
+	private static CommitSet set(long revision, String message, LogEntryPath change) {
+		Map<String, LogEntryPath> changes = new HashMap<>();
+		changes.put(change.getPath(), change);
+		LogEntry logEntry = new LogEntry(changes, revision, "author", new Date(), message, false);
+		return new CommitSet(logEntry, new Commit(null, logEntry, new TicketMessage(logEntry, null)));
+	}
+
+}
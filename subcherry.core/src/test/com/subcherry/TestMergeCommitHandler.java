@@ -0,0 +1,297 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.subcherry.CommitSet;
+import com.subcherry.Configuration;
+import com.subcherry.MergeCommitHandler;
+import com.subcherry.SessionJournal;
+import com.subcherry.SessionJournal.Outcome;
+import com.subcherry.commit.Commit;
+import com.subcherry.merge.MergeHandler;
+import com.subcherry.repository.command.Client;
+import com.subcherry.repository.command.ClientManager;
+import com.subcherry.repository.command.Command;
+import com.subcherry.repository.command.Settings;
+import com.subcherry.repository.command.merge.CommandContext;
+import com.subcherry.repository.command.merge.CommandExecutor;
+import com.subcherry.repository.command.merge.ConflictDescription;
+import com.subcherry.repository.command.merge.Merge;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.core.Revision;
+import com.subcherry.repository.core.RevisionRange;
+import com.subcherry.repository.impl.DefaultOperationFactory;
+import com.subcherry.utils.PathParser;
+import com.subcherry.utils.Utils;
+import com.subcherry.utils.Utils.TicketMessage;
+
+import de.haumacher.common.config.ValueFactory;
+
+/**
+ * Test case for {@link MergeCommitHandler} applying merges computed by a {@link MergeHandler}
+ * without accessing a repository.
+ */
+@SuppressWarnings("javadoc")
+public class TestMergeCommitHandler extends TestCase {
+
+	private static final String SOURCE = "/branches/source/";
+
+	private File _workspace;
+
+	private BufferedReader _systemIn;
+
+	private final List<List<Command>> _executed = new ArrayList<>();
+
+	private Client _client;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_workspace = Files.createTempDirectory("workspace").toFile();
+		File module = new File(_workspace, "m");
+		assertTrue(module.mkdirs());
+		assertTrue(new File(module, "f.txt").createNewFile());
+		assertTrue(new File(module, "g.txt").createNewFile());
+		_systemIn = Utils.SYSTEM_IN;
+		_client = newClient();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Utils.SYSTEM_IN = _systemIn;
+		delete(_workspace);
+		super.tearDown();
+	}
+
+	public void testReapplyJoinedFused() throws IOException, RepositoryException {
+		run(entry(11), entry(12));
+
+		assertEquals(3, _executed.size());
+		assertEquals(Arrays.asList(range(11)), ranges(_executed.get(0)));
+		assertEquals(Arrays.asList(range(12)), ranges(_executed.get(1)));
+
+		// Re-applying after a join applies the lead and the joined revision again with a single
+		// two-range merge of the module.
+		List<Command> reapplied = _executed.get(2);
+		assertEquals(1, reapplied.size());
+		Merge merge = (Merge) reapplied.get(0);
+		assertEquals(Arrays.asList(range(11), range(12)), merge.getRevisionRanges());
+		assertEquals(Revision.create(12), merge.getSource().getPegRevision());
+	}
+
+	public void testReapplyJoinedGap() throws IOException, RepositoryException {
+		LogEntry lead = entry(11);
+		LogEntry joined = entry(13);
+		run(Arrays.asList(lead, entry(12), joined), lead, joined, null);
+
+		assertEquals(3, _executed.size());
+		List<Command> reapplied = _executed.get(2);
+		assertEquals(1, reapplied.size());
+		assertEquals(Arrays.asList(range(11), range(13)), ranges(reapplied));
+	}
+
+	public void testReapplyJoinedReplacedInGap() throws IOException, RepositoryException {
+		LogEntry lead = entry(11);
+		LogEntry replacement = entry(12);
+		String module = SOURCE + "m";
+		replacement.getChangedPaths().put(module,
+			new LogEntryPath(NodeKind.DIR, module, ChangeType.REPLACED, SOURCE + "m", 10));
+		LogEntry joined = entry(13);
+		run(Arrays.asList(lead, replacement, joined), lead, joined, null);
+
+		// The module merged in revision 11 is not the one merged in revision 13.
+		assertEquals(Arrays.asList(range(11), range(13)), ranges(_executed.get(2)));
+		assertEquals(2, _executed.get(2).size());
+	}
+
+	public void testReapplyJoinedWithoutLog() throws IOException, RepositoryException {
+		LogEntry lead = entry(11);
+		LogEntry joined = entry(12);
+		run(Collections.<LogEntry> emptyList(), lead, joined, null);
+
+		// Unknown whether the module was replaced in revision 12.
+		assertEquals(2, _executed.get(2).size());
+	}
+
+	public void testJournalJoined() throws IOException, RepositoryException {
+		File file = new File(_workspace, "session.journal");
+		SessionJournal journal = new SessionJournal(file, "key");
+		LogEntry lead = entry(11);
+		LogEntry joined = entry(12);
+		run(Arrays.asList(lead, joined), lead, joined, journal);
+		journal.close();
+
+		SessionJournal loaded = new SessionJournal(file, "key");
+		assertTrue(loaded.load());
+		assertEquals(Outcome.SKIPPED, loaded.getOutcome(11));
+		assertEquals(Outcome.JOINED, loaded.getOutcome(12));
+		assertEquals(11, loaded.getValue(12));
+	}
+
+	private void run(LogEntry lead, LogEntry joined) throws IOException, RepositoryException {
+		run(Arrays.asList(lead, joined), lead, joined, null);
+	}
+
+	private void run(List<LogEntry> sourceLog, LogEntry lead, LogEntry joined, SessionJournal journal)
+			throws IOException, RepositoryException {
+		Utils.SYSTEM_IN =
+			new BufferedReader(new StringReader("join: " + joined.getRevision() + "\nre-apply\nskip\n"));
+
+		Configuration config = ValueFactory.newInstance(Configuration.class);
+		config.setSvnURL("http://svn.example.com/repos");
+		config.setWorkspaceRoot(_workspace);
+		config.setBranchPattern("/branches/[^/]+/");
+		ClientManager clientManager = newClientManager();
+		MergeHandler mergeHandler =
+			new MergeHandler(clientManager, config, new PathParser(config), Collections.singleton("m"));
+		MergeCommitHandler handler = new MergeCommitHandler(mergeHandler, clientManager, config);
+		handler.setSourceLog(SOURCE, sourceLog);
+
+		CommitSet commitSet = new CommitSet(lead, commit(config, lead));
+		commitSet.add(commit(config, joined));
+		List<CommitSet> commitSets = Collections.singletonList(commitSet);
+		if (journal != null) {
+			journal.start(commitSets);
+			handler.setJournal(journal);
+		}
+		handler.run(commitSets);
+	}
+
+	private static Commit commit(Configuration config, LogEntry entry) {
+		Commit result = new Commit(config, entry, new TicketMessage(entry, null));
+		result.setCommitMessage(entry.getMessage());
+		return result;
+	}
+
+	private static LogEntry entry(long revision) {
+		Map<String, LogEntryPath> changes = new HashMap<>();
+		for (String file : Arrays.asList("m/f.txt", "m/g.txt")) {
+			String path = SOURCE + file;
+			changes.put(path, new LogEntryPath(NodeKind.FILE, path, ChangeType.MODIFIED, null, 0));
+		}
+		return new LogEntry(changes, revision, "author", new Date(), "Ticket #1: Change " + revision + ".", false);
+	}
+
+	private static List<RevisionRange> ranges(List<Command> commands) {
+		List<RevisionRange> result = new ArrayList<>();
+		for (Command command : commands) {
+			result.addAll(((Merge) command).getRevisionRanges());
+		}
+		return result;
+	}
+
+	private static RevisionRange range(long revision) {
+		return RevisionRange.create(Revision.create(revision - 1), Revision.create(revision));
+	}
+
+	private ClientManager newClientManager() {
+		return (ClientManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+			new Class<?>[] { ClientManager.class }, new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					if (method.getName().equals("getClient")) {
+						return _client;
+					}
+					if (method.getName().equals("getOperationsFactory")) {
+						return _client.getOperationsFactory();
+					}
+					throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	private Client newClient() {
+		final CommandExecutor executor = new CommandExecutor() {
+			@Override
+			public CommandContext createContext() {
+				return new CommandContext() {
+					@Override
+					public Map<File, List<ConflictDescription>> getConflicts() {
+						return Collections.emptyMap();
+					}
+				};
+			}
+
+			@Override
+			public void execute(CommandContext context, Command command) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Map<File, List<ConflictDescription>> execute(Collection<Command> commands) {
+				_executed.add(new ArrayList<>(commands));
+				return Collections.emptyMap();
+			}
+		};
+		final DefaultOperationFactory factory = new DefaultOperationFactory() {
+			@Override
+			public CommandExecutor getExecutor() {
+				return executor;
+			}
+
+			@Override
+			public Settings settings() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		return (Client) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Client.class },
+			new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					if (method.getName().equals("getOperationsFactory")) {
+						return factory;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	private static void delete(File file) throws IOException {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		Files.delete(file.toPath());
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry;
+
+import static test.com.subcherry.scenario.Scenario.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.subcherry.LogReader;
+import com.subcherry.ParallelLogReader;
+import com.subcherry.repository.ClientManagerFactory;
+import com.subcherry.repository.command.ClientManager;
+import com.subcherry.repository.command.log.LogEntryHandler;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.core.Revision;
+
+import junit.framework.TestCase;
+import test.com.subcherry.scenario.Scenario;
+
+/**
+ * Test case for {@link ParallelLogReader}.
+ */
+@SuppressWarnings("javadoc")
+public class TestParallelLogReader extends TestCase {
+
+	private static final String PROVIDER = "javahl";
+
+	private static final int SLICES = 4;
+
+	private static final String[] BRANCH_PATHS = { "/branches/branch1/module1", "/branches/branch1" };
+
+	private ClientManager _clientManager;
+
+	private Scenario _scenario;
+
+	private LogReader _parallel;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_clientManager = ClientManagerFactory.getInstance(PROVIDER).createClientManager();
+		_scenario = createHistory(_clientManager, 100);
+		_parallel = init(new ParallelLogReader(_clientManager.getClient(), _scenario.getRepositoryUrl(),
+			ClientManagerFactory.getInstance(PROVIDER), null, SLICES));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_parallel.close();
+		_clientManager.close();
+		super.tearDown();
+	}
+
+	public void testAscending() throws RepositoryException {
+		assertEquals(read(single(), BRANCH_PATHS, Revision.create(1), Revision.HEAD),
+			read(_parallel, BRANCH_PATHS, Revision.create(1), Revision.HEAD));
+	}
+
+	public void testDescending() throws RepositoryException {
+		assertEquals(read(single(), BRANCH_PATHS, Revision.HEAD, Revision.create(1)),
+			read(_parallel, BRANCH_PATHS, Revision.HEAD, Revision.create(1)));
+	}
+
+	public void testPartialRange() throws RepositoryException {
+		Revision start = Revision.create(50);
+		Revision end = Revision.create(150);
+		assertEquals(read(single(), BRANCH_PATHS, start, end), read(_parallel, BRANCH_PATHS, start, end));
+	}
+
+	public void testRootPath() throws RepositoryException {
+		String[] paths = { "/" };
+		assertEquals(read(single(), paths, Revision.create(1), Revision.HEAD),
+			read(_parallel, paths, Revision.create(1), Revision.HEAD));
+	}
+
+	private LogReader single() {
+		return init(new LogReader(_clientManager.getClient(), _scenario.getRepositoryUrl()));
+	}
+
+	private static LogReader init(LogReader reader) {
+		reader.setPegRevision(Revision.HEAD);
+		reader.setDiscoverChangedPaths(true);
+		reader.setStopOnCopy(false);
+		return reader;
+	}
+
+	private static List<String> read(LogReader reader, String[] paths, Revision start, Revision end)
+			throws RepositoryException {
+		reader.setStartRevision(start);
+		reader.setEndRevision(end);
+		final List<String> result = new ArrayList<>();
+		reader.readLog(paths, new LogEntryHandler() {
+			@Override
+			public void handleLogEntry(LogEntry logEntry) {
+				result.add(logEntry.getRevision() + ": " + new TreeSet<>(logEntry.getChangedPaths().keySet()));
+			}
+		});
+		return result;
+	}
+
+	private static Scenario createHistory(ClientManager clientManager, int cnt) throws IOException,
+			RepositoryException {
+		Scenario s = scenario(clientManager);
+		s.mkdir("/trunk/module1");
+		s.mkdir("/branches");
+		for (int n = 0; n < cnt; n++) {
+			s.file("/trunk/module1/file" + n + ".txt");
+		}
+		s.copy("/branches/branch1", "/trunk");
+		for (int n = 0; n < cnt; n++) {
+			s.file("/branches/branch1/module1/branch" + n + ".txt");
+			s.file("/trunk/module1/trunk" + n + ".txt");
+		}
+		return s;
+	}
+
+}
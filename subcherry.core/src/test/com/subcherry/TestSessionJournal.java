@@ -0,0 +1,162 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.subcherry.CommitSet;
+import com.subcherry.SessionJournal;
+import com.subcherry.SessionJournal.Outcome;
+import com.subcherry.commit.Commit;
+import com.subcherry.commit.CommitHandler;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+import com.subcherry.utils.Utils.TicketMessage;
+
+/**
+ * Test case for {@link SessionJournal}.
+ */
+@SuppressWarnings("javadoc")
+public class TestSessionJournal extends TestCase {
+
+	private static final String KEY = "http://svn.example.com/repos|trunk|branches/b|ws|1|HEAD";
+
+	private File _file;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_file = File.createTempFile("session", ".journal");
+		_file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		_file.delete();
+		super.tearDown();
+	}
+
+	public void testResume() throws IOException {
+		SessionJournal journal = new SessionJournal(_file, KEY);
+		assertFalse(journal.load());
+		journal.start(Arrays.asList(set(entry(10, "Ticket #1: A."), entry(12, "Ticket #1: B.")),
+			set(entry(11, "Ticket #2: C."))));
+		journal.record(10, Outcome.COMMITTED, 100);
+		journal.record(10, Outcome.SKIPPED);
+		journal.record(12, Outcome.JOINED, 10);
+		journal.close();
+
+		SessionJournal loaded = new SessionJournal(_file, KEY);
+		assertTrue(loaded.load());
+		List<CommitSet> sets = loaded.getCommitSets(new CommitHandler(null, null));
+		assertEquals(2, sets.size());
+		assertEquals(2, sets.get(0).getCommits().size());
+		LogEntry entry = sets.get(0).getCommits().get(1).getLogEntry();
+		assertEquals(12, entry.getRevision());
+		assertEquals("Ticket #1: B.", entry.getMessage());
+		assertEquals("author", entry.getAuthor());
+		LogEntryPath path = entry.getChangedPaths().get("/m/f12");
+		assertEquals(ChangeType.ADDED, path.getType());
+		assertEquals("/m/g", path.getCopyPath());
+		assertEquals(5, path.getCopyRevision());
+
+		assertEquals(Outcome.COMMITTED, loaded.getOutcome(10));
+		assertEquals(100, loaded.getValue(10));
+		assertEquals(Outcome.JOINED, loaded.getOutcome(12));
+		assertNull(loaded.getOutcome(11));
+
+		loaded.resume();
+		loaded.record(11, Outcome.EXCLUDED);
+		loaded.delete();
+		assertFalse(_file.exists());
+	}
+
+	public void testOtherSession() throws IOException {
+		SessionJournal journal = new SessionJournal(_file, KEY);
+		journal.start(Arrays.asList(set(entry(10, "Ticket #1: A."))));
+		journal.close();
+
+		assertFalse(new SessionJournal(_file, KEY + "|other").load());
+	}
+
+	public void testInterruptedRecord() throws IOException {
+		SessionJournal journal = new SessionJournal(_file, KEY);
+		journal.start(Arrays.asList(set(entry(10, "Ticket #1: A.")), set(entry(11, "Ticket #2: B."))));
+		journal.record(10, Outcome.COMMITTED, 100);
+		journal.record(11, Outcome.SKIPPED);
+		journal.close();
+		try (RandomAccessFile out = new RandomAccessFile(_file, "rw")) {
+			out.setLength(out.length() - 3);
+		}
+
+		SessionJournal loaded = new SessionJournal(_file, KEY);
+		assertTrue(loaded.load());
+		assertEquals(Outcome.COMMITTED, loaded.getOutcome(10));
+		assertNull(loaded.getOutcome(11));
+
+		// Resuming drops the broken record, so that new records can be read again.
+		loaded.resume();
+		loaded.record(11, Outcome.EXCLUDED);
+		loaded.close();
+		SessionJournal reloaded = new SessionJournal(_file, KEY);
+		assertTrue(reloaded.load());
+		assertEquals(Outcome.EXCLUDED, reloaded.getOutcome(11));
+	}
+
+	public void testUnfinishedJoin() throws IOException {
+		SessionJournal journal = new SessionJournal(_file, KEY);
+		journal.start(Arrays.asList(set(entry(10, "Ticket #1: A."), entry(12, "Ticket #1: B."))));
+		journal.record(12, Outcome.JOINED, 10);
+		assertNull(journal.getOutcome(12));
+
+		journal.record(10, Outcome.COMMITTED, 100);
+		assertEquals(Outcome.JOINED, journal.getOutcome(12));
+		journal.delete();
+	}
+
+	private static LogEntry entry(long revision, String message) {
+		Map<String, LogEntryPath> changes = new HashMap<>();
+		String path = "/m/f" + revision;
+		changes.put(path, new LogEntryPath(NodeKind.FILE, path, ChangeType.ADDED, "/m/g", 5));
+		return new LogEntry(changes, revision, "author", new Date(), message, false);
+	}
+
+	private static CommitSet set(LogEntry... entries) {
+		CommitSet result = new CommitSet(entries[0], commit(entries[0]));
+		for (int n = 1; n < entries.length; n++) {
+			result.add(commit(entries[n]));
+		}
+		return result;
+	}
+
+	private static Commit commit(LogEntry entry) {
+		return new Commit(null, entry, new TicketMessage(entry, null));
+	}
+
+}
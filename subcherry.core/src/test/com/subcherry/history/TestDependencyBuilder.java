@@ -0,0 +1,299 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.history;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import com.subcherry.ReportPrinter;
+import com.subcherry.history.Change;
+import com.subcherry.history.DependencyBuilder;
+import com.subcherry.history.DependencyBuilder.Dependency;
+import com.subcherry.history.HistroyBuilder;
+import com.subcherry.history.Node;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+import com.subcherry.repository.core.RepositoryException;
+
+/**
+ * Test case for {@link DependencyBuilder}.
+ */
+@SuppressWarnings("javadoc")
+public class TestDependencyBuilder extends TestCase {
+
+	private static final String SOURCE = "/trunk";
+
+	private static final String TARGET = "/branches/stable";
+
+	private static final Date DATE = new Date();
+
+	public void testDependencies() throws RepositoryException {
+		HistroyBuilder builder = new HistroyBuilder(1);
+		List<LogEntry> log = new ArrayList<>();
+		log.add(entry(1, "Ticket #1: Initial.", dir(SOURCE), added(SOURCE + "/module/file", null, 0)));
+		log.add(entry(2, "Ticket #1: Branch.", added(TARGET, SOURCE, 1)));
+		log.add(entry(3, "Ticket #2: First change.", modified(SOURCE + "/module/file")));
+		log.add(entry(4, "Ticket #3: Second change.", modified(SOURCE + "/module/file")));
+		log.add(entry(5, "Ticket #4: Third change.", modified(SOURCE + "/module/file")));
+		log.add(entry(6, "Ticket #2: Ported to stable from trunk: First change.", modified(TARGET + "/module/file")));
+		log.add(entry(7, "Ticket #5: Other change.", modified(SOURCE + "/module/file")));
+		for (LogEntry entry : log) {
+			builder.handleLogEntry(entry);
+		}
+
+		DependencyBuilder dependencyBuilder = new DependencyBuilder(SOURCE, TARGET, null);
+		dependencyBuilder.analyzeConflicts(builder.getHistory(), Collections.singletonList(log.get(4)));
+
+		assertEquals("{5=[4]}", toString(dependencyBuilder.getDependencies()));
+	}
+
+	public void testModules() throws RepositoryException {
+		HistroyBuilder builder = new HistroyBuilder(1);
+		List<LogEntry> log = new ArrayList<>();
+		log.add(entry(1, "Ticket #1: Initial.", dir(SOURCE), added(SOURCE + "/module1/file", null, 0),
+			added(SOURCE + "/module2/file", null, 0)));
+		log.add(entry(2, "Ticket #1: Branch.", added(TARGET, SOURCE, 1)));
+		log.add(entry(3, "Ticket #2: Missing.", modified(SOURCE + "/module1/file"),
+			modified(SOURCE + "/module2/file")));
+		log.add(entry(4, "Ticket #3: Merged.", modified(SOURCE + "/module1/file"),
+			modified(SOURCE + "/module2/file")));
+		for (LogEntry entry : log) {
+			builder.handleLogEntry(entry);
+		}
+
+		DependencyBuilder dependencyBuilder =
+			new DependencyBuilder(SOURCE, TARGET, Collections.singleton("module2"));
+		dependencyBuilder.analyzeConflicts(builder.getHistory(), Collections.singletonList(log.get(3)));
+
+		Dependency dependency = dependencyBuilder.getDependencies().values().iterator().next();
+		Set<Node> nodes = dependency.getRequiredChanges().values().iterator().next();
+		assertEquals(1, nodes.size());
+		assertEquals(SOURCE + "/module2/file", nodes.iterator().next().getPath());
+	}
+
+	public void testParallelReport() throws RepositoryException, UnsupportedEncodingException {
+		HistroyBuilder builder = new HistroyBuilder(1);
+		List<LogEntry> mergeLog = createHistory(builder, 5000, 200);
+
+		DependencyBuilder sequential = new DependencyBuilder(SOURCE, TARGET, null);
+		sequential.setParallelism(1);
+		sequential.analyzeConflicts(builder.getHistory(), mergeLog);
+		String expected = report(sequential.getDependencies());
+		assertTrue(expected.contains("    * ["));
+
+		for (int n = 0; n < 3; n++) {
+			DependencyBuilder parallel = new DependencyBuilder(SOURCE, TARGET, null);
+			parallel.setParallelism(4);
+			parallel.analyzeConflicts(builder.getHistory(), mergeLog);
+			assertEquals(expected, report(parallel.getDependencies()));
+		}
+	}
+
+	public void testLargeHistory() throws RepositoryException {
+		HistroyBuilder builder = new HistroyBuilder(1);
+		List<LogEntry> mergeLog = createHistory(builder, 5000, 200);
+		Set<Long> merged = new HashSet<>();
+		for (LogEntry entry : mergeLog) {
+			merged.add(entry.getRevision());
+		}
+
+		Map<Change, Dependency> dependencies = analyze(builder, mergeLog);
+		assertFalse(dependencies.isEmpty());
+		for (Dependency dependency : dependencies.values()) {
+			long revision = dependency.getChange().getRevision();
+			assertTrue(merged.contains(revision));
+			for (Entry<Change, Set<Node>> required : dependency.getRequiredChanges().entrySet()) {
+				assertTrue(required.getKey().getRevision() < revision);
+				for (Node node : required.getValue()) {
+					assertTrue(node.getPath().startsWith(SOURCE + "/"));
+				}
+			}
+		}
+	}
+
+	private static Map<Change, Dependency> analyze(HistroyBuilder builder, List<LogEntry> mergeLog) {
+		DependencyBuilder dependencyBuilder = new DependencyBuilder(SOURCE, TARGET, null);
+		dependencyBuilder.analyzeConflicts(builder.getHistory(), mergeLog);
+		return dependencyBuilder.getDependencies();
+	}
+
+	/**
+	 * Prints the conflict report without ticket information.
+	 */
+	private static String report(Map<Change, Dependency> dependencies) throws UnsupportedEncodingException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(buffer, true, "UTF-8");
+		new ReportPrinter(out).printReport(dependencies, null, null, null);
+		out.close();
+		return buffer.toString("UTF-8");
+	}
+
+	/**
+	 * Builds a history from {@link #createLog(List, int, int)}.
+	 *
+	 * @return The last source log entries that are merged.
+	 */
+	static List<LogEntry> createHistory(HistroyBuilder builder, int revisions, int merged)
+			throws RepositoryException {
+		List<LogEntry> log = new ArrayList<>();
+		List<LogEntry> result = createLog(log, revisions, merged);
+		for (LogEntry entry : log) {
+			builder.handleLogEntry(entry);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates a log with source and target branch, in which about half of the source changes are
+	 * ported to the target branch. The log also contains renames on the source branch and
+	 * unrelated changes on other branches.
+	 *
+	 * @param log
+	 *        The list to add the complete log to.
+	 * @return The last source log entries that are merged.
+	 */
+	static List<LogEntry> createLog(List<LogEntry> log, int revisions, int merged) {
+		Random rnd = new Random(42);
+		int files = 2000;
+		long rev = 1;
+		log.add(entry(rev++, "Ticket #1: Initial.", dir(SOURCE)));
+		for (int n = 0; n < 10; n++) {
+			log.add(entry(rev++, "Ticket #1: Other branch.", dir("/branches/b" + n)));
+		}
+		List<String> sourceFiles = new ArrayList<>();
+		for (int n = 0; n < files; n++) {
+			String file = file(SOURCE, n);
+			sourceFiles.add(file);
+			log.add(entry(rev++, "Ticket #1: Initial.", added(file, null, 0)));
+		}
+		log.add(entry(rev, "Ticket #1: Branch.", added(TARGET, SOURCE, rev - 1)));
+		rev++;
+
+		List<LogEntry> sourceLog = new ArrayList<>();
+		while (rev <= revisions) {
+			int ticket = 2 + rnd.nextInt(revisions / 10);
+			int op = rnd.nextInt(100);
+			if (op < 40) {
+				String other = "/branches/b" + rnd.nextInt(10) + "/module" + rnd.nextInt(10) + "/File"
+					+ rnd.nextInt(5000) + ".java";
+				log.add(entry(rev++, "Ticket #" + ticket + ": Other change.", modified(other)));
+				continue;
+			}
+
+			int index = rnd.nextInt(files);
+			String file = sourceFiles.get(index);
+			String message = "Ticket #" + ticket + ": Change " + rev + " with some description.";
+			LogEntry sourceEntry;
+			if (op < 42) {
+				String renamed = file.replace(".java", "x.java");
+				sourceFiles.set(index, renamed);
+				sourceEntry = entry(rev, message, added(renamed, file, rev - 1), deleted(file));
+			} else {
+				sourceEntry = entry(rev, message, modified(file));
+			}
+			rev++;
+			log.add(sourceEntry);
+			sourceLog.add(sourceEntry);
+
+			if (rev <= revisions && rnd.nextBoolean() && file.equals(sourceFiles.get(index))) {
+				String portMessage = "Ticket #" + ticket + ": Ported to stable from trunk: Change " + (rev - 1)
+					+ " with some description.";
+				log.add(entry(rev++, portMessage, modified(TARGET + file.substring(SOURCE.length()))));
+			}
+		}
+		return new ArrayList<>(sourceLog.subList(sourceLog.size() - merged, sourceLog.size()));
+	}
+
+	private static String file(String branch, int n) {
+		return branch + "/module" + (n % 10) + "/src/pkg" + (n % 100) + "/File" + n + ".java";
+	}
+
+	static String toString(Map<Change, Dependency> dependencies) {
+		Map<Long, Set<Long>> result = new TreeMap<>();
+		for (Dependency dependency : dependencies.values()) {
+			Set<Long> required = new TreeSet<>();
+			for (Change change : dependency.getRequiredChanges().keySet()) {
+				required.add(change.getRevision());
+			}
+			result.put(dependency.getChange().getRevision(), required);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Dependencies with the paths of the nodes, on which they occur.
+	 */
+	static String toStringWithNodes(Map<Change, Dependency> dependencies) {
+		Map<Long, Map<Long, Set<String>>> result = new TreeMap<>();
+		for (Dependency dependency : dependencies.values()) {
+			Map<Long, Set<String>> required = new TreeMap<>();
+			for (Entry<Change, Set<Node>> entry : dependency.getRequiredChanges().entrySet()) {
+				Set<String> paths = new TreeSet<>();
+				for (Node node : entry.getValue()) {
+					paths.add(node.getPath());
+				}
+				required.put(entry.getKey().getRevision(), paths);
+			}
+			result.put(dependency.getChange().getRevision(), required);
+		}
+		return result.toString();
+	}
+
+	static LogEntry entry(long revision, String message, LogEntryPath... changes) {
+		Map<String, LogEntryPath> paths = new HashMap<>();
+		for (LogEntryPath change : changes) {
+			paths.put(change.getPath(), change);
+		}
+		return new LogEntry(paths, revision, "author", DATE, message, false);
+	}
+
+	static LogEntryPath added(String path, String copyPath, long copyRevision) {
+		NodeKind kind = copyPath == null || path.endsWith(".java") ? NodeKind.FILE : NodeKind.DIR;
+		return new LogEntryPath(kind, path, ChangeType.ADDED, copyPath, copyRevision);
+	}
+
+	private static LogEntryPath dir(String path) {
+		return new LogEntryPath(NodeKind.DIR, path, ChangeType.ADDED, null, 0);
+	}
+
+	private static LogEntryPath modified(String path) {
+		return new LogEntryPath(NodeKind.FILE, path, ChangeType.MODIFIED, null, 0);
+	}
+
+	private static LogEntryPath deleted(String path) {
+		return new LogEntryPath(NodeKind.FILE, path, ChangeType.DELETED, null, 0);
+	}
+
+}
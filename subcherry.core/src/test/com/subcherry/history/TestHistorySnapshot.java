@@ -0,0 +1,209 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.history;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import com.subcherry.history.Change;
+import com.subcherry.history.History;
+import com.subcherry.history.HistorySnapshot;
+import com.subcherry.history.HistroyBuilder;
+import com.subcherry.history.Node;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+import com.subcherry.repository.core.RepositoryException;
+
+/**
+ * Test case for {@link HistorySnapshot}.
+ */
+@SuppressWarnings("javadoc")
+public class TestHistorySnapshot extends TestCase {
+
+	private static final String KEY = "test";
+
+	private static final long START = 100;
+
+	public void testRoundTrip() throws Exception {
+		List<LogEntry> log = createLog(5000);
+		History history = build(new HistroyBuilder(START), log);
+
+		History loaded = read(write(history, KEY), KEY);
+		assertEquals(history.getStartRevision(), loaded.getStartRevision());
+		assertEquals(history.getLastRevision(), loaded.getLastRevision());
+		assertEquals(dump(history), dump(loaded));
+	}
+
+	public void testContinue() throws Exception {
+		List<LogEntry> log = createLog(5000);
+		History expected = build(new HistroyBuilder(START), log);
+
+		List<LogEntry> first = log.subList(0, log.size() / 2);
+		List<LogEntry> rest = log.subList(log.size() / 2, log.size());
+		History partial = build(new HistroyBuilder(START), first);
+		assertEquals(first.get(first.size() - 1).getRevision(), partial.getLastRevision());
+
+		History continued = build(new HistroyBuilder(read(write(partial, KEY), KEY)), rest);
+		assertEquals(dump(expected), dump(continued));
+	}
+
+	public void testEmpty() throws Exception {
+		History history = new History(START);
+		assertEquals(START - 1, history.getLastRevision());
+		History loaded = read(write(history, KEY), KEY);
+		assertEquals(START - 1, loaded.getLastRevision());
+		assertTrue(loaded.getChangesByRevision().isEmpty());
+	}
+
+	public void testKeyMismatch() throws Exception {
+		History history = build(new HistroyBuilder(START), createLog(100));
+		assertNull(read(write(history, KEY), "other"));
+	}
+
+	public void testFile() throws Exception {
+		File file = File.createTempFile("history", ".bin");
+		try {
+			History history = build(new HistroyBuilder(START), createLog(1000));
+			HistorySnapshot.save(file, KEY, history);
+			assertEquals(dump(history), dump(HistorySnapshot.load(file, KEY)));
+			assertFalse(new File(file.getPath() + ".tmp").exists());
+		} finally {
+			file.delete();
+		}
+		assertNull(HistorySnapshot.load(file, KEY));
+	}
+
+	public void testContinueFromFile() throws Exception {
+		List<LogEntry> log = createLog(20000);
+		List<LogEntry> old = log.subList(0, log.size() - 20);
+		List<LogEntry> added = log.subList(log.size() - 20, log.size());
+
+		File file = File.createTempFile("history", ".bin");
+		try {
+			HistorySnapshot.save(file, KEY, build(new HistroyBuilder(START), old));
+
+			History cold = build(new HistroyBuilder(START), log);
+			History warm = build(new HistroyBuilder(HistorySnapshot.load(file, KEY)), added);
+			assertEquals(dump(cold), dump(warm));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static byte[] write(History history, String key) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(buffer)) {
+			HistorySnapshot.write(out, key, history);
+		}
+		return buffer.toByteArray();
+	}
+
+	private static History read(byte[] data, String key) throws IOException {
+		return HistorySnapshot.read(new DataInputStream(new ByteArrayInputStream(data)), key);
+	}
+
+	private static History build(HistroyBuilder builder, List<LogEntry> log) throws RepositoryException {
+		for (LogEntry entry : log) {
+			builder.handleLogEntry(entry);
+		}
+		return builder.getHistory();
+	}
+
+	/**
+	 * Textual representation of all nodes, their predecessors, copy links and changes.
+	 */
+	private static String dump(History history) {
+		StringBuilder result = new StringBuilder();
+		Map<Long, Change> changes = new TreeMap<>(history.getChangesByRevision());
+		for (Change change : changes.values()) {
+			result.append(change.getRevision()).append(' ').append(change.getAuthor()).append(' ')
+				.append(change.getDate().getTime()).append(' ').append(change.getMessage()).append(' ')
+				.append(change.getKey()).append('\n');
+		}
+		for (Node latest : history.getNodes("")) {
+			for (Node node = latest; node != null; node = node.getBefore()) {
+				result.append(node);
+				Node copyNode = node.getCopyNode();
+				if (copyNode != null) {
+					result.append(" <- ").append(copyNode).append('@').append(node.getCopyRevision());
+				}
+				result.append(':');
+				for (Change change : node.getChanges()) {
+					result.append(' ').append(change.getRevision());
+				}
+				result.append('\n');
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Creates a log with file changes on trunk and branches, module copies (partly from before the
+	 * start revision) and module deletes.
+	 */
+	private static List<LogEntry> createLog(int revisions) {
+		Random rnd = new Random(42);
+		Date date = new Date(1400000000000L);
+		List<LogEntry> result = new ArrayList<>();
+		Set<String> modules = new HashSet<>();
+		for (long rev = START; rev < START + revisions; rev++) {
+			String module = "/module" + rnd.nextInt(10);
+			String branch = rnd.nextInt(3) == 0 ? "/trunk" : "/branches/b" + rnd.nextInt(4);
+			String modulePath = branch + module;
+			LogEntryPath change;
+			int op = rnd.nextInt(100);
+			if (op < 3 && !modulePath.startsWith("/trunk")) {
+				if (modules.add(modulePath)) {
+					// Copy from trunk, in the first revisions from paths not recorded.
+					long copyRevision = rev - 1 - rnd.nextInt(rev < START + 200 ? 150 : 10);
+					change = new LogEntryPath(NodeKind.DIR, modulePath, ChangeType.ADDED, "/trunk" + module,
+						copyRevision);
+				} else {
+					modules.remove(modulePath);
+					change = new LogEntryPath(NodeKind.DIR, modulePath, ChangeType.DELETED, null, 0);
+				}
+			} else {
+				String file = modulePath + "/src/pkg" + rnd.nextInt(20) + "/File" + rnd.nextInt(30) + ".java";
+				ChangeType type = rnd.nextInt(10) == 0 ? ChangeType.ADDED : ChangeType.MODIFIED;
+				change = new LogEntryPath(NodeKind.FILE, file, type, null, 0);
+			}
+			String message = "Ticket #" + rnd.nextInt(500) + ": Change " + rev + ".";
+			result.add(new LogEntry(Collections.singletonMap(change.getPath(), change), rev, "author" + rnd.nextInt(5),
+				new Date(date.getTime() + rev * 1000), message, false));
+		}
+		return result;
+	}
+
+}
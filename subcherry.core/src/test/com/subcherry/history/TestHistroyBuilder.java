@@ -22,9 +22,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
@@ -233,6 +235,115 @@ public class TestHistroyBuilder extends TestCase {
 			"/branches/stable/file-3");
 	}
 
+	public void testContentsOfDirectoryPath() throws RepositoryException {
+		create(50, "/branches/unstable");
+		create(60, "/branches/unstable/file-1");
+		create(70, "/branches/unstable-2/file-2");
+
+		assertNodes(
+			"/branches/unstable",
+			"/branches/unstable/file-1");
+		List<Node> contents = _builder.getHistory().getNodes("/branches/unstable/");
+		assertEquals(1, contents.size());
+		assertEquals("/branches/unstable/file-1", contents.get(0).getPath());
+	}
+
+	public void testChangesUpTo() throws RepositoryException {
+		create(50, "/b1");
+		create(60, "/b1/file");
+		modify(70, "/b1/file");
+		copy(80, "/b1", "/b2");
+		modify(90, "/b2/file");
+		modify(100, "/b2/file");
+		copy(110, "/b2", "/b3");
+		modify(120, "/b3/file");
+
+		Node node = getNodeNotNull("/b3/file");
+		assertEquals(revisions(60, 70, 90, 100, 120), revisions(node.getChanges()));
+		assertEquals(revisions(60, 70, 90, 100), revisions(node.getChangesUpTo(119)));
+		assertEquals(Long.valueOf(90), node.getChanges().get(2).getRevision());
+
+		List<Change> before = node.getChanges();
+		modify(130, "/b3/file");
+		assertEquals(revisions(60, 70, 90, 100, 120), revisions(before));
+		assertEquals(revisions(60, 70, 90, 100, 120, 130), revisions(node.getChanges()));
+		assertSame(node.getChanges(), node.getChanges());
+	}
+
+	public void testCopyChain() throws RepositoryException {
+		_builder = new HistroyBuilder(1);
+		int generations = 200;
+		create(1, "/b0");
+		create(2, "/b0/file");
+		long rev = 3;
+		for (int n = 1; n <= generations; n++) {
+			modify(rev++, "/b" + (n - 1) + "/file");
+			copy(rev++, "/b" + (n - 1), "/b" + n);
+		}
+
+		List<Long> expected = revisions(2);
+		for (int n = 0; n <= generations; n++) {
+			Node node = getNodeNotNull("/b" + n + "/file");
+			if (n < generations) {
+				long modified = 2 * n + 3;
+				assertEquals(expected, revisions(node.getChangesUpTo(modified - 1)));
+				expected.add(modified);
+			}
+			assertEquals(expected, revisions(node.getChanges()));
+		}
+		assertEquals(1 + generations, expected.size());
+	}
+
+	public void testLargeHistory() throws RepositoryException {
+		_builder = new HistroyBuilder(1);
+		Map<String, Long> files = buildHistory(20000);
+		assertFalse(files.isEmpty());
+		for (Map.Entry<String, Long> entry : files.entrySet()) {
+			List<Long> revisions = revisions(getNodeNotNull(entry.getKey()).getChanges());
+			assertEquals(entry.getValue(), revisions.get(revisions.size() - 1));
+		}
+	}
+
+	/**
+	 * Builds a random history.
+	 * 
+	 * @return The existing files mapped to the revision of their last change.
+	 */
+	private Map<String, Long> buildHistory(int revisions) throws RepositoryException {
+		Map<String, Long> files = new HashMap<>();
+		Random rnd = new Random(42);
+		for (long rev = 1; rev <= revisions; rev++) {
+			String branchPath = "/branches/b" + rnd.nextInt(5);
+			String modulePath = branchPath + "/module" + rnd.nextInt(10);
+			if (rev % 100 == 0) {
+				// Also exercise sub-tree operations.
+				if (getNode(modulePath) != null) {
+					delete(rev, modulePath);
+					for (Iterator<String> it = files.keySet().iterator(); it.hasNext();) {
+						if (it.next().startsWith(modulePath + "/")) {
+							it.remove();
+						}
+					}
+				}
+				continue;
+			}
+			String path = modulePath + "/src/com/example/pkg" + rnd.nextInt(20) + "/sub" + rnd.nextInt(5)
+				+ "/File" + rnd.nextInt(50) + ".java";
+			boolean exists = getNode(path) != null;
+			assertEquals(path, files.containsKey(path), exists);
+			if (exists) {
+				modify(rev, path);
+			} else {
+				create(rev, path);
+			}
+			files.put(path, rev);
+		}
+		for (int n = 0; n < 5; n++) {
+			expandContents("/branches/b" + n);
+		}
+		return files;
+	}
+
 	private void assertNodes(String... expectedPaths) {
 		List<Node> nodes = _builder.getHistory().getNodes(expectedPaths[0]);
 		List<String> paths = new ArrayList<>();
@@ -0,0 +1,99 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.history;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.subcherry.history.PathTrie;
+import com.subcherry.history.PathTrie.Entry;
+
+/**
+ * Test case for {@link PathTrie}.
+ */
+@SuppressWarnings("javadoc")
+public class TestPathTrie extends TestCase {
+
+	public void testLookup() {
+		PathTrie<String> trie = new PathTrie<>();
+		assertNull(trie.put("/trunk/module/file", "file"));
+		assertEquals("file", trie.put("/trunk/module/file", "file2"));
+		assertEquals("file2", trie.get("/trunk/module/file"));
+		assertNull(trie.get("/trunk/module"));
+		assertNull(trie.get("/trunk/mod"));
+		assertNull(trie.getEntry("/branches"));
+
+		Entry<String> entry = trie.getEntry("/trunk/module/file");
+		assertEquals("/trunk/module/file", entry.getPath());
+		assertEquals("file", entry.getName());
+		assertEquals("/trunk/module", entry.getParent().getPath());
+		assertEquals("/trunk", entry.getParent().getParent().getPath());
+		assertEquals("", entry.getParent().getParent().getParent().getPath());
+		assertNull(entry.getParent().getParent().getParent().getParent());
+
+		assertSame(entry, trie.getEntry("/trunk/module").getChild("file"));
+		assertEquals("/trunk/module/other", trie.getEntry("/trunk/module").mkChild("other").getPath());
+		assertSame(trie.getEntry("/trunk/module/other"), trie.getEntry("/trunk/module").getChild("other"));
+	}
+
+	public void testEmptySegments() {
+		PathTrie<String> trie = new PathTrie<>();
+		trie.put("/", "root");
+		trie.put("", "empty");
+		trie.put("/trunk", "trunk");
+		assertEquals("root", trie.get("/"));
+		assertEquals("empty", trie.get(""));
+		assertEquals("trunk", trie.get("/trunk"));
+		assertNull(trie.get("trunk"));
+	}
+
+	public void testDescendants() {
+		PathTrie<String> trie = new PathTrie<>();
+		List<String> paths = new ArrayList<>();
+		for (int n = 0; n < 100; n++) {
+			paths.add("/trunk/module" + (n % 7) + "/file" + n);
+		}
+		for (String path : paths) {
+			trie.put(path, path);
+		}
+		trie.put("/trunk-2/file", "/trunk-2/file");
+		trie.put("/trunk/module3", "/trunk/module3");
+		paths.add("/trunk/module3");
+
+		List<String> sorted = new ArrayList<>();
+		trie.getEntry("/trunk").collectDescendantsSorted(sorted);
+		assertEquals(new HashSet<>(paths), new HashSet<>(sorted));
+		assertEquals(paths.size(), sorted.size());
+		assertTrue(sorted.indexOf("/trunk/module3") < sorted.indexOf("/trunk/module3/file3"));
+		assertTrue(sorted.indexOf("/trunk/module0/file7") < sorted.indexOf("/trunk/module1/file1"));
+
+		List<String> unsorted = new ArrayList<>();
+		trie.getEntry("/trunk").collectDescendants(unsorted);
+		assertEquals(new HashSet<>(paths), new HashSet<>(unsorted));
+
+		List<String> module = new ArrayList<>();
+		trie.getEntry("/trunk/module3").collectDescendantsSorted(module);
+		assertEquals(Arrays.asList("/trunk/module3/file10", "/trunk/module3/file17", "/trunk/module3/file24"),
+			module.subList(0, 3));
+	}
+
+}
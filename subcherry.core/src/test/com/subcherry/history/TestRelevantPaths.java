@@ -0,0 +1,105 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2014 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.history;
+
+import static test.com.subcherry.history.TestDependencyBuilder.added;
+import static test.com.subcherry.history.TestDependencyBuilder.createLog;
+import static test.com.subcherry.history.TestDependencyBuilder.entry;
+import static test.com.subcherry.history.TestDependencyBuilder.toStringWithNodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.subcherry.history.DependencyBuilder;
+import com.subcherry.history.History;
+import com.subcherry.history.HistroyBuilder;
+import com.subcherry.history.RelevantPaths;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.RepositoryException;
+
+/**
+ * Test case for {@link RelevantPaths} and a pruned {@link History}.
+ */
+@SuppressWarnings("javadoc")
+public class TestRelevantPaths extends TestCase {
+
+	private static final String SOURCE = "/trunk";
+
+	private static final String TARGET = "/branches/stable";
+
+	public void testRelevant() {
+		RelevantPaths paths = new RelevantPaths();
+		paths.add("/trunk/module/file");
+		assertTrue(paths.isRelevant("/trunk/module/file"));
+		assertTrue(paths.isRelevant("/trunk/module"));
+		assertTrue(paths.isRelevant("/trunk"));
+		assertFalse(paths.isRelevant("/trunk/module/other"));
+		assertFalse(paths.isRelevant("/trunk/module/file/child"));
+		assertEquals(1, paths.size());
+	}
+
+	public void testCopyAncestry() {
+		RelevantPaths paths = new RelevantPaths();
+		paths.add("/branches/stable/module/renamed");
+		paths.addCopyAncestry(Arrays.asList(
+			entry(1, "Ticket #1: Initial.", added("/trunk/module/file", "/old/file", 0)),
+			entry(2, "Ticket #1: Branch.", added("/branches/stable", "/trunk", 1)),
+			entry(3, "Ticket #2: Rename.", added("/branches/stable/module/renamed", "/branches/stable/module/file", 2))));
+		assertTrue(paths.isRelevant("/branches/stable/module/file"));
+		assertTrue(paths.isRelevant("/trunk/module/file"));
+		assertTrue(paths.isRelevant("/old/file"));
+		assertFalse(paths.isRelevant("/trunk/module/other"));
+		assertEquals(5, paths.size());
+	}
+
+	public void testPrunedDependencies() throws RepositoryException {
+		List<LogEntry> log = new ArrayList<>();
+		List<LogEntry> mergeLog = createLog(log, 5000, 200);
+
+		History full = build(new HistroyBuilder(1), log);
+		DependencyBuilder fullDependencies = new DependencyBuilder(SOURCE, TARGET, null);
+		fullDependencies.analyzeConflicts(full, mergeLog);
+		String expected = toStringWithNodes(fullDependencies.getDependencies());
+		assertTrue(expected.length() > 100);
+
+		DependencyBuilder prunedDependencies = new DependencyBuilder(SOURCE, TARGET, null);
+		History pruned = buildPruned(prunedDependencies, log, mergeLog);
+		prunedDependencies.analyzeConflicts(pruned, mergeLog);
+		assertEquals(expected, toStringWithNodes(prunedDependencies.getDependencies()));
+		assertTrue(pruned.getNodes("").size() < full.getNodes("").size() / 5);
+	}
+
+	private static History buildPruned(DependencyBuilder dependencyBuilder, List<LogEntry> log,
+			List<LogEntry> mergeLog) throws RepositoryException {
+		RelevantPaths relevantPaths = dependencyBuilder.getRelevantPaths(mergeLog);
+		relevantPaths.addCopyAncestry(log);
+		dependencyBuilder.collectTargetTicketIds(log);
+		return build(new HistroyBuilder(new History(1), relevantPaths::isRelevant), log);
+	}
+
+	private static History build(HistroyBuilder builder, List<LogEntry> log) throws RepositoryException {
+		for (LogEntry entry : log) {
+			builder.handleLogEntry(entry);
+		}
+		return builder.getHistory();
+	}
+
+}
@@ -202,8 +202,13 @@ public class TestMerge extends TestCase {
 		merged.setProperty("/module1", "svn:mergeinfo", "");
 		long r3 = merged.commit();
 
-		// TODO: Reverse merge info is not supported.
-		System.out.println(s.mergeInfoDiff("branches/branch2/module1", r3));
+		Map<String, List<RevisionRange>> reverted = s.mergeInfoDiff("branches/branch2/module1", r3);
+		assertFalse(reverted.isEmpty());
+		for (List<RevisionRange> ranges : reverted.values()) {
+			for (RevisionRange range : ranges) {
+				assertTrue(range.isReverse());
+			}
+		}
 	}
 
 	private <T> Set<T> set(T... values) {
@@ -1006,6 +1011,38 @@ public class TestMerge extends TestCase {
 			originalFooContents, mergedFooContents);
 	}
 
+	public void testCommitUpdateAfterForeignCommit() throws IOException, RepositoryException {
+		Scenario s = moduleScenario();
+		WC wc1 = s.wc("/branches/branch1");
+		wc1.file("module1/foo");
+		wc1.file("module1/bar");
+		wc1.commit();
+
+		WC wc2 = s.wc("/branches/branch1");
+		CommitContext context = new CommitContext(s.clientManager().getClient(), s.clientManager().getClient());
+		commitChange(s, wc2, context, "module1/foo");
+
+		// A commit of someone else in between.
+		wc1.update("module1/bar");
+		wc1.commit();
+		String foreignContents = wc1.load("module1/bar");
+
+		commitChange(s, wc2, context, "module1/foo");
+		assertEquals("Foreign commit not updated after commit.", foreignContents, wc2.load("module1/bar"));
+	}
+
+	private void commitChange(Scenario s, WC wc, CommitContext context, String path)
+			throws IOException, RepositoryException {
+		wc.update(path);
+		CommitConfig commitConfig = ValueFactory.newInstance(CommitConfig.class);
+		commitConfig.setWorkspaceRoot(wc.getDirectory());
+		Commit commit = new Commit(commitConfig, null, null);
+		commit.setCommitMessage(s.createMessage());
+		commit.addTouchedResources(Collections.singleton(path));
+		commit.run(context);
+		assertEquals("Not all changes were committed.", Collections.emptyList(), wc.getModified());
+	}
+
 	private long rebaseSvn(Scenario s, long origRevision) throws IOException, RepositoryException {
 		// Create rebase of the move with a regular SVN merge creating a cross branch copy.
 		WC wc2 = s.wc("/branches/branch-intermediate");
@@ -0,0 +1,189 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.merge;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.subcherry.BranchConfig;
+import com.subcherry.MergeConfig;
+import com.subcherry.merge.MergeHandler;
+import com.subcherry.repository.command.Client;
+import com.subcherry.repository.command.ClientManager;
+import com.subcherry.repository.command.Command;
+import com.subcherry.repository.command.Settings;
+import com.subcherry.repository.command.merge.CommandExecutor;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.impl.DefaultOperationFactory;
+import com.subcherry.utils.PathParser;
+
+import de.haumacher.common.config.ValueFactory;
+
+/**
+ * Test case for {@link MergeHandler#planMerge(LogEntry, Client)} that does not access a
+ * repository.
+ */
+@SuppressWarnings("javadoc")
+public class TestPlanMerge extends TestCase {
+
+	private static final int DIRS = 100;
+
+	private static final int FILES = 100;
+
+	private static final String SOURCE = "/branches/source/";
+
+	private static final long REVISION = 1000;
+
+	private File _workspace;
+
+	private Client _client;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_workspace = Files.createTempDirectory("workspace").toFile();
+		for (int dir = 0; dir < DIRS; dir++) {
+			File dirFile = new File(_workspace, "m/d" + dir);
+			assertTrue(dirFile.mkdirs());
+			for (int file = 0; file < FILES; file++) {
+				// Every tenth file is missing in the workspace.
+				if (file % 10 != 9) {
+					assertTrue(new File(dirFile, "f" + file + ".txt").createNewFile());
+				}
+			}
+		}
+		_client = newClient();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(_workspace);
+		super.tearDown();
+	}
+
+	public void testScanEquivalent() throws RepositoryException {
+		LogEntry entry = largeCommit();
+		assertEquals(commands(plan(entry, 0)), commands(plan(entry, 1)));
+	}
+
+	/**
+	 * A commit that moves a directory and modifies all files of the module.
+	 */
+	private LogEntry largeCommit() {
+		Map<String, LogEntryPath> changes = new HashMap<>();
+		add(changes, new LogEntryPath(NodeKind.DIR, SOURCE + "m/d0", ChangeType.DELETED, null, 0));
+		add(changes, new LogEntryPath(NodeKind.DIR, SOURCE + "m/moved", ChangeType.ADDED, SOURCE + "m/d0",
+			REVISION - 1));
+		for (int dir = 1; dir < DIRS; dir++) {
+			for (int file = 0; file < FILES; file++) {
+				add(changes, new LogEntryPath(NodeKind.FILE, SOURCE + "m/d" + dir + "/f" + file + ".txt",
+					ChangeType.MODIFIED, null, 0));
+			}
+		}
+		return new LogEntry(changes, REVISION, "author", new Date(), "Ticket #1: Large change.", false);
+	}
+
+	private List<Command> plan(LogEntry entry, int scanThreshold) throws RepositoryException {
+		MergeConfig mergeConfig = ValueFactory.newInstance(MergeConfig.class);
+		mergeConfig.setSvnURL("http://svn.example.com/repos");
+		mergeConfig.setSemanticMoves(true);
+		mergeConfig.setWorkspaceRoot(_workspace);
+		mergeConfig.setWorkspaceScanThreshold(scanThreshold);
+		BranchConfig branchConfig = ValueFactory.newInstance(BranchConfig.class);
+		branchConfig.setBranchPattern("/branches/[^/]+/");
+		MergeHandler handler = new MergeHandler(newClientManager(), mergeConfig, new PathParser(branchConfig),
+			Collections.singleton("m"));
+		return new ArrayList<>(handler.planMerge(entry, _client).getOperation().getCommands());
+	}
+
+	private static List<String> commands(List<Command> commands) {
+		List<String> result = new ArrayList<>();
+		for (Command command : commands) {
+			result.add(command.toString());
+		}
+		return result;
+	}
+
+	private static void add(Map<String, LogEntryPath> changes, LogEntryPath change) {
+		changes.put(change.getPath(), change);
+	}
+
+	private ClientManager newClientManager() {
+		return (ClientManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+			new Class<?>[] { ClientManager.class }, new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					if (method.getName().equals("getClient")) {
+						return _client;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	private Client newClient() {
+		final DefaultOperationFactory factory = new DefaultOperationFactory() {
+			@Override
+			public CommandExecutor getExecutor() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public Settings settings() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		return (Client) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Client.class },
+			new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					if (method.getName().equals("getOperationsFactory")) {
+						return factory;
+					}
+					throw new UnsupportedOperationException(method.getName());
+				}
+			});
+	}
+
+	private static void delete(File file) throws IOException {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		Files.delete(file.toPath());
+	}
+
+}
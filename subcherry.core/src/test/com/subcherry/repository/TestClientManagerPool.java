@@ -0,0 +1,205 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.subcherry.repository.ClientManagerFactory;
+import com.subcherry.repository.ClientManagerPool;
+import com.subcherry.repository.LoginCredential;
+import com.subcherry.repository.command.Client;
+import com.subcherry.repository.command.ClientManager;
+import com.subcherry.repository.command.OperationFactory;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link ClientManagerPool}.
+ */
+@SuppressWarnings("javadoc")
+public class TestClientManagerPool extends TestCase {
+
+	public void testLease() throws Exception {
+		TestFactory factory = new TestFactory();
+		LoginCredential credentials = new LoginCredential() {
+			@Override
+			public String getUser() {
+				return "user";
+			}
+
+			@Override
+			public String getPasswd() {
+				return "secret";
+			}
+		};
+		ClientManagerPool pool = new ClientManagerPool(factory, credentials, 2);
+
+		ClientManager first;
+		try (ClientManagerPool.Lease lease = pool.lease()) {
+			first = lease.getClientManager();
+			assertSame(credentials, ((TestClientManager) first)._credentials);
+		}
+		try (ClientManagerPool.Lease lease = pool.lease()) {
+			assertSame(first, lease.getClientManager());
+		}
+		assertEquals(1, factory._created.size());
+
+		ClientManagerPool.Lease lease1 = pool.lease();
+		ClientManagerPool.Lease lease2 = pool.lease();
+		assertNotSame(lease1.getClientManager(), lease2.getClientManager());
+		assertNull("Pool exhausted.", pool.tryLease());
+		lease1.close();
+		lease1.close();
+		ClientManagerPool.Lease lease3 = pool.tryLease();
+		assertNotNull(lease3);
+		assertNull(pool.tryLease());
+		lease2.close();
+		lease3.close();
+		assertEquals(2, factory._created.size());
+
+		pool.close();
+		for (TestClientManager clientManager : factory._created) {
+			assertTrue(clientManager._closed);
+		}
+	}
+
+	public void testReturnedAfterClose() throws Exception {
+		TestFactory factory = new TestFactory();
+		ClientManagerPool pool = new ClientManagerPool(factory, null, 1);
+		ClientManagerPool.Lease lease = pool.lease();
+		pool.close();
+		assertFalse(factory._created.get(0)._closed);
+		lease.close();
+		assertTrue(factory._created.get(0)._closed);
+		try {
+			pool.lease();
+			fail("Closed pool must not lease.");
+		} catch (IllegalStateException ex) {
+			// Expected.
+		}
+	}
+
+	public void testPrimary() throws Exception {
+		TestFactory factory = new TestFactory();
+		ClientManagerPool pool = new ClientManagerPool(factory, null, 1);
+		assertNull(pool.getClient());
+		try (ClientManagerPool.Lease lease = pool.lease()) {
+			assertNotSame(factory._created.get(0), lease.getClientManager());
+		}
+		pool.close();
+		assertTrue(factory._created.get(0)._closed);
+	}
+
+	public void testConcurrentUse() throws Exception {
+		final int size = 3;
+		TestFactory factory = new TestFactory();
+		final ClientManagerPool pool = new ClientManagerPool(factory, null, size);
+		final AtomicInteger inUse = new AtomicInteger();
+		final AtomicInteger maxInUse = new AtomicInteger();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Void>> results = new ArrayList<>();
+			for (int n = 0; n < 100; n++) {
+				results.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						try (ClientManagerPool.Lease lease = pool.lease()) {
+							TestClientManager clientManager = (TestClientManager) lease.getClientManager();
+							assertEquals(1, clientManager._users.incrementAndGet());
+							int current = inUse.incrementAndGet();
+							while (true) {
+								int max = maxInUse.get();
+								if (current <= max || maxInUse.compareAndSet(max, current)) {
+									break;
+								}
+							}
+							Thread.sleep(1);
+							inUse.decrementAndGet();
+							clientManager._users.decrementAndGet();
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertTrue(factory._created.size() <= size);
+		assertTrue(maxInUse.get() <= size);
+		pool.close();
+	}
+
+	static class TestFactory extends ClientManagerFactory {
+
+		final List<TestClientManager> _created = new ArrayList<>();
+
+		@Override
+		public String getProviderName() {
+			return "test";
+		}
+
+		@Override
+		public synchronized ClientManager createClientManager(LoginCredential svnCredentials) {
+			TestClientManager result = new TestClientManager(svnCredentials);
+			_created.add(result);
+			return result;
+		}
+
+	}
+
+	static class TestClientManager implements ClientManager {
+
+		final LoginCredential _credentials;
+
+		final AtomicInteger _users = new AtomicInteger();
+
+		volatile boolean _closed;
+
+		public TestClientManager(LoginCredential credentials) {
+			_credentials = credentials;
+		}
+
+		@Override
+		public OperationFactory getOperationsFactory() {
+			return null;
+		}
+
+		@Override
+		public Client getClient() {
+			return null;
+		}
+
+		@Override
+		public void close() {
+			_closed = true;
+		}
+
+	}
+
+}
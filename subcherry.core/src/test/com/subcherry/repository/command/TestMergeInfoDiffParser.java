@@ -0,0 +1,169 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.repository.command;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.subcherry.repository.command.MergeInfoDiffParser;
+import com.subcherry.repository.core.Revision;
+import com.subcherry.repository.core.RevisionRange;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link MergeInfoDiffParser}.
+ */
+@SuppressWarnings("javadoc")
+public class TestMergeInfoDiffParser extends TestCase {
+
+	private static final String SEPARATOR =
+		"___________________________________________________________________";
+
+	public void testMerged() {
+		Map<String, List<RevisionRange>> result = parse(
+			"Index: module1",
+			"===================================================================",
+			"--- module1	(revision 9)",
+			"+++ module1	(revision 10)",
+			"",
+			"Property changes on: module1",
+			SEPARATOR,
+			"Modified: svn:mergeinfo",
+			"   Merged /branches/branch1/module1:r3-5,7*,r9",
+			"   Merged /trunk/module1:r2",
+			"");
+		assertEquals(2, result.size());
+		assertEquals(Arrays.asList(range(2, 5), range(6, 7), range(8, 9)), result.get("/branches/branch1/module1"));
+		assertEquals(Collections.singletonList(range(1, 2)), result.get("/trunk/module1"));
+	}
+
+	public void testReverseMerged() {
+		Map<String, List<RevisionRange>> result = parse(
+			"Property changes on: module1",
+			SEPARATOR,
+			"Modified: svn:mergeinfo",
+			"   Reverse-merged /trunk/module1:r4-6",
+			"   Merged /trunk/module1:r8",
+			"");
+		List<RevisionRange> ranges = result.get("/trunk/module1");
+		assertEquals(Arrays.asList(range(6, 3), range(7, 8)), ranges);
+		assertTrue(ranges.get(0).isReverse());
+		assertFalse(ranges.get(1).isReverse());
+	}
+
+	public void testOtherProperties() {
+		Map<String, List<RevisionRange>> result = parse(
+			"Property changes on: module1",
+			SEPARATOR,
+			"Added: myproperty",
+			"## -0,0 +1 ##",
+			"+myvalue",
+			"\\ No newline at end of property",
+			"Modified: svn:mergeinfo",
+			"   Merged /trunk/module1:r5",
+			"Added: otherproperty",
+			"## -0,0 +1 ##",
+			"+   Merged /trunk/module1:r6");
+		assertEquals(Collections.singletonList(range(4, 5)), result.get("/trunk/module1"));
+	}
+
+	public void testWindowsLineEnds() {
+		MergeInfoDiffParser parser = new MergeInfoDiffParser(StandardCharsets.UTF_8);
+		write(parser, "Property changes on: module1\r\n" + SEPARATOR
+			+ "\r\nModified: svn:mergeinfo\r\n   Merged /trunk/module1:r5-6\r\n\r\n");
+		parser.close();
+		assertTrue(parser.isDone());
+		assertEquals(Collections.singletonList(range(4, 6)), parser.getResult().get("/trunk/module1"));
+	}
+
+	public void testLargeContent() {
+		StringBuilder content = new StringBuilder();
+		content.append("Index: module1/file\n");
+		content.append("===================================================================\n");
+		content.append("--- module1/file	(revision 9)\n");
+		content.append("+++ module1/file	(revision 10)\n");
+		content.append("@@ -0,0 +1,10000 @@\n");
+		for (int n = 0; n < 10000; n++) {
+			content.append("+Merged /trunk/module1:r" + n + " ");
+			for (int k = 0; k < 50; k++) {
+				content.append("__________");
+			}
+			content.append('\n');
+		}
+		content.append("Property changes on: module1\n");
+		content.append(SEPARATOR + "\n");
+		content.append("Modified: svn:mergeinfo\n");
+		content.append("   Merged /trunk/module1:r5\n");
+		content.append("Index: module1/other\n");
+		content.append("===================================================================\n");
+		content.append("Property changes on: module1/other\n");
+		content.append(SEPARATOR + "\n");
+		content.append("Modified: svn:mergeinfo\n");
+		content.append("   Merged /trunk/module1:r6\n");
+
+		MergeInfoDiffParser parser = new MergeInfoDiffParser(StandardCharsets.UTF_8);
+		byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+		for (int n = 0; n < bytes.length; n += 1000) {
+			parser.write(bytes, n, Math.min(1000, bytes.length - n));
+		}
+		parser.close();
+
+		assertTrue(parser.isDone());
+		assertEquals(Collections.singletonList(range(4, 5)), parser.getResult().get("/trunk/module1"));
+	}
+
+	public void testNoMergeInfo() {
+		Map<String, List<RevisionRange>> result = parse(
+			"Property changes on: module1",
+			SEPARATOR,
+			"Added: myproperty",
+			"## -0,0 +1 ##",
+			"+myvalue",
+			"");
+		assertTrue(result.isEmpty());
+	}
+
+	private static Map<String, List<RevisionRange>> parse(String... lines) {
+		MergeInfoDiffParser parser = new MergeInfoDiffParser(StandardCharsets.UTF_8);
+		StringBuilder diff = new StringBuilder();
+		for (String line : lines) {
+			diff.append(line);
+			diff.append('\n');
+		}
+		write(parser, diff.toString());
+		parser.close();
+		return parser.getResult();
+	}
+
+	private static void write(MergeInfoDiffParser parser, String diff) {
+		byte[] bytes = diff.getBytes(StandardCharsets.UTF_8);
+		// Write in small chunks to test lines spanning several writes.
+		for (int n = 0; n < bytes.length; n += 7) {
+			parser.write(bytes, n, Math.min(7, bytes.length - n));
+		}
+	}
+
+	private static RevisionRange range(long start, long end) {
+		return RevisionRange.create(Revision.create(start), Revision.create(end));
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.repository.command.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.subcherry.repository.command.log.LogEntryDictionary;
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link LogEntryDictionary}.
+ */
+@SuppressWarnings("javadoc")
+public class TestLogEntryDictionary extends TestCase {
+
+	public void testCompact() {
+		LogEntryDictionary dictionary = new LogEntryDictionary();
+		LogEntry entry = entry(42, "author", new Date(4711),
+			change("/branches/b1/module/b", ChangeType.MODIFIED, null, -1),
+			change("/branches/b1/module/a", ChangeType.ADDED, "/trunk/module/a", 40),
+			change("/branches/b1/module/c", ChangeType.DELETED, null, -1));
+
+		LogEntry compact = dictionary.compact(entry);
+		assertEquals(42, compact.getRevision());
+		assertEquals("author", compact.getAuthor());
+		assertEquals(new Date(4711), compact.getDate());
+		assertEquals("message 42", compact.getMessage());
+		assertEquals(entry.getChangedPaths(), compact.getChangedPaths());
+		assertEquals(Arrays.asList("/branches/b1/module/a", "/branches/b1/module/b", "/branches/b1/module/c"),
+			new ArrayList<>(compact.getChangedPaths().keySet()));
+		assertEquals("/trunk/module/a", compact.getChangedPaths().get("/branches/b1/module/a").getCopyPath());
+		assertNull(compact.getChangedPaths().get("/branches/b1/module"));
+		assertFalse(compact.getChangedPaths().containsKey("/branches/b1/module/d"));
+		assertSame(compact, dictionary.compact(compact));
+	}
+
+	public void testSharing() {
+		LogEntryDictionary dictionary = new LogEntryDictionary();
+		LogEntry entry1 = dictionary.compact(entry(1, new String("author"), null,
+			change(new String("/trunk/file"), ChangeType.MODIFIED, null, -1)));
+		LogEntry entry2 = dictionary.compact(entry(2, new String("author"), null,
+			change(new String("/trunk/file"), ChangeType.MODIFIED, null, -1),
+			change(new String("/trunk/other"), ChangeType.ADDED, new String("/trunk/file"), 1)));
+
+		assertNull(entry1.getDate());
+		assertSame(entry1.getAuthor(), entry2.getAuthor());
+		assertSame(entry1.getChangedPaths().get("/trunk/file"), entry2.getChangedPaths().get("/trunk/file"));
+		assertEquals("/trunk/file", entry2.getChangedPaths().get("/trunk/other").getCopyPath());
+	}
+
+	public void testPathLookup() {
+		LogEntry compact = new LogEntryDictionary().compact(entry(1, "author", null,
+			change("/", ChangeType.MODIFIED, null, -1),
+			change("/trunk/a", ChangeType.MODIFIED, null, -1),
+			change("/trunk/a/b", ChangeType.ADDED, "/trunk/c", 0),
+			change("/trunk/a-b", ChangeType.MODIFIED, null, -1),
+			change("relative/path", ChangeType.MODIFIED, null, -1)));
+		assertEquals(Arrays.asList("/", "/trunk/a", "/trunk/a-b", "/trunk/a/b", "relative/path"),
+			new ArrayList<>(compact.getChangedPaths().keySet()));
+		for (String path : compact.getChangedPaths().keySet()) {
+			assertEquals(path, compact.getChangedPaths().get(path).getPath());
+		}
+		assertEquals("/trunk/c", compact.getChangedPaths().get("/trunk/a/b").getCopyPath());
+		assertNull(compact.getChangedPaths().get(""));
+		assertNull(compact.getChangedPaths().get("/trunk"));
+		assertNull(compact.getChangedPaths().get("/trunk/"));
+		assertNull(compact.getChangedPaths().get("/trunk/a/"));
+		assertNull(compact.getChangedPaths().get("/trunk/a/b/c"));
+		assertNull(compact.getChangedPaths().get("/trunk/b"));
+	}
+
+	public void testNoChangedPaths() {
+		LogEntry entry = new LogEntry(null, 1, "author", null, "message", false);
+		assertNull(new LogEntryDictionary().compact(entry).getChangedPaths());
+	}
+
+	public void testUnmodifiable() {
+		LogEntry compact = new LogEntryDictionary().compact(
+			entry(1, "author", null, change("/trunk/file", ChangeType.MODIFIED, null, -1)));
+		try {
+			compact.getChangedPaths().remove("/trunk/file");
+			fail("Changed paths must not be modifiable.");
+		} catch (UnsupportedOperationException ex) {
+			// Expected.
+		}
+	}
+
+	public void testLargeHistory() {
+		List<LogEntry> plain = createHistory(5000);
+		List<LogEntry> compact = compact(plain);
+
+		assertEquals(plain.size(), compact.size());
+		for (int n = 0; n < plain.size(); n++) {
+			LogEntry expected = plain.get(n);
+			LogEntry actual = compact.get(n);
+			assertEquals(expected.getRevision(), actual.getRevision());
+			assertEquals(expected.getAuthor(), actual.getAuthor());
+			assertEquals(expected.getChangedPaths(), actual.getChangedPaths());
+		}
+	}
+
+	private static List<LogEntry> compact(List<LogEntry> entries) {
+		LogEntryDictionary dictionary = new LogEntryDictionary();
+		List<LogEntry> result = new ArrayList<>(entries.size());
+		for (LogEntry entry : entries) {
+			result.add(dictionary.compact(entry));
+		}
+		return result;
+	}
+
+	private static List<LogEntry> createHistory(int revisions) {
+		Random rnd = new Random(42);
+		String[] authors = { "alice", "bob", "carol", "dave" };
+		List<LogEntry> result = new ArrayList<>(revisions);
+		for (int rev = 1; rev <= revisions; rev++) {
+			int cnt = 1 + rnd.nextInt(10);
+			LogEntryPath[] changes = new LogEntryPath[cnt];
+			String branch = "/branches/branch" + rnd.nextInt(5) + "/module" + rnd.nextInt(10);
+			for (int n = 0; n < cnt; n++) {
+				// Build paths from scratch, as they are received from the repository.
+				String path = new StringBuilder(branch).append("/src/com/example/package").append(rnd.nextInt(20))
+					.append("/Class").append(rnd.nextInt(100)).append(".java").toString();
+				changes[n] = change(path, ChangeType.MODIFIED, null, -1);
+			}
+			result.add(entry(rev, new String(authors[rnd.nextInt(authors.length)]), new Date(rev * 1000L),
+				changes));
+		}
+		return result;
+	}
+
+	private static LogEntry entry(long revision, String author, Date date, LogEntryPath... changes) {
+		Map<String, LogEntryPath> changedPaths = new HashMap<>();
+		for (LogEntryPath change : changes) {
+			changedPaths.put(change.getPath(), change);
+		}
+		return new LogEntry(changedPaths, revision, author, date, "message " + revision, false);
+	}
+
+	private static LogEntryPath change(String path, ChangeType type, String copyPath, long copyRevision) {
+		return new LogEntryPath(NodeKind.FILE, path, type, copyPath, copyRevision);
+	}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.repository.command.merge;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.subcherry.repository.command.Command;
+import com.subcherry.repository.command.Settings;
+import com.subcherry.repository.command.merge.CommandExecutor;
+import com.subcherry.repository.command.merge.Merge;
+import com.subcherry.repository.command.merge.MergeCoalescer;
+import com.subcherry.repository.command.merge.MergeCoalescer.SourceIdentity;
+import com.subcherry.repository.command.wc.LocalDelete;
+import com.subcherry.repository.core.RepositoryURL;
+import com.subcherry.repository.core.Revision;
+import com.subcherry.repository.core.RevisionRange;
+import com.subcherry.repository.core.Target;
+import com.subcherry.repository.impl.DefaultOperationFactory;
+
+/**
+ * Test case for {@link MergeCoalescer}.
+ */
+@SuppressWarnings("javadoc")
+public class TestMergeCoalescer extends TestCase {
+
+	private static final String SOURCE = "http://svn.example.com/repos/trunk/module";
+
+	private final DefaultOperationFactory _factory = new DefaultOperationFactory() {
+		@Override
+		public CommandExecutor getExecutor() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Settings settings() {
+			throw new UnsupportedOperationException();
+		}
+	};
+
+	/**
+	 * {@link SourceIdentity} for a source that is never replaced.
+	 */
+	private static final SourceIdentity UNCHANGED = new SourceIdentity() {
+		@Override
+		public boolean isSame(RepositoryURL url, long earlierRevision, long laterRevision) {
+			return true;
+		}
+	};
+
+	public void testGap() {
+		List<Command> result = MergeCoalescer.coalesce(Arrays.<Command> asList(
+			merge(SOURCE, "module", 11),
+			merge(SOURCE, "module", 13),
+			merge(SOURCE, "module", 20)), UNCHANGED);
+		assertEquals(1, result.size());
+		Merge merge = (Merge) result.get(0);
+		assertEquals(Arrays.asList(range(11), range(13), range(20)), merge.getRevisionRanges());
+		assertEquals(Revision.create(20), merge.getSource().getPegRevision());
+	}
+
+	public void testContiguous() {
+		List<Command> result = MergeCoalescer.coalesce(Arrays.<Command> asList(
+			merge(SOURCE, "module", 10),
+			merge(SOURCE, "module", 11),
+			merge(SOURCE, "module", 12)), UNCHANGED);
+		assertEquals(1, result.size());
+		Merge merge = (Merge) result.get(0);
+		assertEquals(Arrays.asList(range(10), range(11), range(12)), merge.getRevisionRanges());
+		assertEquals(Revision.create(12), merge.getSource().getPegRevision());
+		assertEquals("svn merge -r9:r10 -r10:r11 -r11:r12 --allow-mixed-revisions --depth INFINITY "
+			+ SOURCE + "@r12 module", merge.toString());
+
+		Merge split = MergeCoalescer.split(merge, range(11));
+		assertEquals(Arrays.asList(range(11)), split.getRevisionRanges());
+		assertEquals(Revision.create(12), split.getSource().getPegRevision());
+		assertEquals(merge.getTarget(), split.getTarget());
+	}
+
+	public void testReplacedSource() {
+		List<Command> commands = Arrays.<Command> asList(
+			merge(SOURCE, "module", 10),
+			merge(SOURCE, "module", 11));
+		assertEquals(commands, MergeCoalescer.coalesce(commands));
+		assertEquals(commands, MergeCoalescer.coalesce(commands, new SourceIdentity() {
+			@Override
+			public boolean isSame(RepositoryURL url, long earlierRevision, long laterRevision) {
+				assertEquals(10, earlierRevision);
+				assertEquals(11, laterRevision);
+				return false;
+			}
+		}));
+	}
+
+	public void testSamePeg() {
+		Merge first = merge(SOURCE, "module", 10);
+		Merge second = merge(SOURCE, "module", 11);
+		second.setSource(first.getSource(), false);
+		List<Command> result = MergeCoalescer.coalesce(Arrays.<Command> asList(first, second));
+		assertEquals(1, result.size());
+		assertEquals(Arrays.asList(range(10), range(11)), ((Merge) result.get(0)).getRevisionRanges());
+		assertEquals(Revision.create(10), ((Merge) result.get(0)).getSource().getPegRevision());
+	}
+
+	public void testInterleaved() {
+		Merge module = merge(SOURCE, "module", 10);
+		Merge other = merge(SOURCE + "2", "other", 10);
+		List<Command> result = MergeCoalescer.coalesce(Arrays.<Command> asList(
+			module,
+			other,
+			merge(SOURCE, "module", 11),
+			merge(SOURCE + "2", "other", 11)), UNCHANGED);
+		assertEquals(2, result.size());
+		assertEquals(Arrays.asList(range(10), range(11)), ((Merge) result.get(0)).getRevisionRanges());
+		assertEquals(module.getTarget(), ((Merge) result.get(0)).getTarget());
+		assertEquals(Arrays.asList(range(10), range(11)), ((Merge) result.get(1)).getRevisionRanges());
+		assertEquals(other.getTarget(), ((Merge) result.get(1)).getTarget());
+	}
+
+	public void testOverlappingTarget() {
+		List<Command> commands = Arrays.<Command> asList(
+			merge(SOURCE, "module", 10),
+			merge(SOURCE + "/file", "module/file", 11),
+			merge(SOURCE, "module", 11));
+		assertEquals(commands, MergeCoalescer.coalesce(commands, UNCHANGED));
+	}
+
+	public void testIncompatible() {
+		Merge older = merge(SOURCE, "module", 10);
+		Merge otherTarget = merge(SOURCE, "other", 14);
+		Merge otherSource = merge(SOURCE + "2", "other", 15);
+		Merge recordOnly = merge(SOURCE + "2", "other", 16);
+		recordOnly.setRecordOnly(true);
+		List<Command> commands = Arrays.<Command> asList(
+			merge(SOURCE, "module", 11),
+			older,
+			otherTarget,
+			otherSource,
+			recordOnly);
+		assertEquals(commands, MergeCoalescer.coalesce(commands, UNCHANGED));
+	}
+
+	public void testInterrupted() {
+		LocalDelete delete = _factory.createLocalFileDelete();
+		delete.setTarget(Target.fromFile(new File("module/file")));
+		Merge first = merge(SOURCE, "module", 10);
+		Merge second = merge(SOURCE, "module", 11);
+		Merge third = merge(SOURCE, "module", 12);
+		List<Command> result =
+			MergeCoalescer.coalesce(Arrays.<Command> asList(first, delete, second, third), UNCHANGED);
+		assertEquals(3, result.size());
+		assertSame(first, result.get(0));
+		assertSame(delete, result.get(1));
+		assertEquals(Arrays.asList(range(11), range(12)), ((Merge) result.get(2)).getRevisionRanges());
+
+		// Originals are not modified.
+		assertEquals(Arrays.asList(range(11)), second.getRevisionRanges());
+	}
+
+	private Merge merge(String source, String target, long revision) {
+		Merge merge = _factory.createMerge();
+		merge.setAllowMixedRevisions(true);
+		merge.setTarget(Target.fromFile(new File(target)));
+		merge.setSource(Target.fromURL(RepositoryURL.parse(source), Revision.create(revision)), false);
+		merge.addRevisionRange(range(revision));
+		return merge;
+	}
+
+	private static RevisionRange range(long revision) {
+		return RevisionRange.create(Revision.create(revision - 1), Revision.create(revision));
+	}
+
+}
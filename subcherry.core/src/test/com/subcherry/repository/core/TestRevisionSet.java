@@ -0,0 +1,207 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.repository.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import com.subcherry.repository.core.Revision;
+import com.subcherry.repository.core.RevisionRange;
+import com.subcherry.repository.core.RevisionSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link RevisionSet}.
+ */
+@SuppressWarnings("javadoc")
+public class TestRevisionSet extends TestCase {
+
+	public void testCreate() {
+		RevisionSet set = RevisionSet.create(Arrays.asList(range(10, 20), range(0, 5), range(4, 8), range(20, 22)));
+		assertEquals("1-8,11-22", set.toString());
+		assertEquals(20, set.size());
+		assertEquals(Arrays.asList(range(0, 8), range(10, 22)), set.getRanges());
+	}
+
+	public void testReverseRange() {
+		assertEquals(RevisionSet.create(Arrays.asList(range(3, 7))),
+			RevisionSet.create(Arrays.asList(range(7, 3))));
+		assertTrue(RevisionSet.create(4, 7).containsAll(range(7, 3)));
+	}
+
+	public void testEmpty() {
+		assertTrue(RevisionSet.create(Collections.<RevisionRange> emptyList()).isEmpty());
+		assertTrue(RevisionSet.create(5, 4).isEmpty());
+		assertFalse(RevisionSet.EMPTY.contains(1));
+		assertTrue(RevisionSet.EMPTY.containsAll(RevisionSet.EMPTY));
+	}
+
+	public void testContains() {
+		RevisionSet set = RevisionSet.create(Arrays.asList(range(0, 3), range(10, 20), range(30, 31)));
+		for (long rev = 0; rev < 40; rev++) {
+			boolean expected = (rev >= 1 && rev <= 3) || (rev >= 11 && rev <= 20) || rev == 31;
+			assertEquals("Revision " + rev, expected, set.contains(rev));
+		}
+	}
+
+	public void testContainsAll() {
+		RevisionSet set = RevisionSet.create(Arrays.asList(range(0, 3), range(10, 20)));
+		assertTrue(set.containsAll(11, 20));
+		assertTrue(set.containsAll(15, 15));
+		assertFalse(set.containsAll(3, 11));
+		assertFalse(set.containsAll(19, 21));
+		assertTrue(set.containsAll(Arrays.asList(range(1, 2), range(12, 18))));
+		assertFalse(set.containsAll(Arrays.asList(range(1, 2), range(12, 21))));
+		assertTrue(set.containsAll(RevisionSet.create(12, 14)));
+		assertFalse(set.containsAll(RevisionSet.create(3, 11)));
+	}
+
+	public void testContainsAny() {
+		RevisionSet set = RevisionSet.create(Arrays.asList(range(0, 3), range(10, 20)));
+		assertTrue(set.containsAny(3, 11));
+		assertTrue(set.containsAny(range(25, 19)));
+		assertFalse(set.containsAny(4, 10));
+		assertFalse(set.containsAny(range(3, 10)));
+		assertFalse(RevisionSet.EMPTY.containsAny(1, 100));
+	}
+
+	public void testUnion() {
+		RevisionSet a = RevisionSet.create(Arrays.asList(range(0, 3), range(10, 20), range(40, 50)));
+		RevisionSet b = RevisionSet.create(Arrays.asList(range(3, 5), range(15, 25), range(60, 70)));
+		assertEquals("1-5,11-25,41-50,61-70", a.union(b).toString());
+		assertEquals(a.union(b), b.union(a));
+		assertSame(a, a.union(RevisionSet.EMPTY));
+	}
+
+	public void testIntersection() {
+		RevisionSet a = RevisionSet.create(Arrays.asList(range(0, 3), range(10, 20), range(40, 50)));
+		RevisionSet b = RevisionSet.create(Arrays.asList(range(2, 12), range(15, 45)));
+		assertEquals("3,11-12,16-20,41-45", a.intersection(b).toString());
+		assertEquals(a.intersection(b), b.intersection(a));
+		assertTrue(a.intersection(RevisionSet.EMPTY).isEmpty());
+	}
+
+	public void testRandom() {
+		Random rnd = new Random(42);
+		for (int round = 0; round < 100; round++) {
+			List<RevisionRange> rangesA = randomRanges(rnd, 200);
+			List<RevisionRange> rangesB = randomRanges(rnd, 200);
+			RevisionSet a = RevisionSet.create(rangesA);
+			RevisionSet b = RevisionSet.create(rangesB);
+			RevisionSet union = a.union(b);
+			RevisionSet intersection = a.intersection(b);
+			for (long rev = 0; rev < 1100; rev++) {
+				boolean inA = contains(rangesA, rev);
+				boolean inB = contains(rangesB, rev);
+				assertEquals(inA, a.contains(rev));
+				assertEquals(inA || inB, union.contains(rev));
+				assertEquals(inA && inB, intersection.contains(rev));
+			}
+			for (RevisionRange range : randomRanges(rnd, 20)) {
+				assertEquals(containsAll(rangesA, range), a.containsAll(range));
+			}
+		}
+	}
+
+	public void testManyRanges() {
+		Random rnd = new Random(42);
+		List<RevisionRange> ranges = new ArrayList<>();
+		long rev = 0;
+		for (int n = 0; n < 2000; n++) {
+			long start = rev + rnd.nextInt(10);
+			rev = start + 1 + rnd.nextInt(20);
+			ranges.add(range(start, rev));
+		}
+		List<RevisionRange> queries = new ArrayList<>();
+		for (int n = 0; n < 10000; n++) {
+			long start = rnd.nextInt((int) rev);
+			queries.add(range(start, start + 1 + rnd.nextInt(5)));
+		}
+		RevisionSet set = RevisionSet.create(ranges);
+
+		assertEquals(run(ranges, queries), run(set, queries));
+	}
+
+	private static int run(List<RevisionRange> ranges, List<RevisionRange> queries) {
+		int result = 0;
+		for (RevisionRange query : queries) {
+			if (contains(ranges, query.getEnd().getNumber())) {
+				result++;
+			}
+			if (containsAll(ranges, query)) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	private static int run(RevisionSet set, List<RevisionRange> queries) {
+		int result = 0;
+		for (RevisionRange query : queries) {
+			if (set.contains(query.getEnd().getNumber())) {
+				result++;
+			}
+			if (set.containsAll(query)) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Naive reference implementation of {@link RevisionSet#containsAll(RevisionRange)}.
+	 */
+	private static boolean containsAll(List<RevisionRange> ranges, RevisionRange value) {
+		for (long rev = value.getStart().getNumber() + 1, end = value.getEnd().getNumber(); rev <= end; rev++) {
+			if (!contains(ranges, rev)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Naive reference implementation of {@link RevisionSet#contains(long)}.
+	 */
+	private static boolean contains(List<RevisionRange> ranges, long rev) {
+		for (RevisionRange range : ranges) {
+			if (range.getStart().getNumber() < rev && rev <= range.getEnd().getNumber()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<RevisionRange> randomRanges(Random rnd, int cnt) {
+		List<RevisionRange> result = new ArrayList<>();
+		for (int n = 0; n < cnt; n++) {
+			long start = rnd.nextInt(1000);
+			result.add(range(start, start + 1 + rnd.nextInt(10)));
+		}
+		return result;
+	}
+
+	private static RevisionRange range(long start, long end) {
+		return RevisionRange.create(Revision.create(start), Revision.create(end));
+	}
+
+}
@@ -0,0 +1,229 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.repository.merge.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.subcherry.repository.command.status.StatusType;
+import com.subcherry.repository.merge.text.MyersDiff;
+import com.subcherry.repository.merge.text.MyersDiff.Edit;
+import com.subcherry.repository.merge.text.TextMerge;
+
+/**
+ * Test case for {@link TextMerge} and {@link MyersDiff}.
+ */
+@SuppressWarnings("javadoc")
+public class TestTextMerge extends TestCase {
+
+	public void testDiff() {
+		assertEquals(Arrays.asList(), MyersDiff.diff(lines("a", "b"), lines("a", "b")));
+		assertEquals(Arrays.asList(new Edit(1, 2, 1, 2)), MyersDiff.diff(lines("a", "b", "c"), lines("a", "x", "c")));
+		assertEquals(Arrays.asList(new Edit(0, 0, 0, 1), new Edit(2, 3, 3, 3)),
+			MyersDiff.diff(lines("a", "b", "c"), lines("x", "a", "b")));
+		assertEquals(Arrays.asList(new Edit(0, 2, 0, 0)), MyersDiff.diff(lines("a", "b"), lines()));
+	}
+
+	public void testDiffRandom() {
+		Random rnd = new Random(42);
+		for (int n = 0; n < 500; n++) {
+			int[] a = random(rnd, rnd.nextInt(40));
+			int[] b = mutate(rnd, a);
+			List<Edit> edits = MyersDiff.diff(a, b);
+			assertEquals(Arrays.toString(b), Arrays.toString(apply(a, b, edits)));
+			assertEquals(a.length + b.length - 2 * lcs(a, b), cost(edits));
+		}
+	}
+
+	public void testMergeDisjoint() {
+		assertMerge(StatusType.MERGED, "A\nb\nc\nd\nE\n",
+			"a\nb\nc\nd\ne\n",
+			"A\nb\nc\nd\ne\n",
+			"a\nb\nc\nd\nE\n");
+	}
+
+	public void testMergeIdentical() {
+		assertMerge(StatusType.MERGED, "a\nX\nc\n",
+			"a\nb\nc\n",
+			"a\nX\nc\n",
+			"a\nX\nc\n");
+	}
+
+	public void testMergeConflict() {
+		assertMerge(StatusType.CONFLICTED,
+			"a\n<<<<<<< .working\nL\n||||||| .base\nb\n=======\nR\n>>>>>>> .merge-right\nc\n",
+			"a\nb\nc\n",
+			"a\nL\nc\n",
+			"a\nR\nc\n");
+	}
+
+	public void testMergeAdjacentConflict() {
+		// Changes that touch each other cannot be ordered safely.
+		assertMerge(StatusType.CONFLICTED,
+			"a\n<<<<<<< .working\nB\nc\n||||||| .base\nb\nc\n=======\nb\nC\n>>>>>>> .merge-right\nd\n",
+			"a\nb\nc\nd\n",
+			"a\nB\nc\nd\n",
+			"a\nb\nC\nd\n");
+	}
+
+	public void testMergeLineEnds() {
+		assertMerge(StatusType.MERGED, "A\r\nb\r\nC\r\n",
+			"a\r\nb\r\nc\r\n",
+			"A\r\nb\r\nc\r\n",
+			"a\r\nb\r\nC\r\n");
+		assertMerge(StatusType.CONFLICTED,
+			"<<<<<<< .working\r\nL\r\n||||||| .base\r\na\r\n=======\r\nR\r\n>>>>>>> .merge-right\r\nb\r\n",
+			"a\r\nb\r\n",
+			"L\r\nb\r\n",
+			"R\r\nb\r\n");
+	}
+
+	public void testMergeMissingFinalNewline() {
+		assertMerge(StatusType.MERGED, "A\nb\nc",
+			"a\nb\nc",
+			"A\nb\nc",
+			"a\nb\nc");
+		assertMerge(StatusType.MERGED, "A\nb\nc\nd",
+			"a\nb\nc",
+			"A\nb\nc",
+			"a\nb\nc\nd");
+		assertMerge(StatusType.CONFLICTED,
+			"a\n<<<<<<< .working\nL\n||||||| .base\nb\n=======\nR\n>>>>>>> .merge-right\n",
+			"a\nb",
+			"a\nL",
+			"a\nR");
+	}
+
+	public void testMergeLargeFile() {
+		Random rnd = new Random(13);
+		List<String> base = new ArrayList<>();
+		for (int n = 0; n < 5000; n++) {
+			base.add("\tline " + n + " of a generated source file with some content;\n");
+		}
+		List<String> local = new ArrayList<>(base);
+		List<String> latest = new ArrayList<>(base);
+		List<String> expected = new ArrayList<>(base);
+		for (int n = 0; n < 100; n++) {
+			int index = 50 * n + rnd.nextInt(20);
+			String localLine = "\tlocal change " + n + ";\n";
+			String latestLine = "\tlatest change " + n + ";\n";
+			local.set(index, localLine);
+			latest.set(index + 25, latestLine);
+			expected.set(index, localLine);
+			expected.set(index + 25, latestLine);
+		}
+		assertMerge(StatusType.MERGED, join(expected), join(base), join(local), join(latest));
+	}
+
+	private static void assertMerge(StatusType expectedStatus, String expected, String base, String local,
+			String latest) {
+		StringBuilder result = new StringBuilder();
+		StatusType status = new TextMerge().merge(base, local, latest, result);
+		assertEquals(expected, result.toString());
+		assertEquals(expectedStatus, status);
+	}
+
+	private static List<String> lines(String... lines) {
+		return Arrays.asList(lines);
+	}
+
+	private static String join(List<String> lines) {
+		StringBuilder result = new StringBuilder();
+		for (String line : lines) {
+			result.append(line);
+		}
+		return result.toString();
+	}
+
+	private static int[] random(Random rnd, int length) {
+		int[] result = new int[length];
+		for (int n = 0; n < length; n++) {
+			result[n] = rnd.nextInt(5);
+		}
+		return result;
+	}
+
+	private static int[] mutate(Random rnd, int[] a) {
+		List<Integer> result = new ArrayList<>();
+		for (int x : a) {
+			switch (rnd.nextInt(6)) {
+				case 0:
+					break;
+				case 1:
+					result.add(rnd.nextInt(5));
+					result.add(x);
+					break;
+				case 2:
+					result.add(rnd.nextInt(5));
+					break;
+				default:
+					result.add(x);
+			}
+		}
+		int[] b = new int[result.size()];
+		for (int n = 0; n < b.length; n++) {
+			b[n] = result.get(n);
+		}
+		return b;
+	}
+
+	private static int[] apply(int[] a, int[] b, List<Edit> edits) {
+		List<Integer> result = new ArrayList<>();
+		int pos = 0;
+		for (Edit edit : edits) {
+			for (; pos < edit.getBeginA(); pos++) {
+				result.add(a[pos]);
+			}
+			for (int n = edit.getBeginB(); n < edit.getEndB(); n++) {
+				result.add(b[n]);
+			}
+			pos = edit.getEndA();
+		}
+		for (; pos < a.length; pos++) {
+			result.add(a[pos]);
+		}
+		int[] out = new int[result.size()];
+		for (int n = 0; n < out.length; n++) {
+			out[n] = result.get(n);
+		}
+		return out;
+	}
+
+	private static int cost(List<Edit> edits) {
+		int result = 0;
+		for (Edit edit : edits) {
+			result += edit.getEndA() - edit.getBeginA() + edit.getEndB() - edit.getBeginB();
+		}
+		return result;
+	}
+
+	private static int lcs(int[] a, int[] b) {
+		int[][] table = new int[a.length + 1][b.length + 1];
+		for (int i = a.length - 1; i >= 0; i--) {
+			for (int j = b.length - 1; j >= 0; j--) {
+				table[i][j] = a[i] == b[j] ? table[i + 1][j + 1] + 1 : Math.max(table[i + 1][j], table[i][j + 1]);
+			}
+		}
+		return table[0][0];
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.trac;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.subcherry.trac.TicketStore;
+import com.subcherry.trac.TracTicket;
+
+import junit.framework.TestCase;
+
+/**
+ * Test case for {@link TicketStore}.
+ */
+@SuppressWarnings("javadoc")
+public class TestTicketStore extends TestCase {
+
+	private static final String URL = "http://trac.example.com/login/xmlrpc";
+
+	private File _dir;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_dir = Files.createTempDirectory("tickets").toFile();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : _dir.listFiles()) {
+			file.delete();
+		}
+		_dir.delete();
+		super.tearDown();
+	}
+
+	public void testEmpty() throws IOException {
+		TicketStore store = new TicketStore(_dir, URL);
+		assertTrue(store.load().isEmpty());
+		assertEquals(Long.MIN_VALUE, store.getLastSync());
+	}
+
+	public void testRoundTrip() throws IOException {
+		TicketStore store = new TicketStore(_dir, URL);
+		store.load();
+		store.rewrite(4711, Arrays.asList(ticket(1, "first"), ticket(2, "second")));
+		store.add(Arrays.asList(ticket(3, "third"), ticket(1, "first changed")));
+
+		TicketStore reopened = new TicketStore(_dir, URL);
+		Map<Integer, TracTicket> tickets = reopened.load();
+		assertEquals(4711, reopened.getLastSync());
+		assertEquals(3, tickets.size());
+		assertEquals("first changed", tickets.get(1).getSummary());
+		assertEquals("second", tickets.get(2).getSummary());
+
+		TracTicket third = tickets.get(3);
+		assertEquals(Integer.valueOf(3), third.getNumber());
+		assertEquals(new Date(3000), third.getCreated());
+		assertEquals(new Date(3001), third.getModified());
+		assertEquals("3, 4", third.getDependsOn());
+		assertNull(third.getFollowUp());
+		assertEquals(Integer.valueOf(42), third.getAttributes().get("count"));
+	}
+
+	public void testRewrite() throws IOException {
+		TicketStore store = new TicketStore(_dir, URL);
+		store.rewrite(1, Arrays.asList(ticket(1, "first"), ticket(2, "second")));
+		store.rewrite(2, Collections.singletonList(ticket(2, "second")));
+
+		Map<Integer, TracTicket> tickets = new TicketStore(_dir, URL).load();
+		assertEquals(Collections.singleton(2), tickets.keySet());
+	}
+
+	public void testOtherServer() throws IOException {
+		TicketStore store = new TicketStore(_dir, URL);
+		store.rewrite(1, Collections.singletonList(ticket(1, "first")));
+
+		// Data of another server in the file of this server.
+		TicketStore other = new TicketStore(_dir, URL + "/other");
+		Files.copy(store.getFile().toPath(), other.getFile().toPath());
+		assertTrue(other.load().isEmpty());
+		assertEquals(Long.MIN_VALUE, other.getLastSync());
+	}
+
+	public void testTruncated() throws IOException {
+		TicketStore store = new TicketStore(_dir, URL);
+		store.rewrite(1, Arrays.asList(ticket(1, "first"), ticket(2, "second")));
+		File file = store.getFile();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 5);
+		}
+
+		Map<Integer, TracTicket> tickets = new TicketStore(_dir, URL).load();
+		assertEquals(Collections.singleton(1), tickets.keySet());
+	}
+
+	private static TracTicket ticket(int number, String summary) {
+		Map<String, Object> attributes = new HashMap<>();
+		attributes.put(TracTicket.TICKET_ATT_SUMMARY, summary);
+		attributes.put(TracTicket.TICKET_ATT_DEPENDS_ON, number + ", " + (number + 1));
+		attributes.put(TracTicket.TICKET_ATT_FOLLOW_UP, null);
+		attributes.put("count", Integer.valueOf(42));
+		return new TracTicket(number, new Date(number * 1000), new Date(number * 1000 + 1), attributes);
+	}
+
+}
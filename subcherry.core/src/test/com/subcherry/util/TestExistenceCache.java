@@ -0,0 +1,100 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+import com.subcherry.util.ExistenceCache;
+
+/**
+ * Test case for {@link ExistenceCache}.
+ */
+@SuppressWarnings("javadoc")
+public class TestExistenceCache extends TestCase {
+
+	private File _root;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		_root = Files.createTempDirectory("workspace").toFile();
+		assertTrue(new File(_root, "m/dir").mkdirs());
+		assertTrue(new File(_root, "m/dir/file").createNewFile());
+		assertTrue(new File(_root, "m/plain").createNewFile());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		new File(_root, "m/plain").delete();
+		new File(_root, "m/dir/file").delete();
+		new File(_root, "m/dir").delete();
+		new File(_root, "m").delete();
+		_root.delete();
+		super.tearDown();
+	}
+
+	public void testProbe() throws IOException {
+		assertExistence(new ExistenceCache(_root));
+	}
+
+	public void testBulkScan() throws IOException {
+		ExistenceCache cache = new ExistenceCache(_root);
+		cache.setBulkScan(true);
+		assertExistence(cache);
+	}
+
+	public void testCached() throws IOException {
+		ExistenceCache cache = new ExistenceCache(_root);
+		cache.setBulkScan(true);
+		assertTrue(cache.exists("m/dir/file"));
+		assertFalse(cache.exists("m/dir/other"));
+		assertTrue(new File(_root, "m/dir/other").createNewFile());
+		try {
+			// The resource has already been checked.
+			assertFalse(cache.exists("m/dir/other"));
+		} finally {
+			new File(_root, "m/dir/other").delete();
+		}
+	}
+
+	public void testCaseInsensitiveFileSystem() {
+		ExistenceCache cache = new ExistenceCache(_root);
+		cache.setBulkScan(true);
+		assertTrue(cache.exists("m/dir/file"));
+		// Must agree with the file system, whether it resolves names case insensitively or not.
+		assertEquals(new File(_root, "m/dir/FILE").exists(), cache.exists("m/dir/FILE"));
+		assertEquals(new File(_root, "m/DIR/file").exists(), cache.exists("m/DIR/file"));
+	}
+
+	private void assertExistence(ExistenceCache cache) {
+		assertTrue(cache.exists("m"));
+		assertTrue(cache.exists("m/dir"));
+		assertTrue(cache.exists("m/dir/file"));
+		assertTrue(cache.exists("m/plain"));
+		assertTrue(cache.exists("m/dir/"));
+		assertFalse(cache.exists("m/missing"));
+		assertFalse(cache.exists("m/missing/file"));
+		assertFalse(cache.exists("m/plain/file"));
+		assertFalse(cache.exists("other/file"));
+	}
+
+}
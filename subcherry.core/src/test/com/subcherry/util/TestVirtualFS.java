@@ -17,6 +17,12 @@
  */
 package test.com.subcherry.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import com.subcherry.util.VirtualFS;
@@ -73,4 +79,49 @@ public class TestVirtualFS extends TestCase {
 		assertTrue(fs.exists("foo/bar/bazz"));
 	}
 
+	public void testAddInDeleted() {
+		VirtualFS fs = new VirtualFS();
+		fs.delete("foo");
+		fs.add("foo/bar/bazz");
+
+		assertFalse(fs.exists("foo"));
+		assertFalse(fs.exists("foo/bar"));
+		assertTrue(fs.exists("foo/bar/bazz"));
+		assertTrue(fs.exists("foo/bar/bazz/x"));
+
+		fs.delete("foo");
+		assertFalse(fs.exists("foo/bar/bazz"));
+
+		fs.add("foo");
+		assertTrue(fs.exists("foo/bar/bazz"));
+	}
+
+	public void testWorkspaceAccess() throws IOException {
+		File root = File.createTempFile("workspace", "");
+		root.delete();
+		assertTrue(new File(root, "foo/existing").mkdirs());
+		try {
+			final List<String> queried = new ArrayList<>();
+			VirtualFS fs = new VirtualFS(root) {
+				@Override
+				protected boolean existsInWorkspace(String resource) {
+					queried.add(resource);
+					return super.existsInWorkspace(resource);
+				}
+			};
+			fs.add("foo/added");
+			fs.delete("foo/deleted");
+
+			assertTrue(fs.exists("foo/added/bar"));
+			assertFalse(fs.exists("foo/deleted/bar"));
+			assertTrue(fs.exists("foo/existing"));
+			assertFalse(fs.exists("foo/missing"));
+			assertEquals(Arrays.asList("foo/existing", "foo/missing"), queried);
+		} finally {
+			new File(root, "foo/existing").delete();
+			new File(root, "foo").delete();
+			root.delete();
+		}
+	}
+
 }
@@ -0,0 +1,216 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package test.com.subcherry.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import junit.framework.TestCase;
+
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.utils.CommitMessage;
+import com.subcherry.utils.CommitMessage.Kind;
+import com.subcherry.utils.ParsingLogEntryDictionary;
+import com.subcherry.utils.Utils;
+
+/**
+ * Test case for {@link CommitMessage}.
+ */
+@SuppressWarnings("javadoc")
+public class TestCommitMessage extends TestCase {
+
+	private static final String[] EXAMPLES = {
+		"Ticket #9438: Added missing documentation.",
+		"Ticket #9438: API change: Added missing documentation.",
+		"Ticket #9438: Hotfix for TL_5_7_3: Fixed NPE.",
+		"Ticket #9438: Preview on CWS_9438: Fixed NPE.",
+		"Ticket #9438: On CWS_9438: Fixed NPE.",
+		"Ticket #9438: Ported to CWS_TL_5_7_3_Patch_11_2 from TL_trunk: API change: Added missing documentation.",
+		"Ticket #9438: Ported to CWS_TL_5_7_3_Patch_11_2 from TL_trunk: Resolved merge conflict in Unimplementable: Added missing documentation.",
+		"Ticket #9438: Ported to CWS_TL_5_7_3_Patch_11_2 from TL_trunk: [4712]: Bugfix 2 for [4711]: Added missing documentation.",
+		"Ticket #9438: API change: Follow-up for [4711]: Added missing documentation.",
+		"Ticket #9438: Follow-up for [4711]: [4712]: Follow-up for [4710]: Multiple references.",
+		"Ticket #9438: Bugfix 3 for [4711]: Counted bugfix.",
+		"Ticket #9438: Bugfix x for [4711]: Not a counted bugfix.",
+		"Ticket #9438: Follow-up for [4711] Missing colon.",
+		"Ticket #9438: Ported to no-from: Missing source branch.",
+		"Ticket #9438: Ported to A from B",
+		"Ticket #9438: Hotfix for no colon",
+		"Ticket #9438:",
+		"Ticket #9438",
+		"Ticket #: No number.",
+		"Ticket #12a: Bad number.",
+		"ticket #9438: Lower case.",
+		" Ticket #9438: Leading space.",
+		"Ticket #9438:Missing space.",
+		"Ticket #9438: Multi\nline: message\n",
+		"Ticket #9438: On branch\nwith newline: Detail.",
+		"Ticket #9438: Ported to A\nB from C: Detail.",
+		"No ticket at all.",
+		"",
+	};
+
+	public void testExamples() {
+		for (String message : EXAMPLES) {
+			assertEquivalent(message);
+		}
+	}
+
+	public void testProperties() {
+		CommitMessage port = CommitMessage.parse(
+			"Ticket #9438: Ported to CWS_Patch_2 from TL_trunk: API change: [4712]: Bugfix 2 for [4711]: Detail.");
+		assertTrue(port.hasTicket());
+		assertEquals("9438", port.getTicketId());
+		assertEquals(Kind.PORT, port.getKind());
+		assertEquals("CWS_Patch_2", port.getDestinationBranch());
+		assertEquals("TL_trunk", port.getSourceBranch());
+		assertNull(port.getHotfixBranch());
+		assertTrue(port.isApiChange());
+		assertEquals("4712", port.getMergedRevision());
+		assertEquals(4711, port.getLeadRevision());
+		assertEquals(" Detail.", port.getDetailMessage());
+
+		CommitMessage hotfix = CommitMessage.parse("Ticket #1: Hotfix for TL_5: Detail.");
+		assertEquals(Kind.HOTFIX, hotfix.getKind());
+		assertEquals("TL_5", hotfix.getHotfixBranch());
+		assertFalse(hotfix.isApiChange());
+		assertEquals(0, hotfix.getLeadRevision());
+
+		CommitMessage none = CommitMessage.parse("Fixed build.");
+		assertFalse(none.hasTicket());
+		assertEquals(Kind.NONE, none.getKind());
+		assertNull(none.getTicketId());
+		assertNull(none.getDetailMessage());
+
+		assertFalse(CommitMessage.parse(null).hasTicket());
+	}
+
+	public void testLogEntryCache() {
+		LogEntry entry = new LogEntry(Collections.emptyMap(), 4711, "me", new Date(), "Ticket #1: Detail.", false);
+		assertEquals("1", CommitMessage.of(entry).getTicketId());
+
+		LogEntry compact = new ParsingLogEntryDictionary().compact(entry);
+		CommitMessage parsed = CommitMessage.of(compact);
+		assertEquals("1", parsed.getTicketId());
+		assertSame(parsed, CommitMessage.of(compact));
+	}
+
+	public void testRandomCorpus() {
+		Random rnd = new Random(42);
+		for (int n = 0; n < 200000; n++) {
+			assertEquivalent(randomMessage(rnd));
+		}
+	}
+
+	public void testRealisticCorpus() {
+		Random rnd = new Random(13);
+		for (int n = 0; n < 20000; n++) {
+			assertEquivalent(realisticMessage(rnd, n));
+		}
+	}
+
+	private static String realisticMessage(Random rnd, int n) {
+		StringBuilder result = new StringBuilder();
+		result.append("Ticket #").append(1000 + rnd.nextInt(20000)).append(':');
+		switch (rnd.nextInt(5)) {
+			case 0:
+				result.append(" Ported to CWS_TL_5_7_").append(rnd.nextInt(10)).append(" from TL_trunk:");
+				break;
+			case 1:
+				result.append(" Hotfix for TL_5_7_").append(rnd.nextInt(10)).append(':');
+				break;
+			default:
+				break;
+		}
+		if (rnd.nextInt(10) == 0) {
+			result.append(" API change:");
+		}
+		if (rnd.nextInt(4) == 0) {
+			result.append(" [").append(100000 + n).append("]:");
+		}
+		if (rnd.nextInt(4) == 0) {
+			result.append(" Follow-up for [").append(100000 + rnd.nextInt(n + 1)).append("]:");
+		}
+		result.append(" Fixed problem ").append(n).append(" in module: Added test case for the fix.");
+		return result.toString();
+	}
+
+	private static final List<String> TOKENS = Arrays.asList(
+		" ", ":", ": ", "[", "]", "]:", "\n", "x", "12", "3 ", "#",
+		"Ticket #", "Ticket #12:", "Hotfix for ", "Preview on ", "Ported to ", " from ", "On ",
+		" API change:", "API change", "Follow-up", "Bugfix", " for [", "for [", " [7]:", " Follow-up for [8]:",
+		" Bugfix 2 for [9]:", "branch", "A B");
+
+	private static String randomMessage(Random rnd) {
+		StringBuilder result = new StringBuilder();
+		if (rnd.nextInt(10) > 0) {
+			result.append("Ticket #").append(rnd.nextInt(100)).append(':');
+		}
+		for (int n = 0, cnt = rnd.nextInt(12); n < cnt; n++) {
+			result.append(TOKENS.get(rnd.nextInt(TOKENS.size())));
+		}
+		return result.toString();
+	}
+
+	private static void assertEquivalent(String message) {
+		Matcher matcher = Utils.TICKET_PATTERN.matcher(message);
+		CommitMessage parsed = CommitMessage.parse(message);
+		if (!matcher.matches()) {
+			assertFalse(message, parsed.hasTicket());
+			assertNull(message, Utils.getTicketId(message));
+			return;
+		}
+		assertTrue(message, parsed.hasTicket());
+		assertEquals(12, matcher.groupCount());
+		String[] expected = new String[matcher.groupCount()];
+		for (int n = 0; n < expected.length; n++) {
+			expected[n] = matcher.group(n + 1);
+		}
+		assertEquals(message, Arrays.asList(expected), Arrays.asList(groups(parsed)));
+		assertEquals(message, Utils.extractLeadRevision(matcher), parsed.getLeadRevision());
+		assertEquals(message, Utils.getHotfixBranch(matcher), parsed.getHotfixBranch());
+		assertEquals(message, Utils.getOriginalMessage(matcher), Utils.getDetailMessage(message));
+	}
+
+	/**
+	 * The groups of {@link Utils#TICKET_PATTERN} reconstructed from a parsed message.
+	 */
+	private static String[] groups(CommitMessage parsed) {
+		Kind kind = parsed.getKind();
+		String branch = parsed.getDestinationBranch();
+		return new String[] {
+			parsed.getTicketId(),
+			kind == Kind.HOTFIX ? "Hotfix for " + branch : null,
+			kind == Kind.HOTFIX ? branch : null,
+			kind == Kind.PREVIEW ? branch : null,
+			kind == Kind.PORT ? branch : null,
+			kind == Kind.PORT ? parsed.getSourceBranch() : null,
+			kind == Kind.BRANCH_CHANGE ? branch : null,
+			parsed.isApiChange() ? CommitMessage.API_CHANGE : null,
+			parsed.getFollowUpRevision(),
+			parsed.getMergedRevision(),
+			parsed.getFollowUpRevision2(),
+			parsed.getDetailMessage(),
+		};
+	}
+
+}
@@ -42,6 +42,7 @@ import org.apache.subversion.javahl.types.ChangePath.Action;
 import org.apache.subversion.javahl.types.LogDate;
 
 import com.subcherry.repository.command.copy.CopySource;
+import com.subcherry.repository.command.log.Filter;
 import com.subcherry.repository.command.log.LogEntryHandler;
 import com.subcherry.repository.command.merge.ConflictAction;
 import com.subcherry.repository.command.merge.ConflictDescription;
@@ -68,6 +69,7 @@ import com.subcherry.repository.core.RepositoryURL;
 import com.subcherry.repository.core.Resolution;
 import com.subcherry.repository.core.Revision;
 import com.subcherry.repository.core.RevisionRange;
+import com.subcherry.repository.core.RevisionSet;
 import com.subcherry.repository.core.StringValue;
 import com.subcherry.repository.core.Target;
 import com.subcherry.repository.core.Target.FileTarget;
@@ -351,22 +353,34 @@ public class Conversions {
 				}
 
 				@Override
-				public List<RevisionRange> getRevisions(RepositoryURL path) {
-					return Collections.emptyList();
+				public RevisionSet getRevisions(RepositoryURL path) {
+					return RevisionSet.EMPTY;
 				}
 
 			};
 		} else {
 			return new MergeInfo() {
 
+				/**
+				 * Revisions already converted, since merge info is typically queried over and over
+				 * again.
+				 */
+				private final Map<RepositoryURL, RevisionSet> _revisions = new HashMap<RepositoryURL, RevisionSet>();
+
 				@Override
 				public Set<RepositoryURL> getPaths() {
 					return parseUrlSet(mergeinfo.getPaths());
 				}
 
 				@Override
-				public List<RevisionRange> getRevisions(RepositoryURL path) {
-					return wrapRanges(mergeinfo.getRevisions(path.toString()));
+				public synchronized RevisionSet getRevisions(RepositoryURL path) {
+					if (_revisions.containsKey(path)) {
+						return _revisions.get(path);
+					}
+					List<RevisionRange> ranges = wrapRanges(mergeinfo.getRevisions(path.toString()));
+					RevisionSet result = ranges == null ? null : RevisionSet.create(ranges);
+					_revisions.put(path, result);
+					return result;
 				}
 
 			};
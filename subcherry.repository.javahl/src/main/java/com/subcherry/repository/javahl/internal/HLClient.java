@@ -20,7 +20,10 @@ package com.subcherry.repository.javahl.internal;
 import static com.subcherry.repository.javahl.internal.Conversions.*;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -28,8 +31,10 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.subversion.javahl.ClientException;
+import org.apache.subversion.javahl.ClientNotifyInformation;
 import org.apache.subversion.javahl.ConflictDescriptor;
 import org.apache.subversion.javahl.ConflictResult;
 import org.apache.subversion.javahl.ConflictResult.Choice;
@@ -38,13 +43,16 @@ import org.apache.subversion.javahl.ISVNRepos;
 import org.apache.subversion.javahl.SVNClient;
 import org.apache.subversion.javahl.SVNRepos;
 import org.apache.subversion.javahl.SubversionException;
+import org.apache.subversion.javahl.callback.ClientNotifyCallback;
 import org.apache.subversion.javahl.callback.CommitCallback;
 import org.apache.subversion.javahl.callback.CommitMessageCallback;
 import org.apache.subversion.javahl.callback.ConflictResolverCallback;
+import org.apache.subversion.javahl.callback.InfoCallback;
 import org.apache.subversion.javahl.callback.ListCallback;
 import org.apache.subversion.javahl.callback.LogMessageCallback;
 import org.apache.subversion.javahl.callback.StatusCallback;
 import org.apache.subversion.javahl.types.DirEntry;
+import org.apache.subversion.javahl.types.Info;
 import org.apache.subversion.javahl.types.Lock;
 import org.apache.subversion.javahl.types.Mergeinfo.LogKind;
 import org.apache.subversion.javahl.types.Status;
@@ -56,6 +64,7 @@ import com.subcherry.repository.command.copy.CopySource;
 import com.subcherry.repository.command.diff.DiffOptions;
 import com.subcherry.repository.command.log.DirEntryHandler;
 import com.subcherry.repository.command.log.LogEntryHandler;
+import com.subcherry.repository.command.log.LogFilter;
 import com.subcherry.repository.command.status.StatusHandler;
 import com.subcherry.repository.command.status.StatusType;
 import com.subcherry.repository.command.wc.PropertyHandler;
@@ -74,6 +83,7 @@ import com.subcherry.repository.core.Revision;
 import com.subcherry.repository.core.RevisionRange;
 import com.subcherry.repository.core.Target;
 import com.subcherry.repository.merge.properties.PropertiesMerge;
+import com.subcherry.repository.merge.text.TextMerge;
 
 public class HLClient extends DefaultClient {
 
@@ -107,6 +117,9 @@ public class HLClient extends DefaultClient {
 					return postPone(descriptor);
 				}
 				if (!descriptor.getPath().endsWith(".properties")) {
+					if (isTextMerge(descriptor.getPath())) {
+						return textMerge(descriptor);
+					}
 					return postPone(descriptor);
 				}
 
@@ -131,6 +144,39 @@ public class HLClient extends DefaultClient {
 				}
 			}
 
+			private boolean isTextMerge(String path) {
+				Pattern files = ((HLOperationFactory) _clientManager.getOperationsFactory()).getTextMergeFiles();
+				return files != null && files.matcher(new File(path).getName()).matches();
+			}
+
+			/**
+			 * Resolves a text conflict with a {@link TextMerge}. The merged file of the
+			 * conflict is only replaced, if the conflict can be resolved.
+			 */
+			private ConflictResult textMerge(ConflictDescriptor descriptor) {
+				File baseFile = new File(descriptor.getBasePath());
+				File localFile = new File(descriptor.getMyPath());
+				File latestFile = new File(descriptor.getTheirPath());
+				DiffOptions options = null;
+				File resultFile = new File(descriptor.getMergedPath() + ".tmp");
+
+				try {
+					StatusType result = new TextMerge().merge(baseFile, localFile, latestFile, options, resultFile);
+					if (result != StatusType.MERGED) {
+						return postPone(descriptor);
+					}
+					Files.move(resultFile.toPath(), new File(descriptor.getMergedPath()).toPath(),
+						StandardCopyOption.REPLACE_EXISTING);
+				} catch (RepositoryException ex) {
+					throw new RepositoryRuntimeException(ex);
+				} catch (IOException ex) {
+					throw new RepositoryRuntimeException(new RepositoryException(ex));
+				} finally {
+					resultFile.delete();
+				}
+				return resolved(descriptor);
+			}
+
 			private ConflictResult resolved(ConflictDescriptor descriptor) {
 				return new ConflictResult(Choice.chooseMerged,
 						descriptor.getMergedPath());
@@ -332,6 +378,32 @@ public class HLClient extends DefaultClient {
 		}
 	}
 
+	@Override
+	public Set<File> dryRunMerge(RepositoryURL url, Revision pegRevision, Collection<RevisionRange> rangesToMerge,
+			File dstPath, Depth depth, boolean useAncestry) throws RepositoryException {
+		final Set<File> result = new HashSet<File>();
+		ClientNotifyCallback notifier = new ClientNotifyCallback() {
+			@Override
+			public void onNotify(ClientNotifyInformation info) {
+				if (info.getAction() == ClientNotifyInformation.Action.tree_conflict
+					|| info.getContentState() == ClientNotifyInformation.Status.conflicted
+					|| info.getPropState() == ClientNotifyInformation.Status.conflicted) {
+					result.add(new File(info.getPath()));
+				}
+			}
+		};
+		boolean force = true;
+		boolean dryRun = true;
+		boolean recordOnly = false;
+		_client.notification2(notifier);
+		try {
+			merge(url, pegRevision, rangesToMerge, dstPath, depth, useAncestry, force, dryRun, recordOnly);
+		} finally {
+			_client.notification2(null);
+		}
+		return result;
+	}
+
 	@Override
 	public void log(RepositoryURL url, String[] paths, Revision pegRevision,
 			Revision startRevision, Revision endRevision, boolean stopOnCopy,
@@ -517,6 +589,26 @@ public class HLClient extends DefaultClient {
 		}
 	}
 
+	@Override
+	public String getRepositoryUUID(RepositoryURL url) throws RepositoryException {
+		final String[] result = { null };
+		InfoCallback callback = new InfoCallback() {
+			@Override
+			public void singleInfo(Info info) {
+				result[0] = info.getReposUUID();
+			}
+		};
+		org.apache.subversion.javahl.types.Revision head = org.apache.subversion.javahl.types.Revision.HEAD;
+		Collection<String> changelists = null;
+		try {
+			_client.info2(unwrap(url), head, head, org.apache.subversion.javahl.types.Depth.empty, changelists,
+				callback);
+		} catch (ClientException ex) {
+			throw wrap(ex);
+		}
+		return result[0];
+	}
+
 	public void addConflictListener(HLConflictListener listener) {
 		_listeners.add(listener);
 	}
@@ -20,12 +20,16 @@ package com.subcherry.repository.javahl.internal;
 import static com.subcherry.repository.javahl.internal.Conversions.*;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.subversion.javahl.ClientException;
+import org.apache.subversion.javahl.ClientNotifyInformation;
+import org.apache.subversion.javahl.ConflictDescriptor;
+import org.apache.subversion.javahl.callback.ClientNotifyCallback;
 import org.apache.subversion.javahl.callback.CommitCallback;
 import org.apache.subversion.javahl.callback.CommitMessageCallback;
 import org.apache.subversion.javahl.types.Depth;
@@ -41,6 +45,7 @@ import com.subcherry.repository.command.merge.CommandExecutor;
 import com.subcherry.repository.command.merge.ConflictAction;
 import com.subcherry.repository.command.merge.ConflictReason;
 import com.subcherry.repository.command.merge.Merge;
+import com.subcherry.repository.command.merge.MergeCoalescer;
 import com.subcherry.repository.command.merge.ScheduledTreeConflict;
 import com.subcherry.repository.command.merge.TreeConflictDescription;
 import com.subcherry.repository.command.wc.LocalDelete;
@@ -97,10 +102,62 @@ class HLExecutor extends CommandExecutor implements CommandVisitor<Void, HLComma
 
 	@Override
 	public Void visitMerge(Merge command, HLCommandContext arg) {
+		if (command.getRevisionRanges().size() > 1) {
+			mergeRanges(command, arg);
+		} else {
+			try {
+				merge(command);
+			} catch (ClientException ex) {
+				throw unchecked(wrap(ex));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Executes a {@link Merge} fused by the {@link MergeCoalescer} with a single merge call.
+	 * 
+	 * <p>
+	 * If a range produces a conflict, the merge stops after this range. The ranges not yet started
+	 * are then applied one by one, as if the {@link Merge}s had not been fused.
+	 * </p>
+	 */
+	private void mergeRanges(Merge command, HLCommandContext arg) {
+		HLClient client = client(command);
+		MergeProgress progress = new MergeProgress();
+		client.impl().notification2(progress);
+		client.addConflictListener(progress);
+		try {
+			merge(command);
+			if (!progress.hasConflicts()) {
+				return;
+			}
+		} catch (ClientException ex) {
+			if (!progress.hasConflicts() || progress.getStarted().isEmpty()) {
+				throw unchecked(wrap(ex));
+			}
+		} finally {
+			client.removeConflictListener(progress);
+			client.impl().notification2(null);
+		}
+
+		for (com.subcherry.repository.core.RevisionRange range : command.getRevisionRanges()) {
+			if (progress.isStarted(range)) {
+				continue;
+			}
+			try {
+				merge(MergeCoalescer.split(command, range));
+			} catch (ClientException ex) {
+				throw unchecked(wrap(ex));
+			}
+		}
+	}
+
+	private void merge(Merge command) throws ClientException {
 		String path = unwrap(command.getSource());
 		Revision pegRevision = unwrap(command.getSource().getPegRevision());
 
-		List<RevisionRange> revisions = Collections.singletonList(unwrap(command.getRevisionRange()));
+		List<RevisionRange> revisions = unwrapRanges(command.getRevisionRanges());
 		String localPath = unwrap(unwrapFile(command.getTarget()));
 		boolean force = true;
         Depth depth = unwrap(command.getDepth());
@@ -108,13 +165,8 @@ class HLExecutor extends CommandExecutor implements CommandVisitor<Void, HLComma
         boolean dryRun = false; 
 		boolean recordOnly = command.getRecordOnly();
         
-		try {
-			client(command).impl().merge(path, pegRevision, revisions, localPath, force, depth, ignoreAncestry, dryRun,
-				recordOnly);
-		} catch (ClientException ex) {
-			throw unchecked(wrap(ex));
-		}
-		return null;
+		client(command).impl().merge(path, pegRevision, revisions, localPath, force, depth, ignoreAncestry, dryRun,
+			recordOnly);
 	}
 
 	@Override
@@ -191,4 +243,53 @@ class HLExecutor extends CommandExecutor implements CommandVisitor<Void, HLComma
 		return new RepositoryRuntimeException(ex);
 	}
 
+	/**
+	 * Records the ranges a multi-range merge has started with and whether it produced conflicts.
+	 */
+	static class MergeProgress implements ClientNotifyCallback, HLConflictListener {
+
+		private final List<com.subcherry.repository.core.RevisionRange> _started = new ArrayList<>();
+
+		private boolean _conflicts;
+
+		@Override
+		public void onNotify(ClientNotifyInformation info) {
+			if (info.getAction() == ClientNotifyInformation.Action.merge_begin && info.getMergeRange() != null) {
+				_started.add(wrap(info.getMergeRange()));
+			}
+		}
+
+		@Override
+		public void conflictDetected(ConflictDescriptor descriptor) {
+			_conflicts = true;
+		}
+
+		public boolean hasConflicts() {
+			return _conflicts;
+		}
+
+		public List<com.subcherry.repository.core.RevisionRange> getStarted() {
+			return _started;
+		}
+
+		/**
+		 * Whether the given range is part of a range the merge has started with.
+		 * 
+		 * <p>
+		 * Contiguous ranges may be merged together, therefore a range is also started, if it is
+		 * contained in a started range.
+		 * </p>
+		 */
+		public boolean isStarted(com.subcherry.repository.core.RevisionRange range) {
+			long start = range.getStart().getNumber();
+			long end = range.getEnd().getNumber();
+			for (com.subcherry.repository.core.RevisionRange started : _started) {
+				if (start >= started.getStart().getNumber() && end <= started.getEnd().getNumber()) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
 }
\ No newline at end of file
@@ -17,6 +17,8 @@
  */
 package com.subcherry.repository.javahl.internal;
 
+import java.util.regex.Pattern;
+
 import com.subcherry.repository.command.Settings;
 import com.subcherry.repository.command.merge.CommandExecutor;
 import com.subcherry.repository.impl.DefaultOperationFactory;
@@ -29,8 +31,15 @@ final class HLOperationFactory extends DefaultOperationFactory {
 		public void setSleepForTimestamp(boolean b) {
 			// Ignore.
 		}
+
+		@Override
+		public void setTextMergeFiles(Pattern files) {
+			_textMergeFiles = files;
+		}
 	};
 
+	private Pattern _textMergeFiles;
+
 	private CommandExecutor _executor = new HLExecutor();
 
 	private HLClientManager _clientManager;
@@ -43,6 +52,13 @@ final class HLOperationFactory extends DefaultOperationFactory {
 		return _clientManager;
 	}
 
+	/**
+	 * @see Settings#setTextMergeFiles(Pattern)
+	 */
+	public Pattern getTextMergeFiles() {
+		return _textMergeFiles;
+	}
+
 	@Override
 	public Settings settings() {
 		return _settings;
@@ -52,4 +68,4 @@ final class HLOperationFactory extends DefaultOperationFactory {
 	public CommandExecutor getExecutor() {
 		return _executor;
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,263 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.subcherry.repository.command.Client;
+import com.subcherry.repository.command.ClientManager;
+import com.subcherry.repository.command.OperationFactory;
+import com.subcherry.repository.core.RepositoryException;
+
+/**
+ * {@link ClientManager} that keeps a fixed number of {@link ClientManager}s for concurrent use.
+ *
+ * <p>
+ * A single {@link Client} must not be used by several threads concurrently. Code running in
+ * parallel {@link #lease() leases} its own {@link ClientManager} from the pool and returns it by
+ * closing the {@link Lease}:
+ * </p>
+ *
+ * <pre>
+ * try (ClientManagerPool.Lease lease = pool.lease()) {
+ * 	lease.getClient().log(...);
+ * }
+ * </pre>
+ *
+ * <p>
+ * All {@link ClientManager}s are created on demand with the {@link ClientManagerFactory} and the
+ * {@link LoginCredential} of the pool. {@link #getClient()} and {@link #getOperationsFactory()}
+ * are served by an additional {@link ClientManager} that is reserved for the owner of the pool.
+ * </p>
+ */
+public class ClientManagerPool implements ClientManager {
+
+	private final ClientManagerFactory _factory;
+
+	private final LoginCredential _credentials;
+
+	private final int _size;
+
+	/**
+	 * {@link ClientManager}s not currently leased.
+	 */
+	private final BlockingQueue<ClientManager> _idle = new LinkedBlockingQueue<>();
+
+	/**
+	 * All {@link ClientManager}s created for leases.
+	 */
+	private final List<ClientManager> _clientManagers = new ArrayList<>();
+
+	private ClientManager _primary;
+
+	private volatile boolean _closed;
+
+	/**
+	 * Creates a {@link ClientManagerPool}.
+	 *
+	 * @param factory
+	 *        The factory to create {@link ClientManager}s with.
+	 * @param credentials
+	 *        The credentials to create {@link ClientManager}s with, <code>null</code> for default
+	 *        credentials.
+	 * @param size
+	 *        The maximum number of {@link ClientManager}s that can be leased at the same time.
+	 */
+	public ClientManagerPool(ClientManagerFactory factory, LoginCredential credentials, int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Pool size must be positive: " + size);
+		}
+		_factory = factory;
+		_credentials = credentials;
+		_size = size;
+	}
+
+	/**
+	 * The maximum number of {@link ClientManager}s that can be leased at the same time.
+	 */
+	public int getSize() {
+		return _size;
+	}
+
+	/**
+	 * Leases a {@link ClientManager} for exclusive use, waits until one is returned, if all are in
+	 * use.
+	 *
+	 * @return The {@link Lease} that must be closed to return the {@link ClientManager}.
+	 */
+	public Lease lease() throws RepositoryException {
+		ClientManager clientManager = tryCreate();
+		if (clientManager == null) {
+			try {
+				while ((clientManager = _idle.poll(1, TimeUnit.SECONDS)) == null) {
+					checkOpen();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new RepositoryException(ex);
+			}
+		}
+		return new Lease(clientManager);
+	}
+
+	/**
+	 * Leases a {@link ClientManager} only if one is available without waiting.
+	 *
+	 * @return The {@link Lease}, or <code>null</code> if all {@link ClientManager}s are in use.
+	 */
+	public Lease tryLease() {
+		ClientManager clientManager = tryCreate();
+		if (clientManager == null) {
+			clientManager = _idle.poll();
+			if (clientManager == null) {
+				return null;
+			}
+		}
+		return new Lease(clientManager);
+	}
+
+	/**
+	 * Takes an idle {@link ClientManager}, or creates a new one, if the pool is not yet full.
+	 */
+	private synchronized ClientManager tryCreate() {
+		checkOpen();
+		ClientManager idle = _idle.poll();
+		if (idle != null) {
+			return idle;
+		}
+		if (_clientManagers.size() < _size) {
+			ClientManager clientManager = _factory.createClientManager(_credentials);
+			_clientManagers.add(clientManager);
+			return clientManager;
+		}
+		return null;
+	}
+
+	void release(ClientManager clientManager) {
+		synchronized (this) {
+			if (!_closed) {
+				_idle.add(clientManager);
+				return;
+			}
+		}
+		clientManager.close();
+	}
+
+	@Override
+	public OperationFactory getOperationsFactory() {
+		return primary().getOperationsFactory();
+	}
+
+	@Override
+	public Client getClient() {
+		return primary().getClient();
+	}
+
+	private synchronized ClientManager primary() {
+		checkOpen();
+		if (_primary == null) {
+			_primary = _factory.createClientManager(_credentials);
+		}
+		return _primary;
+	}
+
+	private void checkOpen() {
+		if (_closed) {
+			throw new IllegalStateException("Client manager pool is closed.");
+		}
+	}
+
+	/**
+	 * Closes all {@link ClientManager}s of this pool.
+	 *
+	 * <p>
+	 * {@link ClientManager}s that are still leased are closed, when their {@link Lease} is closed.
+	 * </p>
+	 */
+	@Override
+	public void close() {
+		List<ClientManager> idle = new ArrayList<>();
+		synchronized (this) {
+			if (_closed) {
+				return;
+			}
+			_closed = true;
+			_idle.drainTo(idle);
+			_clientManagers.clear();
+			if (_primary != null) {
+				idle.add(_primary);
+				_primary = null;
+			}
+		}
+		for (ClientManager clientManager : idle) {
+			clientManager.close();
+		}
+	}
+
+	/**
+	 * Exclusive use of a {@link ClientManager} from a {@link ClientManagerPool}.
+	 *
+	 * <p>
+	 * Closing the {@link Lease} returns the {@link ClientManager} to the pool.
+	 * </p>
+	 */
+	public final class Lease implements AutoCloseable {
+
+		private ClientManager _clientManager;
+
+		Lease(ClientManager clientManager) {
+			_clientManager = clientManager;
+		}
+
+		/**
+		 * The leased {@link ClientManager}.
+		 */
+		public ClientManager getClientManager() {
+			if (_clientManager == null) {
+				throw new IllegalStateException("Lease already returned.");
+			}
+			return _clientManager;
+		}
+
+		/**
+		 * Short-cut for {@link #getClientManager()}.{@link ClientManager#getClient() getClient()}.
+		 */
+		public Client getClient() {
+			return getClientManager().getClient();
+		}
+
+		/**
+		 * Returns the {@link ClientManager} to the pool.
+		 */
+		@Override
+		public void close() {
+			if (_clientManager == null) {
+				return;
+			}
+			ClientManager clientManager = _clientManager;
+			_clientManager = null;
+			release(clientManager);
+		}
+
+	}
+
+}
@@ -22,6 +22,7 @@ import java.io.OutputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.subcherry.repository.command.copy.CopySource;
 import com.subcherry.repository.command.log.DirEntryHandler;
@@ -83,6 +84,14 @@ public interface Client {
 			Depth depth, boolean useAncestry, boolean force, boolean dryRun, boolean recordOnly)
 			throws RepositoryException;
 
+	/**
+	 * Simulates a merge without modifying the workspace.
+	 * 
+	 * @return The paths that would be conflicted by the merge.
+	 */
+	Set<File> dryRunMerge(RepositoryURL url, Revision pegRevision, Collection<RevisionRange> rangesToMerge,
+			File dstPath, Depth depth, boolean useAncestry) throws RepositoryException;
+
 	void log(RepositoryURL url, String[] paths, Revision pegRevision,
 			Revision startRevision, Revision endRevision, boolean stopOnCopy,
 			boolean discoverChangedPaths, long limit, LogEntryHandler handler) throws RepositoryException;
@@ -117,8 +126,19 @@ public interface Client {
 
 	MergeInfo getMergeInfo(Target target) throws RepositoryException;
 
+	/**
+	 * The change to the <code>svn:mergeinfo</code> of the given target in the given revision.
+	 * 
+	 * @return The merged revision ranges by merge source path. Reverse merges are reported as
+	 *         reverse ranges, see {@link RevisionRange#isReverse()}.
+	 */
 	Map<String, List<RevisionRange>> mergeInfoDiff(Target target, long rev) throws RepositoryException;
 
 	void resolve(File target, Depth depth, Resolution resolution) throws RepositoryException;
 
+	/**
+	 * The UUID of the repository the given URL points into.
+	 */
+	String getRepositoryUUID(RepositoryURL url) throws RepositoryException;
+
 }
@@ -0,0 +1,358 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.repository.command;
+
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.subcherry.repository.core.Revision;
+import com.subcherry.repository.core.RevisionRange;
+
+/**
+ * {@link OutputStream} extracting the <code>svn:mergeinfo</code> changes from diff output written
+ * to it.
+ *
+ * <p>
+ * The diff is parsed while it is written. Only lines that are part of the merge info property
+ * change are kept. Of all other lines, at most a short prefix is inspected. After the merge info
+ * property change has been read, all further output is ignored.
+ * </p>
+ *
+ * <p>
+ * Reverse merges are reported as reverse {@link RevisionRange}s, see
+ * {@link RevisionRange#isReverse()}.
+ * </p>
+ */
+public class MergeInfoDiffParser extends OutputStream {
+
+	private static final byte[] PROPERTY_SEPARATOR =
+		"___________________________________________________________________".getBytes();
+
+	private static final byte[] MERGEINFO_HEADER_SUFFIX = ": svn:mergeinfo".getBytes();
+
+	private static final String MERGEINFO_PREFIX = "   ";
+
+	private static final String REVERSE_MERGED = "Reverse-merged ";
+
+	/**
+	 * Number of bytes kept of lines that are only inspected for short markers.
+	 */
+	private static final int MAX_INSPECTED = 256;
+
+	enum State {
+		HEADER, PROPERTIES, MERGEINFO, SKIPDIFF, DONE
+	}
+
+	private final Charset _charset;
+
+	private final Map<String, List<RevisionRange>> _result = new HashMap<>();
+
+	private State _state = State.HEADER;
+
+	private byte[] _line = new byte[MAX_INSPECTED];
+
+	private int _length;
+
+	/**
+	 * Whether the current line is longer than the part kept in {@link #_line}.
+	 */
+	private boolean _truncated;
+
+	/**
+	 * Creates a {@link MergeInfoDiffParser} for diff output in the platform encoding.
+	 */
+	public MergeInfoDiffParser() {
+		this(Charset.defaultCharset());
+	}
+
+	/**
+	 * Creates a {@link MergeInfoDiffParser}.
+	 *
+	 * @param charset
+	 *        The encoding of the diff output.
+	 */
+	public MergeInfoDiffParser(Charset charset) {
+		_charset = charset;
+	}
+
+	/**
+	 * The merged revision ranges by merge source path.
+	 *
+	 * <p>
+	 * Only complete after {@link #close()}.
+	 * </p>
+	 */
+	public Map<String, List<RevisionRange>> getResult() {
+		return _result;
+	}
+
+	/**
+	 * Whether the merge info change has been read completely and all further output is ignored.
+	 */
+	public boolean isDone() {
+		return _state == State.DONE;
+	}
+
+	@Override
+	public void write(int b) {
+		if (_state == State.DONE) {
+			return;
+		}
+		if (b == '\n') {
+			endLine();
+		} else {
+			append((byte) b);
+		}
+	}
+
+	@Override
+	public void write(byte[] buffer, int offset, int length) {
+		for (int n = offset, stop = offset + length; n < stop; n++) {
+			if (_state == State.DONE) {
+				return;
+			}
+			byte b = buffer[n];
+			if (b == '\n') {
+				endLine();
+			} else if (isIrrelevant()) {
+				// Skip to the line end without inspecting the remaining characters.
+				while (n + 1 < stop && buffer[n + 1] != '\n') {
+					n++;
+				}
+				_truncated = true;
+			} else {
+				append(b);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		if (_length > 0 || _truncated) {
+			endLine();
+		}
+	}
+
+	/**
+	 * Whether the current line is known to be irrelevant by its first character.
+	 */
+	private boolean isIrrelevant() {
+		if (_length == 0) {
+			return false;
+		}
+		switch (_state) {
+			case HEADER:
+				return _line[0] != '_';
+			case SKIPDIFF:
+				return isContentLine(_line[0]);
+			default:
+				return false;
+		}
+	}
+
+	private static boolean isContentLine(byte first) {
+		switch (first) {
+			case '#':
+			case '+':
+			case '-':
+			case ' ':
+			case '\\':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private void append(byte b) {
+		if (_length == _line.length) {
+			if (_state != State.MERGEINFO) {
+				_truncated = true;
+				return;
+			}
+			_line = Arrays.copyOf(_line, 2 * _length);
+		}
+		_line[_length++] = b;
+	}
+
+	private void endLine() {
+		int length = _length;
+		if (!_truncated && length > 0 && _line[length - 1] == '\r') {
+			length--;
+		}
+		boolean truncated = _truncated;
+		_length = 0;
+		_truncated = false;
+
+		while (true) {
+			switch (_state) {
+				case HEADER: {
+					if (!truncated && equals(_line, length, PROPERTY_SEPARATOR)) {
+						_state = State.PROPERTIES;
+					}
+					break;
+				}
+
+				case PROPERTIES: {
+					if (!truncated && endsWith(_line, length, MERGEINFO_HEADER_SUFFIX)) {
+						_state = State.MERGEINFO;
+					} else {
+						_state = State.SKIPDIFF;
+					}
+					break;
+				}
+
+				case SKIPDIFF: {
+					if (length == 0) {
+						_state = State.PROPERTIES;
+						break;
+					}
+					if (!isContentLine(_line[0])) {
+						_state = State.PROPERTIES;
+						continue;
+					}
+					break;
+				}
+
+				case MERGEINFO: {
+					String line = new String(_line, 0, length, _charset);
+					if (line.startsWith(MERGEINFO_PREFIX)) {
+						parseMergeInfo(line);
+					} else {
+						// There is only a single merge info change in the diff of a single node.
+						_state = State.DONE;
+					}
+					break;
+				}
+
+				case DONE: {
+					break;
+				}
+			}
+
+			break;
+		}
+	}
+
+	private void parseMergeInfo(String line) {
+		int start = line.indexOf(" /");
+		if (start < 0) {
+			return;
+		}
+		int pathStart = start + 1;
+		int revSepIndex = line.lastIndexOf(':');
+		if (revSepIndex < 0 || revSepIndex <= pathStart) {
+			return;
+		}
+		String path = line.substring(pathStart, revSepIndex);
+		boolean reverse = line.startsWith(REVERSE_MERGED, MERGEINFO_PREFIX.length());
+
+		List<RevisionRange> ranges = _result.get(path);
+		if (ranges == null) {
+			ranges = new ArrayList<>();
+			_result.put(path, ranges);
+		}
+		parseRanges(ranges, line, revSepIndex + 1, reverse);
+	}
+
+	/**
+	 * Parses a revision list like <code>r3-5,7*,9</code>.
+	 */
+	private static void parseRanges(List<RevisionRange> result, String line, int index, boolean reverse) {
+		int stop = line.length();
+		while (index < stop) {
+			if (line.charAt(index) == 'r') {
+				index++;
+			}
+			int end1 = endOfNumber(line, index);
+			if (end1 == index) {
+				break;
+			}
+			long first = Long.parseLong(line.substring(index, end1));
+			long last = first;
+			index = skipNonInheritable(line, end1);
+
+			if (index < stop && line.charAt(index) == '-') {
+				int start2 = index + 1;
+				int end2 = endOfNumber(line, start2);
+				if (end2 == start2) {
+					break;
+				}
+				last = Long.parseLong(line.substring(start2, end2));
+				index = skipNonInheritable(line, end2);
+			}
+
+			if (reverse) {
+				result.add(RevisionRange.create(Revision.create(last), Revision.create(first - 1)));
+			} else {
+				result.add(RevisionRange.create(Revision.create(first - 1), Revision.create(last)));
+			}
+
+			if (index < stop && line.charAt(index) == ',') {
+				index++;
+			} else {
+				break;
+			}
+		}
+	}
+
+	private static int skipNonInheritable(String line, int index) {
+		if (index < line.length() && line.charAt(index) == '*') {
+			return index + 1;
+		}
+		return index;
+	}
+
+	private static int endOfNumber(String line, int index) {
+		int length = line.length();
+		while (index < length && Character.isDigit(line.charAt(index))) {
+			index++;
+		}
+		return index;
+	}
+
+	private static boolean equals(byte[] line, int length, byte[] expected) {
+		if (length != expected.length) {
+			return false;
+		}
+		for (int n = 0; n < length; n++) {
+			if (line[n] != expected[n]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean endsWith(byte[] line, int length, byte[] suffix) {
+		int offset = length - suffix.length;
+		if (offset < 0) {
+			return false;
+		}
+		for (int n = 0; n < suffix.length; n++) {
+			if (line[offset + n] != suffix[n]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
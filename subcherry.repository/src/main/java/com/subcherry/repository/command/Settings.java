@@ -17,8 +17,19 @@
  */
 package com.subcherry.repository.command;
 
+import java.util.regex.Pattern;
+
 public interface Settings {
 
 	void setSleepForTimestamp(boolean b);
 
+	/**
+	 * Sets the files, for which text conflicts of a merge are resolved with a
+	 * {@link com.subcherry.repository.merge.text.TextMerge} if possible.
+	 * 
+	 * @param files
+	 *        Pattern matching the names of the files, <code>null</code> for none.
+	 */
+	void setTextMergeFiles(Pattern files);
+
 }
@@ -15,7 +15,7 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-package com.subcherry.repository.javahl.internal;
+package com.subcherry.repository.command.log;
 
 public interface Filter<T> {
 
@@ -0,0 +1,455 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.repository.command.log;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.subcherry.repository.core.ChangeType;
+import com.subcherry.repository.core.LogEntry;
+import com.subcherry.repository.core.LogEntryPath;
+import com.subcherry.repository.core.NodeKind;
+import com.subcherry.repository.core.RepositoryException;
+
+/**
+ * Dictionary of values shared between {@link LogEntry}s.
+ *
+ * <p>
+ * {@link LogEntry}s that are kept for a long time should be converted with
+ * {@link #compact(LogEntry)}. A compact {@link LogEntry} shares its authors and equal
+ * {@link LogEntryPath}s with all other entries compacted with the same dictionary, and keeps its
+ * changed paths in an array sorted by path instead of a hash map.
+ * </p>
+ *
+ * <p>
+ * Paths are not stored as strings, but as nodes of a prefix tree shared by all paths of the
+ * dictionary: Each node only stores the last segment of its path and its parent node. The string
+ * of a path is built on each access.
+ * </p>
+ *
+ * <p>
+ * The changed paths of a compact {@link LogEntry} are unmodifiable.
+ * </p>
+ */
+public class LogEntryDictionary {
+
+	static final Comparator<LogEntryPath> PATH_ORDER = new Comparator<LogEntryPath>() {
+		@Override
+		public int compare(LogEntryPath p1, LogEntryPath p2) {
+			return p1.getPath().compareTo(p2.getPath());
+		}
+	};
+
+	private final Map<String, String> _strings = new ConcurrentHashMap<>();
+
+	private final Map<PathNode, PathNode> _nodes = new ConcurrentHashMap<>();
+
+	private final Map<LogEntryPath, LogEntryPath> _changes = new ConcurrentHashMap<>();
+
+	/**
+	 * The shared instance of the given string.
+	 */
+	public String intern(String value) {
+		if (value == null) {
+			return null;
+		}
+		String shared = _strings.get(value);
+		if (shared == null) {
+			shared = value;
+			String clash = _strings.putIfAbsent(value, value);
+			if (clash != null) {
+				shared = clash;
+			}
+		}
+		return shared;
+	}
+
+	/**
+	 * The shared instance of the given {@link LogEntryPath}.
+	 */
+	public LogEntryPath intern(LogEntryPath change) {
+		LogEntryPath shared = _changes.get(change);
+		if (shared == null) {
+			String path = change.getPath();
+			String copyPath = change.getCopyPath();
+			if (isAbsolute(path) && (copyPath == null || isAbsolute(copyPath))) {
+				shared = new CompactLogEntryPath(change.getKind(), node(path), change.getType(),
+					copyPath == null ? null : node(copyPath), change.getCopyRevision());
+			} else {
+				shared = new LogEntryPath(change.getKind(), intern(path), change.getType(), intern(copyPath),
+					change.getCopyRevision());
+			}
+			LogEntryPath clash = _changes.putIfAbsent(shared, shared);
+			if (clash != null) {
+				shared = clash;
+			}
+		}
+		return shared;
+	}
+
+	private static boolean isAbsolute(String path) {
+		return path != null && path.startsWith("/");
+	}
+
+	/**
+	 * The shared {@link PathNode} of the given absolute path.
+	 */
+	private PathNode node(String path) {
+		int separator = path.lastIndexOf('/');
+		PathNode parent = separator == 0 ? null : node(path.substring(0, separator));
+		PathNode node = new PathNode(parent, intern(path.substring(separator + 1)));
+		PathNode clash = _nodes.putIfAbsent(node, node);
+		return clash == null ? node : clash;
+	}
+
+	/**
+	 * Creates a compact copy of the given {@link LogEntry}.
+	 */
+	public LogEntry compact(LogEntry entry) {
+		if (entry instanceof CompactLogEntry) {
+			return entry;
+		}
+
+		Map<String, LogEntryPath> changedPaths = entry.getChangedPaths();
+		LogEntryPath[] changes;
+		if (changedPaths == null) {
+			changes = null;
+		} else {
+			changes = new LogEntryPath[changedPaths.size()];
+			int n = 0;
+			for (LogEntryPath change : changedPaths.values()) {
+				changes[n++] = intern(change);
+			}
+			Arrays.sort(changes, PATH_ORDER);
+		}
+		return createEntry(changes, entry.getRevision(), intern(entry.getAuthor()), entry.getDate(),
+			entry.getMessage(), entry.hasChildren());
+	}
+
+	/**
+	 * Creates the {@link CompactLogEntry} for the given shared values.
+	 *
+	 * <p>
+	 * Subclasses may return specialized entries that keep data derived from the entry.
+	 * </p>
+	 */
+	protected CompactLogEntry createEntry(LogEntryPath[] changes, long revision, String author, Date date,
+			String message, boolean hasChildren) {
+		return new CompactLogEntry(changes, revision, author, date, message, hasChildren);
+	}
+
+	/**
+	 * {@link LogEntryHandler} passing compact copies of all reported entries to the given handler.
+	 *
+	 * @see #compact(LogEntry)
+	 */
+	public LogEntryHandler compacting(final LogEntryHandler handler) {
+		return new LogEntryHandler() {
+			@Override
+			public void handleLogEntry(LogEntry logEntry) throws RepositoryException {
+				handler.handleLogEntry(compact(logEntry));
+			}
+		};
+	}
+
+	/**
+	 * Node of the prefix tree of paths.
+	 *
+	 * <p>
+	 * The path of a node is the path of its parent (the empty string for top-level nodes) followed
+	 * by a slash and the name of the node.
+	 * </p>
+	 */
+	private static final class PathNode {
+
+		private static final int LESS = -1;
+
+		private static final int GREATER = -2;
+
+		final PathNode _parent;
+
+		final String _name;
+
+		final int _length;
+
+		public PathNode(PathNode parent, String name) {
+			_parent = parent;
+			_name = name;
+			_length = (parent == null ? 0 : parent._length) + 1 + name.length();
+		}
+
+		/**
+		 * Compares the path of this node with the given path in the order of
+		 * {@link String#compareTo(String)} without building the path of this node.
+		 */
+		public int compareTo(String path) {
+			int end = match(path);
+			if (end == LESS) {
+				return -1;
+			}
+			if (end == GREATER) {
+				return 1;
+			}
+			return end == path.length() ? 0 : -1;
+		}
+
+		/**
+		 * Compares the path of this node with the beginning of the given path.
+		 *
+		 * @return The index in the given path after the path of this node, if the given path starts
+		 *         with the path of this node, {@link #LESS} or {@link #GREATER} otherwise.
+		 */
+		private int match(String path) {
+			int index = _parent == null ? 0 : _parent.match(path);
+			if (index < 0) {
+				return index;
+			}
+			index = match(path, index, '/');
+			for (int n = 0, cnt = _name.length(); n < cnt && index >= 0; n++) {
+				index = match(path, index, _name.charAt(n));
+			}
+			return index;
+		}
+
+		private static int match(String path, int index, char expected) {
+			if (index == path.length()) {
+				return GREATER;
+			}
+			char actual = path.charAt(index);
+			if (expected < actual) {
+				return LESS;
+			}
+			if (expected > actual) {
+				return GREATER;
+			}
+			return index + 1;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder(_length);
+			appendTo(result);
+			return result.toString();
+		}
+
+		private void appendTo(StringBuilder buffer) {
+			if (_parent != null) {
+				_parent.appendTo(buffer);
+			}
+			buffer.append('/');
+			buffer.append(_name);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(_parent) + _name.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof PathNode)) {
+				return false;
+			}
+			PathNode other = (PathNode) obj;
+			return _parent == other._parent && _name.equals(other._name);
+		}
+
+	}
+
+	/**
+	 * {@link LogEntryPath} keeping its paths as {@link PathNode}s.
+	 */
+	private static final class CompactLogEntryPath extends LogEntryPath {
+
+		private final PathNode _pathNode;
+
+		private final PathNode _copyPathNode;
+
+		public CompactLogEntryPath(NodeKind kind, PathNode path, ChangeType type, PathNode copyPath,
+				long copyRevision) {
+			super(kind, null, type, null, copyRevision);
+			_pathNode = path;
+			_copyPathNode = copyPath;
+		}
+
+		@Override
+		public String getPath() {
+			return _pathNode.toString();
+		}
+
+		@Override
+		public String getCopyPath() {
+			return _copyPathNode == null ? null : _copyPathNode.toString();
+		}
+
+		/**
+		 * Compares the path of this change with the given path.
+		 */
+		int comparePath(String path) {
+			return _pathNode.compareTo(path);
+		}
+
+	}
+
+	/**
+	 * {@link LogEntry} created by {@link LogEntryDictionary#compact(LogEntry)}.
+	 */
+	protected static class CompactLogEntry extends LogEntry {
+
+		private static final long NO_DATE = Long.MIN_VALUE;
+
+		private final ChangedPaths _changes;
+
+		private final long _time;
+
+		/**
+		 * Creates a {@link CompactLogEntry}.
+		 *
+		 * @param changes
+		 *        The shared changes sorted by path, or <code>null</code>, if changed paths were
+		 *        not reported.
+		 */
+		protected CompactLogEntry(LogEntryPath[] changes, long revision, String author, Date date,
+				String message, boolean hasChildren) {
+			super(null, revision, author, null, message, hasChildren);
+			_changes = changes == null ? null : new ChangedPaths(changes);
+			_time = date == null ? NO_DATE : date.getTime();
+		}
+
+		@Override
+		public Map<String, LogEntryPath> getChangedPaths() {
+			return _changes;
+		}
+
+		@Override
+		public Date getDate() {
+			return _time == NO_DATE ? null : new Date(_time);
+		}
+
+	}
+
+	/**
+	 * Unmodifiable {@link Map} view of an array of {@link LogEntryPath}s sorted by
+	 * {@link #PATH_ORDER}.
+	 */
+	private static final class ChangedPaths extends AbstractMap<String, LogEntryPath> {
+
+		final LogEntryPath[] _changes;
+
+		public ChangedPaths(LogEntryPath[] changes) {
+			_changes = changes;
+		}
+
+		@Override
+		public int size() {
+			return _changes.length;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(key) >= 0;
+		}
+
+		@Override
+		public LogEntryPath get(Object key) {
+			int index = indexOf(key);
+			return index < 0 ? null : _changes[index];
+		}
+
+		private int indexOf(Object key) {
+			if (!(key instanceof String)) {
+				return -1;
+			}
+			String path = (String) key;
+			int low = 0;
+			int high = _changes.length - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int comparison = comparePath(_changes[middle], path);
+				if (comparison < 0) {
+					low = middle + 1;
+				} else if (comparison > 0) {
+					high = middle - 1;
+				} else {
+					return middle;
+				}
+			}
+			return -1;
+		}
+
+		private static int comparePath(LogEntryPath change, String path) {
+			if (change instanceof CompactLogEntryPath) {
+				return ((CompactLogEntryPath) change).comparePath(path);
+			}
+			return change.getPath().compareTo(path);
+		}
+
+		@Override
+		public Collection<LogEntryPath> values() {
+			return Collections.unmodifiableList(Arrays.asList(_changes));
+		}
+
+		@Override
+		public Set<Entry<String, LogEntryPath>> entrySet() {
+			return new AbstractSet<Entry<String, LogEntryPath>>() {
+				@Override
+				public int size() {
+					return _changes.length;
+				}
+
+				@Override
+				public Iterator<Entry<String, LogEntryPath>> iterator() {
+					return new Iterator<Entry<String, LogEntryPath>>() {
+						private int _next;
+
+						@Override
+						public boolean hasNext() {
+							return _next < _changes.length;
+						}
+
+						@Override
+						public Entry<String, LogEntryPath> next() {
+							if (_next >= _changes.length) {
+								throw new NoSuchElementException();
+							}
+							LogEntryPath change = _changes[_next++];
+							return new SimpleImmutableEntry<>(change.getPath(), change);
+						}
+
+						@Override
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+			};
+		}
+
+	}
+
+}
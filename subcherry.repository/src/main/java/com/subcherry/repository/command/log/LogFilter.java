@@ -15,7 +15,7 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-package com.subcherry.repository.javahl.internal;
+package com.subcherry.repository.command.log;
 
 
 public class LogFilter implements Filter<String> {
@@ -67,6 +67,14 @@ public class LogFilter implements Filter<String> {
 		return _url + _prefix;
 	}
 
+	/**
+	 * The common prefix of all paths relative to the repository URL, the log is actually requested
+	 * for.
+	 */
+	public String getPrefix() {
+		return _prefix;
+	}
+
 	private String commonPrefix(String p1, String p2) {
 		String shorter;
 		String longer;
@@ -17,6 +17,8 @@
  */
 package com.subcherry.repository.command.merge;
 
+import java.util.List;
+
 import com.subcherry.repository.command.TargetDepthCommand;
 import com.subcherry.repository.command.diff.DiffOptions;
 import com.subcherry.repository.core.RevisionRange;
@@ -28,8 +30,16 @@ public interface Merge extends TargetDepthCommand {
 
 	void setAllowMixedRevisions(boolean allowMixedRevisions);
 
+	/**
+	 * The first of {@link #getRevisionRanges()}.
+	 */
 	RevisionRange getRevisionRange();
 
+	/**
+	 * All ranges to merge in the order they are applied.
+	 */
+	List<RevisionRange> getRevisionRanges();
+
 	void addRevisionRange(RevisionRange range);
 
 	void setIgnoreAncestry(boolean ignoreAnchestry);
@@ -0,0 +1,246 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.repository.command.merge;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.subcherry.repository.command.Command;
+import com.subcherry.repository.core.RepositoryURL;
+import com.subcherry.repository.core.Revision;
+import com.subcherry.repository.core.RevisionRange;
+import com.subcherry.repository.core.Target;
+import com.subcherry.repository.core.Target.FileTarget;
+import com.subcherry.repository.core.Target.UrlTarget;
+
+/**
+ * Optimizer that fuses consecutive {@link Merge} commands into a single {@link Merge} with
+ * multiple {@link Merge#getRevisionRanges() revision ranges}.
+ *
+ * <p>
+ * Two {@link Merge}s are fused only, if they merge from the same source URL into the same target
+ * with the same options, and their single forward ranges are ascending and do not overlap (the
+ * second range starts at or after the end of the first one). Between both, there may only be other {@link Merge}s into targets
+ * that neither contain nor are contained in their target, since the second {@link Merge} is moved
+ * to the position of the first one. Additionally, both sources must
+ * designate the same node: Either they are pegged at the same revision, or the given
+ * {@link SourceIdentity} confirms that the node at the source URL is the same at both peg
+ * revisions. The fused {@link Merge} is pegged at the peg revision of its last range, which is
+ * then a valid peg for each of its ranges. Therefore, each range can also be executed on its own
+ * (e.g. after a conflict, see {@link #split(Merge, RevisionRange)}).
+ * </p>
+ */
+public class MergeCoalescer {
+
+	/**
+	 * Decides whether a source URL designates the same node at two revisions.
+	 */
+	public interface SourceIdentity {
+
+		/**
+		 * Whether the node at the given URL at the given earlier revision is the same node as the
+		 * one at that URL at the given later revision, i.e. whether it was not deleted or replaced
+		 * in between.
+		 */
+		boolean isSame(RepositoryURL url, long earlierRevision, long laterRevision);
+
+	}
+
+	/**
+	 * {@link SourceIdentity} that only considers sources pegged at the same revision as the same.
+	 */
+	public static final SourceIdentity SAME_PEG = new SourceIdentity() {
+		@Override
+		public boolean isSame(RepositoryURL url, long earlierRevision, long laterRevision) {
+			return false;
+		}
+	};
+
+	/**
+	 * Fuses consecutive compatible {@link Merge}s with sources pegged at the same revision.
+	 *
+	 * @see #coalesce(Collection, SourceIdentity)
+	 */
+	public static List<Command> coalesce(Collection<Command> commands) {
+		return coalesce(commands, SAME_PEG);
+	}
+
+	/**
+	 * Fuses consecutive compatible {@link Merge}s in the given commands.
+	 *
+	 * @param identity
+	 *        Decides whether {@link Merge}s with sources pegged at different revisions merge from
+	 *        the same node.
+	 * @return The commands to execute. The given commands are not modified.
+	 */
+	public static List<Command> coalesce(Collection<Command> commands, SourceIdentity identity) {
+		List<Command> result = new ArrayList<>(commands.size());
+		Map<File, Group> groups = new HashMap<>();
+		for (Command command : commands) {
+			if (!(command instanceof Merge) || !isSingleRange((Merge) command)) {
+				// May depend on or modify anything before.
+				groups.clear();
+				result.add(command);
+				continue;
+			}
+
+			Merge merge = (Merge) command;
+			File target = ((FileTarget) merge.getTarget()).getFile();
+			Group group = groups.get(target);
+			if (group != null && canJoin(group._last, merge, identity)) {
+				if (group._fused == null) {
+					group._fused = copy(group._last);
+					result.set(group._index, group._fused);
+				}
+				group._fused.addRevisionRange(merge.getRevisionRange());
+				group._fused.setSource(merge.getSource(), false);
+				group._last = merge;
+				continue;
+			}
+
+			removeOverlapping(groups, target);
+			groups.put(target, new Group(result.size(), merge));
+			result.add(command);
+		}
+		return result;
+	}
+
+	private static void removeOverlapping(Map<File, Group> groups, File target) {
+		for (Iterator<File> it = groups.keySet().iterator(); it.hasNext();) {
+			File other = it.next();
+			if (other.toPath().startsWith(target.toPath()) || target.toPath().startsWith(other.toPath())) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Creates a {@link Merge} that applies only the given range of the given fused {@link Merge}.
+	 */
+	public static Merge split(Merge merge, RevisionRange range) {
+		Merge result = merge.getOperationFactory().createMerge();
+		copyOptions(merge, result);
+		result.addRevisionRange(range);
+		result.setSource(merge.getSource(), false);
+		return result;
+	}
+
+	private static Merge copy(Merge merge) {
+		Merge result = merge.getOperationFactory().createMerge();
+		copyOptions(merge, result);
+		result.addRevisionRange(merge.getRevisionRange());
+		result.setSource(merge.getSource(), false);
+		return result;
+	}
+
+	private static void copyOptions(Merge merge, Merge result) {
+		result.setTarget(merge.getTarget());
+		result.setDepth(merge.getDepth());
+		result.setRecordOnly(merge.getRecordOnly());
+		result.setAllowMixedRevisions(merge.getAllowMixedRevisions());
+		result.setIgnoreAncestry(merge.getIgnoreAnchestry());
+		result.setMergeOptions(merge.getMergeOptions());
+	}
+
+	private static boolean canJoin(Merge last, Merge next, SourceIdentity identity) {
+		if (!isSingleRange(next)) {
+			return false;
+		}
+		if (next.getOperationFactory() != last.getOperationFactory()) {
+			return false;
+		}
+		if (next.getRecordOnly() != last.getRecordOnly() || next.getIgnoreAnchestry() != last.getIgnoreAnchestry()
+			|| next.getAllowMixedRevisions() != last.getAllowMixedRevisions() || next.getDepth() != last.getDepth()
+			|| next.getMergeOptions() != last.getMergeOptions()) {
+			return false;
+		}
+		FileTarget lastTarget = (FileTarget) last.getTarget();
+		FileTarget nextTarget = (FileTarget) next.getTarget();
+		if (!nextTarget.getFile().equals(lastTarget.getFile())
+			|| !nextTarget.getPegRevision().equals(lastTarget.getPegRevision())) {
+			return false;
+		}
+		RepositoryURL url = ((UrlTarget) next.getSource()).getUrl();
+		if (!url.equals(((UrlTarget) last.getSource()).getUrl())) {
+			return false;
+		}
+		if (next.getRevisionRange().getStart().getNumber() < last.getRevisionRange().getEnd().getNumber()) {
+			return false;
+		}
+		long lastPeg = last.getSource().getPegRevision().getNumber();
+		long nextPeg = next.getSource().getPegRevision().getNumber();
+		if (lastPeg == nextPeg) {
+			return true;
+		}
+		return identity.isSame(url, Math.min(lastPeg, nextPeg), Math.max(lastPeg, nextPeg));
+	}
+
+	/**
+	 * Whether the given {@link Merge} can take part in a fused {@link Merge}.
+	 */
+	private static boolean isSingleRange(Merge merge) {
+		if (merge.getReintegrate() || merge.getRevisionRanges().size() != 1) {
+			return false;
+		}
+		if (merge.getTarget().kind() != Target.Kind.FILE || merge.getSource().kind() != Target.Kind.URL) {
+			return false;
+		}
+		RevisionRange range = merge.getRevisionRange();
+		if (!isNumber(range.getStart()) || !isNumber(range.getEnd()) || range.isReverse()) {
+			return false;
+		}
+		return isNumber(merge.getSource().getPegRevision());
+	}
+
+	private static boolean isNumber(Revision revision) {
+		return revision.kind() == Revision.Kind.COMMIT;
+	}
+
+	/**
+	 * {@link Merge}s into a common target that are fused.
+	 */
+	private static final class Group {
+
+		/**
+		 * The position of the first {@link Merge} in the result.
+		 */
+		final int _index;
+
+		/**
+		 * The last {@link Merge} added to this group.
+		 */
+		Merge _last;
+
+		/**
+		 * The fused {@link Merge}, <code>null</code> as long as the group has a single member.
+		 */
+		Merge _fused;
+
+		Group(int index, Merge first) {
+			_index = index;
+			_last = first;
+		}
+
+	}
+
+}
@@ -56,6 +56,10 @@ public class LogEntry {
 		return _message;
 	}
 
+	public boolean hasChildren() {
+		return _hasChildren;
+	}
+
 	public String getAuthor() {
 		return _author;
 	}
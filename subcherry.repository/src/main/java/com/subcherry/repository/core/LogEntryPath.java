@@ -57,6 +57,50 @@ public class LogEntryPath {
 		return _copyPath;
 	}
 
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		String path = getPath();
+		String copyPath = getCopyPath();
+		result = prime * result + ((path == null) ? 0 : path.hashCode());
+		result = prime * result + ((_changeType == null) ? 0 : _changeType.hashCode());
+		result = prime * result + ((copyPath == null) ? 0 : copyPath.hashCode());
+		result = prime * result + (int) (_copyRevision ^ (_copyRevision >>> 32));
+		result = prime * result + ((_nodeKind == null) ? 0 : _nodeKind.hashCode());
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof LogEntryPath))
+			return false;
+		LogEntryPath other = (LogEntryPath) obj;
+		if (_copyRevision != other._copyRevision)
+			return false;
+		if (_changeType != other._changeType)
+			return false;
+		if (_nodeKind != other._nodeKind)
+			return false;
+		String path = getPath();
+		String otherPath = other.getPath();
+		if (path == null) {
+			if (otherPath != null)
+				return false;
+		} else if (!path.equals(otherPath))
+			return false;
+		String copyPath = getCopyPath();
+		String otherCopyPath = other.getCopyPath();
+		if (copyPath == null) {
+			if (otherCopyPath != null)
+				return false;
+		} else if (!copyPath.equals(otherCopyPath))
+			return false;
+		return true;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
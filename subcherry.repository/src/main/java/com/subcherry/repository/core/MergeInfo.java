@@ -17,7 +17,6 @@
  */
 package com.subcherry.repository.core;
 
-import java.util.List;
 import java.util.Set;
 
 public interface MergeInfo {
@@ -29,8 +28,8 @@ public interface MergeInfo {
 	 * 
 	 * @param path
 	 *        The merge source URL, or <code>null</code>.
-	 * @return List of RevisionRange objects, or <code>null</code>.
+	 * @return The merged revisions, or <code>null</code>.
 	 */
-	public List<RevisionRange> getRevisions(RepositoryURL path);
+	public RevisionSet getRevisions(RepositoryURL path);
 
 }
@@ -43,6 +43,19 @@ public class RevisionRange {
 		return _end;
 	}
 
+	/**
+	 * Whether this range describes a reverse merge, i.e. its start revision is greater than its
+	 * end revision.
+	 * 
+	 * <p>
+	 * A reverse range <code>r5:r3</code> reverts the revisions <code>r4</code> and
+	 * <code>r5</code>.
+	 * </p>
+	 */
+	public boolean isReverse() {
+		return getStart().getNumber() > getEnd().getNumber();
+	}
+
 	public static RevisionRange create(Revision start, Revision end) {
 		return new RevisionRange(start, end);
 	}
@@ -0,0 +1,334 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.repository.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable set of revision numbers.
+ *
+ * <p>
+ * The set is stored as sorted array of disjoint intervals. Adjacent and overlapping intervals are
+ * merged on creation. Membership tests take logarithmic time in the number of intervals, union and
+ * intersection take linear time.
+ * </p>
+ *
+ * <p>
+ * In contrast to a {@link RevisionRange}, all interval bounds are inclusive.
+ * </p>
+ */
+public final class RevisionSet {
+
+	/**
+	 * The empty {@link RevisionSet}.
+	 */
+	public static final RevisionSet EMPTY = new RevisionSet(new long[0]);
+
+	/**
+	 * Pairs of first and last revision (both inclusive) of each interval in ascending order.
+	 */
+	private final long[] _bounds;
+
+	private RevisionSet(long[] bounds) {
+		_bounds = bounds;
+	}
+
+	/**
+	 * Creates a {@link RevisionSet} with all revisions between the given ones (inclusive).
+	 */
+	public static RevisionSet create(long first, long last) {
+		if (first > last) {
+			return EMPTY;
+		}
+		return new RevisionSet(new long[] { first, last });
+	}
+
+	/**
+	 * Creates a {@link RevisionSet} with all revisions of the given ranges.
+	 *
+	 * <p>
+	 * A reverse range (with a start revision greater than its end revision) contributes the same
+	 * revisions as the corresponding forward range.
+	 * </p>
+	 */
+	public static RevisionSet create(Collection<RevisionRange> ranges) {
+		long[][] intervals = new long[ranges.size()][];
+		int cnt = 0;
+		for (RevisionRange range : ranges) {
+			long start = range.getStart().getNumber();
+			long end = range.getEnd().getNumber();
+			if (start == end) {
+				continue;
+			}
+			intervals[cnt++] = new long[] { Math.min(start, end) + 1, Math.max(start, end) };
+		}
+		Arrays.sort(intervals, 0, cnt, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] o1, long[] o2) {
+				return Long.compare(o1[0], o2[0]);
+			}
+		});
+
+		long[] bounds = new long[2 * cnt];
+		int size = 0;
+		for (int n = 0; n < cnt; n++) {
+			long[] interval = intervals[n];
+			if (size > 0 && interval[0] <= bounds[size - 1] + 1) {
+				bounds[size - 1] = Math.max(bounds[size - 1], interval[1]);
+			} else {
+				bounds[size++] = interval[0];
+				bounds[size++] = interval[1];
+			}
+		}
+		return create(bounds, size);
+	}
+
+	private static RevisionSet create(long[] bounds, int size) {
+		if (size == 0) {
+			return EMPTY;
+		}
+		return new RevisionSet(size == bounds.length ? bounds : Arrays.copyOf(bounds, size));
+	}
+
+	/**
+	 * Whether this set contains no revisions.
+	 */
+	public boolean isEmpty() {
+		return _bounds.length == 0;
+	}
+
+	/**
+	 * The number of revisions in this set.
+	 */
+	public long size() {
+		long result = 0;
+		for (int n = 0; n < _bounds.length; n += 2) {
+			result += _bounds[n + 1] - _bounds[n] + 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Whether the given revision is contained in this set.
+	 */
+	public boolean contains(long rev) {
+		int index = floor(rev);
+		return index >= 0 && rev <= _bounds[index + 1];
+	}
+
+	/**
+	 * Whether all revisions between the given ones (inclusive) are contained in this set.
+	 */
+	public boolean containsAll(long first, long last) {
+		if (first > last) {
+			return true;
+		}
+		int index = floor(first);
+		return index >= 0 && last <= _bounds[index + 1];
+	}
+
+	/**
+	 * Whether any revision between the given ones (inclusive) is contained in this set.
+	 */
+	public boolean containsAny(long first, long last) {
+		if (first > last) {
+			return false;
+		}
+		int index = floor(last);
+		return index >= 0 && first <= _bounds[index + 1];
+	}
+
+	/**
+	 * Whether any revision of the given range is contained in this set.
+	 *
+	 * @see #create(Collection)
+	 */
+	public boolean containsAny(RevisionRange range) {
+		long start = range.getStart().getNumber();
+		long end = range.getEnd().getNumber();
+		return containsAny(Math.min(start, end) + 1, Math.max(start, end));
+	}
+
+	/**
+	 * Whether all revisions of the given range are contained in this set.
+	 *
+	 * @see #create(Collection)
+	 */
+	public boolean containsAll(RevisionRange range) {
+		long start = range.getStart().getNumber();
+		long end = range.getEnd().getNumber();
+		return containsAll(Math.min(start, end) + 1, Math.max(start, end));
+	}
+
+	/**
+	 * Whether all revisions of the given ranges are contained in this set.
+	 */
+	public boolean containsAll(Collection<RevisionRange> ranges) {
+		for (RevisionRange range : ranges) {
+			if (!containsAll(range)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether all revisions of the given set are contained in this set.
+	 */
+	public boolean containsAll(RevisionSet other) {
+		long[] bounds = other._bounds;
+		for (int n = 0; n < bounds.length; n += 2) {
+			if (!containsAll(bounds[n], bounds[n + 1])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The set of all revisions contained in this or the given set.
+	 */
+	public RevisionSet union(RevisionSet other) {
+		if (other.isEmpty()) {
+			return this;
+		}
+		if (isEmpty()) {
+			return other;
+		}
+
+		long[] a = _bounds;
+		long[] b = other._bounds;
+		long[] result = new long[a.length + b.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length || j < b.length) {
+			long first;
+			long last;
+			if (j == b.length || (i < a.length && a[i] <= b[j])) {
+				first = a[i++];
+				last = a[i++];
+			} else {
+				first = b[j++];
+				last = b[j++];
+			}
+
+			if (size > 0 && first <= result[size - 1] + 1) {
+				result[size - 1] = Math.max(result[size - 1], last);
+			} else {
+				result[size++] = first;
+				result[size++] = last;
+			}
+		}
+		return create(result, size);
+	}
+
+	/**
+	 * The set of all revisions contained in both, this and the given set.
+	 */
+	public RevisionSet intersection(RevisionSet other) {
+		long[] a = _bounds;
+		long[] b = other._bounds;
+		long[] result = new long[a.length + b.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			long first = Math.max(a[i], b[j]);
+			long last = Math.min(a[i + 1], b[j + 1]);
+			if (first <= last) {
+				result[size++] = first;
+				result[size++] = last;
+			}
+
+			// Advance the interval that ends first.
+			if (a[i + 1] < b[j + 1]) {
+				i += 2;
+			} else {
+				j += 2;
+			}
+		}
+		return create(result, size);
+	}
+
+	/**
+	 * This set as list of {@link RevisionRange}s in ascending order.
+	 */
+	public List<RevisionRange> getRanges() {
+		List<RevisionRange> result = new ArrayList<>(_bounds.length / 2);
+		for (int n = 0; n < _bounds.length; n += 2) {
+			result.add(RevisionRange.create(Revision.create(_bounds[n] - 1), Revision.create(_bounds[n + 1])));
+		}
+		return result;
+	}
+
+	/**
+	 * Index of the first bound of the last interval starting at or before the given revision, or
+	 * <code>-1</code>, if there is no such interval.
+	 */
+	private int floor(long rev) {
+		int low = 0;
+		int high = _bounds.length / 2 - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (_bounds[2 * middle] <= rev) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return 2 * high;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(_bounds);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof RevisionSet)) {
+			return false;
+		}
+		return Arrays.equals(_bounds, ((RevisionSet) obj)._bounds);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (int n = 0; n < _bounds.length; n += 2) {
+			if (n > 0) {
+				result.append(',');
+			}
+			result.append(_bounds[n]);
+			if (_bounds[n + 1] > _bounds[n]) {
+				result.append('-');
+				result.append(_bounds[n + 1]);
+			}
+		}
+		return result.toString();
+	}
+
+}
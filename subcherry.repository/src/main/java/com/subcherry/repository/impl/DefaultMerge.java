@@ -17,6 +17,9 @@
  */
 package com.subcherry.repository.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.subcherry.repository.command.CommandVisitor;
 import com.subcherry.repository.command.OperationFactory;
 import com.subcherry.repository.command.diff.DiffOptions;
@@ -28,7 +31,7 @@ public class DefaultMerge extends DefaultTargetDepthCommand implements Merge {
 
 	private boolean _recordOnly;
 
-	private RevisionRange _range;
+	private final List<RevisionRange> _ranges = new ArrayList<>();
 
 	private boolean _ignoreAnchestry;
 
@@ -66,12 +69,17 @@ public class DefaultMerge extends DefaultTargetDepthCommand implements Merge {
 
 	@Override
 	public RevisionRange getRevisionRange() {
-		return _range;
+		return _ranges.isEmpty() ? null : _ranges.get(0);
+	}
+
+	@Override
+	public List<RevisionRange> getRevisionRanges() {
+		return _ranges;
 	}
 
 	@Override
 	public void addRevisionRange(RevisionRange range) {
-		_range = range;
+		_ranges.add(range);
 	}
 
 	@Override
@@ -124,8 +132,10 @@ public class DefaultMerge extends DefaultTargetDepthCommand implements Merge {
 	public String toString() {
 		StringBuilder result = new StringBuilder();
 		result.append("svn merge");
-		result.append(" -");
-		result.append(getRevisionRange());
+		for (RevisionRange range : getRevisionRanges()) {
+			result.append(" -");
+			result.append(range);
+		}
 		if (getAllowMixedRevisions()) {
 			result.append(" --allow-mixed-revisions");
 		}
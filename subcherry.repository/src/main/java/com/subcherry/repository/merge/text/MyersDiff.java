@@ -0,0 +1,287 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.repository.merge.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Myers' O(ND) difference algorithm in its linear space variant.
+ *
+ * <p>
+ * Sequences are compared as <code>int</code> arrays. Lines are mapped to <code>int</code>s with
+ * {@link #lines(Map, List)} before comparison, so that lines are hashed once instead of being
+ * compared character by character in each step.
+ * </p>
+ *
+ * @see "E. Myers, An O(ND) Difference Algorithm and Its Variations, Algorithmica 1 (1986)"
+ */
+public class MyersDiff {
+
+	/**
+	 * A replacement of the range <code>[beginA, endA)</code> of the first sequence with the range
+	 * <code>[beginB, endB)</code> of the second sequence.
+	 */
+	public static final class Edit {
+
+		private final int _beginA;
+
+		private final int _endA;
+
+		private final int _beginB;
+
+		private final int _endB;
+
+		public Edit(int beginA, int endA, int beginB, int endB) {
+			_beginA = beginA;
+			_endA = endA;
+			_beginB = beginB;
+			_endB = endB;
+		}
+
+		/**
+		 * First index in the first sequence that is replaced.
+		 */
+		public int getBeginA() {
+			return _beginA;
+		}
+
+		/**
+		 * Index after the last replaced index in the first sequence.
+		 */
+		public int getEndA() {
+			return _endA;
+		}
+
+		/**
+		 * First index of the replacement in the second sequence.
+		 */
+		public int getBeginB() {
+			return _beginB;
+		}
+
+		/**
+		 * Index after the replacement in the second sequence.
+		 */
+		public int getEndB() {
+			return _endB;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((_beginA * 31 + _endA) * 31 + _beginB) * 31 + _endB;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Edit)) {
+				return false;
+			}
+			Edit other = (Edit) obj;
+			return _beginA == other._beginA && _endA == other._endA && _beginB == other._beginB
+				&& _endB == other._endB;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + _beginA + "," + _endA + ") -> [" + _beginB + "," + _endB + ")";
+		}
+	}
+
+	private final int[] _a;
+
+	private final int[] _b;
+
+	private final List<Edit> _edits = new ArrayList<>();
+
+	private MyersDiff(int[] a, int[] b) {
+		_a = a;
+		_b = b;
+	}
+
+	/**
+	 * Computes a shortest edit script transforming the first into the second sequence.
+	 *
+	 * @return The {@link Edit}s in ascending order. Adjacent {@link Edit}s are joined.
+	 */
+	public static List<Edit> diff(int[] a, int[] b) {
+		MyersDiff diff = new MyersDiff(a, b);
+		diff.compare(0, a.length, 0, b.length);
+		return diff._edits;
+	}
+
+	/**
+	 * Maps the given lines to <code>int</code>s, equal lines to equal numbers.
+	 *
+	 * @param ids
+	 *        The numbers already assigned. Use the same map for all sequences to compare.
+	 */
+	public static int[] lines(Map<String, Integer> ids, List<String> lines) {
+		int[] result = new int[lines.size()];
+		for (int n = 0, cnt = lines.size(); n < cnt; n++) {
+			String line = lines.get(n);
+			Integer id = ids.get(line);
+			if (id == null) {
+				id = ids.size();
+				ids.put(line, id);
+			}
+			result[n] = id;
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the {@link Edit}s between the given lines.
+	 */
+	public static List<Edit> diff(List<String> a, List<String> b) {
+		Map<String, Integer> ids = new HashMap<>();
+		return diff(lines(ids, a), lines(ids, b));
+	}
+
+	private void compare(int beginA, int endA, int beginB, int endB) {
+		// Strip common prefix and suffix.
+		while (beginA < endA && beginB < endB && _a[beginA] == _b[beginB]) {
+			beginA++;
+			beginB++;
+		}
+		while (beginA < endA && beginB < endB && _a[endA - 1] == _b[endB - 1]) {
+			endA--;
+			endB--;
+		}
+
+		if (beginA == endA || beginB == endB) {
+			if (beginA < endA || beginB < endB) {
+				addEdit(beginA, endA, beginB, endB);
+			}
+			return;
+		}
+
+		bisect(beginA, endA, beginB, endB);
+	}
+
+	/**
+	 * Finds the middle snake of the given ranges and compares the ranges before and after it.
+	 */
+	private void bisect(int beginA, int endA, int beginB, int endB) {
+		int lengthA = endA - beginA;
+		int lengthB = endB - beginB;
+		int maxD = (lengthA + lengthB + 1) / 2;
+		int offset = maxD;
+		int size = 2 * maxD + 2;
+		int[] forward = new int[size];
+		int[] backward = new int[size];
+		Arrays.fill(forward, -1);
+		Arrays.fill(backward, -1);
+		forward[offset + 1] = 0;
+		backward[offset + 1] = 0;
+		int delta = lengthA - lengthB;
+		// If the total number of elements is odd, the forward path collides with the backward one.
+		boolean front = (delta & 1) != 0;
+
+		// Diagonals that run off the edit graph are skipped in later rounds.
+		int kForwardStart = 0;
+		int kForwardEnd = 0;
+		int kBackwardStart = 0;
+		int kBackwardEnd = 0;
+		for (int d = 0; d < maxD; d++) {
+			for (int k = -d + kForwardStart; k <= d - kForwardEnd; k += 2) {
+				int kOffset = offset + k;
+				int x;
+				if (k == -d || (k != d && forward[kOffset - 1] < forward[kOffset + 1])) {
+					x = forward[kOffset + 1];
+				} else {
+					x = forward[kOffset - 1] + 1;
+				}
+				int y = x - k;
+				while (x < lengthA && y < lengthB && _a[beginA + x] == _b[beginB + y]) {
+					x++;
+					y++;
+				}
+				forward[kOffset] = x;
+				if (x > lengthA) {
+					kForwardEnd += 2;
+				} else if (y > lengthB) {
+					kForwardStart += 2;
+				} else if (front) {
+					int kBackwardOffset = offset + delta - k;
+					if (kBackwardOffset >= 0 && kBackwardOffset < size && backward[kBackwardOffset] != -1) {
+						if (x >= lengthA - backward[kBackwardOffset]) {
+							split(beginA, endA, beginB, endB, beginA + x, beginB + y);
+							return;
+						}
+					}
+				}
+			}
+
+			for (int k = -d + kBackwardStart; k <= d - kBackwardEnd; k += 2) {
+				int kOffset = offset + k;
+				int x;
+				if (k == -d || (k != d && backward[kOffset - 1] < backward[kOffset + 1])) {
+					x = backward[kOffset + 1];
+				} else {
+					x = backward[kOffset - 1] + 1;
+				}
+				int y = x - k;
+				while (x < lengthA && y < lengthB && _a[endA - x - 1] == _b[endB - y - 1]) {
+					x++;
+					y++;
+				}
+				backward[kOffset] = x;
+				if (x > lengthA) {
+					kBackwardEnd += 2;
+				} else if (y > lengthB) {
+					kBackwardStart += 2;
+				} else if (!front) {
+					int kForwardOffset = offset + delta - k;
+					if (kForwardOffset >= 0 && kForwardOffset < size && forward[kForwardOffset] != -1) {
+						int forwardX = forward[kForwardOffset];
+						int forwardY = offset + forwardX - kForwardOffset;
+						if (forwardX >= lengthA - x) {
+							split(beginA, endA, beginB, endB, beginA + forwardX, beginB + forwardY);
+							return;
+						}
+					}
+				}
+			}
+		}
+
+		// No common element.
+		addEdit(beginA, endA, beginB, endB);
+	}
+
+	private void split(int beginA, int endA, int beginB, int endB, int x, int y) {
+		compare(beginA, x, beginB, y);
+		compare(x, endA, y, endB);
+	}
+
+	private void addEdit(int beginA, int endA, int beginB, int endB) {
+		int last = _edits.size() - 1;
+		if (last >= 0) {
+			Edit before = _edits.get(last);
+			if (before.getEndA() == beginA && before.getEndB() == beginB) {
+				_edits.set(last, new Edit(before.getBeginA(), endA, before.getBeginB(), endB));
+				return;
+			}
+		}
+		_edits.add(new Edit(beginA, endA, beginB, endB));
+	}
+
+}
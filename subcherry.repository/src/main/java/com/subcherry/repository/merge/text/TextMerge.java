@@ -0,0 +1,255 @@
+/*
+ * SubCherry - Cherry Picking with Trac and Subversion
+ * Copyright (C) 2015 Bernhard Haumacher and others
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.subcherry.repository.merge.text;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.subcherry.repository.command.diff.DiffOptions;
+import com.subcherry.repository.command.status.StatusType;
+import com.subcherry.repository.core.RepositoryException;
+import com.subcherry.repository.merge.FileMerge;
+import com.subcherry.repository.merge.text.MyersDiff.Edit;
+
+/**
+ * Line based three-way {@link FileMerge} for text files.
+ *
+ * <p>
+ * The local and the latest version are both compared to the base version with {@link MyersDiff}.
+ * Changes of only one side are taken over, changes of both sides are taken over, if they are
+ * identical. Changes of both sides that overlap or touch each other are conflicts and written with
+ * conflict markers.
+ * </p>
+ *
+ * <p>
+ * Files are read byte-wise (as ISO-8859-1), so that any encoding that represents line breaks as
+ * in ASCII (e.g. UTF-8) is merged without modification. Line ends are part of the compared lines.
+ * Files containing <code>NUL</code> bytes are considered binary and are not merged.
+ * </p>
+ */
+public class TextMerge implements FileMerge {
+
+	/**
+	 * Encoding that maps each byte to a single character.
+	 */
+	private static final Charset BYTES = StandardCharsets.ISO_8859_1;
+
+	private static final String LOCAL_MARKER = "<<<<<<< .working";
+
+	private static final String BASE_MARKER = "||||||| .base";
+
+	private static final String SEPARATOR_MARKER = "=======";
+
+	private static final String LATEST_MARKER = ">>>>>>> .merge-right";
+
+	@Override
+	public StatusType merge(File baseFile, File localFile, File latestFile, DiffOptions options, File resultFile)
+			throws RepositoryException {
+		try {
+			String base = read(baseFile);
+			String local = read(localFile);
+			String latest = read(latestFile);
+			if (isBinary(base) || isBinary(local) || isBinary(latest)) {
+				return StatusType.CONFLICTED;
+			}
+
+			StringBuilder result = new StringBuilder(local.length() + 1024);
+			StatusType status = merge(base, local, latest, result);
+			Files.write(resultFile.toPath(), result.toString().getBytes(BYTES));
+			return status;
+		} catch (IOException ex) {
+			throw new RepositoryException(ex);
+		}
+	}
+
+	/**
+	 * Merges the changes between the base and the latest version into the local version.
+	 *
+	 * @param result
+	 *        The buffer to append the merged text to.
+	 * @return {@link StatusType#CONFLICTED}, if the result contains conflict markers.
+	 */
+	public StatusType merge(String base, String local, String latest, StringBuilder result) {
+		List<String> baseLines = split(base);
+		List<String> localLines = split(local);
+		List<String> latestLines = split(latest);
+
+		Map<String, Integer> ids = new HashMap<>();
+		int[] baseIds = MyersDiff.lines(ids, baseLines);
+		List<Edit> localEdits = MyersDiff.diff(baseIds, MyersDiff.lines(ids, localLines));
+		List<Edit> latestEdits = MyersDiff.diff(baseIds, MyersDiff.lines(ids, latestLines));
+
+		String lineEnd = lineEnd(localLines);
+		boolean conflicts = false;
+		int basePos = 0;
+		int localIndex = 0;
+		int latestIndex = 0;
+		while (localIndex < localEdits.size() || latestIndex < latestEdits.size()) {
+			// Collect all edits of both sides that overlap or touch into a group.
+			int groupLocalStart = localIndex;
+			int groupLatestStart = latestIndex;
+			int groupBegin;
+			int groupEnd;
+			if (latestIndex == latestEdits.size()
+				|| (localIndex < localEdits.size()
+				&& localEdits.get(localIndex).getBeginA() <= latestEdits.get(latestIndex).getBeginA())) {
+				groupBegin = localEdits.get(localIndex).getBeginA();
+				groupEnd = localEdits.get(localIndex++).getEndA();
+			} else {
+				groupBegin = latestEdits.get(latestIndex).getBeginA();
+				groupEnd = latestEdits.get(latestIndex++).getEndA();
+			}
+			while (true) {
+				if (localIndex < localEdits.size() && localEdits.get(localIndex).getBeginA() <= groupEnd) {
+					groupEnd = Math.max(groupEnd, localEdits.get(localIndex++).getEndA());
+				} else if (latestIndex < latestEdits.size() && latestEdits.get(latestIndex).getBeginA() <= groupEnd) {
+					groupEnd = Math.max(groupEnd, latestEdits.get(latestIndex++).getEndA());
+				} else {
+					break;
+				}
+			}
+
+			append(result, baseLines, basePos, groupBegin);
+			basePos = groupEnd;
+
+			boolean localChanged = localIndex > groupLocalStart;
+			boolean latestChanged = latestIndex > groupLatestStart;
+			if (!latestChanged) {
+				apply(result, baseLines, groupBegin, groupEnd, localLines, localEdits, groupLocalStart, localIndex);
+				continue;
+			}
+			if (!localChanged) {
+				apply(result, baseLines, groupBegin, groupEnd, latestLines, latestEdits, groupLatestStart, latestIndex);
+				continue;
+			}
+
+			StringBuilder localText = new StringBuilder();
+			apply(localText, baseLines, groupBegin, groupEnd, localLines, localEdits, groupLocalStart, localIndex);
+			StringBuilder latestText = new StringBuilder();
+			apply(latestText, baseLines, groupBegin, groupEnd, latestLines, latestEdits, groupLatestStart,
+				latestIndex);
+			if (localText.toString().equals(latestText.toString())) {
+				result.append(localText);
+				continue;
+			}
+
+			conflicts = true;
+			StringBuilder baseText = new StringBuilder();
+			append(baseText, baseLines, groupBegin, groupEnd);
+			result.append(LOCAL_MARKER).append(lineEnd);
+			appendLines(result, localText, lineEnd);
+			result.append(BASE_MARKER).append(lineEnd);
+			appendLines(result, baseText, lineEnd);
+			result.append(SEPARATOR_MARKER).append(lineEnd);
+			appendLines(result, latestText, lineEnd);
+			result.append(LATEST_MARKER).append(lineEnd);
+		}
+		append(result, baseLines, basePos, baseLines.size());
+
+		return conflicts ? StatusType.CONFLICTED : StatusType.MERGED;
+	}
+
+	/**
+	 * Appends the base lines in the given range with the given edits applied.
+	 */
+	private static void apply(StringBuilder result, List<String> baseLines, int begin, int end, List<String> lines,
+			List<Edit> edits, int editStart, int editEnd) {
+		int pos = begin;
+		for (int n = editStart; n < editEnd; n++) {
+			Edit edit = edits.get(n);
+			append(result, baseLines, pos, edit.getBeginA());
+			append(result, lines, edit.getBeginB(), edit.getEndB());
+			pos = edit.getEndA();
+		}
+		append(result, baseLines, pos, end);
+	}
+
+	private static void append(StringBuilder result, List<String> lines, int begin, int end) {
+		for (int n = begin; n < end; n++) {
+			result.append(lines.get(n));
+		}
+	}
+
+	/**
+	 * Appends the given text and terminates its last line, so that a conflict marker can follow.
+	 */
+	private static void appendLines(StringBuilder result, CharSequence text, String lineEnd) {
+		result.append(text);
+		int length = text.length();
+		if (length > 0) {
+			char last = text.charAt(length - 1);
+			if (last != '\n' && last != '\r') {
+				result.append(lineEnd);
+			}
+		}
+	}
+
+	/**
+	 * Splits the given text into lines including their line ends.
+	 */
+	public static List<String> split(String text) {
+		List<String> result = new ArrayList<>();
+		int start = 0;
+		for (int n = 0, length = text.length(); n < length; n++) {
+			char ch = text.charAt(n);
+			if (ch == '\n') {
+				result.add(text.substring(start, n + 1));
+				start = n + 1;
+			} else if (ch == '\r') {
+				if (n + 1 < length && text.charAt(n + 1) == '\n') {
+					n++;
+				}
+				result.add(text.substring(start, n + 1));
+				start = n + 1;
+			}
+		}
+		if (start < text.length()) {
+			result.add(text.substring(start));
+		}
+		return result;
+	}
+
+	private static String lineEnd(List<String> lines) {
+		if (!lines.isEmpty()) {
+			String line = lines.get(0);
+			if (line.endsWith("\r\n")) {
+				return "\r\n";
+			}
+			if (line.endsWith("\r")) {
+				return "\r";
+			}
+		}
+		return "\n";
+	}
+
+	private static boolean isBinary(String content) {
+		return content.indexOf('\0') >= 0;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), BYTES);
+	}
+
+}
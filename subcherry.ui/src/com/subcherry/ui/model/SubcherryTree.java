@@ -45,14 +45,13 @@ import com.subcherry.repository.core.MergeInfo;
 import com.subcherry.repository.core.RepositoryException;
 import com.subcherry.repository.core.RepositoryURL;
 import com.subcherry.repository.core.Revision;
-import com.subcherry.repository.core.RevisionRange;
-import com.subcherry.repository.core.RevisionRanges;
+import com.subcherry.repository.core.RevisionSet;
 import com.subcherry.trac.TracConnection;
 import com.subcherry.trac.TracTicket;
 import com.subcherry.ui.SubcherryUI;
+import com.subcherry.utils.CommitMessage;
 import com.subcherry.utils.Path;
 import com.subcherry.utils.PathParser;
-import com.subcherry.utils.Utils;
 
 /**
  * Instances of this class represent the SVN tree to pick the cherries from.
@@ -182,10 +181,19 @@ public class SubcherryTree {
 	 *         {@link TracTicket}s
 	 */
 	private List<SubcherryTreeTicketNode> groupByTicket(final List<LogEntry> entries, final IProgressMonitor progress) {
+		// resolve all referenced tickets with as few requests as possible
+		final Set<Integer> numbers = new HashSet<>();
+		for (final LogEntry entry : entries) {
+			final String id = CommitMessage.of(entry).getTicketId();
+			if(id != null) {
+				numbers.add(Integer.valueOf(id));
+			}
+		}
+		_trac.getTickets(numbers);
+
 		final Map<Integer, SubcherryTreeTicketNode> tickets = new HashMap<>();
 		for (final LogEntry entry : entries) {
-			final String msg = entry.getMessage();
-			final String id = Utils.getTicketId(msg);
+			final String id = CommitMessage.of(entry).getTicketId();
 
 			SubcherryTreeTicketNode ticket = null;
 			if(id != null) {
@@ -522,12 +530,12 @@ public class SubcherryTree {
 						
 						final MergeInfo moduleMergeInfo = _tester.lookupMergeInfo(touchedModule);
 						final RepositoryURL mergeSrcUrl = _source.appendPath(touchedModule);
-						final List<RevisionRange> mergedRevisions = moduleMergeInfo.getRevisions(mergeSrcUrl);
+						final RevisionSet mergedRevisions = moduleMergeInfo.getRevisions(mergeSrcUrl);
 						if (mergedRevisions == null) {
 							continue;
 						}
 						
-						if (RevisionRanges.contains(mergedRevisions, mergedRevision)) {
+						if (mergedRevisions.contains(mergedRevision)) {
 							alreadyMerged = true;
 							break;
 						}
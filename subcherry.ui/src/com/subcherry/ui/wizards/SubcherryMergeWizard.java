@@ -31,6 +31,7 @@ import org.eclipse.ui.WorkbenchException;
 import com.subcherry.Configuration;
 import com.subcherry.repository.command.ClientManager;
 import com.subcherry.repository.javahl.HLRepositoryFactory;
+import com.subcherry.trac.TicketStore;
 import com.subcherry.trac.TracConnection;
 import com.subcherry.ui.SubcherryUI;
 import com.subcherry.ui.model.SubcherryTree;
@@ -107,6 +108,7 @@ public class SubcherryMergeWizard extends Wizard {
 				final String password = secPrefs.get(SubcherryPreferenceConstants.TRAC_PASSWORD, null);
 
 				_trac = new TracConnection(url, username, password);
+				_trac.setStore(new TicketStore(SubcherryUI.getInstance().getStateLocation().toFile(), url));
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}